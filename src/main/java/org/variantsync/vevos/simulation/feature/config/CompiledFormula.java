@@ -0,0 +1,415 @@
+package org.variantsync.vevos.simulation.feature.config;
+
+import org.prop4j.*;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A propositional formula compiled to a flat program over the bitset of an {@link IndexedConfiguration}.
+ * The program evaluates conjunctions and disjunctions lazily from left to right, exactly as
+ * {@link Node#getValue(java.util.Map)} does.
+ * Variables that are not contained in the {@link FeatureIndex} and formulas other than literals, negations,
+ * conjunctions, disjunctions, implications and equivalences cannot be evaluated by the program.
+ * When the evaluation reaches such a subformula, it stops and reports that the value is {@link #UNDEFINED}.
+ * <p>
+ * Additionally, the formula is compiled to a program without jumps that evaluates the formula for up to 64
+ * assignments at once (see {@link #evaluateAll(long[][], long[][], long[], long[])}).
+ */
+public class CompiledFormula {
+    /**
+     * Result of {@link #evaluate(long[], long[])} if the formula could not be evaluated.
+     */
+    public static final int UNDEFINED = -1;
+
+    // Instructions operate on a single boolean register (acc) and a stack that is only used for equivalences.
+    private static final int LOAD = 0;            // acc = value of feature
+    private static final int LOAD_NEGATED = 1;    // acc = !value of feature
+    private static final int LOAD_TRUE = 2;       // acc = true
+    private static final int LOAD_FALSE = 3;      // acc = false
+    private static final int NOT = 4;             // acc = !acc
+    private static final int JUMP_IF_FALSE = 5;   // if !acc: goto target
+    private static final int JUMP_IF_TRUE = 6;    // if acc: goto target
+    private static final int PUSH = 7;            // push acc
+    private static final int EQUALS = 8;          // acc = pop == acc
+    private static final int STOP_UNDEFINED = 9;  // return UNDEFINED
+
+    // Instructions of the bitwise program operate on a stack of words where bit i of each word belongs to the i-th
+    // assignment. Each stack entry consists of the values and of the assignments for which the value is undefined.
+    private static final int PUSH_FEATURE = 0;          // push value of feature
+    private static final int PUSH_NEGATED_FEATURE = 1;  // push !value of feature
+    private static final int PUSH_TRUE = 2;
+    private static final int PUSH_FALSE = 3;
+    private static final int PUSH_UNDEFINED = 4;
+    private static final int BITWISE_NOT = 5;           // negate top
+    private static final int BITWISE_AND = 6;           // replace the n topmost entries by their conjunction
+    private static final int BITWISE_OR = 7;            // replace the n topmost entries by their disjunction
+    private static final int BITWISE_IMPLIES = 8;
+    private static final int BITWISE_EQUALS = 9;
+
+    private final Node formula;
+    private final FeatureIndex featureIndex;
+    private final int[] code;
+    private final int maxStackSize;
+    private final int[] bitwiseCode;
+    private final int maxBitwiseStackSize;
+
+    private CompiledFormula(final Node formula, final FeatureIndex featureIndex, final int[] code, final int maxStackSize, final int[] bitwiseCode, final int maxBitwiseStackSize) {
+        this.formula = formula;
+        this.featureIndex = featureIndex;
+        this.code = code;
+        this.maxStackSize = maxStackSize;
+        this.bitwiseCode = bitwiseCode;
+        this.maxBitwiseStackSize = maxBitwiseStackSize;
+    }
+
+    /**
+     * Compiles the given formula.
+     * Prefer {@link FeatureIndex#compile(Node)} which caches compiled formulas.
+     * @param formula The formula to compile.
+     * @param featureIndex The index of the configurations the formula will be evaluated for.
+     * @return The compiled formula.
+     */
+    public static CompiledFormula compile(final Node formula, final FeatureIndex featureIndex) {
+        final Compiler compiler = new Compiler(featureIndex);
+        compiler.compile(formula);
+        final BitwiseCompiler bitwiseCompiler = new BitwiseCompiler(featureIndex);
+        bitwiseCompiler.compile(formula);
+        return new CompiledFormula(formula, featureIndex,
+                compiler.toCode(), compiler.maxStackSize,
+                bitwiseCompiler.toCode(), bitwiseCompiler.maxStackSize);
+    }
+
+    /**
+     * @return The formula this program was compiled from.
+     */
+    public Node getFormula() {
+        return formula;
+    }
+
+    /**
+     * @return The index of the configurations this program can evaluate.
+     */
+    public FeatureIndex getFeatureIndex() {
+        return featureIndex;
+    }
+
+    /**
+     * Evaluates this formula for the given assignment.
+     * @param values Bitset of all selected features w.r.t. the index of this formula.
+     * @param defined Bitset of all features that have a value. Features that are not defined have no value.
+     * @return 1 if the formula is satisfied, 0 if it is not satisfied, and {@link #UNDEFINED} if evaluation reached a
+     *         variable without value or a subformula that could not be compiled.
+     */
+    public int evaluate(final long[] values, final long[] defined) {
+        final boolean[] stack = maxStackSize == 0 ? null : new boolean[maxStackSize];
+        int stackSize = 0;
+        boolean acc = false;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case LOAD, LOAD_NEGATED -> {
+                    final int feature = code[pc + 1];
+                    if (!isSet(defined, feature)) {
+                        return UNDEFINED;
+                    }
+                    acc = isSet(values, feature) == (code[pc] == LOAD);
+                    pc += 2;
+                }
+                case LOAD_TRUE -> {
+                    acc = true;
+                    ++pc;
+                }
+                case LOAD_FALSE -> {
+                    acc = false;
+                    ++pc;
+                }
+                case NOT -> {
+                    acc = !acc;
+                    ++pc;
+                }
+                case JUMP_IF_FALSE -> pc = acc ? pc + 2 : code[pc + 1];
+                case JUMP_IF_TRUE -> pc = acc ? code[pc + 1] : pc + 2;
+                case PUSH -> {
+                    stack[stackSize++] = acc;
+                    ++pc;
+                }
+                case EQUALS -> {
+                    acc = stack[--stackSize] == acc;
+                    ++pc;
+                }
+                case STOP_UNDEFINED -> {
+                    return UNDEFINED;
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + code[pc] + " at " + pc + "!");
+            }
+        }
+        return acc ? 1 : 0;
+    }
+
+    /**
+     * Evaluates this formula for many assignments at once.
+     * The assignments are given per feature: Bit i of word w of a feature belongs to assignment 64 * w + i.
+     * The result is the same as evaluating the formula for each assignment with {@link #evaluate(long[], long[])}.
+     * @param values values[f] is the bitset of all assignments that select feature f.
+     * @param defined defined[f] is the bitset of all assignments in which feature f has a value.
+     * @param satisfied Output bitset that will contain all assignments that satisfy this formula.
+     * @param undefined Output bitset that will contain all assignments for which this formula is {@link #UNDEFINED}.
+     */
+    public void evaluateAll(final long[][] values, final long[][] defined, final long[] satisfied, final long[] undefined) {
+        final long[] valueStack = new long[maxBitwiseStackSize];
+        final long[] undefinedStack = new long[maxBitwiseStackSize];
+        for (int word = 0; word < satisfied.length; ++word) {
+            int top = -1;
+            int pc = 0;
+            while (pc < bitwiseCode.length) {
+                switch (bitwiseCode[pc]) {
+                    case PUSH_FEATURE, PUSH_NEGATED_FEATURE -> {
+                        final int feature = bitwiseCode[pc + 1];
+                        final long value = values[feature][word];
+                        ++top;
+                        valueStack[top] = bitwiseCode[pc] == PUSH_FEATURE ? value : ~value;
+                        undefinedStack[top] = ~defined[feature][word];
+                        pc += 2;
+                    }
+                    case PUSH_TRUE, PUSH_FALSE, PUSH_UNDEFINED -> {
+                        ++top;
+                        valueStack[top] = bitwiseCode[pc] == PUSH_TRUE ? -1L : 0L;
+                        undefinedStack[top] = bitwiseCode[pc] == PUSH_UNDEFINED ? -1L : 0L;
+                        ++pc;
+                    }
+                    case BITWISE_NOT -> {
+                        valueStack[top] = ~valueStack[top];
+                        ++pc;
+                    }
+                    case BITWISE_AND, BITWISE_OR -> {
+                        final boolean isAnd = bitwiseCode[pc] == BITWISE_AND;
+                        final int operands = bitwiseCode[pc + 1];
+                        // Assignments that evaluate the next operand because all previous operands did not
+                        // determine the value of the junction yet.
+                        long reaching = -1L;
+                        long undefinedValue = 0L;
+                        for (int i = top - operands + 1; i <= top; ++i) {
+                            undefinedValue |= reaching & undefinedStack[i];
+                            reaching &= ~undefinedStack[i] & (isAnd ? valueStack[i] : ~valueStack[i]);
+                        }
+                        top -= operands - 1;
+                        // A conjunction is true iff all operands were reached and true.
+                        // A disjunction is true iff some operand was true before reaching an undefined operand.
+                        valueStack[top] = isAnd ? reaching : ~reaching & ~undefinedValue;
+                        undefinedStack[top] = undefinedValue;
+                        pc += 2;
+                    }
+                    case BITWISE_IMPLIES -> {
+                        // !a || b where b is evaluated only if a is true
+                        --top;
+                        final long a = valueStack[top];
+                        final long aUndefined = undefinedStack[top];
+                        final long bReached = ~aUndefined & a;
+                        undefinedStack[top] = aUndefined | (bReached & undefinedStack[top + 1]);
+                        valueStack[top] = ~a | valueStack[top + 1];
+                        ++pc;
+                    }
+                    case BITWISE_EQUALS -> {
+                        --top;
+                        undefinedStack[top] |= undefinedStack[top + 1];
+                        valueStack[top] = ~(valueStack[top] ^ valueStack[top + 1]);
+                        ++pc;
+                    }
+                    default -> throw new IllegalStateException("Unknown instruction " + bitwiseCode[pc] + " at " + pc + "!");
+                }
+            }
+            undefined[word] = undefinedStack[0];
+            satisfied[word] = valueStack[0] & ~undefinedStack[0];
+        }
+    }
+
+    static boolean isSet(final long[] bits, final int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFormula{" + formula + " as " + Arrays.toString(code) + "}";
+    }
+
+    private static class BitwiseCompiler {
+        private final FeatureIndex featureIndex;
+        private int[] code = new int[16];
+        private int size = 0;
+        private int stackSize = 0;
+        private int maxStackSize = 1;
+
+        BitwiseCompiler(final FeatureIndex featureIndex) {
+            this.featureIndex = featureIndex;
+        }
+
+        void compile(final Node formula) {
+            if (formula instanceof Literal l) {
+                compileLiteral(l);
+            } else if (formula instanceof Not) {
+                compile(formula.getChildren()[0]);
+                emit(BITWISE_NOT);
+            } else if (formula instanceof And || formula instanceof Or) {
+                final Node[] children = formula.getChildren();
+                if (children.length == 0) {
+                    push(formula instanceof And ? PUSH_TRUE : PUSH_FALSE);
+                    return;
+                }
+                for (final Node child : children) {
+                    compile(child);
+                }
+                emit(formula instanceof And ? BITWISE_AND : BITWISE_OR);
+                emit(children.length);
+                stackSize -= children.length - 1;
+            } else if (formula instanceof Implies || formula instanceof Equals) {
+                final Node[] children = formula.getChildren();
+                compile(children[0]);
+                compile(children[1]);
+                emit(formula instanceof Implies ? BITWISE_IMPLIES : BITWISE_EQUALS);
+                --stackSize;
+            } else {
+                push(PUSH_UNDEFINED);
+            }
+        }
+
+        private void compileLiteral(final Literal literal) {
+            // Same order of checks as in Literal::getValue.
+            if (literal.var == FixTrueFalse.False.var) {
+                push(literal.positive ? PUSH_FALSE : PUSH_TRUE);
+            } else if (literal.var == FixTrueFalse.True.var || literal instanceof True) {
+                push(literal.positive ? PUSH_TRUE : PUSH_FALSE);
+            } else if (literal instanceof False) {
+                push(literal.positive ? PUSH_FALSE : PUSH_TRUE);
+            } else {
+                final int feature = featureIndex.indexOf(literal.var);
+                if (feature < 0) {
+                    push(PUSH_UNDEFINED);
+                } else {
+                    push(literal.positive ? PUSH_FEATURE : PUSH_NEGATED_FEATURE);
+                    emit(feature);
+                }
+            }
+        }
+
+        private void push(final int instruction) {
+            emit(instruction);
+            maxStackSize = Math.max(maxStackSize, ++stackSize);
+        }
+
+        private void emit(final int value) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, 2 * size);
+            }
+            code[size++] = value;
+        }
+
+        int[] toCode() {
+            return Arrays.copyOf(code, size);
+        }
+    }
+
+    private static class Compiler {
+        private final FeatureIndex featureIndex;
+        private int[] code = new int[16];
+        private int size = 0;
+        private int stackSize = 0;
+        private int maxStackSize = 0;
+
+        Compiler(final FeatureIndex featureIndex) {
+            this.featureIndex = featureIndex;
+        }
+
+        void compile(final Node formula) {
+            if (formula instanceof Literal l) {
+                compileLiteral(l);
+            } else if (formula instanceof Not) {
+                compile(formula.getChildren()[0]);
+                emit(NOT);
+            } else if (formula instanceof And) {
+                compileJunction(formula.getChildren(), JUMP_IF_FALSE, LOAD_TRUE);
+            } else if (formula instanceof Or) {
+                compileJunction(formula.getChildren(), JUMP_IF_TRUE, LOAD_FALSE);
+            } else if (formula instanceof Implies) {
+                // !a || b
+                final Node[] children = formula.getChildren();
+                compile(children[0]);
+                emit(NOT);
+                final int jump = emitJump(JUMP_IF_TRUE);
+                compile(children[1]);
+                patchJump(jump);
+            } else if (formula instanceof Equals) {
+                final Node[] children = formula.getChildren();
+                compile(children[0]);
+                emit(PUSH);
+                maxStackSize = Math.max(maxStackSize, ++stackSize);
+                compile(children[1]);
+                emit(EQUALS);
+                --stackSize;
+            } else {
+                emit(STOP_UNDEFINED);
+            }
+        }
+
+        private void compileLiteral(final Literal literal) {
+            // Same order of checks as in Literal::getValue.
+            if (literal.var == FixTrueFalse.False.var) {
+                emit(literal.positive ? LOAD_FALSE : LOAD_TRUE);
+            } else if (literal.var == FixTrueFalse.True.var || literal instanceof True) {
+                emit(literal.positive ? LOAD_TRUE : LOAD_FALSE);
+            } else if (literal instanceof False) {
+                emit(literal.positive ? LOAD_FALSE : LOAD_TRUE);
+            } else {
+                final int feature = featureIndex.indexOf(literal.var);
+                if (feature < 0) {
+                    emit(STOP_UNDEFINED);
+                } else {
+                    emit(literal.positive ? LOAD : LOAD_NEGATED);
+                    emit(feature);
+                }
+            }
+        }
+
+        /**
+         * Evaluates the operands from left to right and stops as soon as the value of the junction is known.
+         */
+        private void compileJunction(final Node[] operands, final int shortCircuitJump, final int neutralElement) {
+            if (operands.length == 0) {
+                emit(neutralElement);
+                return;
+            }
+
+            final List<Integer> jumps = new ArrayList<>(operands.length - 1);
+            for (int i = 0; i < operands.length; ++i) {
+                compile(operands[i]);
+                if (i < operands.length - 1) {
+                    jumps.add(emitJump(shortCircuitJump));
+                }
+            }
+            jumps.forEach(this::patchJump);
+        }
+
+        private int emitJump(final int jump) {
+            emit(jump);
+            emit(-1);
+            return size - 1;
+        }
+
+        private void patchJump(final int jumpTargetPosition) {
+            code[jumpTargetPosition] = size;
+        }
+
+        private void emit(final int value) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, 2 * size);
+            }
+            code[size++] = value;
+        }
+
+        int[] toCode() {
+            return Arrays.copyOf(code, size);
+        }
+    }
+}
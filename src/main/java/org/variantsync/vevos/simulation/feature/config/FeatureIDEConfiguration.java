@@ -38,6 +38,11 @@ public class FeatureIDEConfiguration implements IConfiguration {
 
         return assignment;
     });
+    // Optional index over the features of the feature model to evaluate formulas faster.
+    private final FeatureIndex featureIndex;
+    private final Lazy<IndexedConfiguration> asIndexed = Lazy.of(() ->
+            // Formulas that cannot be evaluated over the index are evaluated on the assignment directly.
+            IndexedConfiguration.of(getFeatureIndex(), toAssignment(), formula -> formula.getValue(toAssignment())));
 
     /**
      * Wrap the given FeatureIDE configuration.
@@ -46,9 +51,22 @@ public class FeatureIDEConfiguration implements IConfiguration {
      */
     public FeatureIDEConfiguration(final Configuration featureIDEConfig) {
         this.featureIDEConfig = featureIDEConfig;
+        this.featureIndex = null;
     }
 
     public FeatureIDEConfiguration(final LiteralSet literalSet, final FeatureModelFormula featureModel) {
+        this(literalSet, featureModel, null);
+    }
+
+    /**
+     * Creates a configuration from the given literals that evaluates formulas over the given index.
+     * The index should be shared among all configurations of the same feature model such that
+     * each formula is compiled only once (see {@link FeatureIndex#compile(Node)}).
+     *
+     * @param featureIndex Index of all features in the given feature model. May be null.
+     */
+    public FeatureIDEConfiguration(final LiteralSet literalSet, final FeatureModelFormula featureModel, final FeatureIndex featureIndex) {
+        this.featureIndex = featureIndex;
         featureIDEConfig = new Configuration(featureModel);
 
         final IVariables vars = featureModel.getVariables();
@@ -95,9 +113,35 @@ public class FeatureIDEConfiguration implements IConfiguration {
 
     @Override
     public boolean satisfies(final Node formula) {
+        if (featureIndex != null) {
+            return asIndexed.run().satisfies(formula);
+        }
         return formula.getValue(toAssignment());
     }
 
+    @Override
+    public boolean satisfies(final CompiledFormula formula) {
+        if (featureIndex != null) {
+            return asIndexed.run().satisfies(formula);
+        }
+        return IConfiguration.super.satisfies(formula);
+    }
+
+    @Override
+    public IndexedConfiguration toIndexed(final FeatureIndex featureIndex) {
+        if (featureIndex == this.featureIndex) {
+            return asIndexed.run();
+        }
+        return IndexedConfiguration.of(featureIndex, toAssignment(), this);
+    }
+
+    /**
+     * @return The index used to evaluate formulas or null if formulas are evaluated on the assignment directly.
+     */
+    public FeatureIndex getFeatureIndex() {
+        return featureIndex;
+    }
+
     public Configuration getConfiguration() {
         return featureIDEConfig;
     }
@@ -0,0 +1,125 @@
+package org.variantsync.vevos.simulation.feature.config;
+
+import de.ovgu.featureide.fm.core.base.IFeature;
+import de.ovgu.featureide.fm.core.base.IFeatureModel;
+import org.prop4j.Node;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a dense index to each feature of a feature model (e.g., of a single commit of a product line).
+ * Configurations over the same index can be represented as bitsets (see {@link IndexedConfiguration}) and
+ * formulas can be compiled to programs over these bitsets (see {@link CompiledFormula}).
+ * The compiled programs are cached per formula object such that each formula is compiled only once,
+ * no matter how many configurations it is evaluated for.
+ * Thus, formulas must not be altered inplace after they were compiled.
+ */
+public class FeatureIndex {
+    private static final int MAX_CACHED_FORMULAS = 1 << 16;
+
+    private final String[] names;
+    private final Map<Object, Integer> indices;
+    private final Map<FormulaKey, CompiledFormula> compiledFormulas = new ConcurrentHashMap<>();
+
+    private FeatureIndex(final String[] names) {
+        this.names = names;
+        this.indices = new HashMap<>(2 * names.length);
+        for (int i = 0; i < names.length; ++i) {
+            if (indices.putIfAbsent(names[i], i) != null) {
+                throw new IllegalArgumentException("Feature " + names[i] + " is given more than once!");
+            }
+        }
+    }
+
+    /**
+     * Creates an index for the given features.
+     * Features are indexed in the order they are given.
+     * @param features Names of distinct features.
+     */
+    public static FeatureIndex of(final Collection<String> features) {
+        return new FeatureIndex(features.toArray(new String[0]));
+    }
+
+    /**
+     * Creates an index for all features occurring in the given formulas.
+     * Features are indexed in the order of their first occurrence.
+     */
+    public static FeatureIndex ofFeaturesIn(final Collection<Node> formulas) {
+        final Set<String> features = new LinkedHashSet<>();
+        for (final Node formula : formulas) {
+            features.addAll(formula.getContainedFeatures());
+        }
+        return of(features);
+    }
+
+    /**
+     * Creates an index for all features of the given feature model.
+     */
+    public static FeatureIndex of(final IFeatureModel featureModel) {
+        final List<String> features = new ArrayList<>(featureModel.getNumberOfFeatures());
+        for (final IFeature feature : featureModel.getFeatures()) {
+            features.add(feature.getName());
+        }
+        return of(features);
+    }
+
+    /**
+     * @param variable A variable of a formula (i.e., {@link org.prop4j.Literal#var}).
+     * @return The index of the given variable or -1 if it is not indexed.
+     */
+    public int indexOf(final Object variable) {
+        final Integer index = indices.get(variable);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return The name of the feature with the given index.
+     */
+    public String getName(final int index) {
+        return names[index];
+    }
+
+    /**
+     * @return The number of indexed features.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Compiles the given formula for configurations over this index.
+     * The result is cached for the given formula object.
+     * @param formula The formula to compile.
+     * @return A program that evaluates the given formula.
+     */
+    public CompiledFormula compile(final Node formula) {
+        final FormulaKey key = new FormulaKey(formula);
+        final CompiledFormula cached = compiledFormulas.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CompiledFormula compiled = CompiledFormula.compile(formula, this);
+        if (compiledFormulas.size() >= MAX_CACHED_FORMULAS) {
+            compiledFormulas.clear();
+        }
+        compiledFormulas.putIfAbsent(key, compiled);
+        return compiled;
+    }
+
+    /**
+     * Identifies formulas by reference because computing the hash of a formula takes as long as evaluating it.
+     */
+    private record FormulaKey(Node formula) {
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof FormulaKey other && formula == other.formula;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(formula);
+        }
+    }
+}
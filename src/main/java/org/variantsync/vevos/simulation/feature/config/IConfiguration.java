@@ -14,4 +14,24 @@ public interface IConfiguration {
      * @return True iff this IConfiguration is a satisfying assignment for the given formula.
      */
     boolean satisfies(Node formula);
+
+    /**
+     * Evaluate the given compiled propositional formula.
+     * Configurations over the index of the given formula evaluate the compiled program instead of the formula.
+     * @param formula Formula to evaluate.
+     * @return True iff this IConfiguration is a satisfying assignment for the given formula.
+     */
+    default boolean satisfies(final CompiledFormula formula) {
+        return satisfies(formula.getFormula());
+    }
+
+    /**
+     * Converts this configuration to a bitset over the given index such that formulas can be evaluated
+     * by their {@link CompiledFormula}.
+     * @param featureIndex The index of features to store the values of.
+     * @return A configuration that behaves exactly like this configuration.
+     */
+    default IndexedConfiguration toIndexed(final FeatureIndex featureIndex) {
+        return IndexedConfiguration.of(featureIndex, this);
+    }
 }
@@ -0,0 +1,126 @@
+package org.variantsync.vevos.simulation.feature.config;
+
+import org.prop4j.Literal;
+import org.prop4j.Node;
+
+import java.util.Map;
+
+/**
+ * A configuration stored as bitset over a {@link FeatureIndex}.
+ * Formulas are evaluated by their {@link CompiledFormula} instead of traversing the formula and looking up each
+ * variable in a map.
+ * Formulas that cannot be evaluated over the index (e.g., because they contain features that are not indexed)
+ * are evaluated by the configuration this configuration was created from.
+ * Thus, this configuration always behaves exactly like the configuration it was created from.
+ */
+public class IndexedConfiguration implements IConfiguration {
+    private final FeatureIndex featureIndex;
+    private final long[] selected;
+    private final long[] defined;
+    private final IConfiguration source;
+
+    private IndexedConfiguration(final FeatureIndex featureIndex, final long[] selected, final long[] defined, final IConfiguration source) {
+        this.featureIndex = featureIndex;
+        this.selected = selected;
+        this.defined = defined;
+        this.source = source;
+    }
+
+    /**
+     * Indexes the given configuration by evaluating each feature of the given index on it.
+     * Features for which the given configuration has no value remain undefined.
+     * @param featureIndex The index of features to store the values of.
+     * @param source The configuration to index.
+     * @return A configuration that behaves exactly like the given configuration.
+     */
+    public static IndexedConfiguration of(final FeatureIndex featureIndex, final IConfiguration source) {
+        final long[] selected = newBitset(featureIndex);
+        final long[] defined = newBitset(featureIndex);
+        for (int i = 0; i < featureIndex.size(); ++i) {
+            try {
+                if (source.satisfies(new Literal(featureIndex.getName(i)))) {
+                    set(selected, i);
+                }
+                set(defined, i);
+            } catch (final IllegalArgumentException e) {
+                // Feature has no value in the source configuration.
+            }
+        }
+        return new IndexedConfiguration(featureIndex, selected, defined, source);
+    }
+
+    /**
+     * Indexes the given assignment as it is used by {@link Node#getValue(Map)}.
+     * Features that are not assigned remain undefined.
+     * @param featureIndex The index of features to store the values of.
+     * @param assignment Assignment from variables to values.
+     * @param source The configuration that uses the given assignment for evaluating formulas.
+     * @return A configuration that behaves exactly like the given configuration.
+     */
+    public static IndexedConfiguration of(final FeatureIndex featureIndex, final Map<Object, Boolean> assignment, final IConfiguration source) {
+        final long[] selected = newBitset(featureIndex);
+        final long[] defined = newBitset(featureIndex);
+        for (int i = 0; i < featureIndex.size(); ++i) {
+            final Boolean value = assignment.get(featureIndex.getName(i));
+            if (value != null) {
+                set(defined, i);
+                if (value) {
+                    set(selected, i);
+                }
+            }
+        }
+        return new IndexedConfiguration(featureIndex, selected, defined, source);
+    }
+
+    private static long[] newBitset(final FeatureIndex featureIndex) {
+        return new long[(featureIndex.size() + 63) >>> 6];
+    }
+
+    private static void set(final long[] bits, final int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    public FeatureIndex getFeatureIndex() {
+        return featureIndex;
+    }
+
+    /**
+     * @return True iff the feature with the given index is selected.
+     */
+    public boolean isSelected(final int feature) {
+        return CompiledFormula.isSet(selected, feature);
+    }
+
+    /**
+     * @return True iff the feature with the given index has a value in this configuration.
+     */
+    public boolean isDefined(final int feature) {
+        return CompiledFormula.isSet(defined, feature);
+    }
+
+    @Override
+    public boolean satisfies(final Node formula) {
+        return satisfies(featureIndex.compile(formula));
+    }
+
+    @Override
+    public boolean satisfies(final CompiledFormula formula) {
+        if (formula.getFeatureIndex() == featureIndex) {
+            final int value = formula.evaluate(selected, defined);
+            if (value != CompiledFormula.UNDEFINED) {
+                return value == 1;
+            }
+        }
+        return source.satisfies(formula.getFormula());
+    }
+
+    @Override
+    public IndexedConfiguration toIndexed(final FeatureIndex featureIndex) {
+        return featureIndex == this.featureIndex ? this : source.toIndexed(featureIndex);
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+}
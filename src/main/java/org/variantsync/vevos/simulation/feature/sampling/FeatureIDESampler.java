@@ -11,6 +11,7 @@ import de.ovgu.featureide.fm.core.job.LongRunningWrapper;
 import de.ovgu.featureide.fm.core.job.monitor.NullMonitor;
 import org.variantsync.vevos.simulation.feature.Variant;
 import org.variantsync.vevos.simulation.feature.config.FeatureIDEConfiguration;
+import org.variantsync.vevos.simulation.feature.config.FeatureIndex;
 import org.variantsync.vevos.simulation.util.fide.FeatureModelUtils;
 import org.variantsync.vevos.simulation.util.names.NameGenerator;
 import org.variantsync.vevos.simulation.util.names.NumericNameGenerator;
@@ -64,10 +65,12 @@ public class FeatureIDESampler implements Sampler {
         // The monitor gets notified about the progress of the generator and can for example be used to update a progress bar.
         // I guess we do not need it.
         final List<LiteralSet> result = LongRunningWrapper.runMethod(generator, new NullMonitor<>());
+        // All variants share the index such that each presence condition is compiled only once.
+        final FeatureIndex featureIndex = FeatureIndex.of(model);
         final AtomicInteger variantNo = new AtomicInteger();
         return new Sample(result.stream().map(literalSet -> new Variant(
                 variantNameGenerator.getNameAtIndex(variantNo.getAndIncrement()),
-                new FeatureIDEConfiguration(literalSet, featureModelFormula)
+                new FeatureIDEConfiguration(literalSet, featureModelFormula, featureIndex)
         )).collect(Collectors.toList()));
     }
 }
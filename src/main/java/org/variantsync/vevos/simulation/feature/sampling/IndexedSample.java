@@ -0,0 +1,148 @@
+package org.variantsync.vevos.simulation.feature.sampling;
+
+import org.prop4j.Node;
+import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.config.CompiledFormula;
+import org.variantsync.vevos.simulation.feature.config.FeatureIndex;
+import org.variantsync.vevos.simulation.feature.config.IndexedConfiguration;
+
+import java.util.List;
+
+/**
+ * The configurations of all variants of a {@link Sample} packed per feature into bitsets over a {@link FeatureIndex}.
+ * Bit i of the bitset of a feature describes the i-th variant of the sample.
+ * This allows to evaluate a formula for 64 variants at once (see {@link CompiledFormula#evaluateAll}).
+ * The results of this class are always the same as evaluating {@link Variant#isImplementing(Node)} for each variant.
+ */
+public class IndexedSample {
+    private final Sample sample;
+    private final FeatureIndex featureIndex;
+    private final long[][] selected;
+    private final long[][] defined;
+    private final long[] allVariants;
+
+    private IndexedSample(final Sample sample, final FeatureIndex featureIndex, final long[][] selected, final long[][] defined) {
+        this.sample = sample;
+        this.featureIndex = featureIndex;
+        this.selected = selected;
+        this.defined = defined;
+        this.allVariants = new long[wordsFor(sample.size())];
+        for (int v = 0; v < sample.size(); ++v) {
+            allVariants[v >>> 6] |= 1L << v;
+        }
+    }
+
+    /**
+     * Packs the configurations of all variants in the given sample.
+     * @param sample The sample to index.
+     * @param featureIndex The features whose values to pack.
+     * @return The indexed sample.
+     */
+    public static IndexedSample of(final Sample sample, final FeatureIndex featureIndex) {
+        final int words = wordsFor(sample.size());
+        final long[][] selected = new long[featureIndex.size()][words];
+        final long[][] defined = new long[featureIndex.size()][words];
+
+        final List<Variant> variants = sample.variants();
+        for (int v = 0; v < variants.size(); ++v) {
+            final IndexedConfiguration config = variants.get(v).getConfiguration().toIndexed(featureIndex);
+            final int word = v >>> 6;
+            final long bit = 1L << v;
+            for (int f = 0; f < featureIndex.size(); ++f) {
+                if (config.isDefined(f)) {
+                    defined[f][word] |= bit;
+                    if (config.isSelected(f)) {
+                        selected[f][word] |= bit;
+                    }
+                }
+            }
+        }
+
+        return new IndexedSample(sample, featureIndex, selected, defined);
+    }
+
+    /**
+     * @return The number of words required for a bitset with one bit per variant.
+     */
+    private static int wordsFor(final int variants) {
+        return (variants + 63) >>> 6;
+    }
+
+    /**
+     * @return True iff the variant with the given index is contained in the given bitset of variants.
+     */
+    public static boolean contains(final long[] variants, final int variant) {
+        return (variants[variant >>> 6] & (1L << variant)) != 0;
+    }
+
+    /**
+     * @return A bitset that contains no variants of this sample.
+     */
+    public long[] none() {
+        return new long[allVariants.length];
+    }
+
+    /**
+     * @return A bitset that contains all variants of this sample.
+     */
+    public long[] all() {
+        return allVariants.clone();
+    }
+
+    /**
+     * Determines all variants implementing the given presence condition.
+     * @param presenceCondition The formula to evaluate.
+     * @return A bitset containing exactly those variants that implement the given presence condition.
+     */
+    public long[] implementing(final Node presenceCondition) {
+        return implementing(featureIndex.compile(presenceCondition));
+    }
+
+    /**
+     * Determines all variants implementing the given presence condition.
+     * @param presenceCondition The formula to evaluate.
+     * @return A bitset containing exactly those variants that implement the given presence condition.
+     */
+    public long[] implementing(final CompiledFormula presenceCondition) {
+        final long[] satisfied = none();
+        if (presenceCondition.getFeatureIndex() != featureIndex) {
+            final List<Variant> variants = sample.variants();
+            for (int v = 0; v < variants.size(); ++v) {
+                if (variants.get(v).getConfiguration().satisfies(presenceCondition)) {
+                    satisfied[v >>> 6] |= 1L << v;
+                }
+            }
+            return satisfied;
+        }
+
+        final long[] undefined = none();
+        presenceCondition.evaluateAll(selected, defined, satisfied, undefined);
+
+        // Evaluate the formula for each variant that could not be evaluated on the bitsets.
+        final List<Variant> variants = sample.variants();
+        for (int word = 0; word < undefined.length; ++word) {
+            long remaining = undefined[word];
+            while (remaining != 0) {
+                final int v = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                if (v < variants.size() && variants.get(v).isImplementing(presenceCondition.getFormula())) {
+                    satisfied[word] |= 1L << v;
+                }
+            }
+        }
+
+        // Clear the bits beyond the last variant.
+        for (int word = 0; word < satisfied.length; ++word) {
+            satisfied[word] &= allVariants[word];
+        }
+        return satisfied;
+    }
+
+    public Sample getSample() {
+        return sample;
+    }
+
+    public FeatureIndex getFeatureIndex() {
+        return featureIndex;
+    }
+}
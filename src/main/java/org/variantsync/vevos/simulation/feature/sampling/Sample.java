@@ -2,6 +2,7 @@ package org.variantsync.vevos.simulation.feature.sampling;
 
 import org.jetbrains.annotations.NotNull;
 import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.config.FeatureIndex;
 
 import java.util.Iterator;
 import java.util.List;
@@ -15,6 +16,16 @@ public record Sample(List<Variant> variants) implements Iterable<Variant> {
         return variants.size();
     }
 
+    /**
+     * Packs the configurations of all variants in this sample such that a formula can be evaluated for all variants
+     * at once.
+     * @param featureIndex The features of the configurations.
+     * @return This sample as bitsets over the given index.
+     */
+    public IndexedSample index(final FeatureIndex featureIndex) {
+        return IndexedSample.of(this, featureIndex);
+    }
+
     @NotNull
     @Override
     public Iterator<Variant> iterator() {
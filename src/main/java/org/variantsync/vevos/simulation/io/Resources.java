@@ -7,11 +7,13 @@ import de.ovgu.featureide.fm.core.io.xml.XmlFeatureModelFormat;
 import org.variantsync.functjonal.Result;
 import org.variantsync.functjonal.Unit;
 import org.variantsync.vevos.simulation.feature.config.IConfiguration;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCIO;
 import org.variantsync.vevos.simulation.io.data.CSV;
 import org.variantsync.vevos.simulation.io.data.CSVIO;
 import org.variantsync.vevos.simulation.io.data.VariabilityDatasetLoader;
 import org.variantsync.vevos.simulation.io.featureide.FeatureIDEConfigurationIO;
 import org.variantsync.vevos.simulation.io.featureide.FeatureModelIO;
+import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenPCCache;
 import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenSPLPCIO;
 import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenVariantPCIO;
 import org.variantsync.vevos.simulation.io.kernelhaven.VariabilityModelLoader;
@@ -33,6 +35,7 @@ public class Resources {
     private final static Resources instance = new Resources();
     private final Map<Class<?>, List<ResourceLoader<?>>> loaders;
     private final Map<Class<?>, List<ResourceWriter<?>>> writers;
+    private KernelHavenSPLPCIO splPCIO;
 
     private Resources() {
         loaders = new HashMap<>();
@@ -54,14 +57,18 @@ public class Resources {
         r.registerLoader(VariabilityDataset.class, datasetLoader);
 
         // Presence Conditions
-        final KernelHavenSPLPCIO splPCIO = new KernelHavenSPLPCIO();
-        r.registerLoader(Artefact.class, splPCIO);
-        r.registerWriter(Artefact.class, splPCIO);
+        r.splPCIO = new KernelHavenSPLPCIO();
+        r.registerLoader(Artefact.class, r.splPCIO);
+        r.registerWriter(Artefact.class, r.splPCIO);
 
         final KernelHavenVariantPCIO variantSPLIO = new KernelHavenVariantPCIO();
         r.registerLoader(Artefact.class, variantSPLIO);
         r.registerWriter(Artefact.class, variantSPLIO);
 
+        final BinaryPCIO binaryPCIO = new BinaryPCIO();
+        r.registerLoader(Artefact.class, binaryPCIO);
+        r.registerWriter(Artefact.class, binaryPCIO);
+
         // Feature Models
         final FeatureModelIO dimacsFMIO = new FeatureModelIO(new DIMACSFormat());
         r.registerLoader(IFeatureModel.class, dimacsFMIO);
@@ -108,6 +115,22 @@ public class Resources {
         getLoaders(type).add(loader);
     }
 
+    /**
+     * Replaces the IO that is used to load and write ground truths of SPL commits (i.e., *.spl.csv files), for example
+     * when loading the presence conditions of an {@link org.variantsync.vevos.simulation.variability.SPLCommit}.
+     * By default, the files of a ground truth are parsed sequentially on the calling thread.
+     * Use, e.g., {@link KernelHavenSPLPCIO#KernelHavenSPLPCIO(java.util.concurrent.ForkJoinPool)} to parse them in
+     * parallel or {@link KernelHavenSPLPCIO#KernelHavenSPLPCIO(java.util.concurrent.ForkJoinPool, KernelHavenPCCache)}
+     * to reuse files that were already parsed for other commits.
+     */
+    public void setSPLPresenceConditionIO(final KernelHavenSPLPCIO io) {
+        final List<ResourceLoader<Artefact>> artefactLoaders = getLoaders(Artefact.class);
+        artefactLoaders.set(artefactLoaders.indexOf(splPCIO), io);
+        final List<ResourceWriter<Artefact>> artefactWriters = getWriters(Artefact.class);
+        artefactWriters.set(artefactWriters.indexOf(splPCIO), io);
+        splPCIO = io;
+    }
+
     /**
      * Adds the given writer to this manager such that it will be queried for
      * resource writing when a resource of the given type T is given by the user via @write.
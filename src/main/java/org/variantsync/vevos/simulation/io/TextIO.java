@@ -4,9 +4,11 @@ import org.variantsync.functjonal.Result;
 import org.tinylog.Logger;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -60,7 +62,7 @@ public class TextIO {
     }
 
     public static Result<List<String>, IOException> readLines(final Path p) {
-        try (final BufferedReader br = new BufferedReader(new FileReader(p.toFile()));
+        try (final BufferedReader br = new BufferedReader(new InputStreamReader(Files.newInputStream(p)));
              final Stream<String> linesStream = br.lines()) {
             return Result.Success(linesStream.toList());
         } catch (final IOException e) {
@@ -93,8 +95,28 @@ public class TextIO {
         Files.writeString(p, text, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
     }
 
+    /**
+     * Append the given lines separated by {@link #LINEBREAK} to the given file.
+     * Same as {@link #append(Path, String)} with the joined lines but without joining the lines in memory first.
+     * Assumes that the given file already exists.
+     *
+     * @param p     Existing file to append lines to.
+     * @param lines Lines to write to file.
+     * @throws IOException if an I/O error occurs while writing to the file, or the text cannot be encoded using the specified charset.
+     */
+    public static void appendLines(final Path p, final List<String> lines) throws IOException {
+        try (final BufferedWriter writer = Files.newBufferedWriter(p, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            for (int i = 0; i < lines.size(); ++i) {
+                if (i > 0) {
+                    writer.write(LINEBREAK);
+                }
+                writer.write(lines.get(i));
+            }
+        }
+    }
+
     public static String readAsString(final Path p) throws IOException {
-        try (final BufferedReader reader = new BufferedReader(new FileReader(p.toFile()))) {
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(p)))) {
             return reader.lines().collect(Collectors.joining());
         } catch (final IOException e) {
             Logger.error("Failed to read lines from file: ", e);
@@ -0,0 +1,87 @@
+package org.variantsync.vevos.simulation.io.binary;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor over a byte array with methods for reading variable-length integers.
+ * Counterpart to {@link BinaryOutput}.
+ */
+final class BinaryInput {
+    private final byte[] bytes;
+    private int pos;
+    private final int end;
+
+    BinaryInput(final byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    BinaryInput(final byte[] bytes, final int offset, final int length) {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    int readByte() throws EOFException {
+        if (pos >= end) {
+            throw new EOFException("Unexpected end of binary data at byte " + pos);
+        }
+        return bytes[pos++] & 0xFF;
+    }
+
+    byte[] readBytes(final int length) throws EOFException {
+        if (length < 0 || pos + length > end) {
+            throw new EOFException("Unexpected end of binary data at byte " + pos);
+        }
+        final byte[] result = new byte[length];
+        System.arraycopy(bytes, pos, result, 0, length);
+        pos += length;
+        return result;
+    }
+
+    /**
+     * @see BinaryOutput#writeVarInt(int)
+     */
+    int readVarInt() throws IOException {
+        final int value = readUnsignedVarInt();
+        if (value < 0) {
+            throw new IOException("Invalid unsigned variable-length integer at byte " + pos);
+        }
+        return value;
+    }
+
+    /**
+     * @see BinaryOutput#writeSignedVarInt(int)
+     */
+    int readSignedVarInt() throws IOException {
+        final int bits = readUnsignedVarInt();
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    String readString() throws IOException {
+        final int length = readVarInt();
+        if (pos + length > end) {
+            throw new EOFException("Unexpected end of binary data at byte " + pos);
+        }
+        final String s = new String(bytes, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return s;
+    }
+
+    boolean hasRemaining() {
+        return pos < end;
+    }
+
+    private int readUnsignedVarInt() throws IOException {
+        int bits = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = readByte();
+            bits |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return bits;
+            }
+        }
+        throw new IOException("Variable-length integer is too long at byte " + pos);
+    }
+}
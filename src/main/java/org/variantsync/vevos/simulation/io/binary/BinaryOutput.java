@@ -0,0 +1,82 @@
+package org.variantsync.vevos.simulation.io.binary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with methods for writing variable-length integers.
+ * Counterpart to {@link BinaryInput}.
+ */
+final class BinaryOutput {
+    private byte[] bytes;
+    private int size = 0;
+
+    BinaryOutput(final int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    void writeByte(final int b) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) b;
+    }
+
+    void writeBytes(final byte[] b) {
+        writeBytes(b, 0, b.length);
+    }
+
+    void writeBytes(final byte[] b, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(b, offset, bytes, size, length);
+        size += length;
+    }
+
+    /**
+     * Writes the given non-negative integer in LEB128 encoding (i.e., 7 bits per byte).
+     */
+    void writeVarInt(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot encode negative value " + value + " as unsigned variable-length integer!");
+        }
+        writeUnsignedVarInt(value);
+    }
+
+    /**
+     * Writes the given integer in zigzag encoding such that values close to zero take few bytes regardless of their sign.
+     */
+    void writeSignedVarInt(final int value) {
+        writeUnsignedVarInt((value << 1) ^ (value >> 31));
+    }
+
+    private void writeUnsignedVarInt(int bits) {
+        ensureCapacity(5);
+        while ((bits & ~0x7F) != 0) {
+            bytes[size++] = (byte) ((bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        bytes[size++] = (byte) bits;
+    }
+
+    void writeString(final String s) {
+        final byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length);
+        writeBytes(utf8);
+    }
+
+    void writeTo(final BinaryOutput other) {
+        other.writeBytes(bytes, 0, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensureCapacity(final int additionalBytes) {
+        if (size + additionalBytes > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + additionalBytes));
+        }
+    }
+}
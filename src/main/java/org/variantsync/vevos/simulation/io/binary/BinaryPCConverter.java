@@ -0,0 +1,85 @@
+package org.variantsync.vevos.simulation.io.binary;
+
+import org.tinylog.Logger;
+import org.variantsync.vevos.simulation.VEVOS;
+import org.variantsync.vevos.simulation.io.Resources;
+import org.variantsync.vevos.simulation.variability.pc.Artefact;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Migrates the ground truths of a variability dataset to the {@link BinaryPCFormat} in place.
+ * Each code-variability.*.spl.csv file is converted to a binary file next to it
+ * (see {@link BinaryPCFormat#binaryPathOf(Path)}), which is then preferred when loading the dataset.
+ * Commits whose data is only available as zip archive are not converted.
+ * <p>
+ * Usage: BinaryPCConverter path/to/dataset [--delete-csv]
+ */
+public class BinaryPCConverter {
+    private static final String GROUND_TRUTH_PREFIX = "code-variability";
+    private static final String GROUND_TRUTH_SUFFIX = ".spl.csv";
+    private static final String DELETE_CSV_FLAG = "--delete-csv";
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !DELETE_CSV_FLAG.equals(args[1]))) {
+            Logger.error("Usage: BinaryPCConverter path/to/dataset [" + DELETE_CSV_FLAG + "]");
+            return;
+        }
+        VEVOS.Initialize();
+        convert(Path.of(args[0]), args.length == 2);
+    }
+
+    /**
+     * Converts all csv ground truths in the given dataset to the binary format.
+     * Existing binary ground truths are overwritten.
+     * @param datasetDir The root directory of a variability dataset or any directory below it.
+     * @param deleteCSV Whether to delete each csv file once it was converted successfully.
+     * @return The number of converted files.
+     * @throws IOException if the dataset cannot be traversed.
+     */
+    public static int convert(final Path datasetDir, final boolean deleteCSV) throws IOException {
+        final List<Path> groundTruths;
+        try (final Stream<Path> files = Files.walk(datasetDir)) {
+            groundTruths = files.filter(BinaryPCConverter::isGroundTruth).toList();
+        }
+        Logger.info("Converting " + groundTruths.size() + " ground truths under " + datasetDir);
+
+        int converted = 0;
+        for (final Path csv : groundTruths) {
+            try {
+                convertFile(csv, deleteCSV);
+                ++converted;
+            } catch (final Exception e) {
+                Logger.error("Was not able to convert " + csv + ": " + e);
+            }
+        }
+        Logger.info("Converted " + converted + " of " + groundTruths.size() + " ground truths.");
+        return converted;
+    }
+
+    private static boolean isGroundTruth(final Path p) {
+        final String name = p.getFileName().toString();
+        return name.startsWith(GROUND_TRUTH_PREFIX) && name.endsWith(GROUND_TRUTH_SUFFIX) && Files.isRegularFile(p);
+    }
+
+    private static void convertFile(final Path csv, final boolean deleteCSV) throws Exception {
+        final Artefact groundTruth = Resources.Instance().load(Artefact.class, csv);
+        final Path binary = BinaryPCFormat.binaryPathOf(csv);
+
+        // Write to a temporary file first such that an interrupted conversion does not leave a corrupted binary.
+        final Path tmp = binary.resolveSibling(binary.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        Files.write(tmp, BinaryPCEncoder.encode(groundTruth));
+        Files.move(tmp, binary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (deleteCSV) {
+            Files.delete(csv);
+        }
+        Logger.debug("Converted " + csv);
+    }
+}
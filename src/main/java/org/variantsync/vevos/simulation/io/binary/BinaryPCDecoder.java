@@ -0,0 +1,170 @@
+package org.variantsync.vevos.simulation.io.binary;
+
+import org.prop4j.*;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.variability.pc.AnnotationStyle;
+import org.variantsync.vevos.simulation.variability.pc.FlatAnnotationTree;
+import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes source code files and their annotations from the {@link BinaryPCFormat}.
+ * The annotations of each file are decoded into a {@link FlatAnnotationTree} such that decoding does not create an
+ * object per annotation.
+ * Formulas are shared among all annotations that were encoded with an equal formula and all decoded files refer to the
+ * same formula table.
+ * Thus, decoded formulas must not be altered inplace (see {@link org.variantsync.vevos.simulation.util.fide.FormulaCache}).
+ */
+public class BinaryPCDecoder {
+    private static final LineType[] LINE_TYPES = LineType.values();
+    private static final int LINE_TYPE_MASK = (1 << LineType.getRequiredBitCount()) - 1;
+
+    private final BinaryInput in;
+    private String[] strings;
+    private Node[] formulas;
+
+    private BinaryPCDecoder(final BinaryInput in) {
+        this.in = in;
+    }
+
+    /**
+     * Decodes all source code files from the given binary data.
+     * @param bytes Binary data as produced by {@link BinaryPCEncoder}.
+     * @return All encoded files in the order they were encoded in.
+     * @throws IOException if the given data is not in the binary format or is corrupted.
+     */
+    public static List<SourceCodeFile> decode(final byte[] bytes) throws IOException {
+        return new BinaryPCDecoder(new BinaryInput(bytes)).decode();
+    }
+
+    private List<SourceCodeFile> decode() throws IOException {
+        readHeader();
+        readStrings();
+        readFormulas();
+
+        final int fileCount = in.readVarInt();
+        final List<SourceCodeFile> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; ++i) {
+            final String path = string(in.readVarInt());
+            final Node featureMapping = formula(in.readVarInt());
+            final Node presenceCondition = formula(in.readVarInt());
+            final FlatAnnotationTree.Builder annotations = new FlatAnnotationTree.Builder(formulas);
+            readAnnotation(annotations, -1);
+            files.add(new SourceCodeFile(featureMapping, presenceCondition, CaseSensitivePath.of(path), annotations.build()));
+        }
+
+        if (in.hasRemaining()) {
+            throw new IOException("Unexpected trailing data after " + fileCount + " files!");
+        }
+        return files;
+    }
+
+    private void readHeader() throws IOException {
+        final byte[] magic = in.readBytes(BinaryPCFormat.MAGIC.length);
+        if (!Arrays.equals(magic, BinaryPCFormat.MAGIC)) {
+            throw new IOException("Given data is not a binary ground truth!");
+        }
+        final int version = in.readVarInt();
+        if (version != BinaryPCFormat.VERSION) {
+            throw new IOException("Unsupported version " + version + " of binary ground truth! Expected version " + BinaryPCFormat.VERSION + ".");
+        }
+    }
+
+    private void readStrings() throws IOException {
+        strings = new String[in.readVarInt()];
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = in.readString();
+        }
+    }
+
+    private void readFormulas() throws IOException {
+        formulas = new Node[in.readVarInt()];
+        for (int i = 0; i < formulas.length; ++i) {
+            final int kind = in.readByte();
+            formulas[i] = switch (kind) {
+                case BinaryPCFormat.LITERAL -> new Literal(string(in.readVarInt()), true);
+                case BinaryPCFormat.NEGATED_LITERAL -> new Literal(string(in.readVarInt()), false);
+                case BinaryPCFormat.TRUE -> FixTrueFalse.True;
+                case BinaryPCFormat.FALSE -> FixTrueFalse.False;
+                case BinaryPCFormat.NEGATED_TRUE -> negated(new True());
+                case BinaryPCFormat.NEGATED_FALSE -> negated(new False());
+                case BinaryPCFormat.NOT -> new Not(operand(i));
+                case BinaryPCFormat.AND -> new And((Object[]) operands(i));
+                case BinaryPCFormat.OR -> new Or((Object[]) operands(i));
+                case BinaryPCFormat.IMPLIES -> new Implies(operand(i), operand(i));
+                case BinaryPCFormat.EQUALS -> new Equals(operand(i), operand(i));
+                default -> throw new IOException("Unknown formula kind " + kind + "!");
+            };
+        }
+    }
+
+    private void readAnnotation(final FlatAnnotationTree.Builder annotations, final int parent) throws IOException {
+        final int packedType = in.readByte();
+        final int lineTypeOrdinal = packedType & LINE_TYPE_MASK;
+        if (lineTypeOrdinal >= LINE_TYPES.length) {
+            throw new IOException("Unknown line type " + lineTypeOrdinal + "!");
+        }
+        final LineType lineType = LINE_TYPES[lineTypeOrdinal];
+        final AnnotationStyle style = (packedType >> LineType.getRequiredBitCount()) == 1 ? AnnotationStyle.Internal : AnnotationStyle.External;
+        final int featureMapping = formulaIndex(in.readVarInt());
+        final int presenceCondition = formulaIndex(in.readVarInt());
+        final int lineFrom = in.readSignedVarInt();
+        final int lineTo = lineFrom + in.readSignedVarInt();
+
+        final int annotation = annotations.add(parent, lineType, style, featureMapping, presenceCondition, lineFrom, lineTo);
+        final int subtreeCount = in.readVarInt();
+        for (int i = 0; i < subtreeCount; ++i) {
+            readAnnotation(annotations, annotation);
+        }
+        annotations.endSubtree(annotation);
+    }
+
+    private static Literal negated(final Literal constant) {
+        constant.positive = false;
+        return constant;
+    }
+
+    /**
+     * Reads the index of an operand of the formula with the given index.
+     * Operands always precede the formulas using them in the formula table.
+     */
+    private Node operand(final int formulaIndex) throws IOException {
+        final int operandIndex = in.readVarInt();
+        if (operandIndex >= formulaIndex) {
+            throw new IOException("Formula " + formulaIndex + " refers to formula " + operandIndex + " that is not defined yet!");
+        }
+        return formulas[operandIndex];
+    }
+
+    private Node[] operands(final int formulaIndex) throws IOException {
+        final Node[] operands = new Node[in.readVarInt()];
+        for (int i = 0; i < operands.length; ++i) {
+            operands[i] = operand(formulaIndex);
+        }
+        return operands;
+    }
+
+    private String string(final int index) throws IOException {
+        if (index >= strings.length) {
+            throw new IOException("Reference to undefined string " + index + "!");
+        }
+        return strings[index];
+    }
+
+    private Node formula(final int index) throws IOException {
+        return formulas[formulaIndex(index)];
+    }
+
+    private int formulaIndex(final int index) throws IOException {
+        if (index >= formulas.length) {
+            throw new IOException("Reference to undefined formula " + index + "!");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,207 @@
+package org.variantsync.vevos.simulation.io.binary;
+
+import org.prop4j.*;
+import org.variantsync.vevos.simulation.variability.pc.Artefact;
+import org.variantsync.vevos.simulation.variability.pc.ArtefactTree;
+import org.variantsync.vevos.simulation.variability.pc.AnnotationStyle;
+import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
+import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
+import org.variantsync.vevos.simulation.variability.pc.visitor.ArtefactVisitor;
+import org.variantsync.vevos.simulation.variability.pc.visitor.LineBasedAnnotationVisitorFocus;
+import org.variantsync.vevos.simulation.variability.pc.visitor.SourceCodeFileVisitorFocus;
+import org.variantsync.vevos.simulation.variability.pc.visitor.SyntheticArtefactTreeNodeVisitorFocus;
+
+import java.util.*;
+
+/**
+ * Encodes source code files and their annotations in the {@link BinaryPCFormat}.
+ */
+public class BinaryPCEncoder {
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final BinaryOutput strings = new BinaryOutput(1 << 12);
+
+    // Formulas are interned structurally. Identical objects are cached separately to skip the structural lookup.
+    private final Map<Node, Integer> formulaIdsByIdentity = new IdentityHashMap<>();
+    private final Map<FormulaEntry, Integer> formulaIds = new HashMap<>();
+    private final BinaryOutput formulas = new BinaryOutput(1 << 12);
+
+    private final BinaryOutput files = new BinaryOutput(1 << 16);
+    private int fileCount = 0;
+
+    /**
+     * Encodes all source code files in the given artefact.
+     * @param artefact An artefact tree of source code files (e.g., as loaded from a KernelHaven csv file).
+     * @return The binary representation of the given artefact.
+     * @throws IllegalArgumentException if the artefact contains a formula that cannot be represented in the binary format.
+     */
+    public static byte[] encode(final Artefact artefact) {
+        final List<SourceCodeFile> sourceCodeFiles = new ArrayList<>();
+        artefact.accept(new ArtefactVisitor() {
+            @Override
+            public <C extends ArtefactTree<?>> void visitGenericArtefactTreeNode(final SyntheticArtefactTreeNodeVisitorFocus<C> focus) {
+                focus.visitAllSubtrees(this);
+            }
+
+            @Override
+            public void visitSourceCodeFile(final SourceCodeFileVisitorFocus focus) {
+                sourceCodeFiles.add(focus.getValue());
+            }
+
+            @Override
+            public void visitLineBasedAnnotation(final LineBasedAnnotationVisitorFocus focus) {
+                // annotations are only encoded as part of their source code file
+            }
+        });
+        return encode(sourceCodeFiles);
+    }
+
+    /**
+     * Encodes the given source code files.
+     * @return The binary representation of the given files.
+     * @throws IllegalArgumentException if a file contains a formula that cannot be represented in the binary format.
+     */
+    public static byte[] encode(final Collection<SourceCodeFile> sourceCodeFiles) {
+        final BinaryPCEncoder encoder = new BinaryPCEncoder();
+        for (final SourceCodeFile file : sourceCodeFiles) {
+            encoder.addFile(file);
+        }
+        return encoder.toByteArray();
+    }
+
+    private void addFile(final SourceCodeFile file) {
+        files.writeVarInt(internString(file.getFile().toString()));
+        files.writeVarInt(internFormula(file.getFeatureMapping()));
+        files.writeVarInt(internFormula(file.getPresenceCondition()));
+        addAnnotation(file.getRootAnnotation());
+        ++fileCount;
+    }
+
+    private void addAnnotation(final LineBasedAnnotation annotation) {
+        files.writeByte(packType(annotation.getLineType(), annotation.getStyle()));
+        files.writeVarInt(internFormula(annotation.getFeatureMapping()));
+        files.writeVarInt(internFormula(annotation.getPresenceCondition()));
+        files.writeSignedVarInt(annotation.getLineFrom());
+        files.writeSignedVarInt(annotation.getLineTo() - annotation.getLineFrom());
+        files.writeVarInt(annotation.getNumberOfSubtrees());
+        for (final LineBasedAnnotation subtree : annotation.getSubtrees()) {
+            addAnnotation(subtree);
+        }
+    }
+
+    /**
+     * Packs the line type into the lowest {@link LineType#getRequiredBitCount()} bits and the style into the bit above.
+     */
+    static int packType(final LineType lineType, final AnnotationStyle style) {
+        return lineType.ordinal() | ((style == AnnotationStyle.Internal ? 1 : 0) << LineType.getRequiredBitCount());
+    }
+
+    private int internString(final String s) {
+        return stringIds.computeIfAbsent(s, k -> {
+            strings.writeString(k);
+            return stringIds.size();
+        });
+    }
+
+    private int internFormula(final Node formula) {
+        final Integer knownId = formulaIdsByIdentity.get(formula);
+        if (knownId != null) {
+            return knownId;
+        }
+
+        final FormulaEntry entry = toEntry(formula);
+        Integer id = formulaIds.get(entry);
+        if (id == null) {
+            id = formulaIds.size();
+            formulaIds.put(entry, id);
+            entry.writeTo(formulas);
+        }
+        formulaIdsByIdentity.put(formula, id);
+        return id;
+    }
+
+    private FormulaEntry toEntry(final Node formula) {
+        if (formula instanceof True t) {
+            return new FormulaEntry(t.positive ? BinaryPCFormat.TRUE : BinaryPCFormat.NEGATED_TRUE);
+        } else if (formula instanceof False f) {
+            return new FormulaEntry(f.positive ? BinaryPCFormat.FALSE : BinaryPCFormat.NEGATED_FALSE);
+        } else if (formula instanceof Literal l) {
+            if (!(l.var instanceof String name)) {
+                throw new IllegalArgumentException("Cannot encode literal " + l + " with non-string variable!");
+            }
+            return new FormulaEntry(l.positive ? BinaryPCFormat.LITERAL : BinaryPCFormat.NEGATED_LITERAL, internString(name));
+        }
+
+        final int kind;
+        if (formula instanceof Not) {
+            kind = BinaryPCFormat.NOT;
+        } else if (formula instanceof And) {
+            kind = BinaryPCFormat.AND;
+        } else if (formula instanceof Or) {
+            kind = BinaryPCFormat.OR;
+        } else if (formula instanceof Implies) {
+            kind = BinaryPCFormat.IMPLIES;
+        } else if (formula instanceof Equals) {
+            kind = BinaryPCFormat.EQUALS;
+        } else {
+            throw new IllegalArgumentException("Cannot encode formula " + formula + " of type " + formula.getClass() + "!");
+        }
+
+        final Node[] children = formula.getChildren();
+        final int[] operands = new int[children.length];
+        for (int i = 0; i < children.length; ++i) {
+            operands[i] = internFormula(children[i]);
+        }
+        return new FormulaEntry(kind, operands);
+    }
+
+    private byte[] toByteArray() {
+        final BinaryOutput out = new BinaryOutput(BinaryPCFormat.MAGIC.length + 16 + strings.size() + formulas.size() + files.size());
+        out.writeBytes(BinaryPCFormat.MAGIC);
+        out.writeVarInt(BinaryPCFormat.VERSION);
+        out.writeVarInt(stringIds.size());
+        strings.writeTo(out);
+        out.writeVarInt(formulaIds.size());
+        formulas.writeTo(out);
+        out.writeVarInt(fileCount);
+        files.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * A formula in the formula table.
+     * @param kind The type of the formula as defined in {@link BinaryPCFormat}.
+     * @param operands The index of the variable name for literals and the indices of all operands otherwise.
+     */
+    private record FormulaEntry(int kind, int... operands) {
+        void writeTo(final BinaryOutput out) {
+            out.writeByte(kind);
+            switch (kind) {
+                case BinaryPCFormat.LITERAL, BinaryPCFormat.NEGATED_LITERAL, BinaryPCFormat.NOT -> out.writeVarInt(operands[0]);
+                case BinaryPCFormat.AND, BinaryPCFormat.OR -> {
+                    out.writeVarInt(operands.length);
+                    for (final int operand : operands) {
+                        out.writeVarInt(operand);
+                    }
+                }
+                case BinaryPCFormat.IMPLIES, BinaryPCFormat.EQUALS -> {
+                    out.writeVarInt(operands[0]);
+                    out.writeVarInt(operands[1]);
+                }
+                default -> {
+                    // constants have no operands
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof FormulaEntry other && kind == other.kind && Arrays.equals(operands, other.operands);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind + Arrays.hashCode(operands);
+        }
+    }
+}
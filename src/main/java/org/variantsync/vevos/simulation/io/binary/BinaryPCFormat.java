@@ -0,0 +1,53 @@
+package org.variantsync.vevos.simulation.io.binary;
+
+import java.nio.file.Path;
+
+/**
+ * Binary format for presence conditions of source code files (i.e., ground truths as exported by KernelHaven).
+ * All integers are stored as variable-length integers (see {@link BinaryOutput}).
+ * A binary ground truth consists of
+ * <ol>
+ *     <li>a header of {@link #MAGIC} bytes and the format {@link #VERSION},</li>
+ *     <li>a table of all interned strings (i.e., variable names and file paths),</li>
+ *     <li>a table of all interned formulas in which each formula is stored once and refers to its operands
+ *         and variable names by their index in the respective table,</li>
+ *     <li>and the annotation tree of each file in preorder, where each annotation is stored
+ *         as a packed record of its line type and style, its formulas, its line range, and its number of children.</li>
+ * </ol>
+ */
+public final class BinaryPCFormat {
+    /**
+     * File extension of binary ground truths.
+     */
+    public static final String EXTENSION = ".bin";
+    static final byte[] MAGIC = {'V', 'E', 'V', 'O', 'S', 'P', 'C'};
+    static final int VERSION = 1;
+
+    // Kinds of formulas in the formula table
+    static final int LITERAL = 0;
+    static final int NEGATED_LITERAL = 1;
+    static final int TRUE = 2;
+    static final int FALSE = 3;
+    static final int NOT = 4;
+    static final int AND = 5;
+    static final int OR = 6;
+    static final int IMPLIES = 7;
+    static final int EQUALS = 8;
+    static final int NEGATED_TRUE = 9;
+    static final int NEGATED_FALSE = 10;
+
+    private BinaryPCFormat() {}
+
+    /**
+     * @param csvPath Path to a ground truth in csv format (e.g., code-variability.spl.csv).
+     * @return The path at which the given ground truth is stored in the binary format (e.g., code-variability.spl.bin).
+     */
+    public static Path binaryPathOf(final Path csvPath) {
+        final String fileName = csvPath.getFileName().toString();
+        final String csvExtension = ".csv";
+        final String baseName = fileName.toLowerCase().endsWith(csvExtension)
+                ? fileName.substring(0, fileName.length() - csvExtension.length())
+                : fileName;
+        return csvPath.resolveSibling(baseName + EXTENSION);
+    }
+}
@@ -0,0 +1,65 @@
+package org.variantsync.vevos.simulation.io.binary;
+
+import org.tinylog.Logger;
+import org.variantsync.functjonal.Result;
+import org.variantsync.functjonal.Unit;
+import org.variantsync.vevos.simulation.io.ResourceLoader;
+import org.variantsync.vevos.simulation.io.ResourceWriter;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.pc.Artefact;
+import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
+import org.variantsync.vevos.simulation.variability.pc.SyntheticArtefactTreeNode;
+
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * IO for presence conditions stored in the {@link BinaryPCFormat}.
+ * In contrast to the csv files of KernelHaven, loading a binary ground truth requires no formula parsing and no
+ * reconstruction of the annotation trees. Instead, the file is read at once and decoded in a single pass.
+ */
+public class BinaryPCIO implements ResourceLoader<Artefact>, ResourceWriter<Artefact> {
+    @Override
+    public boolean canLoad(final Path p) {
+        return PathUtils.hasExtension(p, BinaryPCFormat.EXTENSION);
+    }
+
+    @Override
+    public boolean canWrite(final Path p) {
+        return canLoad(p);
+    }
+
+    @Override
+    public Result<Artefact, Exception> load(final Path p) {
+        Logger.debug("Loading binary ground truth: " + p);
+        try {
+            final List<SourceCodeFile> files = BinaryPCDecoder.decode(Files.readAllBytes(p));
+            Logger.debug("Loaded a ground truth for " + files.size() + " files.");
+            return Result.Success(new SyntheticArtefactTreeNode<>(files));
+        } catch (final Exception e) {
+            Logger.error("Was not able to load binary ground truth " + p + ": " + e);
+            return Result.Failure(e);
+        }
+    }
+
+    @Override
+    public Result<Unit, ? extends Exception> write(final Artefact object, final Path p) {
+        // Write to a temporary file that is moved into place once it is complete, such that no truncated binary
+        // remains (and is preferred over its csv file) if encoding or writing fails.
+        return Result.Try(() -> {
+            if (Files.exists(p)) {
+                throw new FileAlreadyExistsException(p.toString());
+            }
+            final Path temp = Files.createTempFile(p.toAbsolutePath().getParent(), p.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temp, BinaryPCEncoder.encode(object));
+                Files.move(temp, p, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        });
+    }
+}
@@ -8,12 +8,12 @@ import org.variantsync.vevos.simulation.io.ResourceWriter;
 import org.variantsync.vevos.simulation.io.TextIO;
 import org.variantsync.vevos.simulation.util.io.PathUtils;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Class to load CSV files.
@@ -21,7 +21,6 @@ import java.util.stream.Collectors;
 public class CSVIO implements ResourceLoader<CSV>, ResourceWriter<CSV> {
     public final static String DefaultSeparator = ";";
     private String separator;
-    private String separatorWithWhiteSpace;
 
     public CSVIO() {
         this(DefaultSeparator);
@@ -38,7 +37,6 @@ public class CSVIO implements ResourceLoader<CSV>, ResourceWriter<CSV> {
 
     public void setSeparator(final String separator) {
         this.separator = separator;
-        this.separatorWithWhiteSpace = "\\s*" + separator + "\\s*";
     }
 
     @Override
@@ -51,11 +49,25 @@ public class CSVIO implements ResourceLoader<CSV>, ResourceWriter<CSV> {
         return canLoad(p);
     }
 
+    /**
+     * Opens the given csv file for reading it row by row.
+     * In contrast to {@link #load(Path)}, this does not keep the rows in memory.
+     * The caller is responsible for closing the returned reader.
+     * @param p Path to the csv file to read.
+     * @return A reader that visits the rows of the given file one at a time.
+     * @throws IOException if the file cannot be opened.
+     */
+    public CSVRowReader openRows(final Path p) throws IOException {
+        return new CSVRowReader(new InputStreamReader(Files.newInputStream(p)), separator);
+    }
+
     @Override
     public Result<CSV, Exception> load(final Path p) {
-        try (final BufferedReader reader = new BufferedReader(new FileReader(p.toFile()))) {
-            final List<String[]> rows =
-                    reader.lines().map(line -> line.trim().split(separatorWithWhiteSpace)).collect(Collectors.toList());
+        try (final CSVRowReader reader = openRows(p)) {
+            final List<String[]> rows = new ArrayList<>();
+            while (reader.next()) {
+                rows.add(reader.toArray());
+            }
             return Result.Success(new CSV(rows));
         } catch (final Exception e) {
             Logger.error(e);
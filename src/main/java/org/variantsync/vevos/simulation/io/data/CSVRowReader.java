@@ -0,0 +1,288 @@
+package org.variantsync.vevos.simulation.io.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for CSV files that visits one row at a time.
+ * Rows are tokenized by hand on the separator, and the buffers holding the current line and its field boundaries are
+ * reused for every row, so no String or array is allocated unless a field is requested explicitly via {@link #get(int)}.
+ * Fields are trimmed and trailing empty fields are dropped, such that the fields of a row are the same as
+ * for <code>line.trim().split("\\s*" + separator + "\\s*")</code>.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ * try (final CSVRowReader rows = new CSVIO().openRows(path)) {
+ *     while (rows.next()) {
+ *         final String name = rows.get(0);
+ *         final int value = rows.getInt(1);
+ *     }
+ * }
+ * }</pre>
+ */
+public class CSVRowReader implements AutoCloseable {
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] separator;
+
+    // characters read from the underlying reader that were not consumed yet
+    private final char[] input = new char[INITIAL_BUFFER_SIZE];
+    private int inputPos = 0;
+    private int inputEnd = 0;
+    private boolean skipLineFeed = false;
+    private boolean endOfInput = false;
+
+    // the current line and the boundaries of its fields
+    private char[] line = new char[256];
+    private int lineLength = 0;
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fieldCount = 0;
+    private long rowNumber = 0;
+
+    /**
+     * Creates a new row reader on the given character stream.
+     * The reader takes ownership of the given stream and closes it upon {@link #close()}.
+     * @param reader The stream to read rows from.
+     * @param separator The separator between the elements of a row. It is interpreted literally.
+     */
+    public CSVRowReader(final Reader reader, final String separator) {
+        if (separator.isEmpty()) {
+            throw new IllegalArgumentException("The separator must not be empty!");
+        }
+        this.reader = reader;
+        this.separator = separator.toCharArray();
+    }
+
+    /**
+     * Advances to the next row.
+     * @return True iff there is a next row. False iff the end of the input is reached.
+     * @throws IOException if reading from the underlying stream fails.
+     */
+    public boolean next() throws IOException {
+        if (!readLine()) {
+            fieldCount = 0;
+            return false;
+        }
+        ++rowNumber;
+        tokenize();
+        return true;
+    }
+
+    /**
+     * @return The number of fields in the current row.
+     */
+    public int size() {
+        return fieldCount;
+    }
+
+    /**
+     * @return The one-based number of the current row within the file.
+     */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * @param i Index of the requested field in the current row.
+     * @return The trimmed value of the i-th field in the current row.
+     * @throws IndexOutOfBoundsException if the current row has no i-th field.
+     */
+    public String get(final int i) {
+        checkIndex(i);
+        return new String(line, fieldStarts[i], fieldEnds[i] - fieldStarts[i]);
+    }
+
+    /**
+     * Parses the i-th field of the current row as a decimal integer without creating an intermediate String.
+     * @param i Index of the requested field in the current row.
+     * @return The integer value of the i-th field in the current row.
+     * @throws IndexOutOfBoundsException if the current row has no i-th field.
+     * @throws NumberFormatException if the field is not a valid integer.
+     */
+    public int getInt(final int i) {
+        checkIndex(i);
+        final int start = fieldStarts[i];
+        final int end = fieldEnds[i];
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (line[pos] == '-' || line[pos] == '+')) {
+            negative = line[pos] == '-';
+            ++pos;
+        }
+        if (pos == end) {
+            throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+        }
+
+        // accumulate negatively to be able to represent Integer.MIN_VALUE
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; pos < end; ++pos) {
+            final int digit = Character.digit(line[pos], 10);
+            if (digit < 0 || result < limit / 10) {
+                throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @return A copy of all fields in the current row.
+     */
+    public String[] toArray() {
+        final String[] row = new String[fieldCount];
+        for (int i = 0; i < fieldCount; ++i) {
+            row[i] = get(i);
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void checkIndex(final int i) {
+        if (i < 0 || i >= fieldCount) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for row " + rowNumber + " with " + fieldCount + " fields");
+        }
+    }
+
+    /**
+     * Reads the next line into the line buffer.
+     * Line terminators are handled as in {@link java.io.BufferedReader#readLine()}.
+     * @return False iff there are no more lines.
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean readAnything = false;
+        while (true) {
+            if (inputPos >= inputEnd && !fill()) {
+                return readAnything;
+            }
+            readAnything = true;
+
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (input[inputPos] == '\n') {
+                    ++inputPos;
+                    continue;
+                }
+            }
+
+            int pos = inputPos;
+            while (pos < inputEnd && input[pos] != '\n' && input[pos] != '\r') {
+                ++pos;
+            }
+            append(inputPos, pos);
+
+            if (pos < inputEnd) {
+                skipLineFeed = input[pos] == '\r';
+                inputPos = pos + 1;
+                return true;
+            }
+            inputPos = pos;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        int read;
+        do {
+            read = reader.read(input, 0, input.length);
+        } while (read == 0);
+        if (read < 0) {
+            endOfInput = true;
+            inputPos = inputEnd = 0;
+            return false;
+        }
+        inputPos = 0;
+        inputEnd = read;
+        return true;
+    }
+
+    private void append(final int from, final int to) {
+        final int length = to - from;
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(2 * line.length, lineLength + length));
+        }
+        System.arraycopy(input, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Splits the current line into trimmed fields.
+     */
+    private void tokenize() {
+        fieldCount = 0;
+        int fieldStart = 0;
+        int pos = 0;
+        final int lastSeparatorStart = lineLength - separator.length;
+        while (pos <= lastSeparatorStart) {
+            if (isSeparatorAt(pos)) {
+                addField(fieldStart, pos);
+                pos += separator.length;
+                fieldStart = pos;
+            } else {
+                ++pos;
+            }
+        }
+        addField(fieldStart, lineLength);
+
+        // drop trailing empty fields but keep a single field for empty lines
+        while (fieldCount > 1 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+            --fieldCount;
+        }
+        if (fieldCount == 1 && fieldStarts[0] == fieldEnds[0] && lineLength > 0 && !isBlank()) {
+            fieldCount = 0;
+        }
+    }
+
+    private boolean isSeparatorAt(final int pos) {
+        for (int i = 0; i < separator.length; ++i) {
+            if (line[pos + i] != separator[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isBlank() {
+        for (int i = 0; i < lineLength; ++i) {
+            if (!isWhitespace(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        while (start < end && isWhitespace(line[start])) {
+            ++start;
+        }
+        while (end > start && isWhitespace(line[end - 1])) {
+            --end;
+        }
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, 2 * fieldCount);
+            fieldEnds = Arrays.copyOf(fieldEnds, 2 * fieldCount);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        ++fieldCount;
+    }
+
+    private static boolean isWhitespace(final char c) {
+        // matches the characters removed by String.trim()
+        return c <= ' ';
+    }
+}
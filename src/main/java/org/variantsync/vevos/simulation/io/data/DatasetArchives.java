@@ -0,0 +1,119 @@
+package org.variantsync.vevos.simulation.io.data;
+
+import org.tinylog.Logger;
+import org.variantsync.functjonal.functions.FragileFunction;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Access to files of a dataset whose directories might be compressed.
+ * In a dataset, the directory of each commit (e.g., data/commit-id) might be stored as a zip archive next to it
+ * (e.g., data/commit-id.zip) that contains the directory itself (i.e., entries of the form commit-id/file).
+ * Files in such archives are read directly from the archive via a zip {@link FileSystem} without extracting them.
+ * Thus, reading from archives never writes to the dataset.
+ */
+public final class DatasetArchives {
+    private DatasetArchives() {}
+
+    /**
+     * Reads the file at the given path.
+     * If the file does not exist but the directory containing it is zipped, the file is read from the archive instead.
+     * The path passed to the reader then belongs to a zip file system that is closed as soon as the reader returns.
+     * Hence, the reader must read everything it needs before returning and must not use {@link Path#toFile()}.
+     * @param path The path of the file in the unzipped dataset.
+     * @param reader Reads the file at the given path.
+     * @return The result of the reader.
+     * @throws FileNotFoundException if neither the file nor its entry in an archive exist.
+     * @throws Exception if the archive cannot be read or the reader fails.
+     */
+    public static <T> T read(final Path path, final FragileFunction<Path, T, ? extends Exception> reader) throws Exception {
+        if (Files.exists(path)) {
+            Logger.debug("Path " + path + " exists. No archive required.");
+            return reader.run(path);
+        }
+
+        final Path archive = archiveOf(path);
+        if (archive == null || !Files.exists(archive)) {
+            throw new FileNotFoundException("Path " + path + " does not exist and no ZIP file found.");
+        }
+
+        try (final FileSystem zip = FileSystems.newFileSystem(archive)) {
+            final Path entry = zip.getPath(path.getParent().getFileName().toString(), path.getFileName().toString());
+            if (!Files.exists(entry)) {
+                throw new FileNotFoundException("Path " + path + " does not exist and is not contained in " + archive + ".");
+            }
+            Logger.debug("Reading " + entry + " from archive " + archive.getFileName() + ".");
+            return reader.run(entry);
+        } catch (final IOException e) {
+            Logger.debug("Was not able to read " + path + " from archive " + archive + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * @return True iff the given file exists or if the directory containing it is zipped and the archive contains it.
+     */
+    public static boolean exists(final Path path) {
+        if (Files.exists(path)) {
+            return true;
+        }
+
+        final Path archive = archiveOf(path);
+        if (archive == null || !Files.exists(archive)) {
+            return false;
+        }
+        try (final ZipFile zip = new ZipFile(archive.toFile())) {
+            return zip.getEntry(path.getParent().getFileName() + "/" + path.getFileName()) != null;
+        } catch (final IOException e) {
+            Logger.warn("Was not able to read archive " + archive, e);
+            return false;
+        }
+    }
+
+    /**
+     * @return The time at which the given file was last modified or empty if the file does not exist.
+     * If the directory containing the file is zipped, the modification time of its entry in the archive is returned.
+     */
+    public static Optional<FileTime> lastModifiedTime(final Path path) {
+        if (Files.exists(path)) {
+            try {
+                return Optional.of(Files.getLastModifiedTime(path));
+            } catch (final IOException e) {
+                Logger.warn("Was not able to read the modification time of " + path, e);
+                return Optional.empty();
+            }
+        }
+
+        final Path archive = archiveOf(path);
+        if (archive == null || !Files.exists(archive)) {
+            return Optional.empty();
+        }
+        try (final ZipFile zip = new ZipFile(archive.toFile())) {
+            return Optional.ofNullable(zip.getEntry(path.getParent().getFileName() + "/" + path.getFileName()))
+                    .map(ZipEntry::getLastModifiedTime);
+        } catch (final IOException e) {
+            Logger.warn("Was not able to read archive " + archive, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return The path to the archive that might contain the given file or null if the given path has no parent.
+     */
+    private static Path archiveOf(final Path path) {
+        final Path dir = path.getParent();
+        if (dir == null || dir.getFileName() == null) {
+            return null;
+        }
+        return dir.resolveSibling(dir.getFileName() + ".zip");
+    }
+}
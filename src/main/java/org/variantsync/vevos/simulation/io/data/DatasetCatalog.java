@@ -0,0 +1,270 @@
+package org.variantsync.vevos.simulation.io.data;
+
+import org.tinylog.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Index of the commits of a dataset that is stored in a single file in the root of the dataset.
+ * Loading a dataset requires to know which files exist for each commit and which parents each commit has.
+ * Without a catalog, the {@link VariabilityDatasetLoader} probes several files per commit and reads the parents file
+ * of each commit.
+ * A catalog stores this information such that it can be obtained with a single sequential read.
+ * <p>
+ * A catalog is valid as long as the {@link #fingerprintOf(Path, String) fingerprint} of its dataset does not change.
+ * The fingerprint covers the lists of commit ids in the root of the dataset and all entries of the data directory.
+ * Adding, removing, or replacing files in a commit directory updates the modification time of that directory and
+ * thus changes the fingerprint, too.
+ * Editing a file of a commit directory in place (e.g., PARENTS.txt) does not.
+ * </p>
+ * <p>
+ * A catalog consists of
+ * <ol>
+ *     <li>a header of {@link #MAGIC} bytes, the format {@link #VERSION}, and the fingerprint of the dataset,</li>
+ *     <li>the ids of all commits in the order of the commit id lists,</li>
+ *     <li>and one record per commit in the same order, consisting of the {@link Category} of the commit, flags of the
+ *         artefacts that exist for the commit, and the parents of the commit.
+ *         Parents are stored by their index in the catalog or by their id if they are not part of the dataset.</li>
+ * </ol>
+ * </p>
+ */
+public final class DatasetCatalog {
+    /**
+     * Name of the catalog file in the root of a dataset.
+     */
+    public static final String FILE_NAME = "CATALOG.bin";
+    static final byte[] MAGIC = {'V', 'E', 'V', 'O', 'S', 'D', 'C'};
+    static final int VERSION = 1;
+
+    // Flags of artefacts that exist for a commit
+    static final int HAS_FEATURE_MODEL = 1;
+    static final int HAS_BINARY_PRESENCE_CONDITIONS_BEFORE = 1 << 1;
+    static final int HAS_BINARY_PRESENCE_CONDITIONS_AFTER = 1 << 2;
+    static final int HAS_PRESENCE_CONDITIONS_AFTER = 1 << 3;
+    static final int HAS_BINARY_PRESENCE_CONDITIONS_FALLBACK = 1 << 4;
+
+    // Marks parents that are not part of the dataset
+    private static final int UNKNOWN_PARENT = -1;
+    // Marks commits without parents file
+    private static final int NO_PARENTS = -1;
+
+    /**
+     * The files in the root of a dataset that list the ids of the commits of each category.
+     */
+    enum Category {
+        SUCCESS("SUCCESS_COMMITS.txt"),
+        ERROR("ERROR_COMMITS.txt"),
+        EMPTY("EMPTY_COMMITS.txt"),
+        PARTIAL_SUCCESS("PARTIAL_SUCCESS_COMMITS.txt");
+
+        private static final Category[] VALUES = values();
+        final String commitsFile;
+
+        Category(final String commitsFile) {
+            this.commitsFile = commitsFile;
+        }
+    }
+
+    /**
+     * A commit in the catalog.
+     * @param artefacts Flags of the artefacts that exist for this commit (e.g., {@link #HAS_FEATURE_MODEL}).
+     * @param parentIds The ids of the parents of this commit or null if there is no parents file for this commit.
+     */
+    record Entry(String id, Category category, int artefacts, String[] parentIds) {
+        boolean has(final int artefact) {
+            return (artefacts & artefact) != 0;
+        }
+    }
+
+    private final List<Entry> entries;
+
+    DatasetCatalog(final List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * @return All commits in the order of the commit id lists.
+     */
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Computes the fingerprint of the given dataset from the sizes and modification times of the commit id lists
+     * and of all entries of the data directory (i.e., commit directories and archives).
+     * This requires one directory listing but does not open any file.
+     * @param datasetDir The root directory of a dataset.
+     * @param dataDirName The name of the directory containing the data of each commit.
+     * @return A SHA-256 hash that changes when the commits of the dataset or their files change.
+     * @throws IOException if the data directory cannot be listed.
+     */
+    static byte[] fingerprintOf(final Path datasetDir, final String dataDirName) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        for (final Category category : Category.VALUES) {
+            update(digest, datasetDir.resolve(category.commitsFile));
+        }
+
+        final Path dataDir = datasetDir.resolve(dataDirName);
+        update(digest, dataDir);
+        if (Files.isDirectory(dataDir)) {
+            final List<Path> commitDirs = new ArrayList<>();
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(dataDir)) {
+                entries.forEach(commitDirs::add);
+            }
+            // Directory listings are not ordered.
+            commitDirs.sort(Comparator.naturalOrder());
+            for (final Path commitDir : commitDirs) {
+                update(digest, commitDir);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void update(final MessageDigest digest, final Path path) throws IOException {
+        digest.update(path.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (Files.exists(path)) {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            digest.update(Long.toString(attributes.size()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(Long.toString(attributes.lastModifiedTime().toMillis()).getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Reads the catalog of the given dataset.
+     * @param datasetDir The root directory of a dataset.
+     * @param fingerprint The current {@link #fingerprintOf fingerprint} of the dataset.
+     * @return The catalog of the given dataset or empty if there is no catalog or if it is outdated.
+     * @throws IOException if the catalog exists but cannot be read.
+     */
+    static Optional<DatasetCatalog> read(final Path datasetDir, final byte[] fingerprint) throws IOException {
+        final Path file = datasetDir.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            Logger.info("No catalog found for dataset " + datasetDir);
+            return Optional.empty();
+        }
+
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException(file + " is not a dataset catalog!");
+            }
+            final int version = in.readInt();
+            final byte[] storedFingerprint = new byte[in.readUnsignedByte()];
+            in.readFully(storedFingerprint);
+            if (version != VERSION || !Arrays.equals(fingerprint, storedFingerprint)) {
+                Logger.info("Catalog of dataset " + datasetDir + " is outdated.");
+                return Optional.empty();
+            }
+
+            // Each id takes at least two bytes and each parent at least four bytes, which bounds all counts.
+            final long fileSize = Files.size(file);
+            final int size = checkCount(in.readInt(), fileSize / 2, "number of commits", file);
+            final String[] ids = new String[size];
+            for (int i = 0; i < size; ++i) {
+                ids[i] = in.readUTF();
+            }
+
+            final List<Entry> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                final Category category = Category.VALUES[checkIndex(in.readUnsignedByte(), Category.VALUES.length, "category", file)];
+                final int artefacts = in.readUnsignedByte();
+                final int numberOfParents = in.readInt();
+                String[] parentIds = null;
+                if (numberOfParents != NO_PARENTS) {
+                    parentIds = new String[checkCount(numberOfParents, fileSize / 4, "number of parents", file)];
+                    for (int j = 0; j < numberOfParents; ++j) {
+                        final int parent = in.readInt();
+                        parentIds[j] = parent == UNKNOWN_PARENT
+                                ? in.readUTF()
+                                : ids[checkIndex(parent, size, "parent", file)];
+                    }
+                }
+                entries.add(new Entry(ids[i], category, artefacts, parentIds));
+            }
+            return Optional.of(new DatasetCatalog(entries));
+        }
+    }
+
+    private static int checkCount(final int count, final long maxCount, final String name, final Path file) throws IOException {
+        if (count < 0 || count > maxCount) {
+            throw new IOException(file + " is corrupt! Invalid " + name + " " + count + ".");
+        }
+        return count;
+    }
+
+    private static int checkIndex(final int index, final int size, final String name, final Path file) throws IOException {
+        if (index < 0 || index >= size) {
+            throw new IOException(file + " is corrupt! Invalid " + name + " " + index + ".");
+        }
+        return index;
+    }
+
+    /**
+     * Writes this catalog to the given dataset.
+     * The catalog is written to a temporary file first such that other processes never read incomplete catalogs.
+     * @param datasetDir The root directory of the dataset this catalog was created from.
+     * @param fingerprint The {@link #fingerprintOf fingerprint} of the dataset before this catalog was created.
+     * @throws IOException if the catalog cannot be written (e.g., because the dataset is read-only).
+     */
+    void write(final Path datasetDir, final byte[] fingerprint) throws IOException {
+        final Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < entries.size(); ++i) {
+            indices.putIfAbsent(entries.get(i).id(), i);
+        }
+
+        final Path temp = Files.createTempFile(datasetDir, FILE_NAME, ".tmp");
+        try {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeByte(fingerprint.length);
+                out.write(fingerprint);
+                out.writeInt(entries.size());
+                for (final Entry entry : entries) {
+                    out.writeUTF(entry.id());
+                }
+                for (final Entry entry : entries) {
+                    out.writeByte(entry.category().ordinal());
+                    out.writeByte(entry.artefacts());
+                    if (entry.parentIds() == null) {
+                        out.writeInt(NO_PARENTS);
+                        continue;
+                    }
+                    out.writeInt(entry.parentIds().length);
+                    for (final String parentId : entry.parentIds()) {
+                        final Integer parent = indices.get(parentId);
+                        if (parent == null) {
+                            out.writeInt(UNKNOWN_PARENT);
+                            out.writeUTF(parentId);
+                        } else {
+                            out.writeInt(parent);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, datasetDir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
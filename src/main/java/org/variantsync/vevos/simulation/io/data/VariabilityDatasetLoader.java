@@ -1,26 +1,23 @@
 package org.variantsync.vevos.simulation.io.data;
 
-import net.lingala.zip4j.ZipFile;
 import org.variantsync.functjonal.Result;
 import org.variantsync.vevos.simulation.io.ResourceLoader;
 import org.variantsync.vevos.simulation.io.TextIO;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCFormat;
 import org.tinylog.Logger;
 import org.variantsync.vevos.simulation.variability.SPLCommit;
 import org.variantsync.vevos.simulation.variability.VariabilityDataset;
 
-import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 
 ;
 
 public class VariabilityDatasetLoader implements ResourceLoader<VariabilityDataset> {
-    private final static String SUCCESS_COMMITS_FILE = "SUCCESS_COMMITS.txt";
-    private final static String ERROR_COMMITS_FILE = "ERROR_COMMITS.txt";
-    private final static String EMPTY_COMMITS_FILE = "EMPTY_COMMITS.txt";
-    private final static String PARTIAL_SUCCESS_COMMITS_FILE = "PARTIAL_SUCCESS_COMMITS.txt";
     private final static String FEATURE_MODEL_FILE = "variability-model.json";
     private final static String PRESENCE_CONDITIONS_BEFORE_FILE = "code-variability.before.spl.csv";
     private final static String PRESENCE_CONDITIONS_AFTER_FILE = "code-variability.after.spl.csv";
@@ -34,13 +31,29 @@ public class VariabilityDatasetLoader implements ResourceLoader<VariabilityDatas
     private static final String LOG_DIR_NAME = "log";
     private static final String FILTER_COUNTS_FILE = "FILTERED.txt";
 
+    private final boolean useCatalog;
+
+    /**
+     * Creates a loader that stores a {@link DatasetCatalog} in each loaded dataset and uses it for subsequent loads.
+     */
+    public VariabilityDatasetLoader() {
+        this(true);
+    }
+
+    /**
+     * @param useCatalog Whether a {@link DatasetCatalog} should be stored in each loaded dataset and used for
+     *                   subsequent loads. If false, the files of all commits are probed on each load.
+     */
+    public VariabilityDatasetLoader(final boolean useCatalog) {
+        this.useCatalog = useCatalog;
+    }
+
     @Override
     public boolean canLoad(final Path p) {
         try {
             return Files.list(p).map(Path::toFile).anyMatch(f -> {
                 final String name = f.getName();
-                return name.equals(SUCCESS_COMMITS_FILE) || name.equals(ERROR_COMMITS_FILE) || name.equals(EMPTY_COMMITS_FILE)
-                                || name.equals(PARTIAL_SUCCESS_COMMITS_FILE);
+                return Arrays.stream(DatasetCatalog.Category.values()).anyMatch(c -> name.equals(c.commitsFile));
             });
         } catch (final IOException e) {
             Logger.error("Was not able to check the file(s) under " + p, e);
@@ -66,101 +79,169 @@ public class VariabilityDatasetLoader implements ResourceLoader<VariabilityDatas
      * <p>
      * |- SUCCESS_COMMITS.txt
      * </p>
+     * If enabled, the files that exist for each commit and the parents of each commit are read from the dataset's
+     * {@link DatasetCatalog}. The catalog is created on the first load and recreated whenever the dataset changes.
      *
      * @param p path to the root directory of the dataset
      * @return The fully-loaded dataset if loading is successful, otherwise an Exception.
      */
     @Override
     public Result<VariabilityDataset, Exception> load(final Path p) {
-        // Read the metadata
-        List<String> successCommitIds = new ArrayList<>();
-        List<String> errorCommitIds = new ArrayList<>();
-        List<String> emptyCommitIds = new ArrayList<>();
-        List<String> partialSuccessCommitIds = new ArrayList<>();
-
         Logger.info("Started loading of dataset under " + p);
-        final Path successCommitFile = p.resolve(SUCCESS_COMMITS_FILE);
-        if (Files.exists(successCommitFile)) {
-            successCommitIds = TextIO.readLinesTrimmed(successCommitFile)
-                            .expect("Success-commit file exists but could not be loaded.");
+        if (!useCatalog) {
+            return Result.Success(toDataset(p, scan(p)));
         }
 
-        final Path errorCommitFile = p.resolve(ERROR_COMMITS_FILE);
-        if (Files.exists(errorCommitFile)) {
-            errorCommitIds = TextIO.readLinesTrimmed(errorCommitFile)
-                            .expect("Error-commit file exists but could not be loaded.");
+        byte[] fingerprint = null;
+        Optional<DatasetCatalog> catalog = Optional.empty();
+        try {
+            fingerprint = DatasetCatalog.fingerprintOf(p, DATA_DIR_NAME);
+            catalog = DatasetCatalog.read(p, fingerprint);
+        } catch (final IOException e) {
+            Logger.warn("Was not able to read the catalog of dataset " + p, e);
         }
 
-        final Path emptyFile = p.resolve(EMPTY_COMMITS_FILE);
-        if (Files.exists(emptyFile)) {
-            emptyCommitIds = TextIO.readLinesTrimmed(emptyFile)
-                    .expect("Success-commit file exists but could not be loaded.");
+        if (catalog.isPresent()) {
+            Logger.info("Read catalog.");
+            return Result.Success(toDataset(p, catalog.get()));
         }
 
-        final Path partialSuccessCommitFile = p.resolve(PARTIAL_SUCCESS_COMMITS_FILE);
-        if (Files.exists(partialSuccessCommitFile)) {
-            partialSuccessCommitIds = TextIO.readLinesTrimmed(partialSuccessCommitFile)
-                            .expect("Partial-success-commit file exists but could not be loaded.");
+        final DatasetCatalog scanned = scan(p);
+        if (fingerprint != null) {
+            try {
+                scanned.write(p, fingerprint);
+                Logger.info("Wrote catalog.");
+            } catch (final IOException e) {
+                Logger.warn("Was not able to write the catalog of dataset " + p, e);
+            }
         }
+        return Result.Success(toDataset(p, scanned));
+    }
 
+    /**
+     * Creates a catalog of the given dataset by reading the commit ids, probing the files of each commit, and reading
+     * the parents of each commit.
+     */
+    private DatasetCatalog scan(final Path p) {
+        // Read the metadata
+        final Map<DatasetCatalog.Category, List<String>> commitIds = new EnumMap<>(DatasetCatalog.Category.class);
+        for (final DatasetCatalog.Category category : DatasetCatalog.Category.values()) {
+            final Path commitsFile = p.resolve(category.commitsFile);
+            if (Files.exists(commitsFile)) {
+                commitIds.put(category, TextIO.readLinesTrimmed(commitsFile)
+                        .expect(category.commitsFile + " exists but could not be loaded."));
+            } else {
+                commitIds.put(category, List.of());
+            }
+        }
         Logger.info("Read commit ids.");
 
-        // Create SPLCommit objects for each commit
-        final List<SPLCommit> successCommits = initializeSPLCommits(p, successCommitIds);
-        final List<SPLCommit> errorCommits = initializeSPLCommits(p, errorCommitIds);
-        final List<SPLCommit> emptyCommits = initializeSPLCommits(p, emptyCommitIds);
-        final List<SPLCommit> partialSuccessCommits = initializeSPLCommits(p, partialSuccessCommitIds);
-        Logger.info("Initialized SPL commits.");
+        final List<DatasetCatalog.Entry> entries = new ArrayList<>();
+        for (final Map.Entry<DatasetCatalog.Category, List<String>> category : commitIds.entrySet()) {
+            for (final String id : category.getValue()) {
+                entries.add(new DatasetCatalog.Entry(id, category.getKey(), probeArtefacts(p, id), loadParentIds(p, id)));
+            }
+        }
+        Logger.info("Probed files and parents of commits.");
+        return new DatasetCatalog(entries);
+    }
 
+    /**
+     * @return The flags of all artefacts of the given commit that exist (see {@link DatasetCatalog}).
+     */
+    private int probeArtefacts(final Path rootDir, final String commitId) {
+        final Path commitDir = resolvePathToCommitOutputDir(rootDir, commitId);
+        final Path presenceConditionsAfter = commitDir.resolve(PRESENCE_CONDITIONS_AFTER_FILE);
+        int artefacts = 0;
+        if (DatasetArchives.exists(commitDir.resolve(FEATURE_MODEL_FILE))) {
+            artefacts |= DatasetCatalog.HAS_FEATURE_MODEL;
+        }
+        if (hasUpToDateBinary(commitDir.resolve(PRESENCE_CONDITIONS_BEFORE_FILE))) {
+            artefacts |= DatasetCatalog.HAS_BINARY_PRESENCE_CONDITIONS_BEFORE;
+        }
+        if (hasUpToDateBinary(presenceConditionsAfter)) {
+            artefacts |= DatasetCatalog.HAS_BINARY_PRESENCE_CONDITIONS_AFTER | DatasetCatalog.HAS_PRESENCE_CONDITIONS_AFTER;
+        } else if (DatasetArchives.exists(presenceConditionsAfter)) {
+            artefacts |= DatasetCatalog.HAS_PRESENCE_CONDITIONS_AFTER;
+        }
+        if (hasUpToDateBinary(commitDir.resolve(PRESENCE_CONDITIONS_FALLBACK_FILE))) {
+            artefacts |= DatasetCatalog.HAS_BINARY_PRESENCE_CONDITIONS_FALLBACK;
+        }
+        return artefacts;
+    }
+
+    /**
+     * @return True iff the binary version of the given ground truth exists and is at least as new as the csv file,
+     * if the csv file still exists. A binary that is older than its csv file is outdated (e.g., because the commit was
+     * extracted again after it was converted) and is ignored.
+     */
+    private static boolean hasUpToDateBinary(final Path csvGroundTruth) {
+        final Path binaryGroundTruth = BinaryPCFormat.binaryPathOf(csvGroundTruth);
+        final Optional<FileTime> binaryModified = DatasetArchives.lastModifiedTime(binaryGroundTruth);
+        if (binaryModified.isEmpty()) {
+            return false;
+        }
+        final Optional<FileTime> csvModified = DatasetArchives.lastModifiedTime(csvGroundTruth);
+        if (csvModified.isPresent() && binaryModified.get().compareTo(csvModified.get()) < 0) {
+            Logger.warn("Ignoring " + binaryGroundTruth + " because it is older than " + csvGroundTruth.getFileName());
+            return false;
+        }
+        return true;
+    }
+
+    private VariabilityDataset toDataset(final Path p, final DatasetCatalog catalog) {
+        // Create SPLCommit objects for each commit
+        final Map<DatasetCatalog.Category, List<SPLCommit>> commits = new EnumMap<>(DatasetCatalog.Category.class);
+        for (final DatasetCatalog.Category category : DatasetCatalog.Category.values()) {
+            commits.put(category, new ArrayList<>());
+        }
         // Retrieve the SPLCommit objects for the parents of each commit
         final Map<String, SPLCommit> idToCommitMap = new HashMap<>();
-        successCommits.forEach(c -> idToCommitMap.put(c.id(), c));
-        Logger.info("Mapped success commits.");
-        errorCommits.forEach(c -> idToCommitMap.put(c.id(), c));
-        Logger.info("Mapped error commits.");
-        emptyCommits.forEach(c -> idToCommitMap.put(c.id(), c));
-        Logger.info("Mapped empty commits.");
-        partialSuccessCommits.forEach(c -> idToCommitMap.put(c.id(), c));
-        Logger.info("Mapped partial success commits.");
+        for (final DatasetCatalog.Entry entry : catalog.entries()) {
+            final SPLCommit commit = initializeSPLCommit(p, entry);
+            commits.get(entry.category()).add(commit);
+            idToCommitMap.put(commit.id(), commit);
+        }
+        Logger.info("Initialized SPL commits.");
 
         Logger.info("Mapping commits to parents...");
-        for (final Map.Entry<String, SPLCommit> entry : idToCommitMap.entrySet()) {
-            final String[] parentIds = loadParentIds(p, entry.getKey());
+        for (final DatasetCatalog.Entry entry : catalog.entries()) {
+            final String[] parentIds = entry.parentIds();
+            final SPLCommit commit = idToCommitMap.get(entry.id());
             if (parentIds == null || parentIds.length == 0) {
-                entry.getValue().setParents(null);
+                commit.setParents(null);
             } else {
-                entry.getValue().setParents(Arrays.stream(parentIds).map(id -> {
-                    var commit = idToCommitMap.get(id);
-                    if (commit == null) {
-                        commit = new SPLCommit(id);
+                commit.setParents(Arrays.stream(parentIds).map(id -> {
+                    var parent = idToCommitMap.get(id);
+                    if (parent == null) {
+                        parent = new SPLCommit(id);
                     }
-                    return commit;
+                    return parent;
                 }).toArray(SPLCommit[]::new));
             }
         }
         Logger.info("Done.");
         Logger.info("Found a total of " + idToCommitMap.size() + " commits.");
         // Return the fully-loaded dataset
-        return Result.Success(new VariabilityDataset(successCommits, errorCommits, emptyCommits,
-                        partialSuccessCommits));
+        return new VariabilityDataset(
+                commits.get(DatasetCatalog.Category.SUCCESS),
+                commits.get(DatasetCatalog.Category.ERROR),
+                commits.get(DatasetCatalog.Category.EMPTY),
+                commits.get(DatasetCatalog.Category.PARTIAL_SUCCESS));
     }
 
-    private List<SPLCommit> initializeSPLCommits(final Path p, final List<String> commitIds) {
-        final List<SPLCommit> splCommits = new ArrayList<>(commitIds.size());
-        for (final String id : commitIds) {
-            // Initialize a SPLCommit object for each commit id by resolving all paths to files with
-            // data about the commit
-            final SPLCommit splCommit = new SPLCommit(id, resolvePathToCommitOutputDir(p, id),
-                            resolvePathToLogFile(p, id), resolvePathToFeatureModel(p, id),
-                            resolvePathToPresenceConditionsBefore(p, id),
-                            resolvePathToPresenceConditionsAfter(p, id),
-                            resolvePathToPresenceConditionsFallback(p, id),
-                            resolvePathToMatchingBefore(p, id),
-                            resolvePathToMatchingAfter(p, id),
-                            resolvePathToMessageFile(p, id), resolvePathToFilterCountsFile(p, id));
-            splCommits.add(splCommit);
-        }
-        return splCommits;
+    private SPLCommit initializeSPLCommit(final Path p, final DatasetCatalog.Entry entry) {
+        final String id = entry.id();
+        // Initialize a SPLCommit object for each commit id by resolving all paths to files with
+        // data about the commit
+        return new SPLCommit(id, resolvePathToCommitOutputDir(p, id),
+                        resolvePathToLogFile(p, id), resolvePathToFeatureModel(p, entry),
+                        resolvePathToPresenceConditionsBefore(p, entry),
+                        resolvePathToPresenceConditionsAfter(p, entry),
+                        resolvePathToPresenceConditionsFallback(p, entry),
+                        resolvePathToMatchingBefore(p, id),
+                        resolvePathToMatchingAfter(p, id),
+                        resolvePathToMessageFile(p, id), resolvePathToFilterCountsFile(p, id));
     }
 
     private SPLCommit.CodeMatchingPath resolvePathToMatchingBefore(final Path rootDir, String commitId) {
@@ -180,42 +261,50 @@ public class VariabilityDatasetLoader implements ResourceLoader<VariabilityDatas
     }
 
     private SPLCommit.FeatureModelPath resolvePathToFeatureModel(final Path rootDir,
-                    final String commitId) {
-        Path p = resolvePathToCommitOutputDir(rootDir, commitId).resolve(FEATURE_MODEL_FILE);
-        if (!Files.exists(p)) {
+                    final DatasetCatalog.Entry commit) {
+        Path p = resolvePathToCommitOutputDir(rootDir, commit.id()).resolve(FEATURE_MODEL_FILE);
+        if (!commit.has(DatasetCatalog.HAS_FEATURE_MODEL)) {
             // If no feature model is found, we instead set the variables file, as feature model
             // TODO: Move this logic to VEVOS_extraction, if we convert a feature model a FeatureIDE
             // format?
-            p = resolvePathToCommitOutputDir(rootDir, commitId).resolve(VARIABLES_FILE);
+            p = resolvePathToCommitOutputDir(rootDir, commit.id()).resolve(VARIABLES_FILE);
         }
         return new SPLCommit.FeatureModelPath(p);
     }
 
+    /**
+     * @return The path to the binary version of the given ground truth if it exists and is up to date
+     * (see {@link BinaryPCFormat}),
+     * and the given path otherwise. Both might be contained in an archive (see {@link DatasetArchives}).
+     */
+    private static Path preferBinary(final Path csvGroundTruth, final boolean binaryExists) {
+        return binaryExists ? BinaryPCFormat.binaryPathOf(csvGroundTruth) : csvGroundTruth;
+    }
+
     private SPLCommit.PresenceConditionPath resolvePathToPresenceConditionsBefore(
-                    final Path rootDir, final String commitId) {
-        final Path p = resolvePathToCommitOutputDir(rootDir, commitId)
+                    final Path rootDir, final DatasetCatalog.Entry commit) {
+        final Path p = resolvePathToCommitOutputDir(rootDir, commit.id())
                         .resolve(PRESENCE_CONDITIONS_BEFORE_FILE);
-        return new SPLCommit.PresenceConditionPath(p);
+        return new SPLCommit.PresenceConditionPath(preferBinary(p, commit.has(DatasetCatalog.HAS_BINARY_PRESENCE_CONDITIONS_BEFORE)));
     }
 
     private SPLCommit.PresenceConditionPath resolvePathToPresenceConditionsAfter(final Path rootDir,
-                    final String commitId) {
-        final Path p = resolvePathToCommitOutputDir(rootDir, commitId)
+                    final DatasetCatalog.Entry commit) {
+        final Path p = resolvePathToCommitOutputDir(rootDir, commit.id())
                         .resolve(PRESENCE_CONDITIONS_AFTER_FILE);
-        return new SPLCommit.PresenceConditionPath(p);
+        return new SPLCommit.PresenceConditionPath(preferBinary(p, commit.has(DatasetCatalog.HAS_BINARY_PRESENCE_CONDITIONS_AFTER)));
     }
 
     private SPLCommit.PresenceConditionPath resolvePathToPresenceConditionsFallback(
-                    final Path rootDir, final String commitId) {
+                    final Path rootDir, final DatasetCatalog.Entry commit) {
         // For the fallback file, we first try the 'after' version of the PCS. If it does not exist,
         // we use the fallback
-        Path p = resolvePathToCommitOutputDir(rootDir, commitId)
-                        .resolve(PRESENCE_CONDITIONS_AFTER_FILE);
-        if (!Files.exists(p)) {
-            p = resolvePathToCommitOutputDir(rootDir, commitId)
-                            .resolve(PRESENCE_CONDITIONS_FALLBACK_FILE);
+        if (commit.has(DatasetCatalog.HAS_PRESENCE_CONDITIONS_AFTER)) {
+            return resolvePathToPresenceConditionsAfter(rootDir, commit);
         }
-        return new SPLCommit.PresenceConditionPath(p);
+        final Path p = resolvePathToCommitOutputDir(rootDir, commit.id())
+                        .resolve(PRESENCE_CONDITIONS_FALLBACK_FILE);
+        return new SPLCommit.PresenceConditionPath(preferBinary(p, commit.has(DatasetCatalog.HAS_BINARY_PRESENCE_CONDITIONS_FALLBACK)));
     }
 
     private Path resolvePathToParentsFile(final Path rootDir, final String commitId) {
@@ -242,33 +331,16 @@ public class VariabilityDatasetLoader implements ResourceLoader<VariabilityDatas
 
     private String[] loadParentIds(final Path p, final String commitId) {
         final Path parentsFile = resolvePathToParentsFile(p, commitId);
-        if (!Files.exists(parentsFile)) {
-            Logger.debug("No PARENTS.txt found, checking archive....");
-            final File zipFile = new File(parentsFile.getParent() + ".zip");
-            Logger.debug("Checking ZIP file " + zipFile);
-            if (zipFile.exists()) {
-                try (var zip = new ZipFile(zipFile)) {
-                    Logger.debug("Unzipping PARENTS.txt");
-                    zip.extractFile(commitId + "/PARENTS.txt", String.valueOf(
-                                    resolvePathToCommitOutputDir(p, commitId).getParent()));
-                } catch (final IOException e) {
-                    // Not all commits have a ZIP file and not all commits with a ZIP file have a
-                    // PARENTS.txt. So this is
-                    // an expected exception
-                    Logger.debug("Was not able to unzip commit data." + e.getMessage());
-                }
-            }
-        }
-        if (Files.exists(parentsFile)) {
-            try {
-                return Files.readString(parentsFile).split("\\s");
-            } catch (final IOException e) {
-                Logger.error("Was not able to load PARENTS.txt " + parentsFile
-                                + " even though it exists:", e);
-                return null;
-            }
+        try {
+            return DatasetArchives.read(parentsFile, Files::readString).split("\\s");
+        } catch (final FileNotFoundException e) {
+            // Not all commits have a PARENTS.txt, so this is expected.
+            Logger.debug("No PARENTS.txt found for commit " + commitId + ": " + e.getMessage());
+            return null;
+        } catch (final Exception e) {
+            Logger.error("Was not able to load PARENTS.txt " + parentsFile
+                            + " even though it exists:", e);
+            return null;
         }
-        return null;
     }
 }
-
@@ -11,6 +11,9 @@ import org.variantsync.vevos.simulation.variability.pc.visitor.LineBasedAnnotati
 import org.variantsync.vevos.simulation.variability.pc.visitor.SourceCodeFileVisitorFocus;
 import org.variantsync.vevos.simulation.variability.pc.visitor.SyntheticArtefactTreeNodeVisitorFocus;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -22,7 +25,11 @@ import java.util.List;
  */
 public class ArtefactCSVExporter implements ArtefactVisitor {
     private final static int COLUMN_COUNT = 7;
-    private final List<String[]> csv = new ArrayList<>();
+    private final static String ROW_SEPARATOR = "\r\n";
+    private final List<String[]> csv;
+    private final Writer out;
+    private final String separator;
+    private boolean isFirstRow = true;
     private SourceCodeFile currentFile = null;
 
     /**
@@ -32,7 +39,35 @@ public class ArtefactCSVExporter implements ArtefactVisitor {
         return new String[COLUMN_COUNT];
     }
 
+    /**
+     * Creates an exporter that collects all rows in memory.
+     * Use {@link #export()} to obtain the rows after visiting an artefact.
+     */
     public ArtefactCSVExporter() {
+        this.csv = new ArrayList<>();
+        this.out = null;
+        this.separator = null;
+        addHeader();
+    }
+
+    /**
+     * Creates an exporter that writes each row to the given writer as soon as it is visited.
+     * Thus, the memory required for exporting does not depend on the size of the exported artefact.
+     * The written text is the same as {@link CSV#toString(String)} of the rows collected by {@link #ArtefactCSVExporter()}.
+     * As visitors cannot throw checked exceptions, IOExceptions of the writer are rethrown as
+     * {@link UncheckedIOException}.
+     * The given writer is neither flushed nor closed.
+     * @param out The writer to write the csv rows to. Should be buffered.
+     * @param separator The separator to put between the cells of a row.
+     */
+    public ArtefactCSVExporter(final Writer out, final String separator) {
+        this.csv = null;
+        this.out = out;
+        this.separator = separator;
+        addHeader();
+    }
+
+    private void addHeader() {
         // create header
         final String[] header = makeRow();
         header[0] = "Path";
@@ -42,14 +77,40 @@ public class ArtefactCSVExporter implements ArtefactVisitor {
         header[4] = "Line Type";
         header[5] = "start";
         header[6] = "end";
-        csv.add(header);
+        addRow(header);
+    }
+
+    private void addRow(final String[] row) {
+        if (out == null) {
+            csv.add(row);
+            return;
+        }
+
+        try {
+            if (isFirstRow) {
+                isFirstRow = false;
+            } else {
+                out.write(ROW_SEPARATOR);
+            }
+            out.write(row[0]);
+            for (int i = 1; i < row.length; ++i) {
+                out.write(separator);
+                out.write(row[i]);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
      * Finalizes the export.
      * @return CSV object that can be used for writing to disk.
+     * @throws IllegalStateException if this exporter writes its rows to a writer directly.
      */
     public CSV export() {
+        if (csv == null) {
+            throw new IllegalStateException("Rows were written to a writer directly and were not collected!");
+        }
         return new CSV(csv);
     }
 
@@ -84,7 +145,7 @@ public class ArtefactCSVExporter implements ArtefactVisitor {
     @Override
     public void visitLineBasedAnnotation(final LineBasedAnnotationVisitorFocus focus) {
         final LineBasedAnnotation annotation = focus.getValue();
-        csv.add(toRow(annotation));
+        addRow(toRow(annotation));
         focus.visitAllSubtrees(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package org.variantsync.vevos.simulation.io.kernelhaven;
+
+import org.prop4j.Node;
+import org.tinylog.Logger;
+import org.variantsync.functjonal.functions.FragileSupplier;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCDecoder;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCEncoder;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCFormat;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.variability.pc.FlatAnnotationTree;
+import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of parsed source code files of KernelHaven ground truths.
+ * Most files and their presence conditions do not change between consecutive commits.
+ * This cache identifies a file by its path and the bytes of the csv rows describing it, such that a file whose rows did
+ * not change since a previous commit does not have to be parsed again.
+ * Parsed files are stored on disk in the {@link BinaryPCFormat} (one file per entry) and the most recently used
+ * entries are additionally kept in memory.
+ * Files obtained from this cache share their {@link FlatAnnotationTree flattened annotations} with all other files
+ * obtained for the same entry.
+ * This class is thread-safe and several processes may share the same cache directory.
+ */
+public class KernelHavenPCCache {
+    /**
+     * Version of the stored entries.
+     * Has to be increased whenever parsing or the binary format changes.
+     */
+    public static final String CACHE_VERSION = "v1";
+    private static final int DEFAULT_MEMORY_CAPACITY = 1 << 14;
+
+    private final Path store;
+    private final Map<String, CachedFile> memory;
+
+    private record CachedFile(Node featureMapping, Node presenceCondition, FlatAnnotationTree annotations) {}
+
+    /**
+     * Creates a cache that stores parsed files in the given directory.
+     */
+    public KernelHavenPCCache(final Path cacheDir) {
+        this(cacheDir, DEFAULT_MEMORY_CAPACITY);
+    }
+
+    /**
+     * Creates a cache that stores parsed files in the given directory.
+     * @param cacheDir The directory in which parsed files are stored. Created when required.
+     * @param memoryCapacity The maximum number of parsed files kept in memory.
+     */
+    public KernelHavenPCCache(final Path cacheDir, final int memoryCapacity) {
+        this.store = cacheDir.resolve("pcs-" + CACHE_VERSION);
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedFile> eldest) {
+                return size() > memoryCapacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the given source file of a csv file.
+     * If the file was not cached before, it is parsed with the given parser and stored.
+     * @param index The index of the csv file.
+     * @param entry The file to load.
+     * @param kind Distinguishes files that are parsed differently from equal rows (e.g., ground truths of product lines
+     *             and variants).
+     * @param parser Parses the given file from the csv file.
+     * @return The file described by the given entry. Its annotations are loaded from {@link FlatAnnotationTree
+     *         flattened annotations}.
+     * @throws IOException if the rows of the given file cannot be read or parsed.
+     */
+    public SourceCodeFile load(
+            final KernelHavenPCIndex index,
+            final KernelHavenPCIndex.Entry entry,
+            final String kind,
+            final FragileSupplier<SourceCodeFile, IOException> parser) throws IOException {
+        final String key = keyOf(kind, entry.path(), index.readBytes(entry));
+        CachedFile cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+        }
+        if (cached == null) {
+            cached = loadFromStore(key, entry.path(), parser);
+            synchronized (memory) {
+                memory.put(key, cached);
+            }
+        }
+        return new SourceCodeFile(cached.featureMapping(), cached.presenceCondition(), entry.path(), cached.annotations());
+    }
+
+    private CachedFile loadFromStore(final String key, final CaseSensitivePath path, final FragileSupplier<SourceCodeFile, IOException> parser) throws IOException {
+        final Path stored = store.resolve(key.substring(0, 2)).resolve(key.substring(2) + BinaryPCFormat.EXTENSION);
+        if (Files.exists(stored)) {
+            try {
+                final List<SourceCodeFile> files = BinaryPCDecoder.decode(Files.readAllBytes(stored));
+                if (files.size() == 1 && files.get(0).getFlatAnnotations() != null) {
+                    final SourceCodeFile file = files.get(0);
+                    return new CachedFile(file.getFeatureMapping(), file.getPresenceCondition(), file.getFlatAnnotations());
+                }
+                Logger.warn("Cached presence conditions of " + path + " at " + stored + " are invalid. Parsing them again.");
+            } catch (final IOException e) {
+                Logger.warn("Could not read cached presence conditions of " + path + " at " + stored + ". Parsing them again.", e);
+            }
+        }
+
+        final SourceCodeFile file = parser.get();
+        if (file == null) {
+            throw new IOException("No rows for " + path + " in ground truth!");
+        }
+        final byte[] encoded = BinaryPCEncoder.encode(List.of(file));
+        Files.createDirectories(stored.getParent());
+        // Write to a temporary file first such that other processes never read incomplete files.
+        final Path temp = Files.createTempFile(stored.getParent(), key, ".tmp");
+        Files.write(temp, encoded);
+        Files.move(temp, stored, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new CachedFile(file.getFeatureMapping(), file.getPresenceCondition(), FlatAnnotationTree.of(file.getRootAnnotation()));
+    }
+
+    private static String keyOf(final String kind, final CaseSensitivePath path, final byte[] rows) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+        digest.update(kind.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(path.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(rows);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -1,15 +1,14 @@
 package org.variantsync.vevos.simulation.io.kernelhaven;
 
 import org.prop4j.Node;
-import org.prop4j.NodeReader;
 import org.tinylog.Logger;
 import org.variantsync.functjonal.Result;
 import org.variantsync.functjonal.Unit;
-import org.variantsync.functjonal.list.ListHeadTailView;
 import org.variantsync.vevos.simulation.io.ResourceLoader;
 import org.variantsync.vevos.simulation.io.ResourceWriter;
-import org.variantsync.vevos.simulation.io.Resources;
-import org.variantsync.vevos.simulation.io.data.CSV;
+import org.variantsync.vevos.simulation.io.data.CSVIO;
+import org.variantsync.vevos.simulation.io.data.CSVRowReader;
+import org.variantsync.vevos.simulation.util.fide.FormulaCache;
 import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.util.io.PathUtils;
@@ -19,17 +18,68 @@ import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
 import org.variantsync.vevos.simulation.variability.pc.SyntheticArtefactTreeNode;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Abstract class to load presence conditions from the csv file generated by KernelHaven.
  */
 public abstract class KernelHavenPCIO implements ResourceLoader<Artefact>, ResourceWriter<Artefact> {
     private final String extension;
+    private final ForkJoinPool pool;
+    private final KernelHavenPCCache cache;
+    private final boolean lazy;
 
     protected KernelHavenPCIO(final String extension) {
+        this(extension, null);
+    }
+
+    /**
+     * @param extension The file extension of files that can be loaded and written.
+     * @param pool The pool on which the files described by a csv file are parsed in parallel.
+     *             If null, csv files are parsed sequentially on the calling thread.
+     */
+    protected KernelHavenPCIO(final String extension, final ForkJoinPool pool) {
+        this(extension, pool, null);
+    }
+
+    /**
+     * @param extension The file extension of files that can be loaded and written.
+     * @param pool The pool on which the files described by a csv file are parsed in parallel.
+     *             If null, csv files are parsed sequentially on the calling thread.
+     * @param cache The cache from which files are loaded that were already parsed for another csv file.
+     *              Files that are not cached yet are parsed and added to the cache.
+     *              If null, all files are parsed.
+     */
+    protected KernelHavenPCIO(final String extension, final ForkJoinPool pool, final KernelHavenPCCache cache) {
+        this(extension, pool, cache, false);
+    }
+
+    /**
+     * @param extension The file extension of files that can be loaded and written.
+     * @param pool The pool on which the files described by a csv file are parsed in parallel.
+     *             If null, csv files are parsed sequentially on the calling thread.
+     *             Not used when loading lazily.
+     * @param cache The cache from which files are loaded that were already parsed for another csv file.
+     *              Files that are not cached yet are parsed and added to the cache.
+     *              If null, all files are parsed.
+     * @param lazy Whether {@link #load(Path)} should {@link #loadLazily(Path) load lazily}.
+     */
+    protected KernelHavenPCIO(final String extension, final ForkJoinPool pool, final KernelHavenPCCache cache, final boolean lazy) {
         this.extension = extension;
+        this.pool = pool;
+        this.cache = cache;
+        this.lazy = lazy;
     }
 
     @Override
@@ -44,76 +94,199 @@ public abstract class KernelHavenPCIO implements ResourceLoader<Artefact>, Resou
 
     @Override
     public Result<Artefact, Exception> load(final Path csvPath) {
-        final Map<CaseSensitivePath, SourceCodeFile> files = new HashMap<>();
-        final CSV csv;
+        if (lazy) {
+            return loadLazily(csvPath);
+        }
+
         Logger.debug("Loading csv file: " + csvPath);
+        if (pool == null && cache == null) {
+            final CSVRowReader rows;
+            try {
+                rows = new CSVIO().openRows(csvPath);
+            } catch (final IOException e) {
+                Logger.error("Was not able to load csv file: " + e);
+                return Result.Failure(e);
+            }
+            try (rows) {
+                Logger.debug("Parsing...");
+                return Result.Success(assemble(parseSequentially(rows, csvPath)));
+            } catch (final Exception e) {
+                Logger.error("Was not able to parse csv file: " + e);
+                return Result.Failure(e);
+            }
+        }
+
         try {
-            csv = Resources.Instance().load(CSV.class, csvPath);
-        } catch (final Resources.ResourceIOException resourceFailure) {
-            Logger.error("Was not able to load csv file: " + resourceFailure);
-            return Result.Failure(resourceFailure);
+            Logger.debug(pool == null ? "Parsing with cache..." : "Parsing in parallel...");
+            return Result.Success(assemble(parseIndexed(csvPath)));
+        } catch (final Exception e) {
+            Logger.error("Was not able to parse csv file: " + e);
+            return Result.Failure(e);
         }
+    }
 
-        Logger.debug("Parsing...");
+    private static Artefact assemble(final List<SourceCodeFile> allFiles) {
+        // sort and return all files as list
+        allFiles.sort(Comparator.comparing(SourceCodeFile::getFile));
+        Logger.debug("Parsed a ground truth for " + allFiles.size() + " files.");
+        return new SyntheticArtefactTreeNode<>(allFiles);
+    }
 
-        try {
-            // parser for propositional formulas
-            final NodeReader nodeReader = new NodeReader();
-            nodeReader.activateJavaSymbols(); // select the symbols used for parsing conjunction (&&), disjunction (||), ...
-
-            // skip first entry as it is the csv header
-            final ListHeadTailView<String[]> rows = new ListHeadTailView<>(csv.rows()).tail();
-            for (final String[] row : rows) {
-                final CaseSensitivePath pathOfSourceFile = CaseSensitivePath.of(row[0]);
-                Node fileConditionNode = nodeReader.stringToNode(row[1]);
-                if (fileConditionNode == null) {
-                    Logger.warn("Was not able to parse the file condition for " + pathOfSourceFile + " in " + csvPath);
-                    Logger.warn("GT entry: " + row[1]);
-                    Logger.warn(nodeReader.getErrorMessage());
-                    fileConditionNode = nodeReader.stringToNode("1");
-                }
-                Node blockConditionNode = nodeReader.stringToNode(row[2]);
-                if (blockConditionNode == null) {
-                    Logger.warn("Was not able to parse the block condition for " + pathOfSourceFile + " in " + csvPath);
-                    Logger.warn("GT entry: " + row[2]);
-                    Logger.warn(nodeReader.getErrorMessage());
-                    blockConditionNode = nodeReader.stringToNode("1");
-                }
-                Node presenceConditionNode = nodeReader.stringToNode(row[3]);
-                if (presenceConditionNode == null) {
-                    Logger.warn("Was not able to parse the presence condition for " + pathOfSourceFile + " in " + csvPath);
-                    Logger.warn("GT entry: " + row[3]);
-                    Logger.warn(nodeReader.getErrorMessage());
-                    presenceConditionNode = nodeReader.stringToNode("1");
-                }
-                final Node fileCondition = FixTrueFalse.EliminateTrueAndFalseInplace(fileConditionNode);
-                final Node blockCondition = FixTrueFalse.EliminateTrueAndFalseInplace(blockConditionNode);
-                // We don't need the actual presenceCondition (lol) as it is a value computed from row[1] and row[2]
-                final Node presenceCondition = FixTrueFalse.EliminateTrueAndFalseInplace(presenceConditionNode);
-                final LineType lineType = LineType.fromName(row[4]);
-                final int startLine = Integer.parseInt(row[5]);
-                final int endLine = Integer.parseInt(row[6]);
+    private List<SourceCodeFile> parseSequentially(final CSVRowReader rows, final Path csvPath) throws IOException {
+        // skip first entry as it is the csv header
+        rows.next();
+        final Map<CaseSensitivePath, SourceCodeFile> files = new HashMap<>();
+        final Map<CaseSensitivePath, List<LineBasedAnnotation>> annotations = new HashMap<>();
+        while (rows.next()) {
+            final CaseSensitivePath pathOfSourceFile = CaseSensitivePath.of(rows.get(0));
+            final Node fileCondition = parseFormula(rows.get(1), "file condition", pathOfSourceFile, csvPath);
+            final LineBasedAnnotation annotation = parseAnnotation(
+                    rows.get(2), rows.get(3), rows.get(4), rows.getInt(5), rows.getInt(6),
+                    pathOfSourceFile, csvPath);
 
             /*
-            Add the file to our map if not already present and add the
-            PreprocessorBlock to it that was described in the parsed row.
+            Add the file to our map if not already present and remember the
+            PreprocessorBlock that was described in the parsed row for it.
              */
-                files.computeIfAbsent(
-                                pathOfSourceFile,
-                                p -> new SourceCodeFile(fileCondition, fileCondition, p))
-                        .addTrace(createAnnotation(blockCondition, presenceCondition, lineType, startLine, endLine));
+            files.computeIfAbsent(
+                    pathOfSourceFile,
+                    p -> new SourceCodeFile(fileCondition, fileCondition, p));
+            annotations.computeIfAbsent(pathOfSourceFile, p -> new ArrayList<>()).add(annotation);
+        }
+
+        // Build the annotation tree of each file at once.
+        files.forEach((path, file) -> file.addTraces(annotations.get(path)));
+        return new ArrayList<>(files.values());
+    }
+
+    /**
+     * Indexes the rows of each file and builds each file on its own (on the pool if there is one).
+     * As rows of different files are independent, the resulting files are exactly the same as when parsing sequentially.
+     * If parsing fails for several files, the failure of the file that occurs first in the csv file is reported.
+     */
+    private List<SourceCodeFile> parseIndexed(final Path csvPath) throws Exception {
+        final KernelHavenPCIndex index = KernelHavenPCIndex.build(csvPath);
+        final List<SourceCodeFile> files = new ArrayList<>(index.getEntries().size());
+        if (pool == null) {
+            for (final KernelHavenPCIndex.Entry entry : index.getEntries()) {
+                files.add(loadFile(index, entry));
+            }
+            return files;
+        }
+
+        final List<ForkJoinTask<SourceCodeFile>> tasks = new ArrayList<>(index.getEntries().size());
+        for (final KernelHavenPCIndex.Entry entry : index.getEntries()) {
+            tasks.add(pool.submit(() -> loadFile(index, entry)));
+        }
+        try {
+            for (final ForkJoinTask<SourceCodeFile> task : tasks) {
+                files.add(task.get());
+            }
+        } catch (final ExecutionException e) {
+            tasks.forEach(task -> task.cancel(true));
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return files;
+    }
+
+    private SourceCodeFile loadFile(final KernelHavenPCIndex index, final KernelHavenPCIndex.Entry entry) throws IOException {
+        if (cache == null) {
+            return parseFile(index, entry);
+        }
+        return cache.load(index, entry, extension, () -> parseFile(index, entry));
+    }
+
+    /**
+     * Loads the presence conditions from the given csv file such that the annotations of each file are parsed only
+     * when they are accessed for the first time (e.g., when the file is visited or a variant of it is generated).
+     * Thus, files that are filtered or never queried are never parsed.
+     * Loading only indexes the rows of each file and parses the file conditions.
+     * As a consequence, ill-formed rows are not reported upon loading but upon accessing the respective file,
+     * in which case an unchecked exception is thrown.
+     * Files are loaded from the cache of this IO if there is one.
+     * @param csvPath Path to the csv file to load.
+     * @return The same artefact tree as {@link #load(Path)} but with lazily loaded files.
+     */
+    public Result<Artefact, Exception> loadLazily(final Path csvPath) {
+        Logger.debug("Indexing csv file: " + csvPath);
+        try {
+            final KernelHavenPCIndex index = KernelHavenPCIndex.build(csvPath);
+            final List<SourceCodeFile> allFiles = new ArrayList<>(index.getEntries().size());
+            for (final KernelHavenPCIndex.Entry entry : index.getEntries()) {
+                final Node fileCondition = parseFormula(entry.fileCondition(), "file condition", entry.path(), csvPath);
+                allFiles.add(new SourceCodeFile(fileCondition, fileCondition, entry.path(), () -> {
+                    Logger.debug("Parsing " + entry.path() + " in " + csvPath);
+                    try {
+                        return loadFile(index, entry).getRootAnnotation();
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
             }
-            // sort and return all files as list
-            final List<SourceCodeFile> allFiles = new ArrayList<>(files.values());
             allFiles.sort(Comparator.comparing(SourceCodeFile::getFile));
-            Logger.debug("Parsed a ground truth for " + allFiles.size() + " files.");
+            Logger.debug("Indexed a ground truth for " + allFiles.size() + " files.");
             return Result.Success(new SyntheticArtefactTreeNode<>(allFiles));
         } catch (final Exception e) {
-            Logger.error("Was not able to parse csv file: " + e);
+            Logger.error("Was not able to index csv file: " + e);
             return Result.Failure(e);
         }
     }
 
+    private SourceCodeFile parseFile(final KernelHavenPCIndex index, final KernelHavenPCIndex.Entry entry) throws IOException {
+        final CaseSensitivePath pathOfSourceFile = entry.path();
+        final Path csvPath = index.getCSVPath();
+        SourceCodeFile file = null;
+        final List<LineBasedAnnotation> annotations = new ArrayList<>();
+        try (final CSVRowReader rows = index.openRows(entry)) {
+            while (rows.next()) {
+                final Node fileCondition = parseFormula(rows.get(1), "file condition", pathOfSourceFile, csvPath);
+                annotations.add(parseAnnotation(
+                        rows.get(2), rows.get(3), rows.get(4), rows.getInt(5), rows.getInt(6),
+                        pathOfSourceFile, csvPath));
+                if (file == null) {
+                    file = new SourceCodeFile(fileCondition, fileCondition, pathOfSourceFile);
+                }
+            }
+        }
+        if (file != null) {
+            file.addTraces(annotations);
+        }
+        return file;
+    }
+
+    private LineBasedAnnotation parseAnnotation(
+            final String blockConditionText,
+            final String presenceConditionText,
+            final String lineTypeName,
+            final int startLine,
+            final int endLine,
+            final CaseSensitivePath pathOfSourceFile,
+            final Path csvPath) {
+        final Node blockCondition = parseFormula(blockConditionText, "block condition", pathOfSourceFile, csvPath);
+        // We don't need the actual presenceCondition (lol) as it is a value computed from row[1] and row[2]
+        final Node presenceCondition = parseFormula(presenceConditionText, "presence condition", pathOfSourceFile, csvPath);
+        final LineType lineType = LineType.fromName(lineTypeName);
+        return createAnnotation(blockCondition, presenceCondition, lineType, startLine, endLine);
+    }
+
+    /**
+     * Parses the given formula using the shared {@link FormulaCache}.
+     * Formulas that cannot be parsed are logged and replaced by true.
+     */
+    private static Node parseFormula(final String formula, final String kind, final CaseSensitivePath file, final Path csvPath) {
+        return FormulaCache.Instance().parse(formula).match(
+                node -> node,
+                error -> {
+                    Logger.warn("Was not able to parse the " + kind + " for " + file + " in " + csvPath);
+                    Logger.warn("GT entry: " + formula);
+                    Logger.warn(error);
+                    return FixTrueFalse.True;
+                });
+    }
+
     @Override
     public Result<Unit, ? extends Exception> write(final Artefact object, final Path p) {
         /*
@@ -123,18 +296,25 @@ public abstract class KernelHavenPCIO implements ResourceLoader<Artefact>, Resou
             System.out.println();
         //}//*/
 
-        final ArtefactCSVExporter csvCreator = new ArtefactCSVExporter();
-        object.accept(csvCreator);
-        final CSV csv = csvCreator.export();
-
-        /*
-        // if (DEBUG) {
-            System.out.println(csv.toString());
-            System.out.println("  ==> " + p);
-            System.out.println();
-        //}//*/
-
-        return Result.Try(() -> Resources.Instance().write(CSV.class, csv, p));
+        // Stream the rows to disk instead of building the entire csv in memory first.
+        // The rows are written to a temporary file that is moved into place once it is complete, such that no
+        // partially written ground truth remains if writing fails.
+        return Result.Try(() -> {
+            if (Files.exists(p)) {
+                throw new FileAlreadyExistsException(p.toString());
+            }
+            final Path temp = Files.createTempFile(p.toAbsolutePath().getParent(), p.getFileName().toString(), ".tmp");
+            try {
+                try (final Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    object.accept(new ArtefactCSVExporter(out, CSVIO.DefaultSeparator));
+                } catch (final UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                Files.move(temp, p, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        });
     }
 
     protected abstract LineBasedAnnotation createAnnotation(final Node blockCondition,
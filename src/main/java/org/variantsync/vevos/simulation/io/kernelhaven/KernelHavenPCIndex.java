@@ -0,0 +1,313 @@
+package org.variantsync.vevos.simulation.io.kernelhaven;
+
+import org.variantsync.vevos.simulation.io.data.CSVIO;
+import org.variantsync.vevos.simulation.io.data.CSVRowReader;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Index over a ground truth csv file produced by KernelHaven.
+ * The index records for each source file the byte ranges of the rows describing it, as well as its file condition.
+ * Building the index only scans the bytes of the csv file and does not parse any formulas.
+ * The rows of a single source file can then be read from the csv file without reading the rest of it.
+ * Csv files that are not on the default file system (e.g., entries of zip archives) do not support reading parts of
+ * them without extracting them first. These files are read into memory once instead.
+ */
+public class KernelHavenPCIndex {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path csvPath;
+    private final List<Entry> entries;
+    // Content of the csv file if it is not on the default file system and null otherwise.
+    private final byte[] content;
+
+    /**
+     * The rows describing a single source file.
+     * @param path The path of the source file.
+     * @param fileCondition The unparsed file condition as given in the first row of the source file.
+     * @param ranges Pairs of byte offsets [start, end) within the csv file. The rows of the source file are exactly
+     *               the lines within these ranges. Ranges are sorted by their start offset.
+     */
+    public record Entry(CaseSensitivePath path, String fileCondition, long[] ranges) {
+        /**
+         * @return The number of bytes occupied by the rows of this source file in the csv file.
+         */
+        public long size() {
+            long size = 0;
+            for (int i = 0; i < ranges.length; i += 2) {
+                size += ranges[i + 1] - ranges[i];
+            }
+            return size;
+        }
+    }
+
+    private KernelHavenPCIndex(final Path csvPath, final List<Entry> entries, final byte[] content) {
+        this.csvPath = csvPath;
+        this.entries = entries;
+        this.content = content;
+    }
+
+    /**
+     * @return The csv file this index was built for.
+     */
+    public Path getCSVPath() {
+        return csvPath;
+    }
+
+    /**
+     * @return All source files in the csv file in the order of their first occurrence.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Reads all rows of the given source file.
+     * @param entry An entry of this index.
+     * @return A reader over the rows describing the given source file in the order they appear in the csv file.
+     * @throws IOException if the csv file cannot be read.
+     */
+    public CSVRowReader openRows(final Entry entry) throws IOException {
+        return new CSVRowReader(new InputStreamReader(new ByteArrayInputStream(readBytes(entry))), CSVIO.DefaultSeparator);
+    }
+
+    /**
+     * Reads the raw bytes of all rows of the given source file.
+     * @param entry An entry of this index.
+     * @return The concatenation of all rows describing the given source file in the csv file.
+     * @throws IOException if the csv file cannot be read.
+     */
+    public byte[] readBytes(final Entry entry) throws IOException {
+        final long size = entry.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The rows of " + entry.path() + " in " + csvPath + " are too large to be read at once!");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        if (content != null) {
+            final long[] ranges = entry.ranges();
+            for (int i = 0; i < ranges.length; i += 2) {
+                buffer.put(content, (int) ranges[i], (int) (ranges[i + 1] - ranges[i]));
+            }
+            return buffer.array();
+        }
+        try (final FileChannel channel = FileChannel.open(csvPath, StandardOpenOption.READ)) {
+            final long[] ranges = entry.ranges();
+            for (int i = 0; i < ranges.length; i += 2) {
+                long position = ranges[i];
+                buffer.limit(buffer.position() + (int) (ranges[i + 1] - ranges[i]));
+                while (buffer.hasRemaining()) {
+                    final int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new EOFException(csvPath + " is shorter than expected. Was it modified after indexing?");
+                    }
+                    position += read;
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Builds the index for the given ground truth csv file.
+     * The first line is considered to be the csv header and is skipped.
+     * @param csvPath Path to a csv file in the format of {@link KernelHavenPCIO}.
+     * @return The index of the given file.
+     * @throws IOException if the csv file cannot be read.
+     */
+    public static KernelHavenPCIndex build(final Path csvPath) throws IOException {
+        final Map<CaseSensitivePath, EntryBuilder> builders = new LinkedHashMap<>();
+        final byte[] content = csvPath.getFileSystem() == FileSystems.getDefault() ? null : Files.readAllBytes(csvPath);
+        try (final InputStream in = content == null ? Files.newInputStream(csvPath) : new ByteArrayInputStream(content)) {
+            final LineScanner lines = new LineScanner(in);
+            // skip first entry as it is the csv header
+            lines.next();
+
+            byte[] previousPathBytes = null;
+            EntryBuilder current = null;
+            while (lines.next()) {
+                if (lines.isBlank()) {
+                    // Let the parser report malformed rows by keeping them with the current file.
+                    if (current != null) {
+                        current.addRow(lines.start(), lines.end());
+                    }
+                    continue;
+                }
+
+                final int pathEnd = lines.indexOfSeparator(0);
+                // Consecutive rows usually belong to the same file so we compare bytes before decoding the path.
+                if (current == null || !lines.regionEquals(0, pathEnd, previousPathBytes)) {
+                    previousPathBytes = lines.copy(0, pathEnd);
+                    final CaseSensitivePath path = CaseSensitivePath.of(lines.decodeTrimmed(0, pathEnd));
+                    final int conditionEnd = lines.indexOfSeparator(pathEnd + 1);
+                    final String fileCondition = pathEnd < lines.length() ? lines.decodeTrimmed(pathEnd + 1, conditionEnd) : "";
+                    current = builders.computeIfAbsent(path, p -> new EntryBuilder(p, fileCondition));
+                }
+                current.addRow(lines.start(), lines.end());
+            }
+        }
+
+        final List<Entry> entries = new ArrayList<>(builders.size());
+        for (final EntryBuilder builder : builders.values()) {
+            entries.add(builder.build());
+        }
+        return new KernelHavenPCIndex(csvPath, entries, content);
+    }
+
+    private static class EntryBuilder {
+        private final CaseSensitivePath path;
+        private final String fileCondition;
+        private long[] ranges = new long[2];
+        private int size = 0;
+
+        EntryBuilder(final CaseSensitivePath path, final String fileCondition) {
+            this.path = path;
+            this.fileCondition = fileCondition;
+        }
+
+        void addRow(final long start, final long end) {
+            // merge with the previous range if the rows are adjacent
+            if (size > 0 && ranges[size - 1] == start) {
+                ranges[size - 1] = end;
+                return;
+            }
+            if (size == ranges.length) {
+                ranges = Arrays.copyOf(ranges, 2 * size);
+            }
+            ranges[size++] = start;
+            ranges[size++] = end;
+        }
+
+        Entry build() {
+            return new Entry(path, fileCondition, Arrays.copyOf(ranges, size));
+        }
+    }
+
+    /**
+     * Iterates over the lines of a byte stream and tracks the byte offset of each line.
+     * Line terminators are handled as in {@link java.io.BufferedReader#readLine()}.
+     */
+    private static class LineScanner {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int bufferPos = 0;
+        private int bufferEnd = 0;
+        private long bufferOffset = 0;
+
+        private byte[] line = new byte[256];
+        private int lineLength = 0;
+        private long lineStart = 0;
+        private long lineEnd = 0;
+
+        LineScanner(final InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Advances to the next line.
+         * @return False iff there are no more lines.
+         */
+        boolean next() throws IOException {
+            lineStart = lineEnd;
+            lineLength = 0;
+            boolean readAnything = false;
+            while (true) {
+                if (bufferPos >= bufferEnd && !fill()) {
+                    lineEnd = bufferOffset + bufferPos;
+                    return readAnything;
+                }
+                readAnything = true;
+
+                int pos = bufferPos;
+                while (pos < bufferEnd && buffer[pos] != '\n' && buffer[pos] != '\r') {
+                    ++pos;
+                }
+                append(bufferPos, pos);
+
+                if (pos < bufferEnd) {
+                    bufferPos = pos + 1;
+                    // A \r\n terminator belongs to this line.
+                    if (buffer[pos] == '\r' && (bufferPos < bufferEnd || fill()) && buffer[bufferPos] == '\n') {
+                        ++bufferPos;
+                    }
+                    lineEnd = bufferOffset + bufferPos;
+                    return true;
+                }
+                bufferPos = pos;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            // Keep unconsumed bytes at the start of the buffer (at most one as we only look ahead one byte).
+            final int remaining = bufferEnd - bufferPos;
+            System.arraycopy(buffer, bufferPos, buffer, 0, remaining);
+            bufferOffset += bufferPos;
+            bufferPos = 0;
+            bufferEnd = remaining;
+            final int read = in.read(buffer, remaining, buffer.length - remaining);
+            if (read <= 0) {
+                return remaining > 0;
+            }
+            bufferEnd += read;
+            return true;
+        }
+
+        private void append(final int from, final int to) {
+            final int length = to - from;
+            if (lineLength + length > line.length) {
+                line = Arrays.copyOf(line, Math.max(2 * line.length, lineLength + length));
+            }
+            System.arraycopy(buffer, from, line, lineLength, length);
+            lineLength += length;
+        }
+
+        long start() {
+            return lineStart;
+        }
+
+        long end() {
+            return lineEnd;
+        }
+
+        int length() {
+            return lineLength;
+        }
+
+        boolean isBlank() {
+            for (int i = 0; i < lineLength; ++i) {
+                if ((line[i] & 0xFF) > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int indexOfSeparator(final int from) {
+            for (int i = from; i < lineLength; ++i) {
+                if (line[i] == CSVIO.DefaultSeparator.charAt(0)) {
+                    return i;
+                }
+            }
+            return lineLength;
+        }
+
+        boolean regionEquals(final int from, final int to, final byte[] other) {
+            return other != null && Arrays.equals(line, from, to, other, 0, other.length);
+        }
+
+        byte[] copy(final int from, final int to) {
+            return Arrays.copyOfRange(line, from, to);
+        }
+
+        String decodeTrimmed(final int from, final int to) {
+            return new String(line, from, to - from).trim();
+        }
+    }
+}
@@ -5,6 +5,8 @@ import org.variantsync.vevos.simulation.variability.pc.AnnotationStyle;
 import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * IO for presence condition of source code of software product lines.
  * The annotated code will be considered to have inline annotations (in CPP style):
@@ -18,6 +20,33 @@ public class KernelHavenSPLPCIO extends KernelHavenPCIO {
         super(".spl.csv");
     }
 
+    /**
+     * Creates an IO that parses the files in a csv file in parallel on the given pool.
+     */
+    public KernelHavenSPLPCIO(final ForkJoinPool pool) {
+        super(".spl.csv", pool);
+    }
+
+    /**
+     * Creates an IO that parses only those files in a csv file that are not in the given cache yet.
+     * @param pool The pool on which files are loaded in parallel or null to load them sequentially.
+     * @param cache The cache of already parsed files.
+     */
+    public KernelHavenSPLPCIO(final ForkJoinPool pool, final KernelHavenPCCache cache) {
+        super(".spl.csv", pool, cache);
+    }
+
+    /**
+     * Creates an IO that parses only those files in a csv file that are not in the given cache yet.
+     * @param pool The pool on which files are loaded in parallel or null to load them sequentially.
+     * @param cache The cache of already parsed files or null to parse all files.
+     * @param lazy Whether files are parsed only when they are accessed for the first time (in which case the pool is
+     *             not used). See {@link #loadLazily(java.nio.file.Path)}.
+     */
+    public KernelHavenSPLPCIO(final ForkJoinPool pool, final KernelHavenPCCache cache, final boolean lazy) {
+        super(".spl.csv", pool, cache, lazy);
+    }
+
     @Override
     protected LineBasedAnnotation createAnnotation(final Node blockCondition, final Node presenceCondition,
                                                    final LineType lineType, final int startLine, int endLine) {
@@ -5,6 +5,8 @@ import org.variantsync.vevos.simulation.variability.pc.AnnotationStyle;
 import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * IO for presence condition of source code of variants of a software product lines.
  * The annotated code will be considered to be annotated externally (i.e., not inline), so there are no CPP annotations.
@@ -14,6 +16,22 @@ public class KernelHavenVariantPCIO extends KernelHavenPCIO {
         super(".variant.csv");
     }
 
+    /**
+     * Creates an IO that parses the files in a csv file in parallel on the given pool.
+     */
+    public KernelHavenVariantPCIO(final ForkJoinPool pool) {
+        super(".variant.csv", pool);
+    }
+
+    /**
+     * Creates an IO that parses only those files in a csv file that are not in the given cache yet.
+     * @param pool The pool on which files are loaded in parallel or null to load them sequentially.
+     * @param cache The cache of already parsed files.
+     */
+    public KernelHavenVariantPCIO(final ForkJoinPool pool, final KernelHavenPCCache cache) {
+        super(".variant.csv", pool, cache);
+    }
+
     @Override
     protected LineBasedAnnotation createAnnotation(final Node blockCondition, final Node presenceCondition,
                                                    final LineType lineType, final int startLine, final int endLine) {
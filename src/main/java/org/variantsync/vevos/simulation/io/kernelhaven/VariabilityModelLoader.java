@@ -7,6 +7,7 @@ import org.variantsync.vevos.simulation.io.ResourceLoader;
 import org.variantsync.vevos.simulation.util.fide.FeatureModelUtils;
 import org.variantsync.vevos.simulation.util.io.PathUtils;
 
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -23,8 +24,18 @@ public class VariabilityModelLoader implements ResourceLoader<IFeatureModel> {
     public Result<IFeatureModel, ? extends Exception> load(Path p) {
         return Result.Try(() -> {
             if (p.toString().endsWith(".json")) {
-                JsonVariabilityModelCache cache = new JsonVariabilityModelCache(p.getParent().toFile());
-                return FeatureModelUtils.FromVariabilityModel(cache.readFixed(p.toFile()));
+                if (p.getFileSystem() != FileSystems.getDefault()) {
+                    // KernelHaven can only read files from the default file system (e.g., not from zip archives).
+                    final Path tempDir = Files.createTempDirectory("variability-model");
+                    try {
+                        final Path copy = tempDir.resolve(p.getFileName().toString());
+                        Files.copy(p, copy);
+                        return loadJson(copy);
+                    } finally {
+                        PathUtils.deleteDirectory(tempDir);
+                    }
+                }
+                return loadJson(p);
             } else {
                 List<String> variables = Files.readAllLines(p).stream().map(String::trim).collect(Collectors.toList());
                 return FeatureModelUtils.FromOptionalFeatures(variables);
@@ -32,5 +43,8 @@ public class VariabilityModelLoader implements ResourceLoader<IFeatureModel> {
         });
     }
 
-
+    private static IFeatureModel loadJson(Path p) throws Exception {
+        JsonVariabilityModelCache cache = new JsonVariabilityModelCache(p.getParent().toFile());
+        return FeatureModelUtils.FromVariabilityModel(cache.readFixed(p.toFile()));
+    }
 }
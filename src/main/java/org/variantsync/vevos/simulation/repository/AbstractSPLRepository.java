@@ -1,7 +1,11 @@
 package org.variantsync.vevos.simulation.repository;
 
+import org.eclipse.jgit.api.errors.GitAPIException;
 import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.pc.source.GitCommitSPLSource;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
 
+import java.io.IOException;
 import java.nio.file.Path;
 
 /**
@@ -16,4 +20,16 @@ public abstract class AbstractSPLRepository extends Repository<SPLCommit> {
     public SPLCommit idToCommit(final String id) {
         return new SPLCommit(id);
     }
+
+    /**
+     * Provides the files of the given commit for variant generation.
+     * By default, files are read directly from the git objects of the commit such that the working tree of this
+     * repository is neither checked out nor changed (see {@link GitCommitSPLSource}).
+     * @param commit The commit whose files should be read.
+     * @return The product line at the given commit.
+     * @throws IOException if the given commit does not exist in this repository or cannot be read.
+     */
+    public SPLSource sourceOf(final SPLCommit commit) throws GitAPIException, IOException {
+        return new GitCommitSPLSource(git().getRepository(), commit);
+    }
 }
@@ -1,11 +1,13 @@
 package org.variantsync.vevos.simulation.repository;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.variants.VariantCommit;
 import org.variantsync.vevos.simulation.variants.VariantsRevision;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -23,6 +25,29 @@ public abstract class AbstractVariantsRepository extends Repository<VariantCommi
      */
     public abstract Optional<VariantCommit> commit(String message) throws GitAPIException, IOException;
 
+    /**
+     * Commits exactly the given files to the given branch without using the working tree or the index of this repository.
+     * The branch does not have to be checked out. If it is, the index and working tree are updated to the new commit.
+     * @param branch The branch to commit to.
+     * @param filesDir The directory containing the files to commit.
+     * @param files The files to commit relative to filesDir.
+     * @param message Message for the commit to make.
+     * @return A handle for the commit that was just created. Returns empty if there were no changes to commit.
+     */
+    public abstract Optional<VariantCommit> commit(Branch branch, Path filesDir, Collection<CaseSensitivePath> files, String message) throws IOException;
+
+    /**
+     * Commits the files of the head of the given branch with the given file added or replaced without using the
+     * working tree or the index of this repository.
+     * The branch does not have to be checked out. If it is, the index and working tree are updated to the new commit.
+     * @param branch The branch to commit to.
+     * @param file Path of the file to add or replace.
+     * @param content The new content of the file.
+     * @param message Message for the commit to make.
+     * @return A handle for the commit that was just created. Returns empty if the file already had the given content.
+     */
+    public abstract Optional<VariantCommit> commitFile(Branch branch, CaseSensitivePath file, byte[] content, String message) throws IOException;
+
     /**
      * Returns a branch handle form a branches name.
      * @param name Name of the branch to obtained metadata of.
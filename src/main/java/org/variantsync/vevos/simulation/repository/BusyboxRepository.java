@@ -2,14 +2,30 @@ package org.variantsync.vevos.simulation.repository;
 
 import net.ssehub.kernel_haven.util.null_checks.NonNull;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.tinylog.Logger;
+import org.variantsync.functjonal.Result;
+import org.variantsync.functjonal.functions.FragileSupplier;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.SPLFileProjector;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
 
@@ -23,9 +39,56 @@ import static net.ssehub.kernel_haven.util.null_checks.NullHelpers.notNull;
  * Licensed under the Apache License, Version 2.0 (the "License")
  */
 public class BusyboxRepository extends SPLRepository {
+    /**
+     * Version of the normalization.
+     * Has to be increased whenever the normalization changes such that normalized files are not read from an
+     * outdated store.
+     */
+    private static final String NORMALIZATION_VERSION = "v1";
 
+    // Content-addressed store of normalized files, indexed by the blob id of the original file.
+    private final Path normalizedStore;
+    private final Path snapshotDir;
+    private final boolean ownsPool;
+    private ForkJoinPool pool;
+    private SPLCheckoutPool snapshots = null;
+
+    /**
+     * Creates a repository that stores normalized files in its git directory.
+     * @param path Path to the working tree of the repository.
+     */
     public BusyboxRepository(final Path path) {
+        this(path, path.resolve(".git").resolve("vevos-busybox"));
+    }
+
+    /**
+     * Creates a repository that normalizes checked out files in parallel on a pool of its own.
+     * Normalization mostly blocks on file I/O and thus must not occupy the common pool.
+     * The pool is created on the first checkout and shut down when this repository is closed.
+     * @param path Path to the working tree of the repository.
+     * @param normalizationDir Directory outside of the working tree in which normalized files and snapshots are stored.
+     */
+    public BusyboxRepository(final Path path, final Path normalizationDir) {
+        this(path, normalizationDir, null, true);
+    }
+
+    /**
+     * @param path Path to the working tree of the repository.
+     * @param normalizationDir Directory outside of the working tree in which normalized files and snapshots are stored.
+     * @param pool The pool on which the files of the working tree are normalized in parallel after a checkout.
+     *             If null, files are normalized sequentially on the calling thread.
+     *             The pool is not shut down when this repository is closed.
+     */
+    public BusyboxRepository(final Path path, final Path normalizationDir, final ForkJoinPool pool) {
+        this(path, normalizationDir, pool, false);
+    }
+
+    private BusyboxRepository(final Path path, final Path normalizationDir, final ForkJoinPool pool, final boolean ownsPool) {
         super(path);
+        this.normalizedStore = normalizationDir.resolve("normalized-" + NORMALIZATION_VERSION);
+        this.snapshotDir = normalizationDir.resolve("snapshots");
+        this.pool = pool;
+        this.ownsPool = ownsPool;
     }
 
     @Override
@@ -35,6 +98,61 @@ public class BusyboxRepository extends SPLRepository {
         return previousCommit;
     }
 
+    /**
+     * Busybox files have to be normalized before variants can be generated from them.
+     * Thus, variants are generated from a normalized snapshot of the given commit outside of the working tree.
+     * The snapshot is updated incrementally: Only files whose blob differs from the previous snapshot are rewritten and
+     * their normalization is read from the store of normalized files if the blob was normalized before.
+     * The working tree of this repository is not changed.
+     * There is only one snapshot, which the returned source holds until it is closed.
+     * Thus, the returned source has to be closed before this method is invoked again.
+     */
+    @Override
+    public SPLSource sourceOf(final SPLCommit commit) throws GitAPIException, IOException {
+        if (snapshots == null) {
+            snapshots = new SPLCheckoutPool(this, snapshotDir, 1, this::normalizedContentOf);
+        }
+        try {
+            return new SnapshotSource(snapshots.lease(commit));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while normalizing commit " + commit, e);
+        }
+    }
+
+    /**
+     * Reads the files of a normalized snapshot and releases the snapshot when closed.
+     */
+    private static class SnapshotSource implements SPLSource {
+        private final SPLCheckoutPool.Lease snapshot;
+        private final SPLSource files;
+
+        private SnapshotSource(final SPLCheckoutPool.Lease snapshot) {
+            this.snapshot = snapshot;
+            this.files = SPLSource.of(new CaseSensitivePath(snapshot.getPath()));
+        }
+
+        @Override
+        public boolean exists(final CaseSensitivePath file) {
+            return files.exists(file);
+        }
+
+        @Override
+        public Result<SPLFileProjector, IOException> open(final CaseSensitivePath file, final VariantGenerationOptions options) {
+            return files.open(file, options);
+        }
+
+        @Override
+        public void close() {
+            snapshot.close();
+        }
+
+        @Override
+        public String toString() {
+            return files.toString();
+        }
+    }
+
     @Override
     public void checkoutBranch(final Branch branch) throws GitAPIException, IOException {
         super.checkoutBranch(branch);
@@ -44,7 +162,18 @@ public class BusyboxRepository extends SPLRepository {
     public void preprocess() throws IOException {
         try {
             Logger.debug("Normalizing Busybox files.");
-            BusyboxRepository.normalizeDir(this.getPath().toFile());
+            final List<File> files = new ArrayList<>();
+            collectSourceFiles(this.getPath().toFile(), files);
+            if (pool == null && ownsPool) {
+                pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            }
+            if (pool == null) {
+                for (final File file : files) {
+                    normalizeFile(file);
+                }
+            } else {
+                normalizeInParallel(files);
+            }
             Logger.debug("Finished normalization of Busybox files.");
         } catch (final IOException e) {
             Logger.error("Was not able to normalize Busybox files.", e);
@@ -52,11 +181,54 @@ public class BusyboxRepository extends SPLRepository {
         }
     }
 
+    @Override
+    public void close() {
+        if (ownsPool && pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+        super.close();
+    }
+
     public void postprocess() throws GitAPIException, IOException {
         stashCreate(true);
         dropStash();
     }
 
+    /**
+     * Normalizes the given file of a commit.
+     * @see SPLCheckoutPool.ContentFilter
+     */
+    private byte[] normalizedContentOf(final String gitPath, final ObjectId blob, final ObjectReader reader) throws IOException {
+        if (!shouldNormalize(gitPath.substring(gitPath.lastIndexOf('/') + 1))) {
+            return null;
+        }
+        return normalizedContentOf(blob, () -> reader.open(blob, Constants.OBJ_BLOB).getBytes());
+    }
+
+    /**
+     * Looks up the normalization of the given blob in the store of normalized files.
+     * If the blob was not normalized before, it is normalized and stored.
+     * @param blob The id of the original file content.
+     * @param content Reads the original file content.
+     * @return The normalized file content.
+     */
+    private byte[] normalizedContentOf(final ObjectId blob, final FragileSupplier<byte[], IOException> content) throws IOException {
+        final String id = blob.getName();
+        final Path stored = normalizedStore.resolve(id.substring(0, 2)).resolve(id.substring(2));
+        if (Files.exists(stored)) {
+            return Files.readAllBytes(stored);
+        }
+
+        final byte[] normalized = normalize(content.get());
+        Files.createDirectories(stored.getParent());
+        // Write to a temporary file first such that other processes never read incomplete files.
+        final Path temp = Files.createTempFile(stored.getParent(), id, ".tmp");
+        Files.write(temp, normalized);
+        Files.move(temp, stored, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return normalized;
+    }
+
     /*
      * The code below was copied from package net.ssehub.kernel_haven.busyboot;
      * Copyright 2018-2019 University of Hildesheim, Software Systems Engineering
@@ -75,20 +247,55 @@ public class BusyboxRepository extends SPLRepository {
      *
      */
 
+    /**
+     * Normalizes the given files on the pool.
+     * If normalization fails for several files, the failure of the first file in the given list is reported.
+     */
+    private void normalizeInParallel(@NonNull final List<File> files) throws IOException {
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(files.size());
+        for (final File file : files) {
+            tasks.add(pool.submit(() -> {
+                normalizeFile(file);
+                return null;
+            }));
+        }
+
+        try {
+            for (final ForkJoinTask<?> task : tasks) {
+                task.get();
+            }
+        } catch (final InterruptedException e) {
+            tasks.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while normalizing Busybox files.", e);
+        } catch (final ExecutionException e) {
+            tasks.forEach(task -> task.cancel(true));
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
     /**
      * Starting point for modifying the c preprocessor source files based on Manuel Zerpies Busyfix.
+     * Collects all source files that have to be normalized.
+     * The git directory is skipped as it contains the snapshots of {@link #sourceOf(SPLCommit)}, which are normalized already.
      *
-     * @param dir The directory to normalize all source files in.
-     * @throws IOException If writing the replaced files fails.
+     * @param dir The directory to collect all source files in.
+     * @param files The list to which the source files are added.
      */
-    private static void normalizeDir(@NonNull final File dir) throws IOException {
-        final File[] files = dir.listFiles();
-        if (files != null) {
-            for (final File file : files) {
+    private static void collectSourceFiles(@NonNull final File dir, @NonNull final List<File> files) {
+        final File[] children = dir.listFiles();
+        if (children != null) {
+            for (final File file : children) {
                 if (file.isDirectory()) {
-                    normalizeDir(file);
+                    if (file.getName().equals(".git")) {
+                        continue;
+                    }
+                    collectSourceFiles(file, files);
                 } else if (file.getName().endsWith(".h") || file.getName().endsWith(".c")) {
-                    normalizeFile(file);
+                    files.add(file);
                 }
             }
         }
@@ -96,37 +303,60 @@ public class BusyboxRepository extends SPLRepository {
 
     /**
      * Normalizes a single file in style of Busyfix.
+     * The normalization is read from the store of normalized files if a file with the same content was normalized before.
      *
      * @param file The file to normalize.
      * @throws IOException If writing the replaced file fails.
      */
-    private static void normalizeFile(@NonNull final File file) throws IOException {
-        final File tempFile;
-        if (file.getName().contains("unicode") || file.getName().contains(".fnt")) {
+    private void normalizeFile(@NonNull final File file) throws IOException {
+        if (!shouldNormalize(file.getName())) {
             return;
         }
 
+        final byte[] content = Files.readAllBytes(file.toPath());
+        final ObjectId blob;
+        try (final ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            blob = formatter.idFor(Constants.OBJ_BLOB, content);
+        }
+        Files.write(file.toPath(), normalizedContentOf(blob, () -> content));
+    }
+
+    /**
+     * @param fileName The name of a file.
+     * @return True iff files with the given name have to be normalized.
+     */
+    private static boolean shouldNormalize(@NonNull final String fileName) {
+        return (fileName.endsWith(".h") || fileName.endsWith(".c"))
+                && !fileName.contains("unicode") && !fileName.contains(".fnt");
+    }
+
+    /**
+     * Normalizes the content of a single file in style of Busyfix.
+     *
+     * @param content The content of the file to normalize.
+     * @return The normalized content.
+     * @throws IOException If the content cannot be read.
+     */
+    static byte @NonNull [] normalize(final byte @NonNull [] content) throws IOException {
         List<@NonNull String> inputFile = new ArrayList<>();
-        final FileOutputStream fos;
         try (final BufferedReader br = new BufferedReader(new InputStreamReader(
-                new FileInputStream(file.getPath()), StandardCharsets.UTF_8))) {
+                new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
             String line;
             while ((line = br.readLine()) != null) {
                 inputFile.add(line);
             }
-            file.delete();
-            tempFile = file;
-            fos = new FileOutputStream(tempFile);
         }
 
         inputFile = substituteLineContinuation(inputFile);
 
-        try (fos; final BufferedWriter bwr = new BufferedWriter(new OutputStreamWriter(fos))) {
+        final ByteArrayOutputStream normalized = new ByteArrayOutputStream(content.length + content.length / 8);
+        try (final BufferedWriter bwr = new BufferedWriter(new OutputStreamWriter(normalized))) {
             for (final String line : inputFile) {
                 bwr.write(normalizeLine(line));
                 bwr.write('\n');
             }
         }
+        return normalized.toByteArray();
     }
 
     /**
@@ -186,51 +416,77 @@ public class BusyboxRepository extends SPLRepository {
 
     /**
      * Normalizes a single line in style of Busyfix.
+     * The line is split into code and comments such that only code is normalized.
+     * To this end, the line is tokenized once (see {@link LineTokens}) and split iteratively.
+     * Code without any ENABLE_ or IF_ macro is not changed by the normalization and thus copied as is.
      *
      * @param line The line to normalize
      * @return The normalized line.
      */
-    private static @NonNull String normalizeLine(@NonNull final String line) {
-        final int index;
-        String temp;
+    static @NonNull String normalizeLine(@NonNull final String line) {
         if (line.length() == 0) {
             return line;
         }
 
-        if (doNotNormalizeDefUndef(line)) {
+        final LineTokens tokens = new LineTokens(line);
+        if (tokens.isDefineOrUndef) {
             return line;
         }
 
-        // don't normalize comments
-        if (line.contains("//")) {
-            index = line.indexOf("//");
-            return normalizeLine(notNull(line.substring(0, index))) + line.substring(index);
-        }
-        final boolean startsWith = line.replace("\\t", " ").trim().startsWith("*");
-        if (line.contains("/*") || line.contains("*/") || startsWith) {
-            // lines that start with or are block comments
-            if (line.replace("\\t", " ").trim().startsWith("/*") || startsWith) {
-                // fully comment
-                if (!line.contains("*/")) {
-                    return line;
+        final StringBuilder normalized = new StringBuilder(line.length());
+        // [from, to) is the part of the line that remains to be normalized.
+        // Everything from to to the end of the line is a comment that is appended in the end.
+        int from = 0;
+        int to = line.length();
+        while (from < to) {
+            // don't normalize comments
+            final int lineComment = tokens.lineComments.first(from, to, 2);
+            if (lineComment >= 0) {
+                to = lineComment;
+                continue;
+            }
 
-                } else {
-                    return line.substring(0, line.indexOf("*/") + 2)
-                            + normalizeLine(notNull(line.substring(line.indexOf("*/") + 2)));
-                }
+            final int codeStart = tokens.skipWhitespace(from, to);
+            final boolean startsWithStar = codeStart < to && line.charAt(codeStart) == '*';
+            final boolean startsWithComment = codeStart + 1 < to && line.startsWith("/*", codeStart);
+            if (startsWithStar || startsWithComment) {
+                // lines that start with or are block comments
+                final int commentEnd = tokens.blockCommentEnds.first(from, to, 2);
+                final int codeAfterComment = commentEnd < 0 ? to : commentEnd + 2;
+                normalized.append(line, from, codeAfterComment);
+                from = codeAfterComment;
+                continue;
+            }
 
-            } else if (line.contains("/*")) {
-                return normalizeLine(notNull(line.substring(0, line.indexOf("/*"))))
-                        + line.substring(line.indexOf("/*"));
+            final int commentStart = tokens.blockCommentStarts.first(from, to, 2);
+            if (commentStart >= 0) {
+                to = commentStart;
+                continue;
+            }
 
+            if (tokens.macros.first(from, to, tokens.macroLengths) < 0) {
+                normalized.append(line, from, to);
+            } else {
+                normalized.append(normalizeCode(notNull(line.substring(from, to))));
             }
+            from = to;
         }
+        return normalized.append(line, to, line.length()).toString();
+    }
+
+    /**
+     * Normalizes code without comments in style of Busyfix.
+     *
+     * @param code The code to normalize.
+     * @return The normalized code.
+     */
+    private static @NonNull String normalizeCode(@NonNull final String code) {
         // malformed comments in scripts/basic/fixdep.c
-        if (line.contains("if (!memcmp(p, \"IF_NOT\", 6)) goto conf7")
-                || line.contains("/*if (!memcmp(p, \"IF_\", 3)) ...*/")) {
-            return line;
+        if (code.contains("if (!memcmp(p, \"IF_NOT\", 6)) goto conf7")
+                || code.contains("/*if (!memcmp(p, \"IF_\", 3)) ...*/")) {
+            return code;
         }
-        temp = normalizeDefinedEnableMacro(line);
+        String temp = normalizeDefinedEnableMacro(code);
         temp = normalizeEnableMacro(temp);
         temp = normalizeEnableInline(temp);
         temp = normalizeIf(temp);
@@ -238,14 +494,117 @@ public class BusyboxRepository extends SPLRepository {
     }
 
     /**
-     * Checks whether the given line is a #define or #undef line.
-     *
-     * @param line The line to check.
-     * @return Whether the given line is a #define or #undef.
+     * Positions of the tokens in a line that are relevant for its normalization.
+     * All tokens are found in a single scan over the line.
      */
-    private static boolean doNotNormalizeDefUndef(@NonNull final String line) {
-        return line.contains("#undef") || line.contains("#define") || line.contains("# define")
-                || line.contains("# undef");
+    private static final class LineTokens {
+        private final String line;
+        private boolean isDefineOrUndef = false;
+        private final Positions lineComments = new Positions();
+        private final Positions blockCommentStarts = new Positions();
+        private final Positions blockCommentEnds = new Positions();
+        // ENABLE_ and IF_ macros
+        private final Positions macros = new Positions();
+        private final Positions macroLengths = new Positions();
+
+        LineTokens(final String line) {
+            this.line = line;
+            for (int i = 0; i < line.length(); ++i) {
+                switch (line.charAt(i)) {
+                    case '/' -> {
+                        if (line.startsWith("/", i + 1)) {
+                            lineComments.add(i);
+                        } else if (line.startsWith("*", i + 1)) {
+                            blockCommentStarts.add(i);
+                        }
+                    }
+                    case '*' -> {
+                        if (line.startsWith("/", i + 1)) {
+                            blockCommentEnds.add(i);
+                        }
+                    }
+                    case 'E' -> {
+                        if (line.startsWith("NABLE_", i + 1)) {
+                            macros.add(i);
+                            macroLengths.add(7);
+                        }
+                    }
+                    case 'I' -> {
+                        if (line.startsWith("F_", i + 1)) {
+                            macros.add(i);
+                            macroLengths.add(3);
+                        }
+                    }
+                    case '#' -> {
+                        final int directive = line.startsWith(" ", i + 1) ? i + 2 : i + 1;
+                        if (line.startsWith("define", directive) || line.startsWith("undef", directive)) {
+                            isDefineOrUndef = true;
+                            return;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        /**
+         * Skips leading whitespace in the given range.
+         * In style of Busyfix, escaped tabs (i.e., a backslash followed by a t) count as whitespace, too.
+         * @return The index of the first non-whitespace character in [from, to) or to if there is none.
+         */
+        int skipWhitespace(int from, final int to) {
+            while (from < to) {
+                if (line.charAt(from) <= ' ') {
+                    ++from;
+                } else if (line.charAt(from) == '\\' && from + 1 < to && line.charAt(from + 1) == 't') {
+                    from += 2;
+                } else {
+                    break;
+                }
+            }
+            return from;
+        }
+    }
+
+    /**
+     * Ascending start positions of tokens in a line.
+     */
+    private static final class Positions {
+        private int[] positions = new int[4];
+        private int size = 0;
+
+        void add(final int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, 2 * size);
+            }
+            positions[size++] = position;
+        }
+
+        /**
+         * @return The first position of a token of the given length within [from, to) or -1 if there is none.
+         */
+        int first(final int from, final int to, final int length) {
+            for (int i = 0; i < size && positions[i] + length <= to; ++i) {
+                if (positions[i] >= from) {
+                    return positions[i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return The first position of a token within [from, to) or -1 if there is none.
+         *         The length of each token is given by the respective entry of lengths.
+         */
+        int first(final int from, final int to, final Positions lengths) {
+            for (int i = 0; i < size; ++i) {
+                if (positions[i] >= from && positions[i] + lengths.positions[i] <= to) {
+                    return positions[i];
+                }
+            }
+            return -1;
+        }
     }
 
     /**
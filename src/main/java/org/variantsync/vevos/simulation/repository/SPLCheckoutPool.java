@@ -0,0 +1,306 @@
+package org.variantsync.vevos.simulation.repository;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.tinylog.Logger;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed number of checkouts of an {@link AbstractSPLRepository} that can be leased to workers.
+ * In contrast to {@link Repository#checkoutCommit(Commit)}, which changes the single working tree of a repository,
+ * each checkout of this pool is a plain directory snapshot of a commit.
+ * Thus, several commits can be processed in parallel without interfering with each other.
+ * Snapshots are written directly from the object database of the SPL repository (i.e., without any
+ * working tree or index) and the SPL repository itself is never checked out.
+ * When a snapshot is reused for another commit, only the files that differ between both commits are rewritten.
+ * This class is thread-safe.
+ */
+public class SPLCheckoutPool implements AutoCloseable {
+    private final AbstractSPLRepository splRepo;
+    private final ContentFilter filter;
+    private final List<Checkout> free;
+
+    /**
+     * Computes the content of a file that is written to a checkout (e.g., to preprocess source files).
+     * Implementations have to be thread-safe.
+     */
+    @FunctionalInterface
+    public interface ContentFilter {
+        /**
+         * @param gitPath Path of the file relative to the root of the repository in git's notation.
+         * @param blob The blob of the file in the checked out commit.
+         * @param reader Reader to read the blob with.
+         * @return The content to write to the checkout or null to write the content of the blob unchanged.
+         * @throws IOException if the content cannot be computed.
+         */
+        byte[] apply(String gitPath, ObjectId blob, ObjectReader reader) throws IOException;
+    }
+
+    /**
+     * Creates a new pool of checkouts.
+     * @param splRepo The repository whose commits should be checked out.
+     * @param checkoutsDir The directory in which the checkouts are stored (one subdirectory per checkout).
+     *                     Contents of this directory might be deleted.
+     * @param size The maximum number of commits that can be checked out at the same time.
+     */
+    public SPLCheckoutPool(final AbstractSPLRepository splRepo, final Path checkoutsDir, final int size) {
+        this(splRepo, checkoutsDir, size, (gitPath, blob, reader) -> null);
+    }
+
+    /**
+     * Creates a new pool of checkouts whose files are transformed by the given filter.
+     * Because checkouts are updated incrementally, the filter is only applied to files whose blob differs from the
+     * blob of the same file in the commit that was previously checked out.
+     * @param splRepo The repository whose commits should be checked out.
+     * @param checkoutsDir The directory in which the checkouts are stored (one subdirectory per checkout).
+     *                     Contents of this directory might be deleted.
+     * @param size The maximum number of commits that can be checked out at the same time.
+     * @param filter Computes the content of each file that is written to a checkout.
+     */
+    public SPLCheckoutPool(final AbstractSPLRepository splRepo, final Path checkoutsDir, final int size, final ContentFilter filter) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A checkout pool requires at least one checkout but got " + size + "!");
+        }
+        this.splRepo = splRepo;
+        this.filter = filter;
+        this.free = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            free.add(new Checkout(checkoutsDir.resolve("checkout-" + i)));
+        }
+    }
+
+    /**
+     * Leases a checkout of the given commit.
+     * Blocks until a checkout is available.
+     * The lease has to be closed when the checkout is not required anymore to make it available to other workers.
+     * @param commit The commit to check out.
+     * @return A lease to a directory containing the files of the given commit.
+     * @throws IOException if the commit could not be checked out.
+     * @throws InterruptedException if the current thread was interrupted while waiting for a free checkout.
+     */
+    public Lease lease(final SPLCommit commit) throws IOException, InterruptedException {
+        final Checkout checkout = take(commit);
+        final boolean isIncrementalUpdate = checkout.commitTree != null;
+        try {
+            try {
+                checkout.switchTo(commit);
+            } catch (final IOException e) {
+                if (!isIncrementalUpdate) {
+                    throw e;
+                }
+                // Updating the existing snapshot failed (e.g., because a file was replaced by a directory).
+                Logger.warn("Failed to update checkout " + checkout.path + " to commit " + commit + ". Rewriting it entirely.", e);
+                checkout.commitTree = null;
+                checkout.switchTo(commit);
+            }
+        } catch (final IOException | RuntimeException e) {
+            Logger.error("Failed to check out commit " + commit + " to " + checkout.path, e);
+            checkout.commitTree = null;
+            checkout.commit = null;
+            giveBack(checkout);
+            throw e;
+        }
+        return new Lease(checkout, commit);
+    }
+
+    /**
+     * Removes a free checkout from this pool.
+     * Prefers a checkout that already contains the given commit.
+     * Otherwise, the checkout that was returned the longest time ago is chosen.
+     */
+    private synchronized Checkout take(final SPLCommit commit) throws InterruptedException {
+        while (free.isEmpty()) {
+            wait();
+        }
+        for (int i = free.size() - 1; i >= 0; --i) {
+            if (commit.equals(free.get(i).commit)) {
+                return free.remove(i);
+            }
+        }
+        return free.remove(0);
+    }
+
+    private synchronized void giveBack(final Checkout checkout) {
+        free.add(checkout);
+        notify();
+    }
+
+    /**
+     * The repository is loaded lazily by {@link Repository#git()}, which is not thread-safe.
+     */
+    private synchronized org.eclipse.jgit.lib.Repository repository() throws IOException {
+        return splRepo.git().getRepository();
+    }
+
+    /**
+     * Closes the SPL repository.
+     * The snapshots are kept on disk.
+     */
+    @Override
+    public synchronized void close() {
+        splRepo.close();
+    }
+
+    /**
+     * A checkout of a commit that is exclusively available to the holder of the lease until the lease is closed.
+     */
+    public class Lease implements AutoCloseable {
+        private final Checkout checkout;
+        private final SPLCommit commit;
+        private boolean closed = false;
+
+        private Lease(final Checkout checkout, final SPLCommit commit) {
+            this.checkout = checkout;
+            this.commit = commit;
+        }
+
+        /**
+         * @return The directory containing the files of the leased commit.
+         */
+        public Path getPath() {
+            return checkout.path;
+        }
+
+        public SPLCommit getCommit() {
+            return commit;
+        }
+
+        /**
+         * Declares that files in the checkout were changed by the holder of this lease.
+         * The checkout will be rewritten entirely when it is leased again.
+         */
+        public void invalidate() {
+            checkout.commitTree = null;
+            checkout.commit = null;
+        }
+
+        /**
+         * Returns the checkout to the pool.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                giveBack(checkout);
+            }
+        }
+    }
+
+    /**
+     * A directory with a snapshot of the files of a commit.
+     */
+    private class Checkout {
+        private final Path path;
+        // The commit and tree currently on disk or null if the contents of the directory are unknown.
+        private SPLCommit commit = null;
+        private ObjectId commitTree = null;
+
+        Checkout(final Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Changes the files in this checkout such that they equal the files of the given commit.
+         */
+        void switchTo(final SPLCommit target) throws IOException {
+            final org.eclipse.jgit.lib.Repository repository = repository();
+            try (final ObjectReader reader = repository.newObjectReader();
+                 final RevWalk revWalk = new RevWalk(reader);
+                 final TreeWalk treeWalk = new TreeWalk(reader)) {
+                final ObjectId targetId = repository.resolve(target.id() + "^{commit}");
+                if (targetId == null) {
+                    throw new IOException("Commit " + target + " does not exist in " + splRepo.getPath());
+                }
+                final ObjectId targetTree = revWalk.parseCommit(targetId).getTree().getId();
+                if (targetTree.equals(commitTree)) {
+                    commit = target;
+                    return;
+                }
+
+                if (commitTree == null) {
+                    // The contents of the directory are unknown so we start from scratch.
+                    if (Files.exists(path)) {
+                        if (PathUtils.deleteDirectory(path).isFailure()) {
+                            throw new IOException("Could not clear checkout " + path);
+                        }
+                    }
+                    Files.createDirectories(path);
+                    treeWalk.addTree(new EmptyTreeIterator());
+                } else {
+                    treeWalk.addTree(commitTree);
+                }
+                treeWalk.addTree(targetTree);
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+
+                // Mark the checkout as unknown while it is being changed.
+                commitTree = null;
+                commit = null;
+                while (treeWalk.next()) {
+                    final Path file = path.resolve(treeWalk.getPathString());
+                    final FileMode oldMode = treeWalk.getFileMode(0);
+                    final FileMode newMode = treeWalk.getFileMode(1);
+                    if (newMode == FileMode.MISSING || newMode == FileMode.GITLINK) {
+                        if (oldMode != FileMode.MISSING && oldMode != FileMode.GITLINK) {
+                            Files.deleteIfExists(file);
+                            deleteEmptyParents(file);
+                        }
+                        continue;
+                    }
+
+                    Files.createDirectories(file.getParent());
+                    Files.deleteIfExists(file);
+                    if (newMode == FileMode.SYMLINK) {
+                        final String linkTarget = new String(reader.open(treeWalk.getObjectId(1), Constants.OBJ_BLOB).getCachedBytes());
+                        Files.createSymbolicLink(file, Path.of(linkTarget));
+                    } else {
+                        final byte[] filtered = filter.apply(treeWalk.getPathString(), treeWalk.getObjectId(1), reader);
+                        if (filtered != null) {
+                            Files.write(file, filtered);
+                        } else {
+                            try (final OutputStream out = Files.newOutputStream(file)) {
+                                reader.open(treeWalk.getObjectId(1), Constants.OBJ_BLOB).copyTo(out);
+                            }
+                        }
+                        if (newMode == FileMode.EXECUTABLE_FILE && !file.toFile().setExecutable(true)) {
+                            Logger.warn("Could not make " + file + " executable.");
+                        }
+                    }
+                }
+
+                commitTree = targetTree;
+                commit = target;
+            }
+        }
+
+        /**
+         * Deletes the directories containing the given deleted file until a non-empty directory is reached.
+         */
+        private void deleteEmptyParents(final Path deletedFile) throws IOException {
+            Path dir = deletedFile.getParent();
+            while (dir != null && !dir.equals(path)) {
+                try (final var contents = Files.list(dir)) {
+                    if (contents.findAny().isPresent()) {
+                        return;
+                    }
+                }
+                Files.delete(dir);
+                dir = dir.getParent();
+            }
+        }
+    }
+}
@@ -5,9 +5,11 @@ import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.tinylog.Logger;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class GitUtil {
@@ -44,4 +46,23 @@ public class GitUtil {
         }
     }
 
+    /**
+     * Converts a path relative to the root of a repository to the notation used in git trees
+     * (i.e., names separated by '/' without a leading separator).
+     * @param file A path relative to the root of a repository.
+     * @return The path in git's notation. The empty string denotes the root of the repository.
+     */
+    public static String toGitPath(final CaseSensitivePath file) {
+        final StringBuilder gitPath = new StringBuilder();
+        for (final Path name : file.path().normalize()) {
+            if (name.toString().isEmpty()) {
+                continue;
+            }
+            if (!gitPath.isEmpty()) {
+                gitPath.append('/');
+            }
+            gitPath.append(name);
+        }
+        return gitPath.toString();
+    }
 }
@@ -0,0 +1,138 @@
+package org.variantsync.vevos.simulation.util.fide;
+
+import org.prop4j.Node;
+import org.prop4j.NodeReader;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache for parsing propositional formulas from strings in Java syntax (e.g., "A && !B").
+ * Parsed formulas are normalized with {@link FixTrueFalse#EliminateTrueAndFalseInplace(Node)} and shared:
+ * Parsing the same string twice yields the very same Node object as long as the string was not evicted from the cache.
+ * Thus, equal presence conditions share a single object graph instead of being held in memory once per occurrence.
+ * <p>
+ * As formulas returned by this cache are shared, they must be treated as immutable.
+ * Any method that alters a formula inplace (e.g., {@link Node#simplifyTree()},
+ * {@link FixTrueFalse#EliminateTrueAndFalseInplace(Node)}, or {@link FormulaUtils#replaceAllInplace})
+ * has to be invoked on a {@link Node#clone() clone} instead.
+ * <p>
+ * The cache is thread-safe. It is split into independently locked segments, each evicting
+ * its least recently used entries once it is full.
+ */
+public class FormulaCache {
+    public static final int DEFAULT_CAPACITY = 1 << 17;
+    private static final int SEGMENTS = 16;
+    private static final FormulaCache instance = new FormulaCache(DEFAULT_CAPACITY);
+
+    // NodeReader is stateful so each thread gets its own.
+    private static final ThreadLocal<NodeReader> parsers = ThreadLocal.withInitial(() -> {
+        final NodeReader nodeReader = new NodeReader();
+        nodeReader.activateJavaSymbols(); // select the symbols used for parsing conjunction (&&), disjunction (||), ...
+        return nodeReader;
+    });
+
+    private final Segment[] segments;
+
+    /**
+     * Creates a new cache.
+     * @param capacity The maximum number of formulas to keep in this cache.
+     */
+    public FormulaCache(final int capacity) {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("The capacity of a formula cache must be at least " + SEGMENTS + " but was " + capacity);
+        }
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; ++i) {
+            segments[i] = new Segment(capacity / SEGMENTS);
+        }
+    }
+
+    /**
+     * @return The cache shared across the whole application.
+     */
+    public static FormulaCache Instance() {
+        return instance;
+    }
+
+    /**
+     * Parses the given formula or returns the cached formula if the same string was parsed before.
+     * The returned formula must not be altered (see class documentation).
+     * Strings that cannot be parsed are not cached.
+     * @param formula A propositional formula in Java syntax.
+     * @return The parsed formula without unnecessary True and False values, or the reason why parsing failed.
+     */
+    public Result<Node, ParseException> parse(final String formula) {
+        final Segment segment = segmentOf(formula);
+        Node parsed = segment.get(formula);
+        if (parsed != null) {
+            return Result.Success(parsed);
+        }
+
+        // Parse outside of the lock. In case of a race, the formula that was cached first wins.
+        final NodeReader nodeReader = parsers.get();
+        parsed = nodeReader.stringToNode(formula);
+        if (parsed == null) {
+            return Result.Failure(nodeReader.getErrorMessage());
+        }
+        return Result.Success(segment.putIfAbsent(formula, FixTrueFalse.EliminateTrueAndFalseInplace(parsed)));
+    }
+
+    /**
+     * @return The number of formulas currently held in this cache.
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Removes all formulas from this cache.
+     */
+    public void clear() {
+        for (final Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentOf(final String formula) {
+        final int h = formula.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static class Segment {
+        private final LinkedHashMap<String, Node> formulas;
+
+        Segment(final int capacity) {
+            this.formulas = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Node> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized Node get(final String formula) {
+            return formulas.get(formula);
+        }
+
+        synchronized Node putIfAbsent(final String formula, final Node parsed) {
+            final Node cached = formulas.putIfAbsent(formula, parsed);
+            return cached == null ? parsed : cached;
+        }
+
+        synchronized int size() {
+            return formulas.size();
+        }
+
+        synchronized void clear() {
+            formulas.clear();
+        }
+    }
+}
@@ -46,7 +46,8 @@ public class PathUtils {
      * @see PathUtils::createEmpty(Path)
      */
     public static boolean createEmpty(final File f) throws IOException {
-        if (!f.getParentFile().exists() && !f.getParentFile().mkdirs()) {
+        // The directory might have been created concurrently in between.
+        if (!f.getParentFile().exists() && !f.getParentFile().mkdirs() && !f.getParentFile().isDirectory()) {
             throw new IOException("Creating directory " + f.getParentFile() + " failed. Thus, the file " + f.getAbsolutePath() + " could not be created!");
         }
         return f.createNewFile();
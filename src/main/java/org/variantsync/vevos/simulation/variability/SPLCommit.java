@@ -1,21 +1,17 @@
 package org.variantsync.vevos.simulation.variability;
 
 import de.ovgu.featureide.fm.core.base.IFeatureModel;
-import net.lingala.zip4j.ZipFile;
 import org.variantsync.functjonal.CachedValue;
 import org.variantsync.functjonal.Functjonal;
 import org.variantsync.functjonal.Lazy;
-import org.variantsync.functjonal.functions.FragileFunction;
 import org.variantsync.vevos.simulation.io.Resources;
-import org.variantsync.vevos.simulation.io.data.CSV;
+import org.variantsync.vevos.simulation.io.data.DatasetArchives;
 import org.variantsync.vevos.simulation.repository.Commit;
-import org.tinylog.Logger;
 import org.variantsync.vevos.simulation.util.io.TypedPath;
 import org.variantsync.vevos.simulation.variability.pc.Artefact;
 import org.variantsync.vevos.simulation.variability.pc.EFilterOutcome;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.CodeMatching;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -74,39 +70,37 @@ public class SPLCommit extends Commit implements CachedValue {
         this.commitMessagePath = TypedPath.unwrapNullable(commitMessage);
         this.filterCountsPath = TypedPath.unwrapNullable(filterCounts);
 
-        final FragileFunction<Path, Path, IOException> tryUnzip = SPLCommit::tryUnzip;
-
         // Lazy loading of log file
         this.kernelHavenLog = Functjonal.mapFragileLazily(kernelHavenLogPath,
-                        tryUnzip.andThen(Files::readString),
+                        path -> DatasetArchives.read(path, Files::readString),
                         () -> "Was not able to load KernelHaven log for commit " + commitId);
         // Lazy loading of feature model
-        this.featureModel = Functjonal.mapFragileLazily(featureModelPath, tryUnzip
-                        .andThen(path -> Resources.Instance().load(IFeatureModel.class, path)),
+        this.featureModel = Functjonal.mapFragileLazily(featureModelPath,
+                        path -> DatasetArchives.read(path, p -> Resources.Instance().load(IFeatureModel.class, p)),
                         () -> "Was not able to load feature model for id " + commitId);
         // Lazy loading of presence conditions
         this.presenceConditionsBefore = Functjonal.mapFragileLazily(presenceConditionsBeforePath,
-                        tryUnzip.andThen(path -> Resources.Instance().load(Artefact.class, path)),
+                        path -> DatasetArchives.read(path, p -> Resources.Instance().load(Artefact.class, p)),
                         () -> "Was not able to load 'before' presence conditions for id "
                                         + commitId);
         this.presenceConditionsAfter = Functjonal.mapFragileLazily(presenceConditionsAfterPath,
-                        tryUnzip.andThen(path -> Resources.Instance().load(Artefact.class, path)),
+                        path -> DatasetArchives.read(path, p -> Resources.Instance().load(Artefact.class, p)),
                         () -> "Was not able to load 'after' presence conditions for id "
                                         + commitId);
         this.presenceConditionsFallback = Functjonal.mapFragileLazily(
                         presenceConditionsFallbackPath,
-                        tryUnzip.andThen(path -> Resources.Instance().load(Artefact.class, path)),
+                        path -> DatasetArchives.read(path, p -> Resources.Instance().load(Artefact.class, p)),
                         () -> "Was not able to load fallback presence conditions for id "
                                         + commitId);
         this.codeMatching = tryToLoadMatching();
         // Lazy loading of commit message
         this.message = Functjonal.mapFragileLazily(commitMessagePath,
-                        tryUnzip.andThen(Files::readString),
+                        path -> DatasetArchives.read(path, Files::readString),
                         () -> "Was not able to load commit message for id " + commitId);
         // Lazy loading of filter counts
-        this.filterCounts = Functjonal.mapFragileLazily(filterCountsPath, tryUnzip.andThen(path -> {
+        this.filterCounts = Functjonal.mapFragileLazily(filterCountsPath, path -> DatasetArchives.read(path, p -> {
             final Map<EFilterOutcome, Integer> countsMap = new HashMap<>();
-            Files.readAllLines(path).stream().map(l -> l.split(":"))
+            Files.readAllLines(p).stream().map(l -> l.split(":"))
                             .forEach(parts -> countsMap.put(EFilterOutcome.valueOf(parts[0]),
                                             Integer.parseInt(parts[1].trim())));
             return countsMap;
@@ -114,37 +108,13 @@ public class SPLCommit extends Commit implements CachedValue {
     }
 
     private Lazy<Optional<CodeMatching>> tryToLoadMatching() {
-        Lazy<Optional<CSV>> matchingBefore = Functjonal.mapFragileLazily(codeMatchingBeforePath,
-                path -> Resources.Instance().load(CSV.class, path),
-                () -> "Was not able to load 'after' presence conditions for id "
-                        + this.id());
-        Lazy<Optional<CSV>> matchingAfter = Functjonal.mapFragileLazily(codeMatchingAfterPath,
-                path -> Resources.Instance().load(CSV.class, path),
-                () -> "Was not able to load 'after' presence conditions for id "
-                        + this.id());
-        return CodeMatching.lazyFromCSVs(matchingBefore, matchingAfter);
-    }
-
-    private static Path tryUnzip(final Path path) throws IOException {
-        if (!Files.exists(path)) {
-            final Path zippedParent = Path.of(path.getParent() + ".zip");
-            Logger.debug("Checking whether there is an archive " + zippedParent);
-            if (Files.exists(zippedParent)) {
-                Logger.debug("Archive " + zippedParent.getFileName() + " found.");
-                try (var zip = new ZipFile(zippedParent.toFile())) {
-                    zip.extractAll(String.valueOf(zippedParent.getParent()));
-                } catch (final IOException e) {
-                    Logger.error("Was not able to unzip " + zippedParent, e);
-                    throw e;
-                }
-            } else {
-                Logger.warn("Path " + path + " does not exist and no ZIP file found.");
-                return null;
-            }
-        } else {
-            Logger.debug("Path " + path + " exists. No unzip required.");
+        if (codeMatchingBeforePath == null || codeMatchingAfterPath == null) {
+            return CodeMatching.lazyFromCSVFiles(codeMatchingBeforePath, codeMatchingAfterPath);
         }
-        return path;
+        return Functjonal.mapFragileLazily(codeMatchingBeforePath,
+                        before -> DatasetArchives.read(before, b -> DatasetArchives.read(codeMatchingAfterPath,
+                                        after -> CodeMatching.fromCSVFiles(b, after))),
+                        () -> "Was not able to load code matching for id " + id());
     }
 
     /**
@@ -3,15 +3,21 @@ package org.variantsync.vevos.simulation.variability.pc;
 import org.prop4j.Node;
 import org.variantsync.functjonal.Result;
 import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
 import org.variantsync.vevos.simulation.variability.pc.visitor.ArtefactVisitor;
 import org.variantsync.vevos.simulation.variability.pc.visitor.ArtefactVisitorFocus;
 import org.variantsync.vevos.simulation.variability.pc.visitor.common.FilePCQuery;
 import org.variantsync.vevos.simulation.variability.pc.visitor.common.LinePCQuery;
 import org.variantsync.vevos.simulation.variability.pc.visitor.common.PrettyPrinter;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * A mapping of artefacts to features.
  */
@@ -48,7 +54,50 @@ public interface Artefact {
      * @param targetDir Output directory the variant will be generated into.
      * @param strategy Strategy describing how to deal with errors.
      */
-    Result<GroundTruth, Exception> generateVariant(Variant variant, CaseSensitivePath sourceDir, CaseSensitivePath targetDir, VariantGenerationOptions strategy);
+    default Result<GroundTruth, Exception> generateVariant(final Variant variant, final CaseSensitivePath sourceDir, final CaseSensitivePath targetDir, final VariantGenerationOptions strategy) {
+        return generateVariant(variant, SPLSource.of(sourceDir), targetDir, strategy);
+    }
+
+    /**
+     * Same as {@link #generateVariant(Variant, CaseSensitivePath, CaseSensitivePath, VariantGenerationOptions)} but
+     * reads the files of the product line from the given source (e.g., directly from a git commit).
+     * @param variant The variant for which the feature traces should be reduced.
+     * @param source The product line from which variants should be build.
+     * @param targetDir Output directory the variant will be generated into.
+     * @param strategy Strategy describing how to deal with errors.
+     */
+    Result<GroundTruth, Exception> generateVariant(Variant variant, SPLSource source, CaseSensitivePath targetDir, VariantGenerationOptions strategy);
+
+    /**
+     * Projects this feature trace to all variants in the given sample.
+     * The result is the same as invoking {@link #generateVariant(Variant, CaseSensitivePath, CaseSensitivePath, VariantGenerationOptions)}
+     * for each variant but implementations may share work among the variants (e.g., read each source file only once).
+     * @param sample The variants for which the feature traces should be reduced.
+     * @param sourceDir The directory of the product line from which variants should be build.
+     * @param targetDirOf Output directory each variant will be generated into.
+     * @param strategy Strategy describing how to deal with errors.
+     * @return The result of generating each variant in the order of the given sample.
+     */
+    default Map<Variant, Result<GroundTruth, Exception>> generateVariants(final Sample sample, final CaseSensitivePath sourceDir, final Function<Variant, CaseSensitivePath> targetDirOf, final VariantGenerationOptions strategy) {
+        return generateVariants(sample, SPLSource.of(sourceDir), targetDirOf, strategy);
+    }
+
+    /**
+     * Same as {@link #generateVariants(Sample, CaseSensitivePath, Function, VariantGenerationOptions)} but
+     * reads the files of the product line from the given source (e.g., directly from a git commit).
+     * @param sample The variants for which the feature traces should be reduced.
+     * @param source The product line from which variants should be build.
+     * @param targetDirOf Output directory each variant will be generated into.
+     * @param strategy Strategy describing how to deal with errors.
+     * @return The result of generating each variant in the order of the given sample.
+     */
+    default Map<Variant, Result<GroundTruth, Exception>> generateVariants(final Sample sample, final SPLSource source, final Function<Variant, CaseSensitivePath> targetDirOf, final VariantGenerationOptions strategy) {
+        final Map<Variant, Result<GroundTruth, Exception>> results = new LinkedHashMap<>();
+        for (final Variant variant : sample) {
+            results.put(variant, generateVariant(variant, source, targetDirOf.apply(variant), strategy));
+        }
+        return results;
+    }
 
     /**
      * Accepts the given visitor to traverse this artefact (see visitor pattern).
@@ -115,7 +115,7 @@ public abstract class ArtefactTree<Child extends ArtefactTree<?>> implements Art
     }
 
     public int getNumberOfSubtrees() {
-        return subtrees.size();
+        return getSubtrees().size();
     }
 
     public void addTraces(final Collection<Child> annotations) {
@@ -130,7 +130,7 @@ public abstract class ArtefactTree<Child extends ArtefactTree<?>> implements Art
      * @param child The subtree to add.
      */
     public void addTrace(final Child child) {
-        subtrees.add(child);
+        getSubtrees().add(child);
         child.setParent(this);
     }
 
@@ -138,6 +138,7 @@ public abstract class ArtefactTree<Child extends ArtefactTree<?>> implements Art
      * Removes all subtrees.
      */
     public void clear() {
+        final List<Child> subtrees = getSubtrees();
         for (final Child c : subtrees) {
             c.setParent(null);
         }
@@ -145,7 +146,7 @@ public abstract class ArtefactTree<Child extends ArtefactTree<?>> implements Art
     }
 
     public boolean isLeaf() {
-        return subtrees.isEmpty();
+        return getSubtrees().isEmpty();
     }
 
 
@@ -155,7 +156,7 @@ public abstract class ArtefactTree<Child extends ArtefactTree<?>> implements Art
     @Override
     @Deprecated
     public void simplify() {
-        for (final Child c : subtrees) {
+        for (final Child c : getSubtrees()) {
             c.simplify();
         }
     }
@@ -166,7 +167,7 @@ public abstract class ArtefactTree<Child extends ArtefactTree<?>> implements Art
         if (o == null || getClass() != o.getClass()) return false;
         final ArtefactTree<?> that = (ArtefactTree<?>) o;
         // don't compare parents so we only compare subtrees
-        return featureMapping.equals(that.featureMapping) && subtrees.equals(that.subtrees);
+        return featureMapping.equals(that.featureMapping) && getSubtrees().equals(that.getSubtrees());
     }
 
     @Override
@@ -0,0 +1,537 @@
+package org.variantsync.vevos.simulation.variability.pc;
+
+import org.prop4j.Node;
+import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.config.FeatureIndex;
+import org.variantsync.vevos.simulation.feature.sampling.IndexedSample;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.BlockMatching;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
+import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantAnnotation;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLineChunk;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLineRange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable, flattened representation of the annotation tree of a single source code file.
+ * Annotations are identified by their index in a preorder traversal of the tree (see
+ * {@link LineBasedAnnotation#getPreorderIndex()}): The root annotation has index 0 and the subtree of annotation i
+ * consists of the annotations i to {@link #getSubtreeEnd(int) getSubtreeEnd(i)} - 1.
+ * All properties of annotations are stored in arrays indexed by annotation and formulas are stored once in a table
+ * to which annotations refer by index.
+ * In contrast to a tree of {@link LineBasedAnnotation}s, this representation needs a constant number of objects per
+ * file, which matters when the annotations of many commits are kept in memory.
+ * {@link LineBasedAnnotation} views of this tree are created on demand (see {@link #toAnnotation()}).
+ */
+public final class FlatAnnotationTree {
+    private static final LineType[] LINE_TYPES = LineType.values();
+    private static final AnnotationStyle[] STYLES = AnnotationStyle.values();
+
+    private final Node[] formulas;
+    private final int size;
+    private final int[] lineFrom;
+    private final int[] lineTo;
+    private final int[] parent;
+    private final int[] subtreeEnd;
+    private final byte[] lineType;
+    private final byte[] style;
+    private final int[] featureMapping;
+    private final int[] presenceCondition;
+
+    private FlatAnnotationTree(final Builder builder) {
+        this.formulas = builder.formulas;
+        this.size = builder.size;
+        this.lineFrom = Arrays.copyOf(builder.lineFrom, size);
+        this.lineTo = Arrays.copyOf(builder.lineTo, size);
+        this.parent = Arrays.copyOf(builder.parent, size);
+        this.subtreeEnd = Arrays.copyOf(builder.subtreeEnd, size);
+        this.lineType = Arrays.copyOf(builder.lineType, size);
+        this.style = Arrays.copyOf(builder.style, size);
+        this.featureMapping = Arrays.copyOf(builder.featureMapping, size);
+        this.presenceCondition = Arrays.copyOf(builder.presenceCondition, size);
+    }
+
+    /**
+     * Flattens the given annotation tree.
+     * Equal formulas are stored only once.
+     * @param root The root annotation of a file.
+     * @return A flattened copy of the given tree.
+     */
+    public static FlatAnnotationTree of(final LineBasedAnnotation root) {
+        final List<Node> formulas = new ArrayList<>();
+        final Map<Node, Integer> formulaIndices = new HashMap<>();
+        final Builder builder = new Builder(null);
+        add(root, -1, builder, formulas, formulaIndices);
+        builder.formulas = formulas.toArray(Node[]::new);
+        return builder.build();
+    }
+
+    private static void add(
+            final LineBasedAnnotation annotation,
+            final int parent,
+            final Builder builder,
+            final List<Node> formulas,
+            final Map<Node, Integer> formulaIndices) {
+        final int index = builder.add(
+                parent,
+                annotation.getLineType(),
+                annotation.getStyle(),
+                formulaIndices.computeIfAbsent(annotation.getFeatureMapping(), f -> { formulas.add(f); return formulas.size() - 1; }),
+                formulaIndices.computeIfAbsent(annotation.getPresenceCondition(), f -> { formulas.add(f); return formulas.size() - 1; }),
+                annotation.getLineFrom(),
+                annotation.getLineTo());
+        for (final LineBasedAnnotation subtree : annotation.getSubtrees()) {
+            add(subtree, index, builder, formulas, formulaIndices);
+        }
+        builder.endSubtree(index);
+    }
+
+    /**
+     * @return The number of annotations in this tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getLineFrom(final int annotation) {
+        return lineFrom[annotation];
+    }
+
+    public int getLineTo(final int annotation) {
+        return lineTo[annotation];
+    }
+
+    public int getLineCount(final int annotation) {
+        return lineTo[annotation] - lineFrom[annotation] + 1;
+    }
+
+    public boolean annotates(final int annotation, final int lineNumber) {
+        return lineFrom[annotation] <= lineNumber && lineNumber <= lineTo[annotation];
+    }
+
+    /**
+     * @return The index of the parent of the given annotation or -1 for the root annotation.
+     */
+    public int getParent(final int annotation) {
+        return parent[annotation];
+    }
+
+    /**
+     * @return The index after the last annotation in the subtree of the given annotation.
+     *         The first subtree of an annotation i (if any) has index i + 1 and each next subtree starts at the subtree
+     *         end of its previous sibling.
+     */
+    public int getSubtreeEnd(final int annotation) {
+        return subtreeEnd[annotation];
+    }
+
+    public LineType getLineType(final int annotation) {
+        return LINE_TYPES[lineType[annotation]];
+    }
+
+    public AnnotationStyle getStyle(final int annotation) {
+        return STYLES[style[annotation]];
+    }
+
+    public Node getFeatureMapping(final int annotation) {
+        return formulas[featureMapping[annotation]];
+    }
+
+    public Node getPresenceCondition(final int annotation) {
+        return formulas[presenceCondition[annotation]];
+    }
+
+    /**
+     * Creates a view of the given annotation without subtrees.
+     */
+    public LineBasedAnnotation getAnnotation(final int annotation) {
+        return new LineBasedAnnotation(
+                getFeatureMapping(annotation), getPresenceCondition(annotation), getLineType(annotation),
+                lineFrom[annotation], lineTo[annotation], getStyle(annotation));
+    }
+
+    /**
+     * Creates a tree of {@link LineBasedAnnotation} views of all annotations in this tree.
+     * The views are indexed (see {@link LineBasedAnnotation#indexAnnotations()}) such that each view has the same
+     * index as the annotation it views.
+     * @return The root annotation of the created tree.
+     */
+    public LineBasedAnnotation toAnnotation() {
+        return toAnnotations()[0];
+    }
+
+    /**
+     * Same as {@link #toAnnotation()} but returns the view of each annotation at the index of the annotation.
+     */
+    private LineBasedAnnotation[] toAnnotations() {
+        final LineBasedAnnotation[] views = new LineBasedAnnotation[size];
+        toAnnotation(0, views);
+        views[0].indexAnnotations();
+        return views;
+    }
+
+    private LineBasedAnnotation toAnnotation(final int annotation, final LineBasedAnnotation[] views) {
+        final List<LineBasedAnnotation> subtrees = new ArrayList<>();
+        for (int subtree = annotation + 1; subtree < subtreeEnd[annotation]; subtree = subtreeEnd[subtree]) {
+            subtrees.add(toAnnotation(subtree, views));
+        }
+        final LineBasedAnnotation view = new LineBasedAnnotation(
+                getFeatureMapping(annotation), getPresenceCondition(annotation), getLineType(annotation),
+                lineFrom[annotation], lineTo[annotation], getStyle(annotation), subtrees);
+        views[annotation] = view;
+        return view;
+    }
+
+    /**
+     * Finds the innermost annotation below the root annotation that annotates the given line.
+     * If several subtrees of an annotation annotate the line, the first one is chosen.
+     * @return The index of the found annotation or -1 if no annotation except for the root annotation annotates the line.
+     */
+    public int getInnermostAnnotationOf(final int lineNumber) {
+        int found = -1;
+        int annotation = 1;
+        int end = subtreeEnd[0];
+        while (annotation < end) {
+            if (annotates(annotation, lineNumber)) {
+                found = annotation;
+                end = subtreeEnd[annotation];
+                ++annotation;
+            } else {
+                annotation = subtreeEnd[annotation];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Derives the annotations of this tree that are present in the given variant.
+     * The result is the same as for {@link LineBasedAnnotation#deriveForVariant(Variant, ArtefactFilter)} on the
+     * {@link #toAnnotation() view} of this tree.
+     * The filter is invoked for the same annotations and in the same order as on the view.
+     * {@link ArtefactFilter#isLocal() Local} filters are invoked with views without parent and subtrees
+     * (see {@link #getAnnotation(int)}). All other filters are invoked with the views of a tree of views
+     * (see {@link #toAnnotation()}), which is created for each derivation.
+     * In both cases, the views do not belong to a file.
+     * @return The derived annotations or empty if the root annotation is not present in the variant.
+     */
+    public Optional<Derivation> deriveForVariant(final Variant variant, final ArtefactFilter<LineBasedAnnotation> annotationFilter) {
+        return deriveForVariant(annotation -> variant.isImplementing(getPresenceCondition(annotation)), annotationFilter);
+    }
+
+    /**
+     * Same as {@link #deriveForVariant(Variant, ArtefactFilter)} for the variant with the given index in the sample
+     * of the given presence conditions.
+     * @param presenceConditions The presence conditions of this tree evaluated for a sample (see {@link #evaluate(Sample)}).
+     * @param variant The index of the variant in the sample.
+     */
+    public Optional<Derivation> deriveForVariant(final EvaluatedPresenceConditions presenceConditions, final int variant, final ArtefactFilter<LineBasedAnnotation> annotationFilter) {
+        return deriveForVariant(annotation -> presenceConditions.isImplementing(annotation, variant), annotationFilter);
+    }
+
+    private Optional<Derivation> deriveForVariant(final IntPredicate isImplementing, final ArtefactFilter<LineBasedAnnotation> annotationFilter) {
+        final int[] variantIndices = new int[size];
+        Arrays.fill(variantIndices, -1);
+        final Builder variantTree = new Builder(formulas, size);
+        final IntFunction<LineBasedAnnotation> viewOf;
+        if (annotationFilter.isLocal()) {
+            viewOf = this::getAnnotation;
+        } else {
+            final LineBasedAnnotation[] views = toAnnotations();
+            viewOf = annotation -> views[annotation];
+        }
+        if (deriveForVariant(0, isImplementing, annotationFilter, viewOf, 0, -1, variantTree, variantIndices) < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new Derivation(variantTree.build(), variantIndices));
+    }
+
+    /**
+     * Prepares the evaluation of the presence conditions of this tree for all variants of the given sample at once.
+     * The sample is indexed over the features of the presence conditions (see {@link IndexedSample}) and each distinct
+     * presence condition is evaluated at most once, when it is required for the first time.
+     * @param sample The variants to evaluate the presence conditions for.
+     * @return The presence conditions of this tree for the given sample.
+     */
+    public EvaluatedPresenceConditions evaluate(final Sample sample) {
+        final List<Node> presenceConditions = new ArrayList<>();
+        final boolean[] isPresenceCondition = new boolean[formulas.length];
+        for (int annotation = 0; annotation < size; ++annotation) {
+            if (!isPresenceCondition[presenceCondition[annotation]]) {
+                isPresenceCondition[presenceCondition[annotation]] = true;
+                presenceConditions.add(getPresenceCondition(annotation));
+            }
+        }
+        return new EvaluatedPresenceConditions(sample.index(FeatureIndex.ofFeaturesIn(presenceConditions)));
+    }
+
+    /**
+     * @return The index of the derived annotation or -1 if the annotation is not present in the variant.
+     */
+    private int deriveForVariant(
+            final int annotation,
+            final IntPredicate isImplementing,
+            final ArtefactFilter<LineBasedAnnotation> annotationFilter,
+            final IntFunction<LineBasedAnnotation> viewOf,
+            int offset,
+            final int variantParent,
+            final Builder variantTree,
+            final int[] variantIndices) {
+        // The filter is asked first, as in LineBasedAnnotation, such that stateful filters observe the same calls.
+        if (!annotationFilter.shouldKeep(viewOf.apply(annotation)) || !isImplementing.test(annotation)) {
+            return -1;
+        }
+
+        final int derived = variantTree.add(
+                variantParent, getLineType(annotation), AnnotationStyle.External,
+                featureMapping[annotation], presenceCondition[annotation], lineFrom[annotation] + offset, 0);
+        for (int subtree = annotation + 1; subtree < subtreeEnd[annotation]; subtree = subtreeEnd[subtree]) {
+            final int derivedSubtree = deriveForVariant(subtree, isImplementing, annotationFilter, viewOf, offset, derived, variantTree, variantIndices);
+            // If the subtree is still present in the variant, it might have shrunk.
+            offset -= derivedSubtree < 0
+                    ? getLineCount(subtree)
+                    : getLineCount(subtree) - (variantTree.lineTo[derivedSubtree] - variantTree.lineFrom[derivedSubtree] + 1);
+        }
+        variantTree.lineTo[derived] = lineTo[annotation] + offset;
+        variantTree.endSubtree(derived);
+        variantIndices[annotation] = derived;
+        return derived;
+    }
+
+    /**
+     * Computes all lines that should be included in a variant when evaluating the annotations in this tree.
+     * The result is the same as for {@link LineBasedAnnotation#getLinesToCopy} on the {@link #toAnnotation() view}
+     * of this tree.
+     * @param isIncluded Selects the subtrees to consider by their index.
+     * @return All line numbers that should be copied from the SPL file to the variant file. 1-based.
+     */
+    public VariantAnnotation getLinesToCopy(final IntPredicate isIncluded) {
+        return getLinesToCopy(0, isIncluded);
+    }
+
+    private VariantAnnotation getLinesToCopy(final int annotation, final IntPredicate isIncluded) {
+        final List<VariantLineChunk> chunksToWrite = new ArrayList<>();
+        int currentLine = lineFrom[annotation];
+        for (int subtree = annotation + 1; subtree < subtreeEnd[annotation]; subtree = subtreeEnd[subtree]) {
+            if (currentLine < lineFrom[subtree]) {
+                chunksToWrite.add(new VariantLineRange(currentLine, lineFrom[subtree] - 1));
+            }
+
+            if (isIncluded.test(subtree)) {
+                chunksToWrite.add(getLinesToCopy(subtree, isIncluded));
+            }
+
+            currentLine = lineTo[subtree] + 1;
+        }
+
+        if (currentLine <= lineTo[annotation]) {
+            chunksToWrite.add(new VariantLineRange(currentLine, lineTo[annotation]));
+        }
+
+        return new VariantAnnotation(getFeatureMapping(annotation), chunksToWrite);
+    }
+
+    /**
+     * The presence conditions of a {@link FlatAnnotationTree} evaluated for all variants of a sample.
+     * Not thread-safe.
+     */
+    public final class EvaluatedPresenceConditions {
+        private final IndexedSample sample;
+        // The variants implementing each formula of the formula table or null if not evaluated yet.
+        private final long[][] implementing = new long[formulas.length][];
+
+        private EvaluatedPresenceConditions(final IndexedSample sample) {
+            this.sample = sample;
+        }
+
+        /**
+         * @return True iff the variant with the given index in the sample implements the presence condition of the
+         *         given annotation.
+         */
+        public boolean isImplementing(final int annotation, final int variant) {
+            final int formula = presenceCondition[annotation];
+            if (implementing[formula] == null) {
+                implementing[formula] = sample.implementing(formulas[formula]);
+            }
+            return IndexedSample.contains(implementing[formula], variant);
+        }
+    }
+
+    /**
+     * The annotations of a variant derived from a {@link FlatAnnotationTree} of an SPL file.
+     */
+    public static final class Derivation {
+        private final FlatAnnotationTree variant;
+        private final int[] variantIndices;
+
+        private Derivation(final FlatAnnotationTree variant, final int[] variantIndices) {
+            this.variant = variant;
+            this.variantIndices = variantIndices;
+        }
+
+        /**
+         * @return The annotations of the variant. The derived tree shares the formula table of the SPL tree.
+         */
+        public FlatAnnotationTree getVariant() {
+            return variant;
+        }
+
+        /**
+         * @return The index of the variant annotation derived from the given SPL annotation or -1 if the SPL
+         *         annotation is not present in the variant.
+         */
+        public int getVariantIndexOf(final int splAnnotation) {
+            return variantIndices[splAnnotation];
+        }
+
+        public boolean isPresentInVariant(final int splAnnotation) {
+            return variantIndices[splAnnotation] >= 0;
+        }
+
+        /**
+         * Matches the views of the SPL tree and the variant tree.
+         * @param splRoot The {@link #toAnnotation() view} of the SPL tree this derivation was computed from.
+         * @param variantRoot The {@link #toAnnotation() view} of the variant tree.
+         * @return A matching of the given views as computed by {@link LineBasedAnnotation#deriveForVariant}.
+         */
+        public BlockMatching matching(final LineBasedAnnotation splRoot, final LineBasedAnnotation variantRoot) {
+            final LineBasedAnnotation[] splAnnotations = inPreorder(splRoot, variantIndices.length);
+            final LineBasedAnnotation[] variantAnnotations = inPreorder(variantRoot, variant.size());
+            final BlockMatching matching = new BlockMatching(splAnnotations.length);
+            for (int i = 0; i < splAnnotations.length; ++i) {
+                if (variantIndices[i] >= 0) {
+                    matching.put(splAnnotations[i], variantAnnotations[variantIndices[i]]);
+                }
+            }
+            return matching;
+        }
+
+        private static LineBasedAnnotation[] inPreorder(final LineBasedAnnotation root, final int size) {
+            final LineBasedAnnotation[] annotations = new LineBasedAnnotation[size];
+            final int count = collect(root, annotations, 0);
+            if (count != size) {
+                throw new IllegalArgumentException("Expected a tree of " + size + " annotations but got " + count + " annotations!");
+            }
+            return annotations;
+        }
+
+        private static int collect(final LineBasedAnnotation annotation, final LineBasedAnnotation[] annotations, int next) {
+            if (next < annotations.length) {
+                annotations[next] = annotation;
+            }
+            ++next;
+            for (final LineBasedAnnotation subtree : annotation.getSubtrees()) {
+                next = collect(subtree, annotations, next);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Builds a {@link FlatAnnotationTree} from annotations given in preorder.
+     * Each annotation is added after its parent and {@link #endSubtree(int) ended} after its last subtree.
+     */
+    public static final class Builder {
+        private Node[] formulas;
+        private int size = 0;
+        private int[] lineFrom;
+        private int[] lineTo;
+        private int[] parent;
+        private int[] subtreeEnd;
+        private byte[] lineType;
+        private byte[] style;
+        private int[] featureMapping;
+        private int[] presenceCondition;
+
+        /**
+         * @param formulas The formula table to which added annotations refer. The table is not copied.
+         */
+        public Builder(final Node[] formulas) {
+            this(formulas, 8);
+        }
+
+        private Builder(final Node[] formulas, final int capacity) {
+            this.formulas = formulas;
+            final int initialCapacity = Math.max(capacity, 1);
+            lineFrom = new int[initialCapacity];
+            lineTo = new int[initialCapacity];
+            parent = new int[initialCapacity];
+            subtreeEnd = new int[initialCapacity];
+            lineType = new byte[initialCapacity];
+            style = new byte[initialCapacity];
+            featureMapping = new int[initialCapacity];
+            presenceCondition = new int[initialCapacity];
+        }
+
+        /**
+         * Adds the next annotation in preorder.
+         * @param parent The index of the parent annotation or -1 for the root annotation.
+         * @param featureMapping The index of the feature mapping in the formula table.
+         * @param presenceCondition The index of the presence condition in the formula table.
+         * @return The index of the added annotation.
+         */
+        public int add(
+                final int parent,
+                final LineType lineType,
+                final AnnotationStyle style,
+                final int featureMapping,
+                final int presenceCondition,
+                final int lineFrom,
+                final int lineTo) {
+            if ((parent < 0) != (size == 0) || parent >= size) {
+                throw new IllegalArgumentException("Annotation " + size + " cannot have parent " + parent + "!");
+            }
+            if (size == this.lineFrom.length) {
+                final int capacity = 2 * size;
+                this.lineFrom = Arrays.copyOf(this.lineFrom, capacity);
+                this.lineTo = Arrays.copyOf(this.lineTo, capacity);
+                this.parent = Arrays.copyOf(this.parent, capacity);
+                this.subtreeEnd = Arrays.copyOf(this.subtreeEnd, capacity);
+                this.lineType = Arrays.copyOf(this.lineType, capacity);
+                this.style = Arrays.copyOf(this.style, capacity);
+                this.featureMapping = Arrays.copyOf(this.featureMapping, capacity);
+                this.presenceCondition = Arrays.copyOf(this.presenceCondition, capacity);
+            }
+
+            this.lineFrom[size] = lineFrom;
+            this.lineTo[size] = lineTo;
+            this.parent[size] = parent;
+            this.subtreeEnd[size] = -1;
+            this.lineType[size] = (byte) lineType.ordinal();
+            this.style[size] = (byte) style.ordinal();
+            this.featureMapping[size] = featureMapping;
+            this.presenceCondition[size] = presenceCondition;
+            return size++;
+        }
+
+        /**
+         * Declares that all subtrees of the given annotation were added.
+         */
+        public void endSubtree(final int annotation) {
+            subtreeEnd[annotation] = size;
+        }
+
+        /**
+         * @throws IllegalStateException if no annotation was added or not all annotations were ended.
+         */
+        public FlatAnnotationTree build() {
+            if (size == 0) {
+                throw new IllegalStateException("A tree requires a root annotation!");
+            }
+            for (int i = 0; i < size; ++i) {
+                if (subtreeEnd[i] < 0) {
+                    throw new IllegalStateException("The subtree of annotation " + i + " was not ended!");
+                }
+            }
+            return new FlatAnnotationTree(this);
+        }
+    }
+}
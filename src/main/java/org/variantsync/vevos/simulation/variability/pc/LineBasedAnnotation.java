@@ -10,12 +10,17 @@ import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
 import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
 import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantAnnotation;
-import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLine;
 import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLineChunk;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLineRange;
 import org.variantsync.vevos.simulation.variability.pc.visitor.LineBasedAnnotationVisitorFocus;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -26,10 +31,18 @@ import java.util.function.Predicate;
  * A line-based annotation of source code, such as preprocessor annotations (#ifdef)
  */
 public class LineBasedAnnotation extends ArtefactTree<LineBasedAnnotation> {
+    /**
+     * Orders annotations such that each annotation succeeds all annotations surrounding it.
+     */
+    private static final Comparator<LineBasedAnnotation> SURROUNDING_FIRST =
+            Comparator.comparingInt(LineBasedAnnotation::getLineFrom)
+                    .thenComparing(Comparator.comparingInt(LineBasedAnnotation::getLineTo).reversed());
+
     private final AnnotationStyle style;
     private int lineFrom;
     private int lineTo;
     private LineType lineType;
+    private int preorderIndex = -1;
 
     /**
      * Creates a new annotation starting at lineFrom and ending at lineTo including both
@@ -52,6 +65,19 @@ public class LineBasedAnnotation extends ArtefactTree<LineBasedAnnotation> {
         this.style = style;
     }
 
+    /**
+     * Same as {@link #LineBasedAnnotation(Node, Node, LineType, int, int, AnnotationStyle)} but with the given subtrees.
+     * The subtrees are adopted as they are (i.e., they have to be sorted and nested within this annotation already).
+     * Use {@link #addTrace(LineBasedAnnotation)} instead if the subtrees have to be arranged.
+     */
+    public LineBasedAnnotation(final Node featureMapping, final Node presenceCondition, final LineType lineType, final int lineFrom, final int lineTo, final AnnotationStyle style, final List<LineBasedAnnotation> subtrees) {
+        super(featureMapping, presenceCondition, subtrees, null);
+        this.lineType = lineType;
+        this.lineFrom = lineFrom;
+        this.lineTo = lineTo;
+        this.style = style;
+    }
+
     public LineBasedAnnotation(final LineBasedAnnotation other) {
         super(other.getFeatureMapping(), other.getPresenceCondition());
         this.lineType = other.lineType;
@@ -61,9 +87,7 @@ public class LineBasedAnnotation extends ArtefactTree<LineBasedAnnotation> {
     }
 
     private static void addRange(final List<VariantLineChunk> list, final int fromInclusive, final int toInclusive) {
-        for (int i = fromInclusive; i <= toInclusive; ++i) {
-            list.add(new VariantLine(i));
-        }
+        list.add(new VariantLineRange(fromInclusive, toInclusive));
     }
 
     public int getLineFrom() {
@@ -90,10 +114,45 @@ public class LineBasedAnnotation extends ArtefactTree<LineBasedAnnotation> {
         return lineFrom <= lineNumber && lineNumber <= lineTo;
     }
 
+    /**
+     * @return The index of this annotation in a preorder traversal of the annotation tree of its file, where the root
+     *         annotation has index 0, or -1 if this annotation was not indexed yet.
+     *         Annotation trees of a {@link SourceCodeFile} are indexed whenever they are built or changed through the
+     *         file. If an annotation tree is changed otherwise, its indices might be outdated (but see
+     *         {@link BlockMatching}).
+     * @see #indexAnnotations()
+     */
+    public int getPreorderIndex() {
+        return preorderIndex;
+    }
+
+    /**
+     * Assigns the {@link #getPreorderIndex() preorder index} of this annotation and all annotations below it,
+     * starting with 0 for this annotation.
+     * Indices are stable as long as the tree is not changed.
+     * @return The number of annotations in this tree.
+     */
+    public int indexAnnotations() {
+        return indexAnnotations(0);
+    }
+
+    private int indexAnnotations(final int index) {
+        preorderIndex = index;
+        int next = index + 1;
+        for (final LineBasedAnnotation subtree : subtrees) {
+            next = subtree.indexAnnotations(next);
+        }
+        return next;
+    }
+
     public boolean isMacro() {
         return style == AnnotationStyle.Internal;
     }
 
+    public AnnotationStyle getStyle() {
+        return style;
+    }
+
     @Override
     public LineBasedAnnotationVisitorFocus createVisitorFocus() {
         return new LineBasedAnnotationVisitorFocus(this);
@@ -102,15 +161,25 @@ public class LineBasedAnnotation extends ArtefactTree<LineBasedAnnotation> {
     @Override
     public Result<GroundTruth, Exception> generateVariant(
             final Variant variant,
-            final CaseSensitivePath sourceDir,
+            final SPLSource source,
             final CaseSensitivePath targetDir,
             final VariantGenerationOptions strategy) {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Derives the annotations of this tree that are present in the given variant.
+     * This tree is not altered, such that several variants can be derived from it concurrently.
+     * The derived tree is indexed (see {@link #indexAnnotations()}).
+     * @return The derived annotations and their matching to the annotations of this tree or empty if this annotation
+     *         is not present in the variant.
+     */
     public Optional<AnnotationGroundTruth> deriveForVariant(final Variant variant, ArtefactFilter<LineBasedAnnotation> annotationFilter) {
-        final BlockMatching matching = BlockMatching.MONOID.neutral();
-        return deriveForVariant(variant, annotationFilter, 0, matching).map(l -> new AnnotationGroundTruth(this, l, matching));
+        final BlockMatching matching = new BlockMatching();
+        return deriveForVariant(variant, annotationFilter, 0, matching).map(l -> {
+            l.indexAnnotations();
+            return new AnnotationGroundTruth(this, l, matching);
+        });
     }
 
     private Optional<LineBasedAnnotation> deriveForVariant(final Variant variant, ArtefactFilter<LineBasedAnnotation> annotationFilter, int offset, final BlockMatching matching) {
@@ -156,7 +225,6 @@ public class LineBasedAnnotation extends ArtefactTree<LineBasedAnnotation> {
      */
     public VariantAnnotation getLinesToCopy(final Predicate<LineBasedAnnotation> isIncluded) {
         final List<VariantLineChunk> chunksToWrite = new ArrayList<>();
-//        final List<Integer> chunksToWrite = new ArrayList<>();
         final int firstCodeLine = getLineFrom(); // ignore #if
         final int lastCodeLine = getLineTo(); // ignore #endif
 
@@ -293,6 +361,54 @@ public class LineBasedAnnotation extends ArtefactTree<LineBasedAnnotation> {
         b.setParent(this);
     }
 
+    /**
+     * Merges all given annotations to this artefact at once.
+     * The result is the same as adding each annotation with {@link #addTrace(LineBasedAnnotation)} in the order of
+     * their first line but the tree is built in a single pass over the sorted annotations.
+     * If this annotation has subtrees already, the annotations are added one by one instead.
+     * @throws IllegalFeatureTraceSpecification if two annotations overlap but none of them is contained in the other.
+     */
+    @Override
+    public void addTraces(final Collection<LineBasedAnnotation> annotations) {
+        if (!subtrees.isEmpty()) {
+            super.addTraces(annotations);
+            return;
+        }
+
+        final List<LineBasedAnnotation> sorted = new ArrayList<>(annotations);
+        // stable, so annotations with equal ranges keep their order
+        sorted.sort(SURROUNDING_FIRST);
+
+        // The annotations that surround the current annotation with the innermost one on top.
+        // This annotation is never popped.
+        final Deque<LineBasedAnnotation> surrounding = new ArrayDeque<>();
+        surrounding.push(this);
+        for (final LineBasedAnnotation b : sorted) {
+            LineBasedAnnotation a = surrounding.peek();
+            // Close all annotations that end before b.
+            while (a != this && a.getLineTo() <= b.getLineFrom()) {
+                surrounding.pop();
+                a = surrounding.peek();
+            }
+
+            // As a starts before b, b is contained in a or overlaps it.
+            if (a != this && a.getLineTo() < b.getLineTo()) {
+                throw new IllegalFeatureTraceSpecification(
+                        "Illegal Definition of Preprocessor Block! Given block \""
+                                + b
+                                + "\" overlaps block \""
+                                + a
+                                + "\" in "
+                                + this.getFile()
+                                + " but is not contained in it!");
+            }
+
+            a.subtrees.add(b);
+            b.setParent(a);
+            surrounding.push(b);
+        }
+    }
+
     public LineBasedAnnotation plainCopy() {
         return new LineBasedAnnotation(this);
     }
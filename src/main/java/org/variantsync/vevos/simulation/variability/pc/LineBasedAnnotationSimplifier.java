@@ -106,8 +106,9 @@ public class LineBasedAnnotationSimplifier {
      * Simplifies the given annotations using all other simplification methods in this class.
      */
     public static void simplify(final LineBasedAnnotation root) {
-        root.setFeatureMapping(root.getFeatureMapping().simplifyTree());
-        root.setPresenceCondition(root.getPresenceCondition().simplifyTree());
+        // Formulas might be shared among annotations (e.g., when parsed via FormulaCache), so we must not simplify them inplace.
+        root.setFeatureMapping(root.getFeatureMapping().clone().simplifyTree());
+        root.setPresenceCondition(root.getPresenceCondition().clone().simplifyTree());
         final List<LineBasedAnnotation> flattenedSubtrees = mergedEqualNeighbours(flattenedSubtrees(root));
         for (final LineBasedAnnotation child : flattenedSubtrees) {
             simplify(child);
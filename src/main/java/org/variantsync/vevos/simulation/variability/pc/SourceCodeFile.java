@@ -2,40 +2,89 @@ package org.variantsync.vevos.simulation.variability.pc;
 
 import org.prop4j.Node;
 import org.variantsync.functjonal.Functjonal;
+import org.variantsync.functjonal.Lazy;
 import org.variantsync.functjonal.Result;
 import org.variantsync.functjonal.category.Traversable;
 import org.variantsync.vevos.simulation.feature.Variant;
-import org.variantsync.vevos.simulation.io.TextIO;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
 import org.tinylog.Logger;
 import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.AnnotationGroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.BlockMatching;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
 import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.SPLFileProjector;
 import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantAnnotation;
 import org.variantsync.vevos.simulation.variability.pc.visitor.SourceCodeFileVisitorFocus;
 
 import java.io.FileNotFoundException;
-import java.nio.file.Files;
-import java.util.Collections;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Represents a variable source code file (e.g., because part of a plugin or only conditionally included).
  */
 public class SourceCodeFile extends ArtefactTree<LineBasedAnnotation> {
-    private final LineBasedAnnotation rootAnnotation;
+    private LineBasedAnnotation rootAnnotation;
+    // Non-null as long as the annotations of this file were not materialized yet.
+    private volatile Supplier<LineBasedAnnotation> rootAnnotationLoader;
+    // Non-null as long as this file was created from flattened annotations that were not materialized yet.
+    private volatile FlatAnnotationTree flatAnnotations;
 
     public SourceCodeFile(final Node featureMapping, final Node presenceCondition, final CaseSensitivePath relativePath) {
         this(featureMapping, presenceCondition, relativePath,
                 new LineBasedAnnotation(FixTrueFalse.True, FixTrueFalse.True, LineType.ROOT, 1, 1, AnnotationStyle.External));
     }
 
-    private SourceCodeFile(final Node featureMapping, final Node presenceCondition, final CaseSensitivePath relativePath, final LineBasedAnnotation root) {
+    /**
+     * Creates a source code file whose content is annotated by the given root annotation.
+     */
+    public SourceCodeFile(final Node featureMapping, final Node presenceCondition, final CaseSensitivePath relativePath, final LineBasedAnnotation root) {
         super(featureMapping, presenceCondition, Collections.singletonList(root), relativePath);
+        root.indexAnnotations();
         rootAnnotation = root;
+        rootAnnotationLoader = null;
+    }
+
+    /**
+     * Creates a source code file whose annotations are loaded lazily.
+     * The given loader is invoked at most once, as soon as the annotations of this file are accessed for the first time
+     * (e.g., when this file is visited or when a variant of it is generated).
+     * Exceptions thrown by the loader are propagated to the code that accessed the annotations.
+     * @param rootAnnotationLoader Creates the root annotation of this file.
+     */
+    public SourceCodeFile(final Node featureMapping, final Node presenceCondition, final CaseSensitivePath relativePath, final Supplier<LineBasedAnnotation> rootAnnotationLoader) {
+        super(featureMapping, presenceCondition, Collections.emptyList(), relativePath);
+        this.rootAnnotation = null;
+        this.rootAnnotationLoader = rootAnnotationLoader;
+        this.flatAnnotations = null;
+    }
+
+    /**
+     * Creates a source code file whose annotations are given in flattened form.
+     * {@link LineBasedAnnotation} views of the annotations are created as soon as they are accessed for the first time
+     * (see {@link #SourceCodeFile(Node, Node, CaseSensitivePath, Supplier)}).
+     * Until then, variants are generated from the flattened annotations directly, and so are ground truths unless
+     * their annotations are accessed.
+     */
+    public SourceCodeFile(final Node featureMapping, final Node presenceCondition, final CaseSensitivePath relativePath, final FlatAnnotationTree annotations) {
+        this(featureMapping, presenceCondition, relativePath, annotations::toAnnotation);
+        this.flatAnnotations = annotations;
+    }
+
+    /**
+     * @return The flattened annotations of this file or null if this file was not created from flattened annotations
+     *         or if its annotations were materialized (and thus may have been altered) since.
+     */
+    public FlatAnnotationTree getFlatAnnotations() {
+        return flatAnnotations;
     }
 
     @Override
@@ -46,15 +95,62 @@ public class SourceCodeFile extends ArtefactTree<LineBasedAnnotation> {
     @Override
     public Result<GroundTruth, Exception> generateVariant(
             final Variant variant,
-            final CaseSensitivePath sourceDir,
+            final SPLSource source,
             final CaseSensitivePath targetDir,
             final VariantGenerationOptions strategy) {
-        final CaseSensitivePath sourceFile = sourceDir.resolve(getFile());
-        final CaseSensitivePath targetFile = targetDir.resolve(getFile());
-
         // Check if the source file exists.
-        if (!Files.exists(sourceFile.path())) {
-            return Result.Failure(new FileNotFoundException("Source file " + sourceFile + " does not exist!"));
+        if (!source.exists(getFile())) {
+            return Result.Failure(new FileNotFoundException("Source file " + getFile() + " does not exist in " + source + "!"));
+        }
+
+        return generateVariant(variant, targetDir.resolve(getFile()), strategy, Lazy.of(() -> source.open(getFile(), strategy)));
+    }
+
+    /**
+     * Generates this file for all variants in the given sample but reads the source file only once.
+     * The generated files and ground truths are the same as when invoking
+     * {@link #generateVariant(Variant, CaseSensitivePath, CaseSensitivePath, VariantGenerationOptions)} for each variant.
+     */
+    @Override
+    public Map<Variant, Result<GroundTruth, Exception>> generateVariants(
+            final Sample sample,
+            final SPLSource source,
+            final Function<Variant, CaseSensitivePath> targetDirOf,
+            final VariantGenerationOptions strategy) {
+        final boolean sourceFileExists = source.exists(getFile());
+        // shared among all variants
+        final Lazy<Result<SPLFileProjector, IOException>> splFile = Lazy.of(() -> source.open(getFile(), strategy));
+
+        // Presence conditions are evaluated for all variants at once.
+        final FlatAnnotationTree flat = flatAnnotationsFor(strategy);
+        final FlatAnnotationTree.EvaluatedPresenceConditions presenceConditions = flat == null || !sourceFileExists ? null : flat.evaluate(sample);
+
+        final Map<Variant, Result<GroundTruth, Exception>> results = new LinkedHashMap<>();
+        final List<Variant> variants = sample.variants();
+        for (int v = 0; v < variants.size(); ++v) {
+            final Variant variant = variants.get(v);
+            final CaseSensitivePath targetFile = targetDirOf.apply(variant).resolve(getFile());
+            if (!sourceFileExists) {
+                results.put(variant, Result.Failure(new FileNotFoundException("Source file " + getFile() + " does not exist in " + source + "!")));
+            } else if (presenceConditions != null) {
+                final int variantIndex = v;
+                results.put(variant, generateVariant(targetFile, strategy, splFile, flat,
+                        () -> flat.deriveForVariant(presenceConditions, variantIndex, strategy.lineFilter())));
+            } else {
+                results.put(variant, generateVariant(variant, targetFile, strategy, splFile));
+            }
+        }
+        return results;
+    }
+
+    private Result<GroundTruth, Exception> generateVariant(
+            final Variant variant,
+            final CaseSensitivePath targetFile,
+            final VariantGenerationOptions strategy,
+            final Lazy<Result<SPLFileProjector, IOException>> splFile) {
+        final FlatAnnotationTree flat = flatAnnotationsFor(strategy);
+        if (flat != null) {
+            return generateVariant(targetFile, strategy, splFile, flat, () -> flat.deriveForVariant(variant, strategy.lineFilter()));
         }
 
         ArtefactFilter<LineBasedAnnotation> annotationFilter = strategy.lineFilter();
@@ -65,26 +161,16 @@ public class SourceCodeFile extends ArtefactTree<LineBasedAnnotation> {
                 // Write to target file.
                 .bind(unit -> Traversable.sequence(
                         // Compute ground truth for our variant (i.e., make the variant feature-aware
-                        rootAnnotation
+                        getRootAnnotation()
                                 .deriveForVariant(variant, annotationFilter)
                                 .map(splAnnotationGroundTruth -> {
                     final BlockMatching lineMatching = splAnnotationGroundTruth.matching();
                     // Retrieve all lines of code from the SPL file that should be included in the variant file.
-                    final VariantAnnotation variantCode = rootAnnotation.getLinesToCopy(lineMatching::isPresentInVariant);
-                    return TextIO
-                            // read all lines in the input SPL file
-                            .readLines(sourceFile.path())
-                            .bind(splLines -> Result.Try(() ->
-                                    // write all lines that should be included in the variant to the text file
-                                    TextIO.append(
-                                            targetFile.path(),
-                                            String.join(
-                                                    TextIO.LINEBREAK,
-                                                    //
-                                                    variantCode.project(strategy, splLines)
-                                            )
-                                    )
-                            ))
+                    final VariantAnnotation variantCode = getRootAnnotation().getLinesToCopy(lineMatching::isPresentInVariant);
+                    // read the input SPL file
+                    return splFile.run()
+                            // write all lines that should be included in the variant to the text file
+                            .bind(spl -> Result.Try(() -> spl.appendTo(variantCode, strategy, targetFile.path())))
                             .map(unit2 -> splAnnotationGroundTruth);
                 })))
                 .bimap(
@@ -104,22 +190,115 @@ public class SourceCodeFile extends ArtefactTree<LineBasedAnnotation> {
                 );
     }
 
+    /**
+     * Same as {@link #generateVariant(Variant, CaseSensitivePath, VariantGenerationOptions, Lazy)} but computed on the
+     * given flattened annotations of this file without creating views of them.
+     * The annotation ground truth of the variant is computed on views when it is accessed.
+     * @param derive Derives the annotations of the variant from the given flattened annotations.
+     */
+    private Result<GroundTruth, Exception> generateVariant(
+            final CaseSensitivePath targetFile,
+            final VariantGenerationOptions strategy,
+            final Lazy<Result<SPLFileProjector, IOException>> splFile,
+            final FlatAnnotationTree flat,
+            final Supplier<Optional<FlatAnnotationTree.Derivation>> derive) {
+        return PathUtils.createEmptyAsResult(targetFile.path())
+                .bind(unit -> Traversable.sequence(derive.get().map(derivation -> {
+                    final VariantAnnotation variantCode = flat.getLinesToCopy(derivation::isPresentInVariant);
+                    return splFile.run()
+                            .bind(spl -> Result.Try(() -> spl.appendTo(variantCode, strategy, targetFile.path())))
+                            .map(unit2 -> derivation);
+                })))
+                .bimap(
+                        Functjonal.match(
+                                derivation -> {
+                                    final SourceCodeFile variantFile = new SourceCodeFile(getFeatureMapping(), getPresenceCondition(), getFile(), derivation.getVariant());
+                                    return GroundTruth.forSourceCodeFile(variantFile, AnnotationGroundTruth.lazy(() -> {
+                                        final LineBasedAnnotation splRoot = getRootAnnotation();
+                                        final LineBasedAnnotation variantRoot = variantFile.getRootAnnotation();
+                                        return new AnnotationGroundTruth(splRoot, variantRoot, derivation.matching(splRoot, variantRoot));
+                                    }));
+                                },
+                                () -> GroundTruth.withoutAnnotations(new SourceCodeFile(getFeatureMapping(), getPresenceCondition(), getFile()))
+                        ),
+                        ioexception -> {
+                            Logger.error("Could not create variant file " + targetFile + " because ", ioexception);
+                            return ioexception;
+                        }
+                );
+    }
+
+    /**
+     * @return The flattened annotations of this file if variants can be generated from them with the given options,
+     *         or null if variants have to be generated from the materialized annotations instead.
+     *         Line filters that are not {@link ArtefactFilter#isLocal() local} require the annotations of this file.
+     */
+    private FlatAnnotationTree flatAnnotationsFor(final VariantGenerationOptions strategy) {
+        return strategy.lineFilter().isLocal() ? flatAnnotations : null;
+    }
+
     public LineBasedAnnotation getRootAnnotation() {
+        if (rootAnnotationLoader != null) {
+            materialize();
+        }
         return rootAnnotation;
     }
 
+    private synchronized void materialize() {
+        final Supplier<LineBasedAnnotation> loader = rootAnnotationLoader;
+        if (loader != null) {
+            final LineBasedAnnotation root = loader.get();
+            root.indexAnnotations();
+            rootAnnotation = root;
+            setSubtrees(Collections.singletonList(root));
+            rootAnnotationLoader = null;
+            flatAnnotations = null;
+        }
+    }
+
+    /**
+     * @return False iff the annotations of this file are loaded lazily and were not accessed yet.
+     */
+    public boolean isMaterialized() {
+        return rootAnnotationLoader == null;
+    }
+
+    @Override
+    public List<LineBasedAnnotation> getSubtrees() {
+        if (rootAnnotationLoader != null) {
+            materialize();
+        }
+        return super.getSubtrees();
+    }
+
     /**
      * This method might no longer work properly with the new GT format and should be used with care.
      */
     @Deprecated
     public void simplify() {
-        rootAnnotation.simplify();
+        getRootAnnotation().simplify();
     }
 
     @Override
     public void addTrace(final LineBasedAnnotation lineBasedAnnotation) {
-        rootAnnotation.addTrace(lineBasedAnnotation);
-        rootAnnotation.setLineTo(Math.max(rootAnnotation.getLineTo(), lineBasedAnnotation.getLineTo()));
+        final LineBasedAnnotation root = getRootAnnotation();
+        root.addTrace(lineBasedAnnotation);
+        root.setLineTo(Math.max(root.getLineTo(), lineBasedAnnotation.getLineTo()));
+        root.indexAnnotations();
+    }
+
+    /**
+     * Adds all given annotations to the root annotation of this file at once.
+     * @see LineBasedAnnotation#addTraces(Collection)
+     */
+    @Override
+    public void addTraces(final Collection<LineBasedAnnotation> annotations) {
+        final LineBasedAnnotation root = getRootAnnotation();
+        root.addTraces(annotations);
+        for (final LineBasedAnnotation annotation : annotations) {
+            root.setLineTo(Math.max(root.getLineTo(), annotation.getLineTo()));
+        }
+        root.indexAnnotations();
     }
 
     @Override
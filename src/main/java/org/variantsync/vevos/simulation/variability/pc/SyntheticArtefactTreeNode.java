@@ -1,19 +1,28 @@
 package org.variantsync.vevos.simulation.variability.pc;
 
+import org.prop4j.Node;
 import org.variantsync.functjonal.Cast;
 import org.variantsync.functjonal.Result;
 import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.config.FeatureIndex;
+import org.variantsync.vevos.simulation.feature.sampling.IndexedSample;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
 import org.tinylog.Logger;
 import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
 import org.variantsync.vevos.simulation.variability.pc.visitor.ArtefactVisitorFocus;
 import org.variantsync.vevos.simulation.variability.pc.visitor.SyntheticArtefactTreeNodeVisitorFocus;
 
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 /**
  * A synthetic node in the artefact tree that does not need to have a physical counterpart (e.g., file or annotation).
@@ -48,17 +57,18 @@ public class SyntheticArtefactTreeNode<Child extends ArtefactTree<?>> extends Ar
     }
 
     @Override
-    public Result<GroundTruth, Exception> generateVariant(final Variant variant, final CaseSensitivePath sourceDir, final CaseSensitivePath targetDir, final VariantGenerationOptions strategy) {
+    public Result<GroundTruth, Exception> generateVariant(final Variant variant, final SPLSource source, final CaseSensitivePath targetDir, final VariantGenerationOptions strategy) {
         final CaseSensitivePath f = getFile();
         final SyntheticArtefactTreeNode<Child> copy = plainCopy();
         final GroundTruth groundTruth = GroundTruth.withoutAnnotations(copy);
 
-        if (f != null && !sourceDir.resolve(f).exists()) {
+        if (f != null && !source.exists(f)) {
             Logger.error("Skipping file " + f + " as it does not exist!");
             if (strategy.exitOnError() && !strategy.ignoreNonExistentSPLFiles()) {
                 return Result.Failure(new FileNotFoundException(f + " does not exist!"));
             }
         } else {
+            final List<Child> toGenerate = new ArrayList<>();
             for (final Child subtree : subtrees) {
                 if (subtree instanceof SourceCodeFile sourceCodeFile) {
                     if (!strategy.filter().shouldKeep(sourceCodeFile)) {
@@ -67,12 +77,111 @@ public class SyntheticArtefactTreeNode<Child extends ArtefactTree<?>> extends Ar
                 }
 
                 if (variant.isImplementing(subtree.getPresenceCondition())) {
-                    final Result<GroundTruth, Exception> result = subtree
-                            .generateVariant(variant, sourceDir, targetDir, strategy);
+                    toGenerate.add(subtree);
+                }
+            }
+
+            final List<ScheduledGeneration<Result<GroundTruth, Exception>>> generated = schedule(
+                    toGenerate,
+                    i -> toGenerate.get(i).generateVariant(variant, source, targetDir, strategy),
+                    strategy);
+            for (int i = 0; i < generated.size(); ++i) {
+                final Result<GroundTruth, Exception> result = generated.get(i).get();
+
+                result.ifSuccess(childGroundTruth -> {
+                    copy.addTrace(Cast.unchecked(childGroundTruth.variant()));
+                    groundTruth.add(childGroundTruth);
+                });
+
+                if (result.isFailure()) {
+                    if (
+                            strategy.exitOnError()
+                            && !(strategy.ignoreNonExistentSPLFiles() && result.getFailure() instanceof FileNotFoundException)
+                    ) {
+                        generated.subList(i + 1, generated.size()).forEach(ScheduledGeneration::cancel);
+                        return result;
+                    } else {
+                        Logger.error(result.getFailure().getMessage());
+                    }
+                }
+            }
+        }
+
+        return Result.Success(groundTruth);
+    }
+
+    /**
+     * Generates all variants in the given sample in a single traversal of this tree.
+     * Each subtree is generated for all variants implementing it at once.
+     * The generated files and ground truths are the same as when invoking
+     * {@link #generateVariant(Variant, CaseSensitivePath, CaseSensitivePath, VariantGenerationOptions)} for each variant.
+     */
+    @Override
+    public Map<Variant, Result<GroundTruth, Exception>> generateVariants(final Sample sample, final SPLSource source, final Function<Variant, CaseSensitivePath> targetDirOf, final VariantGenerationOptions strategy) {
+        final CaseSensitivePath f = getFile();
+        final Map<Variant, SyntheticArtefactTreeNode<Child>> copies = new HashMap<>();
+        final Map<Variant, GroundTruth> groundTruths = new HashMap<>();
+        for (final Variant variant : sample) {
+            final SyntheticArtefactTreeNode<Child> copy = plainCopy();
+            copies.put(variant, copy);
+            groundTruths.put(variant, GroundTruth.withoutAnnotations(copy));
+        }
+        // variants whose generation failed
+        final Map<Variant, Result<GroundTruth, Exception>> failures = new HashMap<>();
+
+        if (f != null && !source.exists(f)) {
+            Logger.error("Skipping file " + f + " as it does not exist!");
+            if (strategy.exitOnError() && !strategy.ignoreNonExistentSPLFiles()) {
+                for (final Variant variant : sample) {
+                    failures.put(variant, Result.Failure(new FileNotFoundException(f + " does not exist!")));
+                }
+            }
+        } else {
+            // The presence condition of each subtree is evaluated for all variants at once.
+            final List<Node> presenceConditions = new ArrayList<>(subtrees.size());
+            for (final Child subtree : subtrees) {
+                presenceConditions.add(subtree.getPresenceCondition());
+            }
+            final IndexedSample indexedSample = sample.index(FeatureIndex.ofFeaturesIn(presenceConditions));
+
+            final List<Child> toGenerate = new ArrayList<>();
+            final List<Sample> implementingSamples = new ArrayList<>();
+            for (final Child subtree : subtrees) {
+                if (subtree instanceof SourceCodeFile sourceCodeFile) {
+                    if (!strategy.filter().shouldKeep(sourceCodeFile)) {
+                        continue;
+                    }
+                }
+
+                final long[] implementingVariants = indexedSample.implementing(subtree.getPresenceCondition());
+                final List<Variant> implementing = new ArrayList<>(sample.size());
+                for (int v = 0; v < sample.size(); ++v) {
+                    if (IndexedSample.contains(implementingVariants, v)) {
+                        implementing.add(sample.variants().get(v));
+                    }
+                }
+                if (!implementing.isEmpty()) {
+                    toGenerate.add(subtree);
+                    implementingSamples.add(Sample.of(implementing));
+                }
+            }
+
+            final List<ScheduledGeneration<Map<Variant, Result<GroundTruth, Exception>>>> generated = schedule(
+                    toGenerate,
+                    // When generating sequentially, variants that already failed are skipped.
+                    i -> toGenerate.get(i).generateVariants(
+                            strategy.isParallel() ? implementingSamples.get(i) : withoutFailures(implementingSamples.get(i), failures),
+                            source, targetDirOf, strategy),
+                    strategy);
+            for (final ScheduledGeneration<Map<Variant, Result<GroundTruth, Exception>>> subtreeResults : generated) {
+                subtreeResults.get().forEach((variant, result) -> {
+                    if (failures.containsKey(variant)) {
+                        return;
+                    }
 
                     result.ifSuccess(childGroundTruth -> {
-                        copy.addTrace(Cast.unchecked(childGroundTruth.variant()));
-                        groundTruth.add(childGroundTruth);
+                        copies.get(variant).addTrace(Cast.unchecked(childGroundTruth.variant()));
+                        groundTruths.get(variant).add(childGroundTruth);
                     });
 
                     if (result.isFailure()) {
@@ -80,16 +189,105 @@ public class SyntheticArtefactTreeNode<Child extends ArtefactTree<?>> extends Ar
                                 strategy.exitOnError()
                                 && !(strategy.ignoreNonExistentSPLFiles() && result.getFailure() instanceof FileNotFoundException)
                         ) {
-                            return result;
+                            failures.put(variant, result);
                         } else {
                             Logger.error(result.getFailure().getMessage());
                         }
                     }
+                });
+            }
+        }
+
+        final Map<Variant, Result<GroundTruth, Exception>> results = new LinkedHashMap<>();
+        for (final Variant variant : sample) {
+            results.put(variant, failures.getOrDefault(variant, Result.Success(groundTruths.get(variant))));
+        }
+        return results;
+    }
+
+    /**
+     * Prepares the generation of the given subtrees.
+     * If the given options are not parallel, each subtree is generated lazily on the calling thread when its result
+     * is requested.
+     * Otherwise, source code files are submitted to the executor of the given options immediately.
+     * Other subtrees are still generated on the calling thread, as they schedule their own files on the executor and
+     * waiting for these from within the executor could exhaust it.
+     * @param toGenerate The subtrees to generate.
+     * @param generate Generation of the subtree at the given index.
+     * @param strategy Options for variant generation.
+     * @return The results of the generation in the order of the given subtrees.
+     */
+    private <R> List<ScheduledGeneration<R>> schedule(final List<Child> toGenerate, final IntFunction<R> generate, final VariantGenerationOptions strategy) {
+        final List<ScheduledGeneration<R>> results = new ArrayList<>(toGenerate.size());
+        for (int i = 0; i < toGenerate.size(); ++i) {
+            final int index = i;
+            if (strategy.isParallel() && toGenerate.get(i) instanceof SourceCodeFile) {
+                results.add(new ScheduledGeneration<>(CompletableFuture.supplyAsync(() -> generate.apply(index), strategy.executor())));
+            } else {
+                results.add(new ScheduledGeneration<>(() -> generate.apply(index)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return The variants in the given sample that did not fail yet.
+     */
+    private static Sample withoutFailures(final Sample sample, final Map<Variant, ?> failures) {
+        if (failures.isEmpty()) {
+            return sample;
+        }
+        final List<Variant> remaining = new ArrayList<>(sample.size());
+        for (final Variant variant : sample) {
+            if (!failures.containsKey(variant)) {
+                remaining.add(variant);
+            }
+        }
+        return Sample.of(remaining);
+    }
+
+    /**
+     * The generation of a subtree that is either running on an executor or is run on demand.
+     */
+    private static class ScheduledGeneration<R> {
+        private final CompletableFuture<R> future;
+        private final Supplier<R> onDemand;
+
+        ScheduledGeneration(final CompletableFuture<R> future) {
+            this.future = future;
+            this.onDemand = null;
+        }
+
+        ScheduledGeneration(final Supplier<R> onDemand) {
+            this.future = null;
+            this.onDemand = onDemand;
+        }
+
+        /**
+         * Waits for the generation to finish or runs it on the calling thread.
+         */
+        R get() {
+            if (future == null) {
+                return onDemand.get();
+            }
+            try {
+                return future.join();
+            } catch (final CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
                 }
+                throw e;
             }
         }
 
-        return Result.Success(groundTruth);
+        /**
+         * Prevents this generation from starting if it did not start yet.
+         */
+        void cancel() {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
     }
 
     @Override
@@ -2,10 +2,89 @@ package org.variantsync.vevos.simulation.variability.pc.groundtruth;
 
 import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
 
-public record AnnotationGroundTruth(
-        LineBasedAnnotation splArtefact,
-        LineBasedAnnotation variantArtefact,
-        BlockMatching matching
-)
-{
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Ground truth of the annotations in a single generated file:
+ * The annotations of the SPL file, the annotations of the variant file, and a matching between them.
+ * The ground truth might be computed lazily when it is accessed for the first time (see {@link #lazy(Supplier)}).
+ */
+public final class AnnotationGroundTruth {
+    private LineBasedAnnotation splArtefact;
+    private LineBasedAnnotation variantArtefact;
+    private BlockMatching matching;
+    // Non-null as long as this ground truth was not computed yet.
+    private Supplier<AnnotationGroundTruth> loader;
+
+    public AnnotationGroundTruth(
+            final LineBasedAnnotation splArtefact,
+            final LineBasedAnnotation variantArtefact,
+            final BlockMatching matching) {
+        this.splArtefact = splArtefact;
+        this.variantArtefact = variantArtefact;
+        this.matching = matching;
+        this.loader = null;
+    }
+
+    private AnnotationGroundTruth(final Supplier<AnnotationGroundTruth> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Creates a ground truth that is computed by the given loader as soon as it is accessed for the first time.
+     * The loader is invoked at most once.
+     */
+    public static AnnotationGroundTruth lazy(final Supplier<AnnotationGroundTruth> loader) {
+        return new AnnotationGroundTruth(loader);
+    }
+
+    private synchronized void materialize() {
+        if (loader != null) {
+            final AnnotationGroundTruth loaded = loader.get();
+            splArtefact = loaded.splArtefact();
+            variantArtefact = loaded.variantArtefact();
+            matching = loaded.matching();
+            loader = null;
+        }
+    }
+
+    public synchronized LineBasedAnnotation splArtefact() {
+        materialize();
+        return splArtefact;
+    }
+
+    public synchronized LineBasedAnnotation variantArtefact() {
+        materialize();
+        return variantArtefact;
+    }
+
+    public synchronized BlockMatching matching() {
+        materialize();
+        return matching;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final AnnotationGroundTruth that = (AnnotationGroundTruth) o;
+        return Objects.equals(splArtefact(), that.splArtefact())
+                && Objects.equals(variantArtefact(), that.variantArtefact())
+                && Objects.equals(matching(), that.matching());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(splArtefact(), variantArtefact(), matching());
+    }
+
+    @Override
+    public String toString() {
+        return "AnnotationGroundTruth{" +
+                "splArtefact=" + splArtefact() +
+                ", variantArtefact=" + variantArtefact() +
+                ", matching=" + matching() +
+                '}';
+    }
 }
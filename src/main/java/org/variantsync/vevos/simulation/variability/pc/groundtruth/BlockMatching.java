@@ -3,44 +3,105 @@ package org.variantsync.vevos.simulation.variability.pc.groundtruth;
 import org.variantsync.functjonal.category.Monoid;
 import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
+/**
+ * Matches annotations of an SPL file to the annotations in a variant they were derived to.
+ * Annotations are matched by identity.
+ * Matchings are stored in arrays indexed by the {@link LineBasedAnnotation#getPreorderIndex() preorder index} of
+ * the SPL annotation such that matching an annotation takes constant time and no annotation has to be hashed.
+ * SPL annotations that have no index or whose index is taken by another annotation (e.g., when matchings of
+ * different files are merged) are stored in an identity map instead.
+ */
 public class BlockMatching {
     public static final Monoid<BlockMatching> MONOID = Monoid.From(
             BlockMatching::new,
             (a, b) -> {
-                final BlockMatching result = new BlockMatching();
-                result.splToVariant.putAll(a.splToVariant);
-                result.splToVariant.putAll(b.splToVariant);
-                result.variantToSPL.putAll(a.variantToSPL);
-                result.variantToSPL.putAll(b.variantToSPL);
+                final BlockMatching result = new BlockMatching(Math.max(a.splAnnotations.length, b.splAnnotations.length));
+                a.forEach(result::put);
+                b.forEach(result::put);
                 return result;
             }
     );
 
-    private final Map<LineBasedAnnotation, LineBasedAnnotation> splToVariant;
-    private final Map<LineBasedAnnotation, LineBasedAnnotation> variantToSPL;
+    // The SPL annotation and its variant annotation at the preorder index of the SPL annotation.
+    private LineBasedAnnotation[] splAnnotations;
+    private LineBasedAnnotation[] variantAnnotations;
+    // SPL annotations that could not be stored by index or null if there are none.
+    private Map<LineBasedAnnotation, LineBasedAnnotation> unindexedSPLToVariant = null;
+    // Inverse of this matching. Built when required for the first time.
+    private Map<LineBasedAnnotation, LineBasedAnnotation> variantToSPL = null;
 
     public BlockMatching() {
-        this.splToVariant = new HashMap<>();
-        this.variantToSPL = new HashMap<>();
+        this(0);
+    }
+
+    /**
+     * Creates an empty matching with room for SPL annotations with preorder indices up to the given number.
+     * @param numberOfSPLAnnotations The number of annotations in the annotation tree of the SPL file.
+     */
+    public BlockMatching(final int numberOfSPLAnnotations) {
+        this.splAnnotations = new LineBasedAnnotation[numberOfSPLAnnotations];
+        this.variantAnnotations = new LineBasedAnnotation[numberOfSPLAnnotations];
     }
 
     public void put(final LineBasedAnnotation splAnnotation, final LineBasedAnnotation variantAnnotation) {
-        splToVariant.put(splAnnotation, variantAnnotation);
-        variantToSPL.put(variantAnnotation, splAnnotation);
+        variantToSPL = null;
+        final int index = splAnnotation.getPreorderIndex();
+        if (index >= 0) {
+            if (index >= splAnnotations.length) {
+                final int capacity = Math.max(index + 1, 2 * splAnnotations.length);
+                splAnnotations = Arrays.copyOf(splAnnotations, capacity);
+                variantAnnotations = Arrays.copyOf(variantAnnotations, capacity);
+            }
+            if (splAnnotations[index] == null || splAnnotations[index] == splAnnotation) {
+                splAnnotations[index] = splAnnotation;
+                variantAnnotations[index] = variantAnnotation;
+                return;
+            }
+        }
+
+        if (unindexedSPLToVariant == null) {
+            unindexedSPLToVariant = new IdentityHashMap<>();
+        }
+        unindexedSPLToVariant.put(splAnnotation, variantAnnotation);
     }
 
     public LineBasedAnnotation getVariantAnnotationOf(final LineBasedAnnotation splAnnotation) {
-        return splToVariant.get(splAnnotation);
+        final int index = splAnnotation.getPreorderIndex();
+        if (0 <= index && index < splAnnotations.length && splAnnotations[index] == splAnnotation) {
+            return variantAnnotations[index];
+        }
+        return unindexedSPLToVariant == null ? null : unindexedSPLToVariant.get(splAnnotation);
     }
 
     public LineBasedAnnotation getSPLAnnotationOf(final LineBasedAnnotation variantAnnotation) {
+        if (variantToSPL == null) {
+            final Map<LineBasedAnnotation, LineBasedAnnotation> inverse = new IdentityHashMap<>();
+            forEach((spl, variant) -> inverse.put(variant, spl));
+            variantToSPL = inverse;
+        }
         return variantToSPL.get(variantAnnotation);
     }
 
     public boolean isPresentInVariant(final LineBasedAnnotation splAnnotation) {
-        return splToVariant.containsKey(splAnnotation);
+        return getVariantAnnotationOf(splAnnotation) != null;
+    }
+
+    /**
+     * Invokes the given consumer on each matched SPL annotation and its variant annotation.
+     */
+    public void forEach(final BiConsumer<LineBasedAnnotation, LineBasedAnnotation> consumer) {
+        for (int i = 0; i < splAnnotations.length; ++i) {
+            if (splAnnotations[i] != null) {
+                consumer.accept(splAnnotations[i], variantAnnotations[i]);
+            }
+        }
+        if (unindexedSPLToVariant != null) {
+            unindexedSPLToVariant.forEach(consumer);
+        }
     }
-}
\ No newline at end of file
+}
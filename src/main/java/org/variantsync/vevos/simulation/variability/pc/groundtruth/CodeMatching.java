@@ -1,9 +1,13 @@
 package org.variantsync.vevos.simulation.variability.pc.groundtruth;
 
+import org.variantsync.functjonal.Functjonal;
 import org.variantsync.functjonal.Lazy;
 import org.variantsync.functjonal.list.ListHeadTailView;
 import org.variantsync.vevos.simulation.io.data.CSV;
+import org.variantsync.vevos.simulation.io.data.CSVIO;
+import org.variantsync.vevos.simulation.io.data.CSVRowReader;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -30,9 +34,33 @@ public record CodeMatching(HashMap<Path, FileMatching> fileMatchingBefore, HashM
         return Optional.of(fromCSVs(mBefore.get(), mAfter.get()));
     }
 
+    /**
+     * Lazily loads the code matching from the given csv files.
+     * The files are streamed row by row such that the csv files are never held in memory completely.
+     * If a path is null or its file cannot be read, the resulting matching is empty.
+     */
+    public static Lazy<Optional<CodeMatching>> lazyFromCSVFiles(Path matchingBefore, Path matchingAfter) {
+        return Lazy.of(() -> {
+            Optional<HashMap<Path, FileMatching>> mBefore = Functjonal.mapFragile(matchingBefore, CodeMatching::parseCSV,
+                    () -> "Was not able to load code matching " + matchingBefore);
+            Optional<HashMap<Path, FileMatching>> mAfter = Functjonal.mapFragile(matchingAfter, CodeMatching::parseCSV,
+                    () -> "Was not able to load code matching " + matchingAfter);
+            if (mBefore.isEmpty() || mAfter.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(fromMatchings(mBefore.get(), mAfter.get()));
+        });
+    }
+
+    public static CodeMatching fromCSVFiles(Path matchingBefore, Path matchingAfter) throws IOException {
+        return fromMatchings(parseCSV(matchingBefore), parseCSV(matchingAfter));
+    }
+
     public static CodeMatching fromCSVs(CSV matchingBefore, CSV matchingAfter) {
-        HashMap<Path, FileMatching> fileMatchingBefore = parseCSV(matchingBefore);
-        HashMap<Path, FileMatching> fileMatchingAfter = parseCSV(matchingAfter);
+        return fromMatchings(parseCSV(matchingBefore), parseCSV(matchingAfter));
+    }
+
+    private static CodeMatching fromMatchings(HashMap<Path, FileMatching> fileMatchingBefore, HashMap<Path, FileMatching> fileMatchingAfter) {
         // Make sure that the matchings agree
         checkAgreement(fileMatchingBefore, fileMatchingAfter);
         return new CodeMatching(fileMatchingBefore, fileMatchingAfter);
@@ -54,6 +82,27 @@ public record CodeMatching(HashMap<Path, FileMatching> fileMatchingBefore, HashM
         return matching;
     }
 
+    private static HashMap<Path, FileMatching> parseCSV(Path csvPath) throws IOException {
+        final HashMap<Path, FileMatching> matching = new HashMap<>();
+        try (final CSVRowReader rows = new CSVIO().openRows(csvPath)) {
+            // skip first entry as it is the csv header
+            rows.next();
+            // Consecutive rows usually belong to the same file, so we can avoid most lookups.
+            String currentFile = null;
+            FileMatching fm = null;
+            while (rows.next()) {
+                String file = rows.get(0);
+                if (!file.equals(currentFile)) {
+                    currentFile = file;
+                    // Retrieve or initialize the file matching
+                    fm = matching.computeIfAbsent(Path.of(file), FileMatching::new);
+                }
+                fm.add(rows.getInt(1), rows.getInt(2));
+            }
+        }
+        return matching;
+    }
+
     private static final class FileMatching {
         private final Path filePath;
         private final ArrayList<Integer> matching;
@@ -18,11 +18,38 @@ public interface ArtefactFilter<A extends Artefact> {
      */
     boolean shouldKeep(final A a);
 
+    /**
+     * @return True iff this filter decides only by the properties of the given artefact itself, and thus neither by
+     *         its parent, nor its subtrees, nor its file. Such filters might be invoked with copies of artefacts that
+     *         do not belong to a tree (e.g., by {@link org.variantsync.vevos.simulation.variability.pc.FlatAnnotationTree}).
+     */
+    default boolean isLocal() {
+        return false;
+    }
+
+    /**
+     * @return A filter that behaves as the given filter but is {@link #isLocal() local}.
+     *         The given filter must decide only by the properties of the given artefact itself.
+     */
+    static <A extends Artefact> ArtefactFilter<A> Local(final ArtefactFilter<A> filter) {
+        return new ArtefactFilter<>() {
+            @Override
+            public boolean shouldKeep(final A a) {
+                return filter.shouldKeep(a);
+            }
+
+            @Override
+            public boolean isLocal() {
+                return true;
+            }
+        };
+    }
+
     /**
      * @return A filter that accepts all artifacts. Formally, its value is `a -> true`.
      */
     static <A extends Artefact> ArtefactFilter<A> KeepAll() {
-        return a -> true;
+        return Local(a -> true);
     }
 
     /**
@@ -33,10 +60,11 @@ public interface ArtefactFilter<A extends Artefact> {
      * @param filters A collection of filters to collapse.
      * @param <A> The type of artefacts to filter.
      * @return A single filter that returns true for a given artifact iff all of the given filters return true for it.
+     *         The returned filter is {@link #isLocal() local} iff all given filters are.
      *         Formally, if `f` is the output filter `f.shouldKeep(a) iff (forall fi in filters: fi.shouldKeep(a))`.
      */
     static <A extends Artefact> ArtefactFilter<A> Fold(final Collection<ArtefactFilter<A>> filters) {
-        return a -> {
+        final ArtefactFilter<A> fold = a -> {
             for (final ArtefactFilter<A> filter : filters) {
                 if (!filter.shouldKeep(a)) {
                     return false;
@@ -45,6 +73,8 @@ public interface ArtefactFilter<A extends Artefact> {
 
             return true;
         };
+        // The fold is local iff all folded filters are.
+        return filters.stream().allMatch(ArtefactFilter::isLocal) ? Local(fold) : fold;
     }
 
     /**
@@ -3,13 +3,32 @@ package org.variantsync.vevos.simulation.variability.pc.options;
 import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
 import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
 
+import java.util.concurrent.Executor;
+
+/**
+ * Options for variant generation.
+ * @param copyRawBytes If set, variant files are generated by copying the bytes of the kept lines from the SPL files,
+ *                     including their original line terminators, instead of decoding the lines and joining them with
+ *                     {@link org.variantsync.vevos.simulation.io.TextIO#LINEBREAK}.
+ *                     (see {@link org.variantsync.vevos.simulation.variability.pc.variantlines.MappedSPLFile}).
+ * @param executor If not null, the source code files in a directory are generated in parallel on this executor.
+ *                 The resulting ground truths are merged in the order of the files in the artefact tree, such that
+ *                 they are the same as for a sequential generation.
+ *                 If null, files are generated sequentially on the calling thread.
+ */
 public record VariantGenerationOptions(
         boolean exitOnError,
         boolean ignoreNonExistentSPLFiles,
         boolean withMacros,
-        ArtefactFilter<SourceCodeFile> filter
+        ArtefactFilter<SourceCodeFile> filter,
+        boolean copyRawBytes,
+        Executor executor
 )
 {
+    public VariantGenerationOptions(final boolean exitOnError, final boolean ignoreNonExistentSPLFiles, final boolean withMacros, final ArtefactFilter<SourceCodeFile> filter) {
+        this(exitOnError, ignoreNonExistentSPLFiles, withMacros, filter, false, null);
+    }
+
     public static VariantGenerationOptions ExitOnError(final boolean withMacros, final ArtefactFilter<SourceCodeFile> filter) {
         return new VariantGenerationOptions(true, false, withMacros, filter);
     }
@@ -18,8 +37,30 @@ public record VariantGenerationOptions(
         return new VariantGenerationOptions(true, true, withMacros, filter);
     }
 
+    /**
+     * @return The same options but with {@link #copyRawBytes()} set.
+     */
+    public VariantGenerationOptions withRawByteCopying() {
+        return new VariantGenerationOptions(exitOnError, ignoreNonExistentSPLFiles, withMacros, filter, true, executor);
+    }
+
+    /**
+     * @param executor The executor to generate source code files on (e.g., a {@link java.util.concurrent.ForkJoinPool}).
+     * @return The same options but generating files in parallel on the given executor.
+     */
+    public VariantGenerationOptions withExecutor(final Executor executor) {
+        return new VariantGenerationOptions(exitOnError, ignoreNonExistentSPLFiles, withMacros, filter, copyRawBytes, executor);
+    }
+
+    /**
+     * @return True iff files should be generated in parallel.
+     */
+    public boolean isParallel() {
+        return executor != null;
+    }
+
     public ArtefactFilter<LineBasedAnnotation> lineFilter() {
-        return (annotation -> {
+        return ArtefactFilter.Local(annotation -> {
             if (withMacros) {
                 return true;
             }
@@ -0,0 +1,28 @@
+package org.variantsync.vevos.simulation.variability.pc.source;
+
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.SPLFileProjector;
+
+import java.io.IOException;
+
+/**
+ * A product line whose files are on disk (e.g., the working tree of a checked out repository).
+ */
+public record DirectorySPLSource(CaseSensitivePath directory) implements SPLSource {
+    @Override
+    public boolean exists(final CaseSensitivePath file) {
+        return directory.resolve(file).exists();
+    }
+
+    @Override
+    public Result<SPLFileProjector, IOException> open(final CaseSensitivePath file, final VariantGenerationOptions options) {
+        return SPLFileProjector.of(directory.resolve(file).path(), options);
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package org.variantsync.vevos.simulation.variability.pc.source;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.util.GitUtil;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.SPLFileProjector;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A product line read directly from the object database of a git repository at a certain commit.
+ * Files are inflated from their blobs only when they are opened and the working tree of the repository
+ * is neither read nor written.
+ * Thus, variants can be generated without checking out the commit.
+ */
+public class GitCommitSPLSource implements SPLSource {
+    private final Repository repository;
+    private final SPLCommit commit;
+    // The blob of each file and all directories in the tree of the commit.
+    private final Map<String, ObjectId> blobs = new HashMap<>();
+    private final Set<String> directories = new HashSet<>();
+
+    /**
+     * Resolves the given commit and indexes its tree.
+     * @param repository The repository to read from. Has to be kept open while this source is used.
+     * @param commit The commit whose files should be read.
+     * @throws IOException if the commit does not exist or its tree cannot be read.
+     */
+    public GitCommitSPLSource(final Repository repository, final SPLCommit commit) throws IOException {
+        this.repository = repository;
+        this.commit = commit;
+        index();
+    }
+
+    public SPLCommit getCommit() {
+        return commit;
+    }
+
+    @Override
+    public boolean exists(final CaseSensitivePath file) {
+        final String path = GitUtil.toGitPath(file);
+        return path.isEmpty() || blobs.containsKey(path) || directories.contains(path);
+    }
+
+    @Override
+    public Result<SPLFileProjector, IOException> open(final CaseSensitivePath file, final VariantGenerationOptions options) {
+        return Result.Try(() -> {
+            final ObjectId blob = blobs.get(GitUtil.toGitPath(file));
+            if (blob == null) {
+                throw new FileNotFoundException(file + " does not exist in commit " + commit);
+            }
+            final byte[] content;
+            try (final ObjectReader reader = repository.newObjectReader();
+                 final InputStream in = reader.open(blob, Constants.OBJ_BLOB).openStream()) {
+                // Unlike getBytes(), streaming also reads blobs that are too large to be cached by jgit.
+                content = in.readAllBytes();
+            }
+            return SPLFileProjector.of(file.toString(), content, options);
+        });
+    }
+
+    /**
+     * Collects the blobs and directories in the tree of the commit with a single walk.
+     */
+    private void index() throws IOException {
+        try (final ObjectReader reader = repository.newObjectReader();
+             final RevWalk revWalk = new RevWalk(reader);
+             final TreeWalk treeWalk = new TreeWalk(reader)) {
+            final ObjectId commitId = repository.resolve(commit.id() + "^{commit}");
+            if (commitId == null) {
+                throw new IOException("Commit " + commit + " does not exist in " + repository.getDirectory());
+            }
+            treeWalk.addTree(revWalk.parseCommit(commitId).getTree());
+            treeWalk.setRecursive(false);
+            while (treeWalk.next()) {
+                if (treeWalk.isSubtree()) {
+                    directories.add(treeWalk.getPathString());
+                    treeWalk.enterSubtree();
+                } else if (treeWalk.getFileMode(0) != FileMode.GITLINK) {
+                    blobs.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return repository.getDirectory() + "@" + commit;
+    }
+}
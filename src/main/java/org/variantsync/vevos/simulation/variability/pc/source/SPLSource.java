@@ -0,0 +1,44 @@
+package org.variantsync.vevos.simulation.variability.pc.source;
+
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.SPLFileProjector;
+
+import java.io.IOException;
+
+/**
+ * The files of a software product line at a certain state from which variants can be generated.
+ * Implementations have to be thread-safe.
+ * A source has to be closed when variants are not generated from it anymore because it may hold resources of its
+ * repository exclusively (e.g., a checkout).
+ */
+public interface SPLSource extends AutoCloseable {
+    /**
+     * @param file Path to a file or directory relative to the root of the product line.
+     * @return True iff the given file or directory exists in this product line.
+     */
+    boolean exists(CaseSensitivePath file);
+
+    /**
+     * Reads the given file such that variants of it can be generated.
+     * @param file Path to a file relative to the root of the product line.
+     * @param options Options for the variant generation.
+     * @return A projector for the given file or an IOException if the file could not be read.
+     */
+    Result<SPLFileProjector, IOException> open(CaseSensitivePath file, VariantGenerationOptions options);
+
+    /**
+     * Releases the resources held by this source.
+     * The source must not be used anymore afterwards.
+     */
+    @Override
+    default void close() {}
+
+    /**
+     * @return A source reading the product line from the files in the given directory.
+     */
+    static SPLSource of(final CaseSensitivePath directory) {
+        return new DirectorySPLSource(directory);
+    }
+}
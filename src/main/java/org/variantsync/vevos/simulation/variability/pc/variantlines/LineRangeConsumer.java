@@ -0,0 +1,10 @@
+package org.variantsync.vevos.simulation.variability.pc.variantlines;
+
+/**
+ * Receives ranges of lines [fromInclusive, toInclusive] of an SPL file.
+ * Line numbers are 1-based.
+ */
+@FunctionalInterface
+public interface LineRangeConsumer {
+    void accept(int fromInclusive, int toInclusive);
+}
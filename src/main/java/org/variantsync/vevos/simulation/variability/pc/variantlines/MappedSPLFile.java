@@ -0,0 +1,166 @@
+package org.variantsync.vevos.simulation.variability.pc.variantlines;
+
+import org.tinylog.Logger;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A memory-mapped (or in-memory) SPL file with an index of the byte offset of each line.
+ * Variant files are generated by copying the bytes of the kept lines, including their original line terminators.
+ * Thus, no charset decoding or encoding takes place and line endings are preserved byte-for-byte.
+ * In contrast to projecting the file line by line, the last line of a variant file ends with a line terminator
+ * iff the respective line in the SPL file does.
+ * Lines are split as in {@link java.io.BufferedReader#readLine()} such that line numbers agree with
+ * {@link org.variantsync.vevos.simulation.io.TextIO#readLines(Path)}.
+ */
+public class MappedSPLFile implements SPLFileProjector {
+    private final String name;
+    private final ByteBuffer content;
+    // lineStarts[i] is the offset of the (i+1)-th line. The last entry is the size of the file.
+    private final int[] lineStarts;
+
+    private MappedSPLFile(final String name, final ByteBuffer content, final int[] lineStarts) {
+        this.name = name;
+        this.content = content;
+        this.lineStarts = lineStarts;
+    }
+
+    /**
+     * Maps the given file into memory and indexes its lines.
+     * @param path The SPL file to map.
+     * @return The mapped file.
+     * @throws IOException if the file cannot be read or is larger than 2GB.
+     */
+    public static MappedSPLFile map(final Path path) throws IOException {
+        final MappedByteBuffer content;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Cannot map " + path + " as it is larger than 2GB!");
+            }
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return of(path.toString(), content);
+    }
+
+    /**
+     * Indexes the lines of the given file content.
+     * @param name Name of the file for logging.
+     * @param content The content of the file from position 0 to its limit.
+     * @return The indexed file.
+     */
+    public static MappedSPLFile of(final String name, final ByteBuffer content) {
+        final int size = content.limit();
+        int[] lineStarts = new int[64];
+        int lines = 0;
+        int lineStart = 0;
+        for (int i = 0; i < size; ++i) {
+            final byte b = content.get(i);
+            if (b == '\n' || b == '\r') {
+                // A \r\n terminator belongs to the current line.
+                if (b == '\r' && i + 1 < size && content.get(i + 1) == '\n') {
+                    ++i;
+                }
+                if (lines + 1 >= lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, 2 * lineStarts.length);
+                }
+                lineStarts[lines++] = lineStart;
+                lineStart = i + 1;
+            }
+        }
+        // The last line might not be terminated.
+        if (lineStart < size) {
+            if (lines + 1 >= lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, lineStarts.length + 2);
+            }
+            lineStarts[lines++] = lineStart;
+        }
+        lineStarts[lines] = size;
+
+        return new MappedSPLFile(name, content, Arrays.copyOf(lineStarts, lines + 1));
+    }
+
+    /**
+     * @return The number of lines in this file.
+     */
+    public int getLineCount() {
+        return lineStarts.length - 1;
+    }
+
+    /**
+     * Copies the bytes of the given lines, including their line terminators.
+     * Lines out of bounds are skipped.
+     * @param fromInclusive First line to copy (1-based).
+     * @param toInclusive Last line to copy (1-based).
+     * @return A read-only view on the bytes of the given lines.
+     */
+    public ByteBuffer getLines(final int fromInclusive, final int toInclusive) {
+        final int from = Math.max(fromInclusive, 1) - 1;
+        final int to = Math.min(toInclusive, getLineCount());
+        if (from >= to) {
+            return ByteBuffer.allocate(0);
+        }
+        return content.slice(lineStarts[from], lineStarts[to] - lineStarts[from]).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void appendTo(final VariantAnnotation variantCode, final VariantGenerationOptions projectionOptions, final Path targetFile) throws IOException {
+        try (final FileChannel out = FileChannel.open(targetFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final RangeWriter writer = new RangeWriter(out);
+            variantCode.forEachLineRange(writer);
+            writer.flush();
+            if (writer.exception != null) {
+                throw writer.exception;
+            }
+        }
+    }
+
+    /**
+     * Writes consecutive ranges of lines with a single write.
+     */
+    private class RangeWriter implements LineRangeConsumer {
+        private final FileChannel out;
+        private int pendingFrom = -1;
+        private int pendingTo = -1;
+        private IOException exception = null;
+
+        RangeWriter(final FileChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public void accept(final int fromInclusive, final int toInclusive) {
+            if (toInclusive > getLineCount() + 1) {
+                Logger.debug("Skipped copying lines of " + name + " up to " + toInclusive + " as they are out of bounds [1, " + getLineCount() + "]!");
+            }
+            if (pendingFrom >= 0 && pendingTo + 1 == fromInclusive) {
+                pendingTo = toInclusive;
+                return;
+            }
+            flush();
+            pendingFrom = fromInclusive;
+            pendingTo = toInclusive;
+        }
+
+        void flush() {
+            if (pendingFrom < 0 || exception != null) {
+                return;
+            }
+            final ByteBuffer bytes = getLines(pendingFrom, pendingTo);
+            pendingFrom = -1;
+            try {
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+            } catch (final IOException e) {
+                exception = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.variantsync.vevos.simulation.variability.pc.variantlines;
+
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.io.TextIO;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The content of an SPL file from which variants of the file can be projected.
+ * A projector is created once per SPL file and can be used to generate any number of variants of that file.
+ */
+public interface SPLFileProjector {
+    /**
+     * Appends the lines of the given variant code to the given file.
+     * @param variantCode The lines of the SPL file to copy.
+     * @param projectionOptions Options for the projection.
+     * @param targetFile Existing file to append the variant code to.
+     * @throws IOException if the target file cannot be written.
+     */
+    void appendTo(final VariantAnnotation variantCode, final VariantGenerationOptions projectionOptions, final Path targetFile) throws IOException;
+
+    /**
+     * Reads the given SPL file as requested by the given options.
+     * If {@link VariantGenerationOptions#copyRawBytes()} is set, the file is memory-mapped and its lines are copied
+     * byte by byte (see {@link MappedSPLFile}).
+     * Otherwise, the file is read line by line and the lines are written with {@link TextIO#LINEBREAK}.
+     * @param splFile The SPL file to read.
+     * @param options Options for the variant generation.
+     * @return A projector for the given file or an IOException if the file could not be read.
+     */
+    static Result<SPLFileProjector, IOException> of(final Path splFile, final VariantGenerationOptions options) {
+        if (options.copyRawBytes()) {
+            return Result.Try(() -> MappedSPLFile.map(splFile));
+        }
+        return TextIO.readLines(splFile).map(SPLFileProjector::ofLines);
+    }
+
+    /**
+     * Same as {@link #of(Path, VariantGenerationOptions)} but for a file that was already loaded into memory.
+     * @param name Name of the file for logging.
+     * @param content The content of the SPL file.
+     * @param options Options for the variant generation.
+     * @return A projector for the given file content.
+     * @throws IOException if the content cannot be decoded.
+     */
+    static SPLFileProjector of(final String name, final byte[] content, final VariantGenerationOptions options) throws IOException {
+        if (options.copyRawBytes()) {
+            return MappedSPLFile.of(name, ByteBuffer.wrap(content));
+        }
+        // decode as TextIO.readLines does
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), Charset.defaultCharset()))) {
+            return ofLines(reader.lines().toList());
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static SPLFileProjector ofLines(final List<String> splLines) {
+        return (variantCode, projectionOptions, targetFile) -> {
+            final List<String> variantLines = new ArrayList<>();
+            variantCode.projectInto(projectionOptions, splLines, variantLines);
+            // write all lines that should be included in the variant to the text file
+            TextIO.appendLines(targetFile, variantLines);
+        };
+    }
+}
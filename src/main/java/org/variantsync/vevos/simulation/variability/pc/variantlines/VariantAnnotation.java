@@ -5,7 +5,6 @@ import org.variantsync.vevos.simulation.util.fide.FormulaUtils;
 import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public record VariantAnnotation(
@@ -13,14 +12,17 @@ public record VariantAnnotation(
         List<VariantLineChunk> lines
 ) implements VariantLineChunk {
     @Override
-    public List<String> project(final VariantGenerationOptions projectionOptions, final List<String> splFileLines) {
-        final List<String> result = new ArrayList<>();
-
+    public void projectInto(final VariantGenerationOptions projectionOptions, final List<String> splFileLines, final List<String> sink) {
         for (final VariantLineChunk child : lines) {
-            result.addAll(child.project(projectionOptions, splFileLines));
+            child.projectInto(projectionOptions, splFileLines, sink);
         }
+    }
 
-        return result;
+    @Override
+    public void forEachLineRange(final LineRangeConsumer consumer) {
+        for (final VariantLineChunk child : lines) {
+            child.forEachLineRange(consumer);
+        }
     }
 
     public boolean isTrue() {
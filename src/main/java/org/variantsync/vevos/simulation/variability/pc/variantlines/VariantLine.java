@@ -8,7 +8,7 @@ import java.util.stream.Collectors;
 
 public record VariantLine(Integer lineNumber) implements VariantLineChunk {
     @Override
-    public List<String> project(final VariantGenerationOptions projectionOptions, final List<String> splFileLines) {
+    public void projectInto(final VariantGenerationOptions projectionOptions, final List<String> splFileLines, final List<String> sink) {
         // The list splFileLines is 0-based.
         // Our lineNumber is 1-based because line numbers are typically given 1-based.
         final int sourceLineNo = lineNumber - 1;
@@ -29,10 +29,13 @@ public record VariantLine(Integer lineNumber) implements VariantLineChunk {
                 String lines = String.join("\n", splFileLines);
                 Logger.debug(lines);
             }
-
-            return List.of();
         } else {
-            return List.of(splFileLines.get(sourceLineNo));
+            sink.add(splFileLines.get(sourceLineNo));
         }
     }
+
+    @Override
+    public void forEachLineRange(final LineRangeConsumer consumer) {
+        consumer.accept(lineNumber, lineNumber);
+    }
 }
@@ -2,8 +2,30 @@ package org.variantsync.vevos.simulation.variability.pc.variantlines;
 
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface VariantLineChunk {
-    List<String> project(final VariantGenerationOptions projectionOptions, final List<String> splFileLines);
+    /**
+     * Appends all lines of this chunk to the given sink.
+     * @param projectionOptions Options for the projection.
+     * @param splFileLines All lines of the SPL file (0-based).
+     * @param sink The list to append the lines of the variant file to.
+     */
+    void projectInto(final VariantGenerationOptions projectionOptions, final List<String> splFileLines, final List<String> sink);
+
+    /**
+     * Reports all ranges of lines in this chunk in the order they have to be copied to the variant file.
+     * @param consumer Receives each range of lines.
+     */
+    void forEachLineRange(final LineRangeConsumer consumer);
+
+    /**
+     * Same as {@link #projectInto(VariantGenerationOptions, List, List)} but collects the lines in a new list.
+     */
+    default List<String> project(final VariantGenerationOptions projectionOptions, final List<String> splFileLines) {
+        final List<String> result = new ArrayList<>();
+        projectInto(projectionOptions, splFileLines, result);
+        return result;
+    }
 }
@@ -0,0 +1,38 @@
+package org.variantsync.vevos.simulation.variability.pc.variantlines;
+
+import org.tinylog.Logger;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+
+import java.util.List;
+
+/**
+ * A range of consecutive lines [fromInclusive, toInclusive] to copy from an SPL file.
+ * Line numbers are 1-based.
+ * Behaves exactly like one {@link VariantLine} for each line in the range.
+ */
+public record VariantLineRange(int fromInclusive, int toInclusive) implements VariantLineChunk {
+    @Override
+    public void projectInto(final VariantGenerationOptions projectionOptions, final List<String> splFileLines, final List<String> sink) {
+        // The list splFileLines is 0-based.
+        final int lastSourceLineNo = Math.min(toInclusive, splFileLines.size()) - 1;
+        for (int sourceLineNo = fromInclusive - 1; sourceLineNo <= lastSourceLineNo; ++sourceLineNo) {
+            sink.add(splFileLines.get(sourceLineNo));
+        }
+
+        // See VariantLine: A single line out of bounds is expected due to https://bugs.openjdk.java.net/browse/JDK-8199413.
+        if (toInclusive > splFileLines.size() + 1) {
+            Logger.debug("Skipped copying lines "
+                    + Math.max(fromInclusive, splFileLines.size() + 1)
+                    + " to "
+                    + toInclusive
+                    + " as they are out of bounds [1, "
+                    + splFileLines.size()
+                    + "]!");
+        }
+    }
+
+    @Override
+    public void forEachLineRange(final LineRangeConsumer consumer) {
+        consumer.accept(fromInclusive, toInclusive);
+    }
+}
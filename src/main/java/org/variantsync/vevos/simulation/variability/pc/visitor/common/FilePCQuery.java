@@ -26,7 +26,11 @@ public class FilePCQuery implements ArtefactVisitor {
             return Result.Success(result);
         }
 
-        return Result.Failure(new FileNotFoundException("Could not find file " + relativePath.toString() + "!"));
+        return Result.Failure(fileNotFound(relativePath));
+    }
+
+    static Exception fileNotFound(final CaseSensitivePath relativePath) {
+        return new FileNotFoundException("Could not find file " + relativePath.toString() + "!");
     }
 
     @Override
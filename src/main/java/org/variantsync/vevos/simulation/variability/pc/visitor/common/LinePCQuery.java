@@ -4,6 +4,7 @@ import org.prop4j.Node;
 import org.variantsync.functjonal.Result;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.variability.pc.ArtefactTree;
+import org.variantsync.vevos.simulation.variability.pc.FlatAnnotationTree;
 import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
 import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
 import org.variantsync.vevos.simulation.variability.pc.visitor.ArtefactVisitor;
@@ -11,8 +12,6 @@ import org.variantsync.vevos.simulation.variability.pc.visitor.LineBasedAnnotati
 import org.variantsync.vevos.simulation.variability.pc.visitor.SourceCodeFileVisitorFocus;
 import org.variantsync.vevos.simulation.variability.pc.visitor.SyntheticArtefactTreeNodeVisitorFocus;
 
-import java.io.FileNotFoundException;
-
 public class LinePCQuery implements ArtefactVisitor {
     private final CaseSensitivePath relativePath;
     private final int lineNumber;
@@ -32,20 +31,27 @@ public class LinePCQuery implements ArtefactVisitor {
                 return Result.Success(result);
             }
 
-            return Result.Failure(new IndexOutOfBoundsException(
-                    "Given line number "
-                            + lineNumber
-                            + " is not within bounds of file "
-                            + relativePath
-                            + " that ranges from "
-                            + foundFile.getRootAnnotation().getLineFrom()
-                            + " to "
-                            + foundFile.getRootAnnotation().getLineTo()
-                            + "."
-            ));
+            final FlatAnnotationTree flatAnnotations = foundFile.getFlatAnnotations();
+            final int lineFrom = flatAnnotations != null ? flatAnnotations.getLineFrom(0) : foundFile.getRootAnnotation().getLineFrom();
+            final int lineTo = flatAnnotations != null ? flatAnnotations.getLineTo(0) : foundFile.getRootAnnotation().getLineTo();
+            return Result.Failure(lineOutOfBounds(relativePath, lineNumber, lineFrom, lineTo));
         }
 
-        return Result.Failure(new FileNotFoundException("Could not find file " + relativePath.toString() + "!"));
+        return Result.Failure(FilePCQuery.fileNotFound(relativePath));
+    }
+
+    static Exception lineOutOfBounds(final CaseSensitivePath relativePath, final int lineNumber, final int lineFrom, final int lineTo) {
+        return new IndexOutOfBoundsException(
+                "Given line number "
+                        + lineNumber
+                        + " is not within bounds of file "
+                        + relativePath
+                        + " that ranges from "
+                        + lineFrom
+                        + " to "
+                        + lineTo
+                        + "."
+        );
     }
 
     @Override
@@ -61,7 +67,17 @@ public class LinePCQuery implements ArtefactVisitor {
 //        Logger.info("visitSourceCodeFile(" + focus.getValue() + ")");
         if (foundFile == null && focus.getValue().getFile().equals(relativePath)) {
             foundFile = focus.getValue();
-            focus.skipRootAnnotationButVisitItsSubtrees(this);
+            final FlatAnnotationTree flatAnnotations = foundFile.getFlatAnnotations();
+            if (flatAnnotations != null) {
+                // Query the flattened annotations directly instead of creating views of them.
+                final int annotation = flatAnnotations.getInnermostAnnotationOf(lineNumber);
+                if (annotation >= 0) {
+                    result = flatAnnotations.getPresenceCondition(annotation);
+                    lineFound = true;
+                }
+            } else {
+                focus.skipRootAnnotationButVisitItsSubtrees(this);
+            }
         }
     }
 
@@ -0,0 +1,208 @@
+package org.variantsync.vevos.simulation.variability.pc.visitor.common;
+
+import org.prop4j.Node;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.variability.pc.Artefact;
+import org.variantsync.vevos.simulation.variability.pc.ArtefactTree;
+import org.variantsync.vevos.simulation.variability.pc.FlatAnnotationTree;
+import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
+import org.variantsync.vevos.simulation.variability.pc.visitor.ArtefactVisitor;
+import org.variantsync.vevos.simulation.variability.pc.visitor.LineBasedAnnotationVisitorFocus;
+import org.variantsync.vevos.simulation.variability.pc.visitor.SourceCodeFileVisitorFocus;
+import org.variantsync.vevos.simulation.variability.pc.visitor.SyntheticArtefactTreeNodeVisitorFocus;
+
+import java.util.*;
+
+/**
+ * Index for answering many presence condition queries on the same artefact.
+ * Answers the same as {@link FilePCQuery} and {@link LinePCQuery} but instead of traversing the artefact for each
+ * query, files are looked up in a hash map and lines are looked up by binary search on the boundaries of the
+ * annotations of a file.
+ * The index is immutable and thus can be shared between threads.
+ * It does not observe changes to the artefact it was built from.
+ */
+public final class PCQueryIndex {
+    private final Map<CaseSensitivePath, FileIndex> files;
+
+    private PCQueryIndex(final Map<CaseSensitivePath, FileIndex> files) {
+        this.files = files;
+    }
+
+    /**
+     * Builds an index for all source code files in the given artefact.
+     * Annotations of files that were loaded from flattened annotations (see
+     * {@link SourceCodeFile#getFlatAnnotations()}) are indexed without creating views of them.
+     */
+    public static PCQueryIndex of(final Artefact artefact) {
+        final Map<CaseSensitivePath, FileIndex> files = new HashMap<>();
+        artefact.accept(new ArtefactVisitor() {
+            @Override
+            public <C extends ArtefactTree<?>> void visitGenericArtefactTreeNode(final SyntheticArtefactTreeNodeVisitorFocus<C> focus) {
+                focus.visitAllSubtrees(this);
+            }
+
+            @Override
+            public void visitSourceCodeFile(final SourceCodeFileVisitorFocus focus) {
+                final SourceCodeFile file = focus.getValue();
+                // The queries find the first file with a given path, so we do so, too.
+                if (!files.containsKey(file.getFile())) {
+                    files.put(file.getFile(), new FileIndex(file));
+                }
+            }
+
+            @Override
+            public void visitLineBasedAnnotation(final LineBasedAnnotationVisitorFocus focus) {
+                // should never be invoked
+                assert false;
+            }
+        });
+        return new PCQueryIndex(files);
+    }
+
+    /**
+     * Same as {@link Artefact#getPresenceConditionOf(CaseSensitivePath)}.
+     */
+    public Result<Node, Exception> getPresenceConditionOf(final CaseSensitivePath relativePath) {
+        final FileIndex file = files.get(relativePath);
+        if (file == null) {
+            return Result.Failure(FilePCQuery.fileNotFound(relativePath));
+        }
+        return Result.Success(file.presenceCondition);
+    }
+
+    /**
+     * Same as {@link Artefact#getPresenceConditionOf(CaseSensitivePath, int)}.
+     */
+    public Result<Node, Exception> getPresenceConditionOf(final CaseSensitivePath relativePath, final int lineNumber) {
+        final FileIndex file = files.get(relativePath);
+        if (file == null) {
+            return Result.Failure(FilePCQuery.fileNotFound(relativePath));
+        }
+        return file.getPresenceConditionOf(relativePath, lineNumber);
+    }
+
+    /**
+     * Queries the presence conditions of the given files at once.
+     * @return The result for each given file in iteration order of the given files.
+     */
+    public Map<CaseSensitivePath, Result<Node, Exception>> getPresenceConditionsOf(final Collection<CaseSensitivePath> relativePaths) {
+        final Map<CaseSensitivePath, Result<Node, Exception>> results = new LinkedHashMap<>();
+        for (final CaseSensitivePath relativePath : relativePaths) {
+            results.put(relativePath, getPresenceConditionOf(relativePath));
+        }
+        return results;
+    }
+
+    /**
+     * Queries the presence conditions of several lines in the same file at once.
+     * @return The result for the i-th given line at index i.
+     */
+    public List<Result<Node, Exception>> getPresenceConditionsOf(final CaseSensitivePath relativePath, final int... lineNumbers) {
+        final List<Result<Node, Exception>> results = new ArrayList<>(lineNumbers.length);
+        final FileIndex file = files.get(relativePath);
+        for (final int lineNumber : lineNumbers) {
+            results.add(file == null
+                    ? Result.Failure(FilePCQuery.fileNotFound(relativePath))
+                    : file.getPresenceConditionOf(relativePath, lineNumber));
+        }
+        return results;
+    }
+
+    /**
+     * @return The paths of all indexed source code files.
+     */
+    public Set<CaseSensitivePath> getFiles() {
+        return Collections.unmodifiableSet(files.keySet());
+    }
+
+    /**
+     * Partitions the lines of a file into segments whose lines all have the same innermost annotation.
+     * Segment i spans the lines from segmentStarts[i] to segmentStarts[i + 1] - 1.
+     */
+    private static final class FileIndex {
+        private final Node presenceCondition;
+        // Range of the root annotation for error messages.
+        private final int lineFrom, lineTo;
+        private final int[] segmentStarts;
+        // Presence condition of the innermost annotation of each segment or null if no annotation other than the
+        // root annotation annotates the lines of a segment.
+        private final Node[] segmentPCs;
+
+        FileIndex(final SourceCodeFile file) {
+            final FlatAnnotationTree flat = file.getFlatAnnotations();
+            final FlatAnnotationTree annotations = flat != null ? flat : FlatAnnotationTree.of(file.getRootAnnotation());
+            this.presenceCondition = file.getPresenceCondition();
+            this.lineFrom = annotations.getLineFrom(0);
+            this.lineTo = annotations.getLineTo(0);
+
+            final int[] boundaries = new int[2 * annotations.size()];
+            for (int i = 0; i < annotations.size(); ++i) {
+                boundaries[2 * i] = annotations.getLineFrom(i);
+                boundaries[2 * i + 1] = annotations.getLineTo(i) + 1;
+            }
+            Arrays.sort(boundaries);
+            int numberOfBoundaries = 0;
+            for (final int boundary : boundaries) {
+                if (numberOfBoundaries == 0 || boundaries[numberOfBoundaries - 1] != boundary) {
+                    boundaries[numberOfBoundaries++] = boundary;
+                }
+            }
+            final int[] starts = Arrays.copyOf(boundaries, numberOfBoundaries);
+            final Node[] pcs = new Node[numberOfBoundaries];
+            // The root annotation is not considered by the queries.
+            paintSubtrees(annotations, 0, starts, pcs, 0, numberOfBoundaries);
+
+            // Merge neighbouring segments with the same presence condition.
+            int numberOfSegments = 0;
+            for (int i = 0; i < numberOfBoundaries; ++i) {
+                if (numberOfSegments == 0 || pcs[numberOfSegments - 1] != pcs[i]) {
+                    starts[numberOfSegments] = starts[i];
+                    pcs[numberOfSegments] = pcs[i];
+                    ++numberOfSegments;
+                }
+            }
+            this.segmentStarts = Arrays.copyOf(starts, numberOfSegments);
+            this.segmentPCs = Arrays.copyOf(pcs, numberOfSegments);
+        }
+
+        /**
+         * Assigns the presence condition of each subtree of the given annotation to the segments in the range
+         * [from, to) that the subtree annotates.
+         * Mirrors the traversal of {@link LinePCQuery}: Inner annotations take precedence over their parents and
+         * earlier siblings take precedence over later ones, so the subtrees are painted in reverse order, each
+         * directly after its parent.
+         */
+        private static void paintSubtrees(final FlatAnnotationTree annotations, final int annotation, final int[] starts, final Node[] pcs, final int from, final int to) {
+            final List<Integer> subtrees = new ArrayList<>();
+            for (int child = annotation + 1; child < annotations.getSubtreeEnd(annotation); child = annotations.getSubtreeEnd(child)) {
+                subtrees.add(child);
+            }
+            for (int i = subtrees.size() - 1; i >= 0; --i) {
+                final int child = subtrees.get(i);
+                final int childFrom = Math.max(from, segmentOf(starts, annotations.getLineFrom(child)));
+                final int childTo = Math.min(to, segmentOf(starts, annotations.getLineTo(child) + 1));
+                if (childFrom < childTo) {
+                    Arrays.fill(pcs, childFrom, childTo, annotations.getPresenceCondition(child));
+                    paintSubtrees(annotations, child, starts, pcs, childFrom, childTo);
+                }
+            }
+        }
+
+        /**
+         * @return The index of the segment containing the given line or -1 if the line is before the first segment.
+         */
+        private static int segmentOf(final int[] starts, final int lineNumber) {
+            final int i = Arrays.binarySearch(starts, lineNumber);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        Result<Node, Exception> getPresenceConditionOf(final CaseSensitivePath relativePath, final int lineNumber) {
+            final int segment = segmentOf(segmentStarts, lineNumber);
+            if (segment >= 0 && segmentPCs[segment] != null) {
+                return Result.Success(segmentPCs[segment]);
+            }
+            return Result.Failure(LinePCQuery.lineOutOfBounds(relativePath, lineNumber, lineFrom, lineTo));
+        }
+    }
+}
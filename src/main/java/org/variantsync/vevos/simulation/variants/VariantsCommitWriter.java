@@ -0,0 +1,205 @@
+package org.variantsync.vevos.simulation.variants;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheCheckout;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.variantsync.vevos.simulation.repository.Branch;
+import org.variantsync.vevos.simulation.util.GitUtil;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes commits of generated variants directly into the object database of a git repository.
+ * In contrast to {@link VariantsRepository#commit(String)}, neither the working tree nor the index of the repository
+ * are scanned and branches do not have to be checked out.
+ * The index and working tree are only updated when committing to the branch that is currently checked out.
+ * Instead, the tree of a commit is built from an explicit list of generated files.
+ * Files whose content did not change since the parent commit reuse the blob of the parent commit.
+ */
+public class VariantsCommitWriter {
+    private final Repository repository;
+    private final PersonIdent author;
+
+    /**
+     * Creates a writer that commits with the author configured in the given repository.
+     * @param repository The repository to write commits to.
+     */
+    public VariantsCommitWriter(final Repository repository) {
+        this(repository, new PersonIdent(repository));
+    }
+
+    /**
+     * @param repository The repository to write commits to.
+     * @param author Author and committer of all commits.
+     */
+    public VariantsCommitWriter(final Repository repository, final PersonIdent author) {
+        this.repository = repository;
+        this.author = author;
+    }
+
+    /**
+     * Commits the given files to the given branch.
+     * The tree of the new commit contains exactly the given files.
+     * The current head of the branch (if any) becomes the parent of the new commit and the branch is moved to the new commit.
+     * @param branch The branch to commit to. Will be created if it does not exist.
+     * @param filesDir The directory containing the files to commit.
+     * @param files The files to commit relative to filesDir. These will have the same relative paths in the repository.
+     * @param message Message of the commit.
+     * @return The new commit or empty if the files are equal to the files in the head of the branch.
+     * @throws IOException if the files could not be read or the commit could not be written.
+     */
+    public Optional<VariantCommit> commit(final Branch branch, final Path filesDir, final Collection<CaseSensitivePath> files, final String message) throws IOException {
+        final String refName = Constants.R_HEADS + branch.name();
+        try (final ObjectInserter inserter = repository.newObjectInserter();
+             final ObjectReader reader = inserter.newReader();
+             final RevWalk revWalk = new RevWalk(reader)) {
+            final Ref ref = repository.exactRef(refName);
+            final RevCommit parent = ref == null ? null : revWalk.parseCommit(ref.getObjectId());
+            final Map<String, ObjectId> parentBlobs = parent == null ? Map.of() : blobsOf(reader, parent);
+
+            final DirCache tree = DirCache.newInCore();
+            final DirCacheBuilder builder = tree.builder();
+            for (final CaseSensitivePath file : files) {
+                final String gitPath = GitUtil.toGitPath(file);
+                final byte[] content = Files.readAllBytes(filesDir.resolve(file.path()));
+                ObjectId blob = inserter.idFor(Constants.OBJ_BLOB, content);
+                if (!blob.equals(parentBlobs.get(gitPath))) {
+                    blob = inserter.insert(Constants.OBJ_BLOB, content);
+                }
+
+                final DirCacheEntry entry = new DirCacheEntry(gitPath);
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setLength(content.length);
+                entry.setObjectId(blob);
+                builder.add(entry);
+            }
+            builder.finish();
+            return commitTree(branch, tree.writeTree(inserter), parent, message, inserter, revWalk);
+        }
+    }
+
+    /**
+     * Commits the tree of the head of the given branch with the given file added or replaced.
+     * All other files of the head are kept as they are.
+     * @param branch The branch to commit to. Will be created if it does not exist.
+     * @param file Path of the file in the repository.
+     * @param content The new content of the file.
+     * @param message Message of the commit.
+     * @return The new commit or empty if the file already has the given content in the head of the branch.
+     * @throws IOException if the commit could not be written.
+     */
+    public Optional<VariantCommit> commitFile(final Branch branch, final CaseSensitivePath file, final byte[] content, final String message) throws IOException {
+        final String refName = Constants.R_HEADS + branch.name();
+        final String gitPath = GitUtil.toGitPath(file);
+        try (final ObjectInserter inserter = repository.newObjectInserter();
+             final ObjectReader reader = inserter.newReader();
+             final RevWalk revWalk = new RevWalk(reader)) {
+            final Ref ref = repository.exactRef(refName);
+            final RevCommit parent = ref == null ? null : revWalk.parseCommit(ref.getObjectId());
+
+            final DirCache tree = DirCache.newInCore();
+            final DirCacheBuilder builder = tree.builder();
+            if (parent != null) {
+                try (final TreeWalk treeWalk = new TreeWalk(reader)) {
+                    treeWalk.addTree(parent.getTree());
+                    treeWalk.setRecursive(true);
+                    while (treeWalk.next()) {
+                        if (!treeWalk.getPathString().equals(gitPath)) {
+                            final DirCacheEntry entry = new DirCacheEntry(treeWalk.getPathString());
+                            entry.setFileMode(treeWalk.getFileMode(0));
+                            entry.setObjectId(treeWalk.getObjectId(0));
+                            builder.add(entry);
+                        }
+                    }
+                }
+            }
+            final DirCacheEntry entry = new DirCacheEntry(gitPath);
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            entry.setLength(content.length);
+            entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, content));
+            builder.add(entry);
+            builder.finish();
+            return commitTree(branch, tree.writeTree(inserter), parent, message, inserter, revWalk);
+        }
+    }
+
+    /**
+     * Commits the given tree on top of the given parent and moves the given branch to the new commit.
+     * @return The new commit or empty if the given tree equals the tree of the parent.
+     */
+    private Optional<VariantCommit> commitTree(final Branch branch, final ObjectId treeId, final RevCommit parent, final String message,
+                                               final ObjectInserter inserter, final RevWalk revWalk) throws IOException {
+        if (parent != null && parent.getTree().getId().equals(treeId)) {
+            return Optional.empty();
+        }
+
+        final CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(treeId);
+        if (parent != null) {
+            commit.setParentId(parent);
+        }
+        commit.setAuthor(author);
+        commit.setCommitter(author);
+        commit.setMessage(message);
+        final ObjectId commitId = inserter.insert(commit);
+        inserter.flush();
+        checkoutIfCurrent(branch, parent, revWalk.parseCommit(commitId));
+
+        final RefUpdate update = repository.updateRef(Constants.R_HEADS + branch.name());
+        update.setNewObjectId(commitId);
+        update.setExpectedOldObjectId(parent == null ? ObjectId.zeroId() : parent);
+        update.setRefLogMessage("commit: " + message, false);
+        final RefUpdate.Result result = update.update(revWalk);
+        switch (result) {
+            case NEW, FAST_FORWARD -> {
+                return Optional.of(new VariantCommit(commitId.getName(), branch));
+            }
+            default -> throw new IOException("Failed to update branch " + branch.name() + " to commit " + commitId.getName() + ": " + result);
+        }
+    }
+
+    /**
+     * Updates the index and the working tree from the given parent to the given commit if the given branch is checked
+     * out. Otherwise, the index and working tree would remain at the parent while HEAD moves to the commit, such that
+     * committing the working tree (see {@link VariantsRepository#commit(String)}) would revert the commit.
+     * Branches that are not checked out are not affected.
+     * @throws IOException if the working tree has changes that conflict with the commit.
+     */
+    private void checkoutIfCurrent(final Branch branch, final RevCommit parent, final RevCommit commit) throws IOException {
+        if (repository.isBare() || !(Constants.R_HEADS + branch.name()).equals(repository.getFullBranch())) {
+            return;
+        }
+        final DirCacheCheckout checkout = new DirCacheCheckout(
+                repository, parent == null ? null : parent.getTree(), repository.lockDirCache(), commit.getTree());
+        checkout.setFailOnConflict(true);
+        // Unlocks the index when done.
+        checkout.checkout();
+    }
+
+    /**
+     * @return The blob of each file in the tree of the given commit.
+     */
+    private static Map<String, ObjectId> blobsOf(final ObjectReader reader, final RevCommit commit) throws IOException {
+        final Map<String, ObjectId> blobs = new HashMap<>();
+        try (final TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                blobs.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+            }
+        }
+        return blobs;
+    }
+}
@@ -9,10 +9,12 @@ import org.variantsync.vevos.simulation.repository.AbstractSPLRepository;
 import org.variantsync.vevos.simulation.repository.AbstractVariantsRepository;
 import org.variantsync.vevos.simulation.repository.Branch;
 import org.tinylog.Logger;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.variants.blueprints.VariantsRevisionBlueprint;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -24,6 +26,7 @@ import java.util.Optional;
  */
 public class VariantsRepository extends AbstractVariantsRepository {
     private Map<String, Branch> branchesByName;
+    private VariantsCommitWriter commitWriter;
     public final Optional<VariantsRevision> revision0;
 
     /**
@@ -99,8 +102,7 @@ public class VariantsRepository extends AbstractVariantsRepository {
 
     // TODO: Make sure that commit() behaves correctly.
     // At the moment, it returns null in the case of an empty commit, and the VariantCommit otherwise (as described in AbstractVariantRepository)
-    // But in VariantsRevisionFromErrorBluePrint, an empty commit would lead to throwing a RuntimeException. Is that wanted?
-    // If empty commits should be possible, commit() could be adapted to allow those. (referring to TODO note in VariantsRevisionFromErrorBlueprint)
+    // If empty commits should be possible, commit() could be adapted to allow those.
 
     @Override
     public Optional<VariantCommit> commit(final String message) throws GitAPIException, IOException {
@@ -120,6 +122,41 @@ public class VariantsRepository extends AbstractVariantsRepository {
         return result;
     }
 
+    @Override
+    public Optional<VariantCommit> commit(final Branch branch, final Path filesDir, final Collection<CaseSensitivePath> files, final String message) throws IOException {
+        try {
+            return commitWriter().commit(branch, filesDir, files, message);
+        } catch (final IOException e) {
+            Logger.error("Failed to commit to branch " + branch + " with message: " + message, e);
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<VariantCommit> commitFile(final Branch branch, final CaseSensitivePath file, final byte[] content, final String message) throws IOException {
+        try {
+            return commitWriter().commitFile(branch, file, content, message);
+        } catch (final IOException e) {
+            Logger.error("Failed to commit " + file + " to branch " + branch + " with message: " + message, e);
+            close();
+            throw e;
+        }
+    }
+
+    private VariantsCommitWriter commitWriter() throws IOException {
+        if (commitWriter == null) {
+            commitWriter = new VariantsCommitWriter(git().getRepository());
+        }
+        return commitWriter;
+    }
+
+    @Override
+    public void close() {
+        commitWriter = null;
+        super.close();
+    }
+
     private Branch getCurrentBranch() throws IOException {
         try {
             final String branch = git().getRepository().getBranch();
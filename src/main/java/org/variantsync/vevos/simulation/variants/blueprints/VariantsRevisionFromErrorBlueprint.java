@@ -1,15 +1,16 @@
 package org.variantsync.vevos.simulation.variants.blueprints;
 
-import org.eclipse.jgit.api.errors.GitAPIException;
 import org.variantsync.functjonal.Lazy;
 import org.variantsync.vevos.simulation.feature.Variant;
 import org.variantsync.vevos.simulation.feature.sampling.Sample;
 import org.variantsync.vevos.simulation.repository.AbstractVariantsRepository;
 import org.variantsync.vevos.simulation.repository.Branch;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.variants.VariantCommit;
 import org.variantsync.vevos.simulation.variants.VariantsRevision;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -27,6 +28,13 @@ import java.util.Optional;
  */
 public class VariantsRevisionFromErrorBlueprint extends VariantsRevisionBlueprint {
     public final String COMMIT_MESSAGE = "SUB_HISTORY_END";
+    /**
+     * File that is added to each variant by an error commit.
+     * It contains the id of the last SPL commit of the ended sub-history such that each error commit changes it.
+     */
+    public static final CaseSensitivePath MARKER_FILE = CaseSensitivePath.of("SUB_HISTORY_END.txt");
+
+    private final VariantsRevisionFromVariabilityBlueprint predecessor;
 
     /**
      * Creates a new error blueprint for a VariantsRevision.
@@ -36,15 +44,14 @@ public class VariantsRevisionFromErrorBlueprint extends VariantsRevisionBlueprin
      */
     public VariantsRevisionFromErrorBlueprint(final VariantsRevisionFromVariabilityBlueprint predecessor) {
         super(predecessor);
-        Objects.requireNonNull(predecessor);
+        this.predecessor = Objects.requireNonNull(predecessor);
     }
 
     @Override
     protected Lazy<Sample> computeSample() {
         // We don't have any variability information but instead want to introduce an artificial error commit.
         // Thus, we just have to operate on the variants already present.
-        // We know that we have a predecessor because it is necessary to have one in the constructor.
-        return getPredecessor().orElseThrow().getSample();
+        return predecessor.getSample();
     }
 
     @Override
@@ -52,19 +59,17 @@ public class VariantsRevisionFromErrorBlueprint extends VariantsRevisionBlueprin
         return getSample().map(sample -> {
             final AbstractVariantsRepository variantsRepo = revision.getVariantsRepo();
             final Map<Branch, VariantCommit> commits = new HashMap<>(sample.size());
+            final byte[] marker = predecessor.getSPLCommit().id().getBytes(StandardCharsets.UTF_8);
 
             for (final Variant variant : sample.variants()) {
                 final Branch branch = variantsRepo.getBranchByName(variant.getName());
                 final Optional<VariantCommit> variantCommit;
 
                 try {
-                    variantsRepo.checkoutBranch(branch);
-                    // TODO: We cannot commit no changes. So we have to change something. What could that be?
-                    //       A simple text file might really be all we need here. Either an empty file or a file with the hashes of the associated commits.
-                    //       Idea: Remember in the error blueprint the number of the sub-history it ends. As initial commit to each branch,
-                    //             add that file and change its content to the remembered number here.
-                    variantCommit = variantsRepo.commit(COMMIT_MESSAGE);
-                } catch (final GitAPIException | IOException e) {
+                    // We cannot commit no changes. So we add the marker file to the files of the variant.
+                    // Like the variants, the marker is committed without checking out the branch.
+                    variantCommit = variantsRepo.commitFile(branch, MARKER_FILE, marker, COMMIT_MESSAGE);
+                } catch (final IOException e) {
                     throw new RuntimeException("Failed when using the VariantsRepository.");
                 }
 
@@ -9,17 +9,22 @@ import org.variantsync.vevos.simulation.repository.AbstractSPLRepository;
 import org.variantsync.vevos.simulation.repository.AbstractVariantsRepository;
 import org.variantsync.vevos.simulation.repository.Branch;
 import org.tinylog.Logger;
+import org.variantsync.vevos.simulation.util.Clock;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
 import org.variantsync.vevos.simulation.variability.SPLCommit;
 import org.variantsync.vevos.simulation.variability.pc.Artefact;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
 import org.variantsync.vevos.simulation.variants.VariantCommit;
 import org.variantsync.vevos.simulation.variants.VariantsRevision;
 import org.variantsync.vevos.simulation.variants.sampling.SamplingStrategy;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +35,21 @@ import java.util.Optional;
 public class VariantsRevisionFromVariabilityBlueprint extends VariantsRevisionBlueprint {
     private final SPLCommit splCommit;
     private final SamplingStrategy sampler;
+    private PhaseTimes phaseTimes = null;
+
+    /**
+     * Time spent in each phase of generating a revision.
+     * @param materialiseSeconds Time to make the files of the SPL commit available (e.g., by checking out the commit).
+     * @param generateSeconds Time to generate all variants.
+     * @param commitSeconds Time to commit all variants to the variants repository.
+     */
+    public record PhaseTimes(double materialiseSeconds, double generateSeconds, double commitSeconds) {
+        @Override
+        public String toString() {
+            return "materialising took " + materialiseSeconds + "s, generating took " + generateSeconds
+                    + "s, committing took " + commitSeconds + "s";
+        }
+    }
 
     /**
      * Creates a new blueprint that can generate variants from the given splCommit that contains the
@@ -52,6 +72,14 @@ public class VariantsRevisionFromVariabilityBlueprint extends VariantsRevisionBl
         return splCommit;
     }
 
+    /**
+     * @return The time spent in each phase of generating the revision of this blueprint.
+     *         Empty if the revision was not generated yet.
+     */
+    public Optional<PhaseTimes> getPhaseTimes() {
+        return Optional.ofNullable(phaseTimes);
+    }
+
     @Override
     protected Lazy<Sample> computeSample() {
         return splCommit.featureModel()
@@ -68,46 +96,86 @@ public class VariantsRevisionFromVariabilityBlueprint extends VariantsRevisionBl
             final AbstractSPLRepository splRepo = revision.getSPLRepo();
             final AbstractVariantsRepository variantsRepo = revision.getVariantsRepo();
 
+            final Clock clock = new Clock();
+
+            // Phase 1: Materialise the SPL commit once for all variants.
+            clock.start();
+            final SPLSource splSource;
+            try {
+                splSource = splRepo.sourceOf(splCommit);
+            } catch (final IOException | GitAPIException e) {
+                throw new RuntimeException("Failed to access commit " + splCommit.id()
+                                + " in SPL Repository.");
+            }
+            final double materialiseSeconds = clock.getPassedSeconds();
+
+            // Phase 2: Generate the code of all variants into a scratch directory such that
+            // no branch has to be checked out.
+            // The scratch directory is placed next to the variants repository such that the variants are generated
+            // on the same file system to which they are committed.
+            clock.start();
+            final Path variantsDir;
+            try {
+                final Path variantsRepoDir = variantsRepo.getPath().toAbsolutePath();
+                variantsDir = Files.createTempDirectory(variantsRepoDir.getParent(),
+                                variantsRepoDir.getFileName() + "-variants");
+            } catch (final IOException e) {
+                splSource.close();
+                throw new RuntimeException("Failed to create a directory for the variants of commit "
+                                + splCommit.id());
+            }
+            final double generateSeconds;
             final Map<Branch, VariantCommit> commits = new HashMap<>(sample.size());
-            for (final Variant variant : sample.variants()) {
-                final Branch branch = variantsRepo.getBranchByName(variant.getName());
-
-                try {
-                    variantsRepo.checkoutBranch(branch);
-                } catch (final IOException | GitAPIException e) {
-                    throw new RuntimeException("Failed checkout of branch " + branch
-                                    + " in variants repository.");
+            try {
+                final Map<Variant, Result<GroundTruth, Exception>> results;
+                try (splSource) {
+                    results = traces.generateVariants(
+                                    sample,
+                                    splSource,
+                                    variant -> new CaseSensitivePath(variantsDir.resolve(variant.getName())),
+                                    VariantGenerationOptions.ExitOnErrorButAllowNonExistentFiles(false,
+                                                    ArtefactFilter.KeepAll()));
                 }
+                generateSeconds = clock.getPassedSeconds();
 
-                try {
-                    splRepo.checkoutCommit(splCommit);
-                } catch (final IOException | GitAPIException e) {
-                    throw new RuntimeException("Failed checkout of commit " + splCommit.id()
-                                    + " in SPL Repository.");
-                }
+                // Phase 3: Commit the generated variants to their branches.
+                clock.start();
+                for (final Variant variant : sample.variants()) {
+                    final Branch branch = variantsRepo.getBranchByName(variant.getName());
+                    final Result<GroundTruth, Exception> result = results.get(variant);
+                    Logger.debug(result.map(u -> "Generating variant " + variant + " was successful!"));
 
-                // Generate the code
-                final Result<GroundTruth, Exception> result = traces.generateVariant(variant,
-                                new CaseSensitivePath(splRepo.getPath()),
-                                new CaseSensitivePath(variantsRepo.getPath()),
-                                VariantGenerationOptions.ExitOnErrorButAllowNonExistentFiles(false,
-                                                ArtefactFilter.KeepAll()));
-                Logger.debug(result.map(u -> "Generating variant " + variant + " was successful!"));
-
-                // Commit the generated variant with the corresponding spl commit has as message.
-                final String commitMessage = splCommit.id() + " || " + splCommit.message() + " || "
-                                + variant.getName();
-                final Optional<VariantCommit> variantCommit;
-
-                try {
-                    variantCommit = variantsRepo.commit(commitMessage);
-                } catch (final GitAPIException | IOException e) {
-                    throw new RuntimeException("Failed to commit " + commitMessage
-                                    + " to VariantsRepository.");
-                }
+                    // Commit the generated variant with the corresponding spl commit has as message.
+                    final String commitMessage = splCommit.id() + " || " + splCommit.message() + " || "
+                                    + variant.getName();
+                    final Optional<VariantCommit> variantCommit;
+
+                    try {
+                        if (result.isSuccess()) {
+                            // Only the generated files are committed, without scanning the working tree.
+                            variantCommit = variantsRepo.commit(branch, variantsDir.resolve(variant.getName()),
+                                            result.getSuccess().fileMatches().keySet(), commitMessage);
+                        } else {
+                            Logger.error("Failed to generate variant " + variant.getName()
+                                            + ". Skipping commit " + commitMessage, result.getFailure());
+                            variantCommit = Optional.empty();
+                        }
+                    } catch (final IOException e) {
+                        throw new RuntimeException("Failed to commit " + commitMessage
+                                        + " to VariantsRepository.");
+                    }
 
-                variantCommit.ifPresent(commit -> commits.put(branch, commit));
+                    variantCommit.ifPresent(commit -> commits.put(branch, commit));
+                }
+            } finally {
+                // The scratch directory is removed even if generating or committing failed.
+                PathUtils.deleteDirectory(variantsDir);
             }
+            final double commitSeconds = clock.getPassedSeconds();
+
+            phaseTimes = new PhaseTimes(materialiseSeconds, generateSeconds, commitSeconds);
+            Logger.info("Generated revision of SPL commit " + splCommit.id() + " with " + sample.size()
+                            + " variants: " + phaseTimes);
 
             return new VariantsRevision.Branches(commits);
         });
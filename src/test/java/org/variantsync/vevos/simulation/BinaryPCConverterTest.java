@@ -0,0 +1,122 @@
+package org.variantsync.vevos.simulation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCConverter;
+import org.variantsync.vevos.simulation.io.data.VariabilityDatasetLoader;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.pc.Artefact;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Tests that converting the ground truths of a dataset to the binary format does not change the loaded dataset.
+ */
+public class BinaryPCConverterTest {
+    private static final Path DATASET = Path.of("src/test/resources/simple-variability-metadata");
+    private static final String COMMIT = "aed45b2f723e372b750e8007c72730bcddee7174";
+    private static final Path GROUND_TRUTH = Path.of("src/test/resources/variantgeneration/KernelHavenPCs.spl.csv");
+    private static final Path OTHER_GROUND_TRUTH = Path.of("src/test/resources/new-gt-format/code-variability.after.spl.csv");
+
+    private Path dataset;
+    private boolean hardCrashOnTry;
+
+    static {
+        VEVOS.Initialize();
+    }
+
+    @Before
+    public void copyDataset() throws IOException {
+        // Some commits lack some files, which are expected to be loaded as empty.
+        hardCrashOnTry = Result.HARD_CRASH_ON_TRY;
+        Result.HARD_CRASH_ON_TRY = false;
+        dataset = Files.createTempDirectory("binary-conversion");
+        try (final Stream<Path> files = Files.walk(DATASET)) {
+            for (final Path file : files.filter(Files::isRegularFile).toList()) {
+                final Path target = dataset.resolve(DATASET.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                // Use a ground truth that can be parsed.
+                Files.copy(target.getFileName().toString().equals("code-variability.spl.csv") ? GROUND_TRUTH : file, target);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Result.HARD_CRASH_ON_TRY = hardCrashOnTry;
+        PathUtils.deleteDirectory(dataset);
+    }
+
+    @Test
+    public void convertedDatasetEqualsOriginalDataset() throws IOException {
+        final Map<String, Optional<Artefact>> expected = presenceConditionsOf(dataset, ".csv");
+        Assert.assertTrue(expected.values().stream().anyMatch(Optional::isPresent));
+
+        Assert.assertEquals(expected.size(), BinaryPCConverter.convert(dataset, false));
+        Assert.assertEquals(expected, presenceConditionsOf(dataset, ".bin"));
+        Assert.assertEquals(expected.size(), countFiles(".spl.csv"));
+
+        // Ground truths that are extracted again after the conversion replace their outdated binaries.
+        final Path csv = dataset.resolve("data").resolve(COMMIT).resolve("code-variability.spl.csv");
+        Files.copy(OTHER_GROUND_TRUTH, csv, StandardCopyOption.REPLACE_EXISTING);
+        final Path binary = csv.resolveSibling("code-variability.spl.bin");
+        // Make sure the change is visible even on file systems with coarse timestamps.
+        Files.setLastModifiedTime(csv, FileTime.fromMillis(Files.getLastModifiedTime(binary).toMillis() + 2000));
+        final Map<String, SPLCommit> reextracted = commitsById(dataset);
+        Assert.assertEquals(csv, reextracted.get(COMMIT).getPresenceConditionsFallbackPath());
+        Assert.assertNotEquals(expected.get(COMMIT), reextracted.get(COMMIT).presenceConditionsFallback().run());
+    }
+
+    @Test
+    public void convertedDatasetWithoutCSVEqualsOriginalDataset() throws IOException {
+        final Map<String, Optional<Artefact>> expected = presenceConditionsOf(dataset, ".csv");
+
+        Assert.assertEquals(expected.size(), BinaryPCConverter.convert(dataset, true));
+        Assert.assertEquals(0, countFiles(".spl.csv"));
+        Assert.assertEquals(expected.size(), countFiles(".spl.bin"));
+        Assert.assertEquals(expected, presenceConditionsOf(dataset, ".bin"));
+    }
+
+    /**
+     * Loads the given dataset and asserts that all ground truths are loaded from files with the given extension.
+     * @return The ground truth of each commit that has one.
+     */
+    private static Map<String, Optional<Artefact>> presenceConditionsOf(final Path dataset, final String extension) {
+        final Map<String, Optional<Artefact>> presenceConditions = new HashMap<>();
+        commitsById(dataset).forEach((id, commit) -> {
+            final Path path = commit.getPresenceConditionsFallbackPath();
+            if (Files.exists(path.resolveSibling("code-variability.spl.csv")) || Files.exists(path.resolveSibling("code-variability.spl.bin"))) {
+                Assert.assertTrue(path.toString(), path.toString().endsWith(extension));
+                presenceConditions.put(id, commit.presenceConditionsFallback().run());
+            }
+        });
+        return presenceConditions;
+    }
+
+    private static Map<String, SPLCommit> commitsById(final Path dataset) {
+        final Map<String, SPLCommit> commits = new HashMap<>();
+        // Probe all files as a catalog does not notice files that are replaced in place.
+        for (final SPLCommit commit : new VariabilityDatasetLoader(false).load(dataset).expect("Could not load dataset").getAllCommits()) {
+            commits.put(commit.id(), commit);
+        }
+        return commits;
+    }
+
+    private long countFiles(final String suffix) throws IOException {
+        try (final Stream<Path> files = Files.walk(dataset)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).count();
+        }
+    }
+}
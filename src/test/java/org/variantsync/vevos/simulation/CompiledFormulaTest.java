@@ -0,0 +1,124 @@
+package org.variantsync.vevos.simulation;
+
+import de.ovgu.featureide.fm.core.base.IFeatureModel;
+import org.junit.Assert;
+import org.junit.Test;
+import org.prop4j.*;
+import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.config.FeatureIDEConfiguration;
+import org.variantsync.vevos.simulation.feature.config.FeatureIndex;
+import org.variantsync.vevos.simulation.feature.config.IConfiguration;
+import org.variantsync.vevos.simulation.feature.config.IndexedConfiguration;
+import org.variantsync.vevos.simulation.feature.sampling.IndexedSample;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
+import org.variantsync.vevos.simulation.util.fide.FeatureModelUtils;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
+
+import de.ovgu.featureide.fm.core.analysis.cnf.formula.FeatureModelFormula;
+
+import java.util.*;
+
+public class CompiledFormulaTest {
+    // E and X are not indexed. E is always assigned, whereas X is only assigned by the variants of a sample.
+    private static final String[] VARIABLES = {"A", "B", "C", "D", "E", "X"};
+    private static final FeatureIndex INDEX = FeatureIndex.of(List.of("A", "B", "C", "D"));
+
+    static {
+        VEVOS.Initialize();
+    }
+
+    @Test
+    public void compiledEvaluationEqualsFormulaEvaluation() {
+        final Random random = new Random(1234);
+        for (int i = 0; i < 2000; ++i) {
+            final Map<Object, Boolean> assignment = new HashMap<>();
+            for (final String feature : List.of("A", "B", "C", "D", "E")) {
+                assignment.put(feature, random.nextBoolean());
+            }
+            final IConfiguration config = formula -> formula.getValue(assignment);
+            final IndexedConfiguration indexed = config.toIndexed(INDEX);
+
+            for (int j = 0; j < 10; ++j) {
+                final Node formula = randomFormula(random, 4);
+                Assert.assertEquals(formula.toString(), evaluate(config, formula), evaluate(indexed, formula));
+            }
+        }
+    }
+
+    @Test
+    public void bitParallelEvaluationEqualsPerVariantEvaluation() {
+        final Random random = new Random(4321);
+        // more than two words of variants
+        final List<Variant> variants = new ArrayList<>();
+        for (int v = 0; v < 150; ++v) {
+            final Map<Object, Boolean> assignment = new HashMap<>();
+            // The variants assign the unindexed features E and X, too, such that all formulas can be evaluated.
+            for (final String feature : List.of("A", "B", "C", "D", "E", "X")) {
+                assignment.put(feature, random.nextBoolean());
+            }
+            variants.add(new Variant("V" + v, formula -> formula.getValue(assignment)));
+        }
+        final IndexedSample sample = Sample.of(variants).index(INDEX);
+
+        int withUnindexedFeature = 0;
+        for (int i = 0; i < 2000; ++i) {
+            final Node formula = randomFormula(random, 4);
+            final long[] implementing = sample.implementing(formula);
+            for (int v = 0; v < variants.size(); ++v) {
+                Assert.assertEquals(formula.toString(), variants.get(v).isImplementing(formula), IndexedSample.contains(implementing, v));
+            }
+            Assert.assertEquals(0, implementing[implementing.length - 1] & ~sample.all()[implementing.length - 1]);
+            if (formula.getContainedFeatures().contains("X")) {
+                ++withUnindexedFeature;
+            }
+        }
+        Assert.assertTrue(withUnindexedFeature > 0);
+    }
+
+    @Test
+    public void featureIDEConfigurationUsesIndex() {
+        final IFeatureModel model = FeatureModelUtils.FromOptionalFeatures("A", "B", "C", "D");
+        final FeatureModelFormula fmf = new FeatureModelFormula(model);
+        final FeatureIDEConfiguration plain = new FeatureIDEConfiguration(fmf, List.of("A", "C"));
+        final IndexedConfiguration indexed = plain.toIndexed(FeatureIndex.of(model));
+
+        final Node pc = new And(new Literal("A"), new Or(new Literal("B", false), new Literal("D")), FixTrueFalse.True);
+        Assert.assertTrue(plain.satisfies(pc));
+        Assert.assertTrue(indexed.satisfies(pc));
+        Assert.assertFalse(indexed.satisfies(new Not(pc)));
+        Assert.assertSame(indexed.getFeatureIndex().compile(pc), indexed.getFeatureIndex().compile(pc));
+    }
+
+    /**
+     * @return The value of the formula or null if it cannot be evaluated.
+     */
+    private static Boolean evaluate(final IConfiguration config, final Node formula) {
+        try {
+            return config.satisfies(formula);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Node randomFormula(final Random random, final int depth) {
+        final int kind = depth == 0 ? random.nextInt(3) : random.nextInt(9);
+        return switch (kind) {
+            case 0, 1 -> new Literal(VARIABLES[random.nextInt(VARIABLES.length)], random.nextBoolean());
+            case 2 -> random.nextBoolean() ? FixTrueFalse.True : FixTrueFalse.False;
+            case 3 -> new Not(randomFormula(random, depth - 1));
+            case 4, 5 -> new And((Object[]) randomFormulas(random, depth - 1));
+            case 6, 7 -> new Or((Object[]) randomFormulas(random, depth - 1));
+            default -> random.nextBoolean()
+                    ? new Implies(randomFormula(random, depth - 1), randomFormula(random, depth - 1))
+                    : new Equals(randomFormula(random, depth - 1), randomFormula(random, depth - 1));
+        };
+    }
+
+    private static Node[] randomFormulas(final Random random, final int depth) {
+        final Node[] formulas = new Node[random.nextInt(4)];
+        for (int i = 0; i < formulas.length; ++i) {
+            formulas[i] = randomFormula(random, depth);
+        }
+        return formulas;
+    }
+}
@@ -0,0 +1,114 @@
+package org.variantsync.vevos.simulation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.variantsync.vevos.simulation.io.data.DatasetCatalog;
+import org.variantsync.vevos.simulation.io.data.VariabilityDatasetLoader;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.VariabilityDataset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Tests that datasets loaded from their catalog equal datasets loaded by probing all files.
+ */
+public class DatasetCatalogTest {
+    private static final Path DATASET = Path.of("src/test/resources/simple-variability-metadata");
+    private static final String COMMIT = "aed45b2f723e372b750e8007c72730bcddee7174";
+
+    private Path dataset;
+
+    static {
+        VEVOS.Initialize();
+    }
+
+    @Before
+    public void copyDataset() throws IOException {
+        dataset = Files.createTempDirectory("dataset-catalog");
+        try (final Stream<Path> files = Files.walk(DATASET)) {
+            for (final Path file : files.filter(Files::isRegularFile).toList()) {
+                final Path target = dataset.resolve(DATASET.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(file, target);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        PathUtils.deleteDirectory(dataset);
+    }
+
+    @Test
+    public void catalogedDatasetEqualsProbedDataset() throws IOException {
+        final Path catalog = dataset.resolve(DatasetCatalog.FILE_NAME);
+        final List<String> expected = describe(new VariabilityDatasetLoader(false).load(dataset).expect("Could not load dataset"));
+        Assert.assertFalse(Files.exists(catalog));
+
+        // The first load creates the catalog and the second one uses it.
+        Assert.assertEquals(expected, describe(new VariabilityDatasetLoader().load(dataset).expect("Could not load dataset")));
+        Assert.assertTrue(Files.exists(catalog));
+        final FileTime written = Files.getLastModifiedTime(catalog);
+        Assert.assertEquals(expected, describe(new VariabilityDatasetLoader().load(dataset).expect("Could not load dataset")));
+        Assert.assertEquals(written, Files.getLastModifiedTime(catalog));
+
+        // Adding files to a commit outdates the catalog.
+        final Path commitDir = dataset.resolve("data").resolve(COMMIT);
+        Files.copy(commitDir.resolve("code-variability.spl.csv"), commitDir.resolve("code-variability.spl.bin"));
+        // Make sure the change is visible even on file systems with coarse timestamps.
+        Files.setLastModifiedTime(commitDir, FileTime.fromMillis(Files.getLastModifiedTime(commitDir).toMillis() + 2000));
+        final List<String> changed = describe(new VariabilityDatasetLoader().load(dataset).expect("Could not load dataset"));
+        Assert.assertEquals(describe(new VariabilityDatasetLoader(false).load(dataset).expect("Could not load dataset")), changed);
+        Assert.assertNotEquals(expected, changed);
+        Assert.assertTrue(changed.stream().anyMatch(commit -> commit.startsWith(COMMIT) && commit.contains("code-variability.spl.bin")));
+
+        // Broken catalogs are replaced.
+        Files.write(catalog, new byte[] {1, 2, 3});
+        Assert.assertEquals(changed, describe(new VariabilityDatasetLoader().load(dataset).expect("Could not load dataset")));
+        Assert.assertTrue(Files.size(catalog) > 3);
+
+        // So are catalogs with a valid header but invalid counts.
+        final byte[] corrupt = Files.readAllBytes(catalog);
+        // The number of commits follows the magic bytes, the version, and the fingerprint.
+        ByteBuffer.wrap(corrupt).putInt(7 + 4 + 1 + 32, -1);
+        Files.write(catalog, corrupt);
+        Assert.assertEquals(changed, describe(new VariabilityDatasetLoader().load(dataset).expect("Could not load dataset")));
+        Assert.assertFalse(Arrays.equals(corrupt, Files.readAllBytes(catalog)));
+    }
+
+    private static List<String> describe(final VariabilityDataset dataset) {
+        final List<String> commits = new ArrayList<>();
+        for (final List<SPLCommit> category : List.of(
+                dataset.getSuccessCommits(),
+                dataset.getErrorCommits(),
+                dataset.getEmptyCommits(),
+                dataset.getPartialSuccessCommits())) {
+            for (final SPLCommit commit : category) {
+                commits.add(String.join(" ",
+                        commit.id(),
+                        String.valueOf(commit.getCommitDataDirectory()),
+                        String.valueOf(commit.getKernelHavenLogPath()),
+                        String.valueOf(commit.getFeatureModelPath()),
+                        String.valueOf(commit.getPresenceConditionsBeforePath()),
+                        String.valueOf(commit.getPresenceConditionsAfterPath()),
+                        String.valueOf(commit.getPresenceConditionsFallbackPath()),
+                        String.valueOf(commit.getCommitMessagePath()),
+                        String.valueOf(commit.getFilterCountsPath()),
+                        commit.parents().map(parents -> Arrays.toString(Arrays.stream(parents).map(SPLCommit::id).toArray())).orElse("-")));
+            }
+            commits.add("|");
+        }
+        return commits;
+    }
+}
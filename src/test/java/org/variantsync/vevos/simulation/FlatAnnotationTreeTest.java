@@ -0,0 +1,258 @@
+package org.variantsync.vevos.simulation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.config.SimpleConfiguration;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
+import org.variantsync.vevos.simulation.io.TextIO;
+import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenSPLPCIO;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.pc.*;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.AnnotationGroundTruth;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.BlockMatching;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
+import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.visitor.common.CallbackArtefactVisitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class FlatAnnotationTreeTest {
+    private static final List<Path> PC_FILES = List.of(
+            Path.of("src/test/resources/new-gt-format/code-variability.after.spl.csv"),
+            Path.of("src/test/resources/variantgeneration/KernelHavenPCs.spl.csv")
+    );
+    private static final List<ArtefactFilter<LineBasedAnnotation>> FILTERS = List.of(
+            ArtefactFilter.KeepAll(),
+            ArtefactFilter.Local(a -> a.getLineType().notAMacro()),
+            // Not local: Keeps the root, every other subtree of an annotation, and annotations with subtrees.
+            a -> !(a.getParent() instanceof LineBasedAnnotation parent)
+                    || parent.getSubtrees().indexOf(a) % 2 == 0
+                    || !a.getSubtrees().isEmpty()
+    );
+
+    static {
+        VEVOS.Initialize();
+    }
+
+    @Test
+    public void viewsEqualFlattenedAnnotations() {
+        for (final SourceCodeFile file : sourceCodeFiles()) {
+            final LineBasedAnnotation root = file.getRootAnnotation();
+            final FlatAnnotationTree flat = FlatAnnotationTree.of(root);
+            Assert.assertEquals(root.indexAnnotations(), flat.size());
+            Assert.assertEquals(root, flat.toAnnotation());
+
+            final List<LineBasedAnnotation> annotations = inPreorder(root);
+            for (int i = 0; i < flat.size(); ++i) {
+                final int parent = i == 0 ? -1 : ((LineBasedAnnotation) annotations.get(i).getParent()).getPreorderIndex();
+                Assert.assertEquals(parent, flat.getParent(i));
+                Assert.assertEquals(i + inPreorder(annotations.get(i)).size(), flat.getSubtreeEnd(i));
+            }
+        }
+    }
+
+    @Test
+    public void derivationEqualsDerivationOfViews() {
+        final Random random = new Random(42);
+        for (final SourceCodeFile file : sourceCodeFiles()) {
+            final LineBasedAnnotation root = file.getRootAnnotation();
+            final FlatAnnotationTree flat = FlatAnnotationTree.of(root);
+            final List<String> features = featuresOf(root);
+            for (int v = 0; v < 20; ++v) {
+                final Variant variant = randomVariant(random, features);
+                for (final ArtefactFilter<LineBasedAnnotation> filter : FILTERS) {
+                    // Filters have to be asked for the same annotations in the same order.
+                    final List<String> expectedCalls = new ArrayList<>();
+                    final List<String> actualCalls = new ArrayList<>();
+                    final Optional<AnnotationGroundTruth> expected = root.deriveForVariant(variant, recording(filter, expectedCalls));
+                    final Optional<FlatAnnotationTree.Derivation> actual = flat.deriveForVariant(variant, recording(filter, actualCalls));
+                    Assert.assertEquals(expectedCalls, actualCalls);
+                    Assert.assertEquals(expected.isPresent(), actual.isPresent());
+                    if (expected.isEmpty()) {
+                        continue;
+                    }
+
+                    final BlockMatching expectedMatching = expected.get().matching();
+                    final FlatAnnotationTree.Derivation derivation = actual.get();
+                    Assert.assertEquals(expected.get().variantArtefact(), derivation.getVariant().toAnnotation());
+                    Assert.assertEquals(
+                            root.getLinesToCopy(expectedMatching::isPresentInVariant),
+                            flat.getLinesToCopy(derivation::isPresentInVariant));
+
+                    final LineBasedAnnotation splView = flat.toAnnotation();
+                    final LineBasedAnnotation variantView = derivation.getVariant().toAnnotation();
+                    final BlockMatching actualMatching = derivation.matching(splView, variantView);
+                    final List<LineBasedAnnotation> splAnnotations = inPreorder(root);
+                    final List<LineBasedAnnotation> splViews = inPreorder(splView);
+                    for (int i = 0; i < splAnnotations.size(); ++i) {
+                        Assert.assertEquals(expectedMatching.getVariantAnnotationOf(splAnnotations.get(i)), actualMatching.getVariantAnnotationOf(splViews.get(i)));
+                        Assert.assertEquals(expectedMatching.isPresentInVariant(splAnnotations.get(i)), derivation.isPresentInVariant(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void derivationForSampleEqualsDerivationForEachVariant() {
+        final Random random = new Random(7);
+        for (final SourceCodeFile file : sourceCodeFiles()) {
+            final FlatAnnotationTree flat = FlatAnnotationTree.of(file.getRootAnnotation());
+            final List<String> features = featuresOf(file.getRootAnnotation());
+            // more than one word of variants
+            final List<Variant> variants = new ArrayList<>();
+            for (int v = 0; v < 70; ++v) {
+                variants.add(randomVariant(random, features));
+            }
+            final FlatAnnotationTree.EvaluatedPresenceConditions presenceConditions = flat.evaluate(Sample.of(variants));
+
+            for (int v = 0; v < variants.size(); ++v) {
+                for (final ArtefactFilter<LineBasedAnnotation> filter : FILTERS) {
+                    final List<String> expectedCalls = new ArrayList<>();
+                    final List<String> actualCalls = new ArrayList<>();
+                    final Optional<FlatAnnotationTree.Derivation> expected = flat.deriveForVariant(variants.get(v), recording(filter, expectedCalls));
+                    final Optional<FlatAnnotationTree.Derivation> actual = flat.deriveForVariant(presenceConditions, v, recording(filter, actualCalls));
+                    Assert.assertEquals(expectedCalls, actualCalls);
+                    Assert.assertEquals(expected.isPresent(), actual.isPresent());
+                    if (expected.isPresent()) {
+                        Assert.assertEquals(expected.get().getVariant().toAnnotation(), actual.get().getVariant().toAnnotation());
+                        for (int i = 0; i < flat.size(); ++i) {
+                            Assert.assertEquals(expected.get().getVariantIndexOf(i), actual.get().getVariantIndexOf(i));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void lineQueriesEqualQueriesOnViews() {
+        for (final SourceCodeFile file : sourceCodeFiles()) {
+            final LineBasedAnnotation root = file.getRootAnnotation();
+            final SourceCodeFile flatFile = new SourceCodeFile(file.getFeatureMapping(), file.getPresenceCondition(), file.getFile(), FlatAnnotationTree.of(root));
+            for (int line = 0; line <= root.getLineTo() + 1; ++line) {
+                final Result<?, Exception> expected = file.getPresenceConditionOf(file.getFile(), line);
+                final Result<?, Exception> actual = flatFile.getPresenceConditionOf(file.getFile(), line);
+                Assert.assertEquals(expected.isSuccess(), actual.isSuccess());
+                if (expected.isSuccess()) {
+                    Assert.assertEquals(expected.getSuccess(), actual.getSuccess());
+                }
+            }
+            // Queries must not create views.
+            Assert.assertNotNull(flatFile.getFlatAnnotations());
+        }
+    }
+
+    @Test
+    public void generationFromFlattenedAnnotationsEqualsGeneration() throws IOException {
+        final Path splDir = Path.of("src/test/resources/new-gt-format/spl");
+        final Path tempDir = Files.createTempDirectory("flat-annotations");
+        try {
+            final List<SourceCodeFile> files = sourceCodeFiles(PC_FILES.get(0));
+            final List<FlatAnnotationTree> flatAnnotations = new ArrayList<>();
+            for (final SourceCodeFile file : files) {
+                flatAnnotations.add(FlatAnnotationTree.of(file.getRootAnnotation()));
+            }
+
+            final VariantGenerationOptions options = VariantGenerationOptions.ExitOnErrorButAllowNonExistentFiles(false, ArtefactFilter.KeepAll());
+            for (final List<String> features : List.of(List.of("FEATURE_A"), List.of("FEATURE_A", "FEATURE_B"), List.of("FEATURE_C", "FEATURE_D"))) {
+                final Variant variant = new Variant(String.join("", features), new SimpleConfiguration(features));
+                for (int i = 0; i < files.size(); ++i) {
+                    final SourceCodeFile flatFile = new SourceCodeFile(files.get(i).getFeatureMapping(), files.get(i).getPresenceCondition(), files.get(i).getFile(), flatAnnotations.get(i));
+                    final CaseSensitivePath expectedDir = new CaseSensitivePath(tempDir.resolve("expected").resolve(variant.getName()));
+                    final CaseSensitivePath actualDir = new CaseSensitivePath(tempDir.resolve("actual").resolve(variant.getName()));
+                    final GroundTruth expected = files.get(i).generateVariant(variant, new CaseSensitivePath(splDir), expectedDir, options)
+                            .expect("Generation failed!");
+                    final GroundTruth actual = flatFile.generateVariant(variant, new CaseSensitivePath(splDir), actualDir, options)
+                            .expect("Generation from flattened annotations failed!");
+                    // Generation must not create views.
+                    Assert.assertNotNull(flatFile.getFlatAnnotations());
+
+                    final CaseSensitivePath file = files.get(i).getFile();
+                    Assert.assertEquals(
+                            TextIO.readAsString(expectedDir.resolve(file).path()),
+                            TextIO.readAsString(actualDir.resolve(file).path()));
+                    Assert.assertEquals(expected.variant(), actual.variant());
+                    Assert.assertEquals(expected.fileMatches().keySet(), actual.fileMatches().keySet());
+                    final AnnotationGroundTruth expectedMatch = expected.fileMatches().get(file);
+                    final AnnotationGroundTruth actualMatch = actual.fileMatches().get(file);
+                    Assert.assertEquals(expectedMatch.splArtefact(), actualMatch.splArtefact());
+                    Assert.assertEquals(expectedMatch.variantArtefact(), actualMatch.variantArtefact());
+                    Assert.assertSame(flatFile.getRootAnnotation(), actualMatch.splArtefact());
+                    Assert.assertSame(((SourceCodeFile) actual.variant()).getRootAnnotation(), actualMatch.variantArtefact());
+                }
+            }
+        } finally {
+            PathUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    private static ArtefactFilter<LineBasedAnnotation> recording(final ArtefactFilter<LineBasedAnnotation> filter, final List<String> calls) {
+        final ArtefactFilter<LineBasedAnnotation> recording = a -> {
+            calls.add(a.getLineFrom() + "-" + a.getLineTo() + " " + a.getPresenceCondition());
+            return filter.shouldKeep(a);
+        };
+        return filter.isLocal() ? ArtefactFilter.Local(recording) : recording;
+    }
+
+    private static List<SourceCodeFile> sourceCodeFiles() {
+        final List<SourceCodeFile> files = new ArrayList<>();
+        for (final Path pcFile : PC_FILES) {
+            files.addAll(sourceCodeFiles(pcFile));
+        }
+        return files;
+    }
+
+    private static List<SourceCodeFile> sourceCodeFiles(final Path pcFile) {
+        final List<SourceCodeFile> files = new ArrayList<>();
+        new KernelHavenSPLPCIO().load(pcFile).expect("Could not load " + pcFile).accept(new CallbackArtefactVisitor(
+                artefact -> {
+                    if (artefact instanceof SourceCodeFile file) {
+                        files.add(file);
+                    }
+                },
+                artefact -> {}));
+        Assert.assertFalse(files.isEmpty());
+        return files;
+    }
+
+    private static List<LineBasedAnnotation> inPreorder(final LineBasedAnnotation root) {
+        final List<LineBasedAnnotation> annotations = new ArrayList<>();
+        final Deque<LineBasedAnnotation> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            final LineBasedAnnotation annotation = stack.pop();
+            annotations.add(annotation);
+            final List<LineBasedAnnotation> subtrees = annotation.getSubtrees();
+            for (int i = subtrees.size() - 1; i >= 0; --i) {
+                stack.push(subtrees.get(i));
+            }
+        }
+        return annotations;
+    }
+
+    private static List<String> featuresOf(final LineBasedAnnotation root) {
+        final Set<String> features = new TreeSet<>();
+        for (final LineBasedAnnotation annotation : inPreorder(root)) {
+            features.addAll(annotation.getPresenceCondition().getContainedFeatures());
+        }
+        return new ArrayList<>(features);
+    }
+
+    private static Variant randomVariant(final Random random, final List<String> features) {
+        final List<String> selected = new ArrayList<>();
+        for (final String feature : features) {
+            if (random.nextBoolean()) {
+                selected.add(feature);
+            }
+        }
+        return new Variant(String.join("", selected), new SimpleConfiguration(selected));
+    }
+}
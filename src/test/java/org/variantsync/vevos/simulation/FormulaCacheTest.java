@@ -0,0 +1,105 @@
+package org.variantsync.vevos.simulation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.prop4j.Node;
+import org.prop4j.NodeReader;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.util.fide.FormulaCache;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
+
+import java.text.ParseException;
+import java.util.*;
+
+public class FormulaCacheTest {
+    private static final List<String> VARIABLES = List.of("A", "B", "C", "D");
+    private static final List<String> CONSTANTS = List.of("true", "false", "1", "0");
+
+    static {
+        VEVOS.Initialize();
+    }
+
+    @Test
+    public void cachedFormulasEqualUncachedFormulas() {
+        final Random random = new Random(2002);
+        final List<String> formulas = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            formulas.add(randomFormula(random, 4));
+        }
+
+        // The small cache holds a single formula per segment and thus evicts formulas all the time.
+        final FormulaCache small = new FormulaCache(16);
+        final FormulaCache large = new FormulaCache(FormulaCache.DEFAULT_CAPACITY);
+        for (int round = 0; round < 3; ++round) {
+            for (final String formula : formulas) {
+                final Node expected = parseUncached(formula);
+                for (final FormulaCache cache : List.of(small, large)) {
+                    final Node actual = cache.parse(formula).expect("Could not parse " + formula);
+                    Assert.assertEquals(formula, expected, actual);
+                    assertSameEvaluation(formula, expected, actual);
+                }
+            }
+            Assert.assertTrue(small.size() <= 16);
+        }
+        Assert.assertEquals(new HashSet<>(formulas).size(), large.size());
+    }
+
+    @Test
+    public void cachedFormulasAreSharedUntilEvicted() {
+        final FormulaCache cache = new FormulaCache(16);
+        final Node first = cache.parse("A && !B").expect("Could not parse");
+        Assert.assertSame(first, cache.parse("A && !B").expect("Could not parse"));
+
+        // Fill all segments such that the formula is evicted.
+        for (int i = 0; i < 1000; ++i) {
+            cache.parse("X" + i).expect("Could not parse");
+        }
+        Assert.assertTrue(cache.size() <= 16);
+        final Node reparsed = cache.parse("A && !B").expect("Could not parse");
+        Assert.assertNotSame(first, reparsed);
+        Assert.assertEquals(first, reparsed);
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void unparseableFormulasAreNotCached() {
+        final FormulaCache cache = new FormulaCache(16);
+        final Result<Node, ParseException> result = cache.parse("A && (B ||");
+        Assert.assertTrue(result.isFailure());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    /**
+     * Parses the given formula as before the cache was introduced.
+     */
+    private static Node parseUncached(final String formula) {
+        final NodeReader nodeReader = new NodeReader();
+        nodeReader.activateJavaSymbols();
+        final Node parsed = nodeReader.stringToNode(formula);
+        Assert.assertNotNull(formula, parsed);
+        return FixTrueFalse.EliminateTrueAndFalseInplace(parsed);
+    }
+
+    private static void assertSameEvaluation(final String formula, final Node expected, final Node actual) {
+        for (int bits = 0; bits < 1 << VARIABLES.size(); ++bits) {
+            final Map<Object, Boolean> assignment = new HashMap<>();
+            for (int v = 0; v < VARIABLES.size(); ++v) {
+                assignment.put(VARIABLES.get(v), (bits & (1 << v)) != 0);
+            }
+            Assert.assertEquals(formula, expected.getValue(assignment), actual.getValue(assignment));
+        }
+    }
+
+    private static String randomFormula(final Random random, final int depth) {
+        final int kind = depth == 0 ? random.nextInt(2) : random.nextInt(5);
+        return switch (kind) {
+            case 0 -> VARIABLES.get(random.nextInt(VARIABLES.size()));
+            case 1 -> CONSTANTS.get(random.nextInt(CONSTANTS.size()));
+            case 2 -> "!" + randomFormula(random, depth - 1);
+            case 3 -> "(" + randomFormula(random, depth - 1) + " && " + randomFormula(random, depth - 1) + ")";
+            default -> "(" + randomFormula(random, depth - 1) + " || " + randomFormula(random, depth - 1) + ")";
+        };
+    }
+}
@@ -1,11 +1,47 @@
 package org.variantsync.vevos.simulation;
 
+import org.junit.Assert;
 import org.junit.Test;
+import org.prop4j.Literal;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.io.Resources;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCDecoder;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCIO;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCEncoder;
+import org.variantsync.vevos.simulation.io.data.CSVIO;
+import org.variantsync.vevos.simulation.io.kernelhaven.ArtefactCSVExporter;
+import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenPCCache;
 import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenSPLPCIO;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.pc.AnnotationStyle;
+import org.variantsync.vevos.simulation.variability.pc.Artefact;
+import org.variantsync.vevos.simulation.variability.pc.IllegalFeatureTraceSpecification;
+import org.variantsync.vevos.simulation.variability.pc.LineBasedAnnotation;
+import org.variantsync.vevos.simulation.variability.pc.SourceCodeFile;
+import org.variantsync.vevos.simulation.variability.pc.SyntheticArtefactTreeNode;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class KernelHavenPCIOTest {
+    private static final Path[] GROUND_TRUTHS = {
+            Path.of("src/test/resources/new-gt-format/code-variability.after.spl.csv"),
+            Path.of("src/test/resources/variantgeneration/KernelHavenPCs.spl.csv"),
+    };
 
     @Test
     public void test() {
@@ -13,4 +49,303 @@ public class KernelHavenPCIOTest {
         KernelHavenSPLPCIO io = new KernelHavenSPLPCIO();
         io.load(Path.of("src/test/resources/gts/gt-1.spl.csv"));
     }
+
+    @Test
+    public void parallelLoadingEqualsSequentialLoading() {
+        VEVOS.Initialize();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (final Path gt : GROUND_TRUTHS) {
+                final Artefact sequential = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+                final Artefact parallel = new KernelHavenSPLPCIO(pool).load(gt).expect("Was not able to load " + gt);
+                assertSameTree(sequential, parallel);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void configuredParallelIOLoadsCommits() {
+        VEVOS.Initialize();
+        final AtomicInteger workers = new AtomicInteger();
+        final ForkJoinPool pool = new ForkJoinPool(4, p -> {
+            workers.incrementAndGet();
+            return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+        }, null, false);
+        Resources.Instance().setSPLPresenceConditionIO(new KernelHavenSPLPCIO(pool));
+        try {
+            for (final Path gt : GROUND_TRUTHS) {
+                final Artefact sequential = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+                assertSameTree(sequential, presenceConditionsOf(gt));
+            }
+            Assert.assertTrue(workers.get() > 0);
+        } finally {
+            Resources.Instance().setSPLPresenceConditionIO(new KernelHavenSPLPCIO());
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Loads the given ground truth as the presence conditions of a commit.
+     */
+    private static Artefact presenceConditionsOf(final Path gt) {
+        return new SPLCommit("commit", null, null, null, null, new SPLCommit.PresenceConditionPath(gt), null, null, null, null, null)
+                .presenceConditionsAfter().run().orElseThrow();
+    }
+
+    @Test
+    public void lazyLoadingEqualsSequentialLoading() {
+        VEVOS.Initialize();
+        for (final Path gt : GROUND_TRUTHS) {
+            final Artefact sequential = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+            final SyntheticArtefactTreeNode<?> lazy = (SyntheticArtefactTreeNode<?>) new KernelHavenSPLPCIO().loadLazily(gt).expect("Was not able to load " + gt);
+            for (final Object file : lazy.getSubtrees()) {
+                Assert.assertFalse(((SourceCodeFile) file).isMaterialized());
+            }
+            assertSameTree(sequential, lazy);
+        }
+    }
+
+    @Test
+    public void configuredLazyIOLoadsCommitsLazily() {
+        VEVOS.Initialize();
+        Resources.Instance().setSPLPresenceConditionIO(new KernelHavenSPLPCIO(null, null, true));
+        try {
+            for (final Path gt : GROUND_TRUTHS) {
+                final Artefact sequential = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+                final SyntheticArtefactTreeNode<?> lazy = (SyntheticArtefactTreeNode<?>) presenceConditionsOf(gt);
+                for (final Object file : lazy.getSubtrees()) {
+                    Assert.assertFalse(((SourceCodeFile) file).isMaterialized());
+                }
+                assertSameTree(sequential, lazy);
+            }
+        } finally {
+            Resources.Instance().setSPLPresenceConditionIO(new KernelHavenSPLPCIO());
+        }
+    }
+
+    @Test
+    public void bulkConstructionEqualsIncrementalConstruction() {
+        VEVOS.Initialize();
+        for (final Path gt : GROUND_TRUTHS) {
+            final SyntheticArtefactTreeNode<?> loaded = (SyntheticArtefactTreeNode<?>) new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+            for (final Object child : loaded.getSubtrees()) {
+                final SourceCodeFile file = (SourceCodeFile) child;
+                final List<LineBasedAnnotation> annotations = new ArrayList<>();
+                collectCopies(file.getRootAnnotation().getSubtrees(), annotations);
+
+                final SourceCodeFile incremental = new SourceCodeFile(file.getFeatureMapping(), file.getPresenceCondition(), file.getFile());
+                for (final LineBasedAnnotation annotation : annotations) {
+                    incremental.addTrace(annotation.plainCopy());
+                }
+
+                final SourceCodeFile bulk = new SourceCodeFile(file.getFeatureMapping(), file.getPresenceCondition(), file.getFile());
+                final List<LineBasedAnnotation> shuffled = new ArrayList<>(annotations);
+                Collections.shuffle(shuffled, new Random(42));
+                bulk.addTraces(shuffled);
+
+                Assert.assertEquals(file, bulk);
+                Assert.assertEquals(incremental, bulk);
+            }
+        }
+    }
+
+    @Test
+    public void bulkConstructionRejectsOverlappingAnnotations() {
+        final LineBasedAnnotation a = new LineBasedAnnotation(new Literal("A"), new Literal("A"), LineType.IF, 2, 5, AnnotationStyle.Internal);
+        final LineBasedAnnotation b = new LineBasedAnnotation(new Literal("B"), new Literal("B"), LineType.IF, 4, 8, AnnotationStyle.Internal);
+        for (final List<LineBasedAnnotation> annotations : List.of(List.of(a, b), List.of(b, a))) {
+            final SourceCodeFile bulk = new SourceCodeFile(FixTrueFalse.True, FixTrueFalse.True, CaseSensitivePath.of("src", "Overlap.c"));
+            Assert.assertThrows(IllegalFeatureTraceSpecification.class, () -> bulk.addTraces(copies(annotations)));
+
+            final SourceCodeFile incremental = new SourceCodeFile(FixTrueFalse.True, FixTrueFalse.True, CaseSensitivePath.of("src", "Overlap.c"));
+            Assert.assertThrows(IllegalFeatureTraceSpecification.class, () -> copies(annotations).forEach(incremental::addTrace));
+        }
+
+        // Nested annotations and annotations that only touch are accepted.
+        final SourceCodeFile nested = new SourceCodeFile(FixTrueFalse.True, FixTrueFalse.True, CaseSensitivePath.of("src", "Nested.c"));
+        nested.addTraces(List.of(
+                new LineBasedAnnotation(new Literal("A"), new Literal("A"), LineType.IF, 2, 8, AnnotationStyle.Internal),
+                new LineBasedAnnotation(new Literal("B"), new Literal("B"), LineType.IF, 3, 5, AnnotationStyle.Internal),
+                new LineBasedAnnotation(new Literal("C"), new Literal("C"), LineType.IF, 5, 7, AnnotationStyle.Internal)));
+        Assert.assertEquals(1, nested.getRootAnnotation().getSubtrees().size());
+        Assert.assertEquals(2, nested.getRootAnnotation().getSubtrees().get(0).getSubtrees().size());
+    }
+
+    private static List<LineBasedAnnotation> copies(final List<LineBasedAnnotation> annotations) {
+        return annotations.stream().map(LineBasedAnnotation::plainCopy).toList();
+    }
+
+    private static void collectCopies(final List<LineBasedAnnotation> annotations, final List<LineBasedAnnotation> copies) {
+        for (final LineBasedAnnotation annotation : annotations) {
+            copies.add(annotation.plainCopy());
+            collectCopies(annotation.getSubtrees(), copies);
+        }
+    }
+
+    @Test
+    public void cachedLoadingEqualsSequentialLoading() throws IOException {
+        VEVOS.Initialize();
+        final Path tempDir = Files.createTempDirectory("pc-cache");
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final Path cacheDir = tempDir.resolve("cache");
+            for (final Path gt : GROUND_TRUTHS) {
+                final Artefact sequential = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+                // Parse and store, reuse from memory, and reuse from disk.
+                for (final KernelHavenSPLPCIO io : List.of(
+                        new KernelHavenSPLPCIO(null, new KernelHavenPCCache(cacheDir)),
+                        new KernelHavenSPLPCIO(pool, new KernelHavenPCCache(cacheDir)))) {
+                    assertSameTree(sequential, io.load(gt).expect("Was not able to load " + gt));
+                    assertSameTree(sequential, io.load(gt).expect("Was not able to load " + gt));
+                }
+            }
+
+            // Only files whose rows changed are parsed and stored again.
+            final long entries = countFiles(cacheDir);
+            final Path gt = GROUND_TRUTHS[1];
+            final Path changed = tempDir.resolve(gt.getFileName());
+            Files.writeString(changed, Files.readString(gt).replace("src/foo/bar.cpp;A;false;false;ROOT;1;4", "src/foo/bar.cpp;A;false;false;ROOT;1;5"));
+            final Artefact fromCache = new KernelHavenSPLPCIO(null, new KernelHavenPCCache(cacheDir)).load(changed).expect("Was not able to load " + changed);
+            assertSameTree(new KernelHavenSPLPCIO().load(changed).expect("Was not able to load " + changed), fromCache);
+            Assert.assertEquals(entries + 1, countFiles(cacheDir));
+        } finally {
+            pool.shutdown();
+            PathUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void configuredCachedIOLoadsCommitsFromCache() throws IOException {
+        VEVOS.Initialize();
+        final Path cacheDir = Files.createTempDirectory("pc-cache");
+        try {
+            for (final boolean lazy : List.of(true, false)) {
+                Resources.Instance().setSPLPresenceConditionIO(new KernelHavenSPLPCIO(null, new KernelHavenPCCache(cacheDir), lazy));
+                for (final Path gt : GROUND_TRUTHS) {
+                    final Artefact sequential = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+                    assertSameTree(sequential, presenceConditionsOf(gt));
+                }
+                Assert.assertTrue(countFiles(cacheDir) > 0);
+            }
+
+            // Commits loaded later reuse the stored files instead of storing them again.
+            final long entries = countFiles(cacheDir);
+            Resources.Instance().setSPLPresenceConditionIO(new KernelHavenSPLPCIO(null, new KernelHavenPCCache(cacheDir)));
+            for (final Path gt : GROUND_TRUTHS) {
+                presenceConditionsOf(gt);
+            }
+            Assert.assertEquals(entries, countFiles(cacheDir));
+        } finally {
+            Resources.Instance().setSPLPresenceConditionIO(new KernelHavenSPLPCIO());
+            PathUtils.deleteDirectory(cacheDir);
+        }
+    }
+
+    private static long countFiles(final Path dir) throws IOException {
+        try (final Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    public void binaryFormatRoundTrip() throws IOException {
+        VEVOS.Initialize();
+        for (final Path gt : GROUND_TRUTHS) {
+            final Artefact fromCSV = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+            final byte[] binary = BinaryPCEncoder.encode(fromCSV);
+            final Artefact fromBinary = new SyntheticArtefactTreeNode<>(BinaryPCDecoder.decode(binary));
+            assertSameTree(fromCSV, fromBinary);
+            // encoding is deterministic and lossless
+            Assert.assertArrayEquals(binary, BinaryPCEncoder.encode(fromBinary));
+        }
+    }
+
+    @Test
+    public void streamingExportEqualsInMemoryExport() {
+        VEVOS.Initialize();
+        for (final Path gt : GROUND_TRUTHS) {
+            final Artefact loaded = new KernelHavenSPLPCIO().load(gt).expect("Was not able to load " + gt);
+            final ArtefactCSVExporter inMemory = new ArtefactCSVExporter();
+            loaded.accept(inMemory);
+
+            final StringWriter streamed = new StringWriter();
+            loaded.accept(new ArtefactCSVExporter(streamed, CSVIO.DefaultSeparator));
+
+            Assert.assertEquals(inMemory.export().toString(CSVIO.DefaultSeparator), streamed.toString());
+        }
+    }
+
+    @Test
+    public void failedWriteLeavesNoFile() throws IOException {
+        VEVOS.Initialize();
+        // Failed writes are expected to be reported as failures.
+        final boolean hardCrashOnTry = Result.HARD_CRASH_ON_TRY;
+        Result.HARD_CRASH_ON_TRY = false;
+        final Path tempDir = Files.createTempDirectory("pc-write");
+        try {
+            final SourceCodeFile valid = (SourceCodeFile) ((SyntheticArtefactTreeNode<?>) new KernelHavenSPLPCIO().load(GROUND_TRUTHS[1])
+                    .expect("Was not able to load " + GROUND_TRUTHS[1])).getSubtrees().get(0);
+            // Fails after the rows of the first file were written.
+            final SourceCodeFile broken = new SourceCodeFile(FixTrueFalse.True, FixTrueFalse.True, CaseSensitivePath.of("src", "broken.c"), () -> {
+                throw new UncheckedIOException(new IOException("Broken file"));
+            });
+            final Path target = tempDir.resolve("broken.spl.csv");
+            Assert.assertTrue(new KernelHavenSPLPCIO().write(new SyntheticArtefactTreeNode<>(List.of(valid, broken)), target).isFailure());
+            Assert.assertEquals(0, countFiles(tempDir));
+
+            // Existing files are not overwritten.
+            final Path existing = tempDir.resolve("existing.spl.csv");
+            Files.writeString(existing, "existing");
+            Assert.assertTrue(new KernelHavenSPLPCIO().write(valid, existing).isFailure());
+            Assert.assertEquals("existing", Files.readString(existing));
+            Assert.assertEquals(1, countFiles(tempDir));
+        } finally {
+            Result.HARD_CRASH_ON_TRY = hardCrashOnTry;
+            PathUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    @Test
+    public void failedBinaryWriteLeavesNoFile() throws IOException {
+        VEVOS.Initialize();
+        // Failed writes are expected to be reported as failures.
+        final boolean hardCrashOnTry = Result.HARD_CRASH_ON_TRY;
+        Result.HARD_CRASH_ON_TRY = false;
+        final Path tempDir = Files.createTempDirectory("pc-write");
+        try {
+            final SourceCodeFile broken = new SourceCodeFile(FixTrueFalse.True, FixTrueFalse.True, CaseSensitivePath.of("src", "broken.c"), () -> {
+                throw new UncheckedIOException(new IOException("Broken file"));
+            });
+            Assert.assertTrue(new BinaryPCIO().write(new SyntheticArtefactTreeNode<>(List.of(broken)), tempDir.resolve("broken.spl.bin")).isFailure());
+            Assert.assertEquals(0, countFiles(tempDir));
+
+            // Existing files are not overwritten.
+            final Path existing = tempDir.resolve("existing.spl.bin");
+            Files.writeString(existing, "existing");
+            final Artefact valid = new KernelHavenSPLPCIO().load(GROUND_TRUTHS[1]).expect("Was not able to load " + GROUND_TRUTHS[1]);
+            Assert.assertTrue(new BinaryPCIO().write(valid, existing).isFailure());
+            Assert.assertEquals("existing", Files.readString(existing));
+
+            final Path written = tempDir.resolve("written.spl.bin");
+            Assert.assertTrue(new BinaryPCIO().write(valid, written).isSuccess());
+            assertSameTree(valid, new BinaryPCIO().load(written).expect("Was not able to load " + written));
+            Assert.assertEquals(2, countFiles(tempDir));
+        } finally {
+            Result.HARD_CRASH_ON_TRY = hardCrashOnTry;
+            PathUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    static void assertSameTree(final Artefact expected, final Artefact actual) {
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(toCSV(expected), toCSV(actual));
+    }
+
+    private static String toCSV(final Artefact artefact) {
+        final ArtefactCSVExporter exporter = new ArtefactCSVExporter();
+        artefact.accept(exporter);
+        return exporter.export().toString();
+    }
 }
@@ -4,8 +4,11 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.variantsync.vevos.simulation.io.data.CSV;
 import org.variantsync.vevos.simulation.io.data.CSVIO;
+import org.variantsync.vevos.simulation.io.data.CSVRowReader;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.CodeMatching;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class MatchingIOTest {
@@ -54,6 +57,40 @@ public class MatchingIOTest {
         Assert.assertEquals(-1, (int) matching.afterCommitMatch(THIRD_FILE, 6).get());
     }
 
+    @Test
+    public void streamedLoadingEqualsCSVLoading() throws IOException {
+        VEVOS.Initialize();
+        CodeMatching streamed = CodeMatching.fromCSVFiles(
+                Path.of("src/test/resources/matching/correct/code-matching.before.spl.csv"),
+                Path.of("src/test/resources/matching/correct/code-matching.after.spl.csv"));
+        Assert.assertEquals(loadCorrectMatching(), streamed);
+    }
+
+    @Test
+    public void rowsAreTokenizedLikeSplit() throws IOException {
+        final Path csv = Files.createTempFile("rows", ".csv");
+        try {
+            final String[] lines = {"Path; File Condition ;;x", "", "   ", ";", " ; ;", ";a", "a;;", "\ta ; -12 ;+3"};
+            Files.writeString(csv, String.join("\r\n", lines) + "\n");
+            try (CSVRowReader rows = new CSVIO().openRows(csv)) {
+                for (String line : lines) {
+                    Assert.assertTrue(rows.next());
+                    Assert.assertArrayEquals(line, line.trim().split("\\s*;\\s*"), rows.toArray());
+                }
+                Assert.assertFalse(rows.next());
+            }
+            try (CSVRowReader rows = new CSVIO().openRows(csv)) {
+                while (rows.getRowNumber() < lines.length) {
+                    rows.next();
+                }
+                Assert.assertEquals(-12, rows.getInt(1));
+                Assert.assertEquals(3, rows.getInt(2));
+            }
+        } finally {
+            Files.delete(csv);
+        }
+    }
+
     @Test
     public void findDisagreement() {
         Assert.assertThrows(IllegalArgumentException.class, this::loadIncorrectMatching);
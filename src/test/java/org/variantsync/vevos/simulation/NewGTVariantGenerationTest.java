@@ -2,6 +2,8 @@ package org.variantsync.vevos.simulation;
 
 import de.ovgu.featureide.fm.core.analysis.cnf.formula.FeatureModelFormula;
 import de.ovgu.featureide.fm.core.base.IFeatureModel;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
 import org.junit.Assert;
 import org.junit.Test;
 import org.tinylog.Logger;
@@ -10,15 +12,26 @@ import org.variantsync.vevos.simulation.feature.Variant;
 import org.variantsync.vevos.simulation.feature.config.FeatureIDEConfiguration;
 import org.variantsync.vevos.simulation.feature.config.IConfiguration;
 import org.variantsync.vevos.simulation.feature.config.SimpleConfiguration;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
 import org.variantsync.vevos.simulation.io.Resources;
 import org.variantsync.vevos.simulation.io.featureide.FeatureModelIO;
 import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenSPLPCIO;
 import org.variantsync.vevos.simulation.io.kernelhaven.VariabilityModelLoader;
+import org.variantsync.vevos.simulation.repository.SPLRepository;
 import org.variantsync.vevos.simulation.util.fide.FeatureModelUtils;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
 import org.variantsync.vevos.simulation.variability.pc.*;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.MappedSPLFile;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantAnnotation;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLine;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLineRange;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,6 +39,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Tests for presence condition loading and variant generation.
@@ -77,6 +91,111 @@ public class NewGTVariantGenerationTest {
         genericVariantGenerationTest("variant-D", "FEATURE_D");
     }
 
+    @Test
+    public void allVariantsAtOnce() throws IOException, Resources.ResourceIOException {
+        final Sample sample = Sample.of(List.of(
+                initVariant("variant-A", "FEATURE_A"),
+                initVariant("variant-AB", "FEATURE_A", "FEATURE_B"),
+                initVariant("variant-AD", "FEATURE_A", "FEATURE_D"),
+                initVariant("variant-B", "FEATURE_B"),
+                initVariant("variant-base"),
+                initVariant("variant-BD", "FEATURE_B", "FEATURE_D"),
+                initVariant("variant-C", "FEATURE_C"),
+                initVariant("variant-D", "FEATURE_D")
+        ));
+        final CaseSensitivePath generationDir = GENERATION_DIR.resolve("sample");
+        removeFilesRecursively(generationDir.path().toFile());
+
+        final Map<Variant, Result<GroundTruth, Exception>> results = loadSPLPCs().generateVariants(
+                sample,
+                SPL_DIR,
+                variant -> generationDir.resolve(variant.getName()),
+                VariantGenerationOptions.ExitOnErrorButAllowNonExistentFiles(false, ArtefactFilter.KeepAll()));
+
+        Assert.assertEquals(sample.size(), results.size());
+        for (final Variant variant : sample) {
+            final CaseSensitivePath targetDir = generationDir.resolve(variant.getName());
+            final GroundTruth groundTruth = results.get(variant).expect("Was not able to generate " + variant.getName());
+            Resources.Instance().write(Artefact.class, groundTruth.variant(), targetDir.resolve("ground_truth.variant.csv").path());
+            assertCorrectGeneration(EXPECTED_RESULT_DIR.resolve(variant.getName()), targetDir);
+        }
+    }
+
+    @Test
+    public void generationFromGitCommit() throws IOException, GitAPIException, Resources.ResourceIOException {
+        final Path repoDir = Files.createTempDirectory("spl-repo");
+        final SPLCommit commit;
+        try (final Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.copy(SPL_DIR.resolve("code.c").path(), repoDir.resolve("code.c"));
+            git.add().addFilepattern(".").call();
+            commit = new SPLCommit(git.commit().setMessage("spl").setSign(false).call().getName());
+            // The working tree must not be read.
+            Files.delete(repoDir.resolve("code.c"));
+        }
+
+        final SPLRepository splRepo = new SPLRepository(repoDir);
+        try {
+            // Unknown commits have to be reported instead of being treated as commits without files.
+            Assert.assertThrows(IOException.class, () -> splRepo.sourceOf(new SPLCommit("0123456789012345678901234567890123456789")));
+
+            for (final boolean copyRawBytes : List.of(false, true)) {
+                final Variant variant = initVariant("variant-AD", "FEATURE_A", "FEATURE_D");
+                final CaseSensitivePath targetDir = GENERATION_DIR.resolve("git-" + copyRawBytes).resolve(variant.getName());
+                removeFilesRecursively(targetDir.path().toFile());
+
+                final VariantGenerationOptions options = VariantGenerationOptions.ExitOnErrorButAllowNonExistentFiles(false, ArtefactFilter.KeepAll());
+                final GroundTruth groundTruth;
+                try (final SPLSource source = splRepo.sourceOf(commit)) {
+                    groundTruth = loadSPLPCs().generateVariant(
+                            variant,
+                            source,
+                            targetDir,
+                            copyRawBytes ? options.withRawByteCopying() : options)
+                            .expect("Was not able to generate " + variant.getName());
+                }
+                Resources.Instance().write(Artefact.class, groundTruth.variant(), targetDir.resolve("ground_truth.variant.csv").path());
+                assertCorrectGeneration(EXPECTED_RESULT_DIR.resolve(variant.getName()), targetDir);
+                Assert.assertFalse(Files.exists(repoDir.resolve("code.c")));
+            }
+        } finally {
+            splRepo.close();
+            PathUtils.deleteDirectory(repoDir);
+        }
+    }
+
+    @Test
+    public void rawByteCopyingKeepsLines() throws IOException {
+        final Variant variant = initVariant("variant-AB", "FEATURE_A", "FEATURE_B");
+        final CaseSensitivePath targetDir = GENERATION_DIR.resolve("raw").resolve(variant.getName());
+        removeFilesRecursively(targetDir.path().toFile());
+
+        loadSPLPCs().generateVariant(variant, SPL_DIR, targetDir,
+                VariantGenerationOptions.ExitOnErrorButAllowNonExistentFiles(false, ArtefactFilter.KeepAll()).withRawByteCopying())
+                .expect("Was not able to generate " + variant.getName());
+        assertCorrectCode(EXPECTED_RESULT_DIR.resolve(variant.getName()), targetDir);
+    }
+
+    @Test
+    public void rawByteCopyingKeepsLineEndings() throws IOException {
+        final Path spl = Files.createTempFile("spl", ".c");
+        final Path variant = Files.createTempFile("variant", ".c");
+        try {
+            Files.writeString(spl, "a\r\nb\nc\rd\r\ne");
+            final MappedSPLFile mapped = MappedSPLFile.map(spl);
+            Assert.assertEquals(5, mapped.getLineCount());
+
+            final VariantAnnotation lines = new VariantAnnotation(FixTrueFalse.True, List.of(
+                    new VariantLineRange(1, 2),
+                    new VariantLine(4),
+                    new VariantLineRange(5, 7)));
+            mapped.appendTo(lines, VariantGenerationOptions.ExitOnError(false, ArtefactFilter.KeepAll()), variant);
+            Assert.assertEquals("a\r\nb\nd\r\ne", Files.readString(variant));
+        } finally {
+            Files.delete(spl);
+            Files.delete(variant);
+        }
+    }
+
     private void genericVariantGenerationTest(String variantName, String... variantFeatures) throws IOException {
         Variant variant = initVariant(variantName, variantFeatures);
         Artefact splPCs = loadSPLPCs();
@@ -117,8 +236,10 @@ public class NewGTVariantGenerationTest {
     }
 
     private void assertCorrectGeneration(Variant variant) throws IOException {
-        CaseSensitivePath pathToActual = GENERATION_DIR.resolve(variant.getName());
-        CaseSensitivePath pathToExpected = EXPECTED_RESULT_DIR.resolve(variant.getName());
+        assertCorrectGeneration(EXPECTED_RESULT_DIR.resolve(variant.getName()), GENERATION_DIR.resolve(variant.getName()));
+    }
+
+    private void assertCorrectGeneration(CaseSensitivePath pathToExpected, CaseSensitivePath pathToActual) throws IOException {
         assertCorrectCode(pathToExpected, pathToActual);
         assertCorrectPCs(pathToExpected, pathToActual);
     }
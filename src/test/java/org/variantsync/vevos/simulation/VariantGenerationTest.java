@@ -15,6 +15,7 @@ import org.variantsync.functjonal.Result;
 import org.variantsync.vevos.simulation.feature.Variant;
 import org.variantsync.vevos.simulation.feature.config.FeatureIDEConfiguration;
 import org.variantsync.vevos.simulation.feature.config.IConfiguration;
+import org.variantsync.vevos.simulation.feature.config.SimpleConfiguration;
 import org.variantsync.vevos.simulation.feature.sampling.FeatureIDESampler;
 import org.variantsync.vevos.simulation.feature.sampling.Sampler;
 import org.variantsync.vevos.simulation.io.ResourceLoader;
@@ -27,15 +28,22 @@ import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
 import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
 import org.variantsync.vevos.simulation.util.io.PathUtils;
 import org.variantsync.vevos.simulation.variability.pc.*;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.AnnotationGroundTruth;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.BlockMatching;
+import org.variantsync.vevos.simulation.variability.pc.groundtruth.GroundTruth;
 import org.variantsync.vevos.simulation.variability.pc.groundtruth.LineType;
 import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
 import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.visitor.common.CallbackArtefactVisitor;
+import org.variantsync.vevos.simulation.variability.pc.visitor.common.PCQueryIndex;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Tests for presence condition loading and variant generation.
@@ -246,6 +254,48 @@ public class VariantGenerationTest {
         assert SAT.equivalent(result.getSuccess(), new And(new Literal("A"), new Literal("B")));
     }
 
+    @Test
+    public void pcQueryIndexEqualsPCQueries() {
+        final Artefact traces = pcTest1.traces.getSuccess();
+        final PCQueryIndex index = PCQueryIndex.of(traces);
+        final List<SourceCodeFile> files = new ArrayList<>();
+        traces.accept(new CallbackArtefactVisitor(
+                artefact -> {
+                    if (artefact instanceof SourceCodeFile file) {
+                        files.add(file);
+                    }
+                },
+                artefact -> {}));
+        Assert.assertEquals(files.size(), index.getFiles().size());
+
+        for (final SourceCodeFile file : files) {
+            final CaseSensitivePath path = file.getFile();
+            Assert.assertEquals(traces.getPresenceConditionOf(path).getSuccess(), index.getPresenceConditionOf(path).getSuccess());
+
+            final int[] lines = new int[file.getRootAnnotation().getLineTo() + 3];
+            for (int i = 0; i < lines.length; ++i) {
+                lines[i] = i - 1;
+            }
+            final List<Result<Node, Exception>> batch = index.getPresenceConditionsOf(path, lines);
+            for (int i = 0; i < lines.length; ++i) {
+                final Result<Node, Exception> expected = traces.getPresenceConditionOf(path, lines[i]);
+                for (final Result<Node, Exception> actual : List.of(index.getPresenceConditionOf(path, lines[i]), batch.get(i))) {
+                    Assert.assertEquals(expected.isSuccess(), actual.isSuccess());
+                    if (expected.isSuccess()) {
+                        Assert.assertEquals(expected.getSuccess(), actual.getSuccess());
+                    } else {
+                        Assert.assertEquals(expected.getFailure().getMessage(), actual.getFailure().getMessage());
+                    }
+                }
+            }
+        }
+
+        final CaseSensitivePath missing = CaseSensitivePath.of("src", "Missing.cpp");
+        Assert.assertTrue(index.getPresenceConditionOf(missing).isFailure());
+        Assert.assertTrue(index.getPresenceConditionOf(missing, 1).isFailure());
+        Assert.assertTrue(index.getPresenceConditionsOf(List.of(missing)).get(missing).isFailure());
+    }
+
     @Test
     public void testGeneration() {
         final FeatureModelFormula fmf = new FeatureModelFormula(pcTest1.features);
@@ -263,6 +313,87 @@ public class VariantGenerationTest {
         assert pcTest1.generate(sampler.sample(pcTest1.features).variants(), true);
     }
 
+    @Test
+    public void parallelGenerationEqualsSequentialGeneration() throws IOException {
+        final FeatureModelFormula fmf = new FeatureModelFormula(pcTest1.features);
+        final Artefact traces = pcTest1.traces.getSuccess();
+        final VariantGenerationOptions sequential = VariantGenerationOptions.ExitOnErrorButAllowNonExistentFiles(false, ArtefactFilter.KeepAll());
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (final List<String> features : List.of(List.of("A"), List.of("B"), List.of("A", "B", "C", "D", "E"))) {
+                final Variant v = new Variant(String.join("", features), new FeatureIDEConfiguration(fmf, features));
+                final CaseSensitivePath sequentialDir = genDir.resolve("sequential", v.getName());
+                final CaseSensitivePath parallelDir = genDir.resolve("parallel", v.getName());
+                PathUtils.deleteDirectory(sequentialDir.path());
+                PathUtils.deleteDirectory(parallelDir.path());
+
+                final GroundTruth expected = traces.generateVariant(v, pcTest1.splDir, sequentialDir, sequential)
+                        .expect("Sequential generation failed!");
+                final GroundTruth actual = traces.generateVariant(v, pcTest1.splDir, parallelDir, sequential.withExecutor(pool))
+                        .expect("Parallel generation failed!");
+
+                Assert.assertEquals(expected.variant(), actual.variant());
+                for (final String file : List.of("src/FooFoo.cpp", "src/foo/bar.cpp")) {
+                    final boolean exists = Files.exists(sequentialDir.path().resolve(file));
+                    Assert.assertEquals(exists, Files.exists(parallelDir.path().resolve(file)));
+                    if (exists) {
+                        Assert.assertEquals(
+                                TextIO.readAsString(sequentialDir.path().resolve(file)),
+                                TextIO.readAsString(parallelDir.path().resolve(file)));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void blockMatchingMatchesDerivedAnnotations() {
+        final LineBasedAnnotation root = new LineBasedAnnotation(FixTrueFalse.True, FixTrueFalse.True, LineType.ROOT, 1, 20, AnnotationStyle.External);
+        final LineBasedAnnotation a = new LineBasedAnnotation(new Literal("A"), new Literal("A"), LineType.IF, 2, 10, AnnotationStyle.Internal);
+        final LineBasedAnnotation b = new LineBasedAnnotation(new Literal("B"), new And(new Literal("A"), new Literal("B")), LineType.IF, 4, 6, AnnotationStyle.Internal);
+        final LineBasedAnnotation c = new LineBasedAnnotation(new Literal("C"), new Literal("C"), LineType.IF, 12, 14, AnnotationStyle.Internal);
+        // Annotation trees are indexed when they are changed through their file.
+        final SourceCodeFile file = new SourceCodeFile(FixTrueFalse.True, FixTrueFalse.True, CaseSensitivePath.of("src", "Matching.c"), root);
+        file.addTraces(List.of(a, b, c));
+        Assert.assertEquals(List.of(0, 1, 2, 3), List.of(root.getPreorderIndex(), a.getPreorderIndex(), b.getPreorderIndex(), c.getPreorderIndex()));
+
+        // Deriving variants does not change the indices of the derived tree.
+        final Variant variant = new Variant("AC", new SimpleConfiguration(List.of("A", "C")));
+        final AnnotationGroundTruth groundTruth = root.deriveForVariant(variant, ArtefactFilter.KeepAll()).orElseThrow();
+        final BlockMatching matching = groundTruth.matching();
+        Assert.assertEquals(List.of(0, 1, 2, 3), List.of(root.getPreorderIndex(), a.getPreorderIndex(), b.getPreorderIndex(), c.getPreorderIndex()));
+        Assert.assertEquals(List.of(0, 1, 2), List.of(groundTruth.variantArtefact().getPreorderIndex(),
+                matching.getVariantAnnotationOf(a).getPreorderIndex(), matching.getVariantAnnotationOf(c).getPreorderIndex()));
+
+        Assert.assertSame(groundTruth.variantArtefact(), matching.getVariantAnnotationOf(root));
+        Assert.assertTrue(matching.isPresentInVariant(a));
+        Assert.assertFalse(matching.isPresentInVariant(b));
+        Assert.assertTrue(matching.isPresentInVariant(c));
+        for (final LineBasedAnnotation splAnnotation : List.of(root, a, c)) {
+            Assert.assertSame(splAnnotation, matching.getSPLAnnotationOf(matching.getVariantAnnotationOf(splAnnotation)));
+        }
+        // a shrinks by the three lines of b, which c moves up by
+        Assert.assertEquals(9, matching.getVariantAnnotationOf(c).getLineFrom());
+
+        // Annotations are matched by identity.
+        Assert.assertFalse(matching.isPresentInVariant(c.plainCopy()));
+
+        // Merging matchings of different files keeps the annotations with equal indices apart.
+        final LineBasedAnnotation otherRoot = new LineBasedAnnotation(FixTrueFalse.True, FixTrueFalse.True, LineType.ROOT, 1, 5, AnnotationStyle.External);
+        final BlockMatching otherMatching = otherRoot.deriveForVariant(variant, ArtefactFilter.KeepAll()).orElseThrow().matching();
+        final BlockMatching merged = BlockMatching.MONOID.append(matching, otherMatching);
+        Assert.assertSame(matching.getVariantAnnotationOf(root), merged.getVariantAnnotationOf(root));
+        Assert.assertSame(otherMatching.getVariantAnnotationOf(otherRoot), merged.getVariantAnnotationOf(otherRoot));
+        Assert.assertSame(c, merged.getSPLAnnotationOf(matching.getVariantAnnotationOf(c)));
+
+        // Changing the tree through its file updates the indices.
+        final LineBasedAnnotation d = new LineBasedAnnotation(new Literal("D"), new Literal("D"), LineType.IF, 16, 18, AnnotationStyle.Internal);
+        file.addTrace(d);
+        Assert.assertEquals(List.of(0, 1, 2, 3, 4), List.of(root.getPreorderIndex(), a.getPreorderIndex(), b.getPreorderIndex(), c.getPreorderIndex(), d.getPreorderIndex()));
+    }
+
     // TODO: Fix broken test
 //    public void testLinuxSampleGeneration() {
 //        assert linuxSample.generate(
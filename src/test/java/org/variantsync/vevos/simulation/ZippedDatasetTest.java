@@ -0,0 +1,174 @@
+package org.variantsync.vevos.simulation;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.variantsync.functjonal.Result;
+import org.variantsync.vevos.simulation.io.binary.BinaryPCEncoder;
+import org.variantsync.vevos.simulation.io.data.DatasetArchives;
+import org.variantsync.vevos.simulation.io.data.DatasetCatalog;
+import org.variantsync.vevos.simulation.io.data.VariabilityDatasetLoader;
+import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenPCCache;
+import org.variantsync.vevos.simulation.io.kernelhaven.KernelHavenSPLPCIO;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.VariabilityDataset;
+import org.variantsync.vevos.simulation.variability.pc.Artefact;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests that datasets whose commit directories are zipped are loaded without extracting them.
+ */
+public class ZippedDatasetTest {
+    private static final Path DATASET = Path.of("src/test/resources/simple-variability-metadata");
+    private static final String BINARY_COMMIT = "aed45b2f723e372b750e8007c72730bcddee7174";
+    private static final Path GROUND_TRUTH = Path.of("src/test/resources/variantgeneration/KernelHavenPCs.spl.csv");
+
+    private Path tempDir;
+    private Path unzippedDataset;
+    private Path zippedDataset;
+    private boolean hardCrashOnTry;
+
+    static {
+        VEVOS.Initialize();
+    }
+
+    @Before
+    public void zipDataset() throws IOException {
+        // Some commits lack some files, which are expected to be loaded as empty.
+        hardCrashOnTry = Result.HARD_CRASH_ON_TRY;
+        Result.HARD_CRASH_ON_TRY = false;
+        tempDir = Files.createTempDirectory("zipped-dataset");
+        unzippedDataset = tempDir.resolve("unzipped");
+        zippedDataset = tempDir.resolve("zipped");
+        try (final Stream<Path> files = Files.walk(DATASET)) {
+            for (final Path file : files.filter(Files::isRegularFile).toList()) {
+                final Path target = unzippedDataset.resolve(DATASET.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                if (target.getFileName().toString().equals("code-variability.spl.csv")) {
+                    // Use a ground truth that can be parsed.
+                    Files.copy(GROUND_TRUTH, target);
+                } else {
+                    Files.copy(file, target);
+                }
+            }
+        }
+        // One commit has its ground truth in the binary format, too.
+        final Path binaryCommit = unzippedDataset.resolve("data").resolve(BINARY_COMMIT);
+        Files.write(
+                binaryCommit.resolve("code-variability.spl.bin"),
+                BinaryPCEncoder.encode(new KernelHavenSPLPCIO().load(GROUND_TRUTH).expect("Could not load " + GROUND_TRUTH)));
+
+        try (final Stream<Path> files = Files.walk(unzippedDataset)) {
+            for (final Path file : files.filter(Files::isRegularFile).toList()) {
+                final Path target = zippedDataset.resolve(unzippedDataset.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                // Keep modification times as binary ground truths are only used if they are not older than their csv.
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+
+        try (final Stream<Path> commitDirs = Files.list(zippedDataset.resolve("data"))) {
+            for (final Path commitDir : commitDirs.toList()) {
+                zip(commitDir);
+            }
+        }
+        zip(zippedDataset.resolve("log"));
+    }
+
+    /**
+     * Replaces the given directory by an archive containing it.
+     */
+    private static void zip(final Path dir) throws IOException {
+        final Path archive = dir.resolveSibling(dir.getFileName() + ".zip");
+        try (final OutputStream out = Files.newOutputStream(archive);
+             final ZipOutputStream zip = new ZipOutputStream(out);
+             final Stream<Path> files = Files.list(dir)) {
+            for (final Path file : files.sorted().toList()) {
+                final ZipEntry entry = new ZipEntry(dir.getFileName() + "/" + file.getFileName());
+                entry.setLastModifiedTime(Files.getLastModifiedTime(file));
+                zip.putNextEntry(entry);
+                Files.copy(file, zip);
+                zip.closeEntry();
+            }
+        }
+        PathUtils.deleteDirectory(dir);
+    }
+
+    @After
+    public void tearDown() {
+        Result.HARD_CRASH_ON_TRY = hardCrashOnTry;
+        PathUtils.deleteDirectory(tempDir);
+    }
+
+    @Test
+    public void zippedDatasetEqualsUnzippedDataset() throws IOException {
+        final Set<Path> filesBefore = filesIn(zippedDataset);
+
+        final Map<String, SPLCommit> expected = commitsById(new VariabilityDatasetLoader().load(unzippedDataset).expect("Could not load dataset"));
+        final Map<String, SPLCommit> actual = commitsById(new VariabilityDatasetLoader().load(zippedDataset).expect("Could not load zipped dataset"));
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        Assert.assertFalse(expected.isEmpty());
+
+        for (final String id : expected.keySet()) {
+            final SPLCommit e = expected.get(id);
+            final SPLCommit a = actual.get(id);
+            Assert.assertEquals(parentIds(e), parentIds(a));
+            Assert.assertEquals(e.message().run(), a.message().run());
+            Assert.assertEquals(e.kernelHavenLog().run(), a.kernelHavenLog().run());
+            Assert.assertEquals(e.presenceConditionsFallback().run(), a.presenceConditionsFallback().run());
+            // The variability models of this dataset cannot be converted, so we only check that they are found.
+            Assert.assertEquals(e.getFeatureModelPath().getFileName(), a.getFeatureModelPath().getFileName());
+            Assert.assertEquals(e.getPresenceConditionsFallbackPath().getFileName(), a.getPresenceConditionsFallbackPath().getFileName());
+        }
+        Assert.assertTrue(actual.get(BINARY_COMMIT).getPresenceConditionsFallbackPath().toString().endsWith(".bin"));
+        Assert.assertTrue(actual.get(BINARY_COMMIT).presenceConditionsFallback().run().isPresent());
+
+        // Loading single files of a ground truth reads the csv file from the archive, too.
+        final SPLCommit commit = actual.get(BINARY_COMMIT);
+        final Path csv = commit.getPresenceConditionsFallbackPath().resolveSibling("code-variability.spl.csv");
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final Artefact indexed = DatasetArchives.read(csv, p -> new KernelHavenSPLPCIO(pool, new KernelHavenPCCache(tempDir.resolve("cache"))).load(p).expect("Could not load " + p));
+            Assert.assertEquals(expected.get(BINARY_COMMIT).presenceConditionsFallback().run().orElseThrow(), indexed);
+        } catch (final Exception e) {
+            throw new AssertionError(e);
+        } finally {
+            pool.shutdown();
+        }
+
+        // Nothing was extracted. Only the catalog of the dataset was added.
+        filesBefore.add(zippedDataset.resolve(DatasetCatalog.FILE_NAME));
+        Assert.assertEquals(filesBefore, filesIn(zippedDataset));
+    }
+
+    private static Map<String, SPLCommit> commitsById(final VariabilityDataset dataset) {
+        final Map<String, SPLCommit> commits = new HashMap<>();
+        for (final SPLCommit commit : dataset.getAllCommits()) {
+            commits.put(commit.id(), commit);
+        }
+        return commits;
+    }
+
+    private static List<String> parentIds(final SPLCommit commit) {
+        return commit.parents().map(parents -> Arrays.stream(parents).map(SPLCommit::id).toList()).orElse(List.of());
+    }
+
+    private static Set<Path> filesIn(final Path dir) throws IOException {
+        try (final Stream<Path> files = Files.walk(dir)) {
+            return files.collect(Collectors.toSet());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.variantsync.vevos.simulation.repository;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.variantsync.vevos.simulation.util.fide.bugfix.FixTrueFalse;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.pc.options.ArtefactFilter;
+import org.variantsync.vevos.simulation.variability.pc.options.VariantGenerationOptions;
+import org.variantsync.vevos.simulation.variability.pc.source.SPLSource;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantAnnotation;
+import org.variantsync.vevos.simulation.variability.pc.variantlines.VariantLineRange;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BusyboxRepositoryTest {
+    private static final String SOURCE = "#if ENABLE_FOO \\\n    && ENABLE_BAR\nint x;\n#endif\n";
+    private static final String CHANGED_SOURCE = "#if ENABLE_FOO\nint y;\n#endif\n";
+    private static final Path GOLDEN_DIR = Path.of("src/test/resources/busybox-normalization");
+    // Fragments of preprocessor directives, comments, and code from which the generated corpus is assembled.
+    private static final String[] CORPUS_TOKENS = {
+            "ENABLE_FEATURE_A", "ENABLE_B", "!ENABLE_C", "defined ENABLE_D", "_ENABLE_E", "IF_FEATURE_F",
+            "IF_NOT_FEATURE_G", "IF_", "(", ")", "((", "))", ",", ";", " ", "  ", "\t", "\\t", "//", "/*", "*/", "*",
+            "#if ", "#if", "# if ", "#elif ", "#define ", "#undef ", "# define ", "|| ", "&& ", "|| !", "&& !", "if (",
+            "x", "y = ", "foo(", "\"str\"", "1", "0", "?", ":", "\\", "goto conf7", "IF_NOT", "{", "}", "\u00fc"
+    };
+    private static final long CORPUS_SEED = 20240101;
+
+    private Path tempDir;
+    private Path repoDir;
+    private BusyboxRepository repo;
+    private SPLCommit first, second;
+
+    @Before
+    public void initialize() throws IOException, GitAPIException {
+        tempDir = Files.createTempDirectory("busybox");
+        repoDir = tempDir.resolve("busybox");
+        try (final Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.writeString(repoDir.resolve("a.c"), SOURCE);
+            Files.writeString(repoDir.resolve("README"), SOURCE);
+            first = commitAll(git, "first");
+
+            Files.writeString(repoDir.resolve("a.c"), CHANGED_SOURCE);
+            second = commitAll(git, "second");
+        }
+        repo = new BusyboxRepository(repoDir, tempDir.resolve("normalization"));
+    }
+
+    private static SPLCommit commitAll(final Git git, final String message) throws GitAPIException {
+        git.add().addFilepattern(".").call();
+        return new SPLCommit(git.commit().setMessage(message).setSign(false).call().getName());
+    }
+
+    @Test
+    public void sourceIsNormalizedWithoutCheckout() throws IOException, GitAPIException {
+        try (final SPLSource source = repo.sourceOf(first)) {
+            Assert.assertEquals(normalized(SOURCE), read(source, "a.c"));
+            // Only source files are normalized.
+            Assert.assertEquals(SOURCE, read(source, "README"));
+        }
+        // The working tree is not touched.
+        Assert.assertEquals(CHANGED_SOURCE, Files.readString(repoDir.resolve("a.c")));
+
+        try (final SPLSource source = repo.sourceOf(second)) {
+            Assert.assertEquals(normalized(CHANGED_SOURCE), read(source, "a.c"));
+        }
+    }
+
+    @Test
+    public void sourceHoldsSnapshotUntilClosed() throws Exception {
+        final SPLSource source = repo.sourceOf(first);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // The only snapshot is held by the open source, so the next source has to wait for it.
+            final Future<String> next = executor.submit(() -> {
+                try (final SPLSource secondSource = repo.sourceOf(second)) {
+                    return read(secondSource, "a.c");
+                }
+            });
+            Thread.sleep(200);
+            Assert.assertFalse(next.isDone());
+            Assert.assertEquals(normalized(SOURCE), read(source, "a.c"));
+
+            source.close();
+            Assert.assertEquals(normalized(CHANGED_SOURCE), next.get(10, TimeUnit.SECONDS));
+        } finally {
+            source.close();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void normalizationsAreReadFromStore() throws IOException, GitAPIException {
+        try (final SPLSource source = repo.sourceOf(first)) {
+            Assert.assertEquals(normalized(SOURCE), read(source, "a.c"));
+        }
+        repo.close();
+
+        // A new repository with the same store has to reuse the stored normalization of a blob.
+        final String blob;
+        try (final ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            blob = formatter.idFor(Constants.OBJ_BLOB, SOURCE.getBytes(StandardCharsets.UTF_8)).getName();
+        }
+        final Path stored = tempDir.resolve("normalization").resolve("normalized-v1")
+                .resolve(blob.substring(0, 2)).resolve(blob.substring(2));
+        Assert.assertTrue(Files.exists(stored));
+        Files.writeString(stored, "stored");
+
+        repo = new BusyboxRepository(repoDir, tempDir.resolve("normalization"));
+        PathUtils.deleteDirectory(tempDir.resolve("normalization").resolve("snapshots"));
+        try (final SPLSource source = repo.sourceOf(first)) {
+            Assert.assertEquals("stored", read(source, "a.c"));
+        }
+    }
+
+    @Test
+    public void normalizationEqualsGoldenOutput() throws IOException {
+        // The expected outputs were produced by the original recursive implementation of the normalization.
+        // To regenerate generated.c.normalized, normalize the output of generatedCorpus() with that implementation.
+        assertNormalizationEqualsGoldenOutput("handcrafted.c", Files.readAllBytes(GOLDEN_DIR.resolve("handcrafted.c")));
+        assertNormalizationEqualsGoldenOutput("generated.c", generatedCorpus().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertNormalizationEqualsGoldenOutput(final String corpus, final byte[] input) throws IOException {
+        // Normalized files are written in the default charset.
+        final byte[] expectedBytes = Files.readString(GOLDEN_DIR.resolve(corpus + ".normalized"), StandardCharsets.UTF_8)
+                .getBytes(Charset.defaultCharset());
+        Assert.assertEquals(
+                corpus,
+                new String(expectedBytes, Charset.defaultCharset()),
+                new String(BusyboxRepository.normalize(input), Charset.defaultCharset()));
+    }
+
+    /**
+     * Generates a corpus of 4000 lines of random fragments of preprocessor directives, comments, and code.
+     * The corpus is deterministic such that it can be compared to the golden output.
+     */
+    static String generatedCorpus() {
+        final Random random = new Random(CORPUS_SEED);
+        final StringBuilder corpus = new StringBuilder();
+        for (int line = 0; line < 4000; ++line) {
+            final int tokens = random.nextInt(10);
+            for (int i = 0; i < tokens; ++i) {
+                corpus.append(CORPUS_TOKENS[random.nextInt(CORPUS_TOKENS.length)]);
+            }
+            corpus.append('\n');
+        }
+        return corpus.toString();
+    }
+
+    @Test
+    public void checkoutNormalizesWorkingTreeOnly() throws IOException, GitAPIException {
+        repo.close();
+        // Snapshots are stored in the git directory now.
+        repo = new BusyboxRepository(repoDir);
+        final Path snapshot = repoDir.resolve(".git").resolve("vevos-busybox").resolve("snapshots").resolve("checkout-0");
+        repo.sourceOf(first).close();
+        Assert.assertEquals(normalized(SOURCE), Files.readString(snapshot.resolve("a.c")));
+
+        repo.checkoutCommit(first);
+        Assert.assertEquals(normalized(SOURCE), Files.readString(repoDir.resolve("a.c")));
+        Assert.assertEquals(SOURCE, Files.readString(repoDir.resolve("README")));
+        // The snapshot must not be normalized twice.
+        Assert.assertEquals(normalized(SOURCE), Files.readString(snapshot.resolve("a.c")));
+    }
+
+    private static String normalized(final String source) throws IOException {
+        return new String(BusyboxRepository.normalize(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Reads a file through the given source by projecting all of its lines.
+     */
+    private String read(final SPLSource source, final String file) throws IOException {
+        final CaseSensitivePath path = new CaseSensitivePath(Path.of(file));
+        Assert.assertTrue(source.exists(path));
+        final VariantGenerationOptions options = VariantGenerationOptions
+                .ExitOnError(false, ArtefactFilter.KeepAll())
+                .withRawByteCopying();
+        final Path copy = Files.createTempFile(tempDir, "read", ".c");
+        source.open(path, options).expect("Could not open " + file).appendTo(
+                new VariantAnnotation(FixTrueFalse.True, List.of(new VariantLineRange(1, Integer.MAX_VALUE))),
+                options,
+                copy);
+        return Files.readString(copy);
+    }
+
+    @After
+    public void tearDown() {
+        repo.close();
+        PathUtils.deleteDirectory(tempDir);
+    }
+}
@@ -0,0 +1,103 @@
+package org.variantsync.vevos.simulation.repository;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SPLCheckoutPoolTest {
+    private Path tempDir;
+    private SPLRepository repo;
+    private SPLCommit first, second, third;
+
+    @Before
+    public void initialize() throws IOException, GitAPIException {
+        tempDir = Files.createTempDirectory("checkout-pool");
+        final Path repoDir = tempDir.resolve("spl");
+        try (final Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.writeString(repoDir.resolve("a.c"), "a1");
+            Files.createDirectories(repoDir.resolve("src"));
+            Files.writeString(repoDir.resolve("src").resolve("b.c"), "b1");
+            first = commitAll(git, "first");
+
+            Files.writeString(repoDir.resolve("a.c"), "a2");
+            Files.delete(repoDir.resolve("src").resolve("b.c"));
+            second = commitAll(git, "second");
+
+            Files.writeString(repoDir.resolve("c.c"), "c3");
+            third = commitAll(git, "third");
+        }
+        repo = new SPLRepository(repoDir);
+    }
+
+    private static SPLCommit commitAll(final Git git, final String message) throws GitAPIException {
+        git.add().addFilepattern(".").call();
+        git.add().addFilepattern(".").setUpdate(true).call();
+        return new SPLCommit(git.commit().setMessage(message).setSign(false).call().getName());
+    }
+
+    @Test
+    public void leasedCheckoutsContainCommits() throws IOException, InterruptedException {
+        try (final SPLCheckoutPool pool = new SPLCheckoutPool(repo, tempDir.resolve("checkouts"), 2)) {
+            try (final SPLCheckoutPool.Lease a = pool.lease(first); final SPLCheckoutPool.Lease b = pool.lease(third)) {
+                Assert.assertNotEquals(a.getPath(), b.getPath());
+                assertFiles(a.getPath(), "a.c", "a1", "src/b.c", "b1");
+                assertFiles(b.getPath(), "a.c", "a2", "c.c", "c3");
+                Assert.assertFalse(Files.exists(b.getPath().resolve("src")));
+            }
+
+            // Reuse a checkout incrementally.
+            try (final SPLCheckoutPool.Lease a = pool.lease(second)) {
+                assertFiles(a.getPath(), "a.c", "a2");
+                Assert.assertFalse(Files.exists(a.getPath().resolve("src")));
+                Assert.assertFalse(Files.exists(a.getPath().resolve("c.c")));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentLeasesDoNotInterfere() throws Exception {
+        final List<SPLCommit> commits = List.of(first, second, third, first, third, second, first, second);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (final SPLCheckoutPool pool = new SPLCheckoutPool(repo, tempDir.resolve("checkouts"), 2)) {
+            final List<Future<String>> contents = new ArrayList<>();
+            for (final SPLCommit commit : commits) {
+                contents.add(executor.submit(() -> {
+                    try (final SPLCheckoutPool.Lease lease = pool.lease(commit)) {
+                        return Files.readString(lease.getPath().resolve("a.c"));
+                    }
+                }));
+            }
+            for (int i = 0; i < commits.size(); ++i) {
+                Assert.assertEquals(commits.get(i) == first ? "a1" : "a2", contents.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertFiles(final Path dir, final String... pathsAndContents) throws IOException {
+        for (int i = 0; i < pathsAndContents.length; i += 2) {
+            Assert.assertEquals(pathsAndContents[i + 1], Files.readString(dir.resolve(pathsAndContents[i])));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        repo.close();
+        PathUtils.deleteDirectory(tempDir);
+    }
+}
@@ -0,0 +1,91 @@
+package org.variantsync.vevos.simulation.variants;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.variantsync.vevos.simulation.repository.Branch;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class VariantsCommitWriterTest {
+    private Path tempDir;
+    private Git git;
+    private VariantsCommitWriter writer;
+
+    @Before
+    public void initialize() throws IOException, GitAPIException {
+        tempDir = Files.createTempDirectory("variants-writer");
+        git = Git.init().setDirectory(tempDir.resolve("variants").toFile()).call();
+        writer = new VariantsCommitWriter(git.getRepository(), new PersonIdent("VEVOS", "vevos@variantsync.org"));
+    }
+
+    @Test
+    public void commitsExactlyTheGivenFiles() throws IOException {
+        final Path generated = tempDir.resolve("generated");
+        Files.createDirectories(generated.resolve("src"));
+        Files.writeString(generated.resolve("a.c"), "a1");
+        Files.writeString(generated.resolve("src").resolve("b.c"), "b1");
+        Files.writeString(generated.resolve("ignored.c"), "not generated");
+
+        final Branch branch = new Branch("variant");
+        final VariantCommit first = writer.commit(branch, generated,
+                List.of(CaseSensitivePath.of("a.c"), CaseSensitivePath.of("src", "b.c")), "first").orElseThrow();
+        Assert.assertEquals(Map.of("a.c", "a1", "src/b.c", "b1"), filesOf(first));
+
+        // committing the same files again does not create a commit
+        Assert.assertEquals(Optional.empty(), writer.commit(branch, generated,
+                List.of(CaseSensitivePath.of("src", "b.c"), CaseSensitivePath.of("a.c")), "same"));
+
+        Files.writeString(generated.resolve("a.c"), "a2");
+        final VariantCommit second = writer.commit(branch, generated, List.of(CaseSensitivePath.of("a.c")), "second").orElseThrow();
+        Assert.assertEquals(Map.of("a.c", "a2"), filesOf(second));
+
+        final RevCommit head = parse(git.getRepository().resolve(Constants.R_HEADS + "variant"));
+        Assert.assertEquals(second.id(), head.getName());
+        Assert.assertEquals(first.id(), head.getParent(0).getName());
+        Assert.assertEquals("second", head.getFullMessage());
+        // the working tree is untouched
+        Assert.assertFalse(Files.exists(tempDir.resolve("variants").resolve("a.c")));
+    }
+
+    private RevCommit parse(final ObjectId id) throws IOException {
+        try (final RevWalk revWalk = new RevWalk(git.getRepository())) {
+            return revWalk.parseCommit(id);
+        }
+    }
+
+    private Map<String, String> filesOf(final VariantCommit commit) throws IOException {
+        final Map<String, String> files = new HashMap<>();
+        try (final TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
+            treeWalk.addTree(parse(ObjectId.fromString(commit.id())).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                files.put(treeWalk.getPathString(), new String(git.getRepository().open(treeWalk.getObjectId(0)).getBytes()));
+            }
+        }
+        return files;
+    }
+
+    @After
+    public void tearDown() {
+        git.close();
+        PathUtils.deleteDirectory(tempDir);
+    }
+}
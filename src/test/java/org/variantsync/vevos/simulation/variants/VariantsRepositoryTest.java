@@ -0,0 +1,215 @@
+package org.variantsync.vevos.simulation.variants;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.variantsync.functjonal.list.NonEmptyList;
+import org.variantsync.vevos.simulation.VEVOS;
+import org.variantsync.vevos.simulation.feature.Variant;
+import org.variantsync.vevos.simulation.feature.config.SimpleConfiguration;
+import org.variantsync.vevos.simulation.feature.sampling.Sample;
+import org.variantsync.vevos.simulation.repository.Branch;
+import org.variantsync.vevos.simulation.repository.SPLRepository;
+import org.variantsync.vevos.simulation.util.io.CaseSensitivePath;
+import org.variantsync.vevos.simulation.util.io.PathUtils;
+import org.variantsync.vevos.simulation.variability.SPLCommit;
+import org.variantsync.vevos.simulation.variability.VariabilityHistory;
+import org.variantsync.vevos.simulation.variants.blueprints.VariantsRevisionFromErrorBlueprint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the generation of a variants repository from a history of variability and error revisions.
+ */
+public class VariantsRepositoryTest {
+    private static final Path BASE_PATH = Path.of("src/test/resources/new-gt-format/");
+    private static final List<Variant> VARIANTS = List.of(
+            new Variant("variant-A", new SimpleConfiguration(List.of("FEATURE_A"))),
+            new Variant("variant-BD", new SimpleConfiguration(List.of("FEATURE_B", "FEATURE_D"))));
+
+    private Path tempDir;
+    private Path variantsDir;
+    private SPLRepository splRepo;
+    private SPLCommit first, second;
+
+    static {
+        VEVOS.Initialize();
+    }
+
+    @Before
+    public void initialize() throws IOException, GitAPIException {
+        tempDir = Files.createTempDirectory("variants-repository");
+        final Path splDir = tempDir.resolve("spl");
+        try (final Git git = Git.init().setDirectory(splDir.toFile()).call()) {
+            Files.copy(BASE_PATH.resolve("spl").resolve("code.c"), splDir.resolve("code.c"));
+            first = commitAll(git, "first");
+            Files.writeString(splDir.resolve("README"), "changed");
+            second = commitAll(git, "second");
+        }
+        splRepo = new SPLRepository(splDir);
+
+        variantsDir = tempDir.resolve("variants");
+        Git.init().setDirectory(variantsDir.toFile()).call().close();
+    }
+
+    private static SPLCommit commitAll(final Git git, final String message) throws GitAPIException {
+        git.add().addFilepattern(".").call();
+        final String id = git.commit().setMessage(message).setSign(false).call().getName();
+        return new SPLCommit(id, null, null, null, null, null,
+                new SPLCommit.PresenceConditionPath(BASE_PATH.resolve("code-variability.after.spl.csv")),
+                null, null, null, null);
+    }
+
+    @Test
+    public void errorRevisionsExtendVariabilityRevisions() throws IOException {
+        // Two sub-histories such that variability and error revisions alternate.
+        final VariabilityHistory history = new VariabilityHistory(new NonEmptyList<>(List.of(
+                new NonEmptyList<>(List.of(first)),
+                new NonEmptyList<>(List.of(second)))));
+        final VariantsRepository variantsRepo = new VariantsRepository(variantsDir, splRepo,
+                history.toBlueprints((model, blueprint) -> Sample.of(VARIANTS)));
+        try {
+            variantsRepo.getStartRevision().orElseThrow().evolveAll().run();
+
+            for (final Variant variant : VARIANTS) {
+                final List<RevCommit> commits = commitsOf(variantsRepo, variant.getName());
+                Assert.assertEquals(4, commits.size());
+
+                final Map<String, String> generated = filesOf(variantsRepo, commits.get(0));
+                Assert.assertEquals(Set.of("code.c"), generated.keySet());
+                Assert.assertEquals(Files.readString(BASE_PATH.resolve("expected").resolve(variant.getName()).resolve("code.c")),
+                        generated.get("code.c"));
+
+                // Error commits keep the generated files and add the marker.
+                final Map<String, String> firstEnd = new HashMap<>(generated);
+                firstEnd.put(VariantsRevisionFromErrorBlueprint.MARKER_FILE.toString(), first.id());
+                Assert.assertEquals("SUB_HISTORY_END", commits.get(1).getFullMessage());
+                Assert.assertEquals(firstEnd, filesOf(variantsRepo, commits.get(1)));
+
+                // The next variability revision contains exactly the generated files again.
+                Assert.assertEquals(generated, filesOf(variantsRepo, commits.get(2)));
+
+                final Map<String, String> secondEnd = new HashMap<>(generated);
+                secondEnd.put(VariantsRevisionFromErrorBlueprint.MARKER_FILE.toString(), second.id());
+                Assert.assertEquals("SUB_HISTORY_END", commits.get(3).getFullMessage());
+                Assert.assertEquals(secondEnd, filesOf(variantsRepo, commits.get(3)));
+            }
+
+            // Neither revision touches the working tree.
+            try (final var files = Files.list(variantsDir)) {
+                Assert.assertEquals(List.of(variantsDir.resolve(".git")), files.toList());
+            }
+            assertNoScratchDirectories();
+        } finally {
+            variantsRepo.close();
+        }
+    }
+
+    @Test
+    public void checkedOutBranchIsUpdatedWithItsCommits() throws IOException, GitAPIException {
+        final Variant variant = VARIANTS.get(0);
+        try (final Git git = Git.open(variantsDir.toFile())) {
+            Files.writeString(variantsDir.resolve("code.c"), "outdated");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").setSign(false).call();
+            git.checkout().setCreateBranch(true).setName(variant.getName()).call();
+        }
+
+        final VariabilityHistory history = new VariabilityHistory(new NonEmptyList<>(List.of(
+                new NonEmptyList<>(List.of(first)))));
+        final VariantsRepository variantsRepo = new VariantsRepository(variantsDir, splRepo,
+                history.toBlueprints((model, blueprint) -> Sample.of(VARIANTS)));
+        try {
+            variantsRepo.getStartRevision().orElseThrow().evolveAll().run();
+            final List<RevCommit> commits = commitsOf(variantsRepo, variant.getName());
+            Assert.assertEquals(3, commits.size());
+
+            // The working tree and the index match the head of the branch, so there is nothing to commit.
+            final Map<String, String> head = filesOf(variantsRepo, commits.get(2));
+            Assert.assertEquals(head.get("code.c"), Files.readString(variantsDir.resolve("code.c")));
+            Assert.assertTrue(variantsRepo.commit("nothing").isEmpty());
+            variantsRepo.checkoutBranch(variantsRepo.getBranchByName(variant.getName()));
+            Assert.assertEquals(commits, commitsOf(variantsRepo, variant.getName()));
+
+            // HEAD still refers to the branch.
+            Assert.assertEquals(variant.getName(), variantsRepo.git().getRepository().getBranch());
+        } finally {
+            variantsRepo.close();
+        }
+    }
+
+    @Test
+    public void scratchDirectoryIsPlacedNextToRepositoryAndDeletedOnFailure() {
+        final VariabilityHistory history = new VariabilityHistory(new NonEmptyList<>(List.of(
+                new NonEmptyList<>(List.of(first)))));
+        final List<Path> scratchDirs = new ArrayList<>();
+        final VariantsRepository variantsRepo = new VariantsRepository(variantsDir, splRepo,
+                history.toBlueprints((model, blueprint) -> Sample.of(VARIANTS))) {
+            @Override
+            public Optional<VariantCommit> commit(final Branch branch, final Path filesDir, final Collection<CaseSensitivePath> files, final String message) throws IOException {
+                scratchDirs.add(filesDir.getParent());
+                throw new IOException("Committing failed.");
+            }
+        };
+        try {
+            Assert.assertThrows(RuntimeException.class, () -> variantsRepo.getStartRevision().orElseThrow().generate().run());
+            Assert.assertEquals(1, scratchDirs.size());
+            Assert.assertEquals(tempDir.toAbsolutePath(), scratchDirs.get(0).getParent());
+            Assert.assertFalse(Files.exists(scratchDirs.get(0)));
+        } finally {
+            variantsRepo.close();
+        }
+    }
+
+    private void assertNoScratchDirectories() throws IOException {
+        try (final var files = Files.list(tempDir)) {
+            Assert.assertEquals(Set.of(tempDir.resolve("spl"), tempDir.resolve("variants")), files.collect(Collectors.toSet()));
+        }
+    }
+
+    /**
+     * @return The commits of the given branch from the oldest to the newest.
+     */
+    private static List<RevCommit> commitsOf(final VariantsRepository repo, final String branch) throws IOException {
+        final List<RevCommit> commits = new ArrayList<>();
+        try (final RevWalk revWalk = new RevWalk(repo.git().getRepository())) {
+            RevCommit commit = revWalk.parseCommit(repo.git().getRepository().resolve(Constants.R_HEADS + branch));
+            while (commit != null) {
+                commits.add(0, commit);
+                commit = commit.getParentCount() == 0 ? null : revWalk.parseCommit(commit.getParent(0));
+            }
+        }
+        return commits;
+    }
+
+    private static Map<String, String> filesOf(final VariantsRepository repo, final RevCommit commit) throws IOException {
+        final Map<String, String> files = new HashMap<>();
+        try (final TreeWalk treeWalk = new TreeWalk(repo.git().getRepository())) {
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                files.put(treeWalk.getPathString(), new String(
+                        repo.git().getRepository().open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return files;
+    }
+
+    @After
+    public void tearDown() {
+        splRepo.close();
+        PathUtils.deleteDirectory(tempDir);
+    }
+}
@@ -0,0 +1,85 @@
+/* vi: set sw=4 ts=4: */
+/*
+ * Mini cp implementation for busybox
+ *
+ * Licensed under GPLv2 or later, see file LICENSE in this source tree.
+ */
+//config:config CP
+//config:	bool "cp (10 kb)"
+//usage:#define cp_trivial_usage
+#include "libbb.h"
+
+#if ENABLE_FEATURE_CP_LONG_OPTIONS
+static const char cp_longopts[] ALIGN1 =
+	"archive\0"        No_argument "a"
+	;
+#endif
+#if !ENABLE_FEATURE_CP_REFLINK
+#endif
+#if ENABLE_FEATURE_A || ENABLE_FEATURE_B
+#elif ENABLE_FEATURE_A && !ENABLE_FEATURE_B
+#endif
+#if defined ENABLE_FEATURE_X || !ENABLE_FEATURE_Y
+#endif
+#if ENABLE_FEATURE_X && ENABLE_FEATURE_Y /* both */
+#endif
+# if ENABLE_FEATURE_INDENTED
+# endif
+#define ENABLE_SOMETHING 1
+#undef ENABLE_SOMETHING
+# define IF_SOMETHING(...) __VA_ARGS__
+# undef IF_SOMETHING
+int main(void)
+{
+	if (ENABLE_FEATURE_CP_LONG_OPTIONS) {
+	if (ENABLE_FEATURE_CP_LONG_OPTIONS && flags) {
+	if (!ENABLE_FEATURE_CP_LONG_OPTIONS)
+	if (flags & ENABLE_FEATURE_X)
+	x = ENABLE_FEATURE_X, y = 1;
+	x = ENABLE_FEATURE_X;
+	return ENABLE_FEATURE_X ? 1 : 0;
+	foo(ENABLE_FEATURE_X);
+	foo(bar(ENABLE_FEATURE_X), 2);
+	if (BB_ENABLE_FEATURE_X) return;
+	x = ENABLE_A + ENABLE_B;
+	IF_FEATURE_CP_LONG_OPTIONS(applet_long_options = cp_longopts;)
+	IF_NOT_FEATURE_CP_LONG_OPTIONS(applet_long_options = NULL;)
+	IF_FEATURE_X(foo(bar(1), (2));) baz();
+	IF_FEATURE_X(unbalanced(;
+	IF_FEATURE_X;
+	IF_FEATURE_X(a) IF_FEATURE_Y(b)
+	opt = getopt32(argv, "pdRfinlsTHL" IF_FEATURE_CP_REFLINK("r"));
+	const char *s = "http://busybox.net"; /* IF_FEATURE_X(a) */
+	x = 1; // ENABLE_FEATURE_X in a comment
+	x = ENABLE_FEATURE_X; // trailing comment
+	y = IF_FEATURE_X(1) /* comment */ + 2;
+	/* leading comment */ y = IF_FEATURE_X(1);
+	/* unterminated comment ENABLE_FEATURE_X
+	 * continued comment ENABLE_FEATURE_X
+	 */ x = ENABLE_FEATURE_X;
+	z = 3; */ x = ENABLE_FEATURE_X;
+	/*/ odd */ IF_FEATURE_X(a)
+	\t* literal backslash t ENABLE_FEATURE_X
+	\t\tz = ENABLE_FEATURE_X;
+	a /* b */ c /* d */ ENABLE_FEATURE_X
+	if (!memcmp(p, "IF_NOT", 6)) goto conf7;
+	/*if (!memcmp(p, "IF_", 3)) ...*/
+	q = "IF_NOT", IF_FEATURE_Y(r);
+	x = ENABLE_FEATURE_X ENABLE_FEATURE_Y;
+	if (ENABLE_FEATURE_X)
+	if (\nENABLE_FEATURE_X
+	{ ENABLE_FEATURE_X }
+	ENABLE_FEATURE_X
+	IF_
+	ENABLE_
+	#ifdef IF_FEATURE_X
+	x = ümlaut ENABLE_FEATURE_X;
+}
+#if ENABLE_FEATURE_LONG \
+	|| ENABLE_FEATURE_SHORT
+#endif
+#define MULTI_LINE(x) \
+	do { ENABLE_FEATURE_X; } while (0)
+	x = ENABLE_FEATURE_CONTINUED \
+	+ 1;
+	last line continued \